@@ -0,0 +1,161 @@
+package com.example.geotracker;
+
+/**
+ * Passt das Standort-Intervall an die Bewegung an und filtert Fixes vor dem Speichern.
+ *
+ * Grenzen kommen aus den Einstellungen: schnellstes Intervall (pref_update_interval),
+ * langsamstes Intervall (pref_max_interval) und Mindestabstand (pref_min_distance).
+ * Im Stand wird das langsamste Intervall mit geringerer Genauigkeit genutzt, in
+ * Bewegung richtet sich das Intervall nach der Geschwindigkeit, bei Richtungs-
+ * änderungen wird auf das schnellste Intervall gewechselt.
+ */
+public class AdaptiveSampler {
+
+    static final double STATIONARY_SPEED_MPS = 0.5;
+    static final int STATIONARY_FIXES = 3;
+    // gewünschter Punktabstand in Bewegung
+    static final double TARGET_SPACING_M = 8;
+    static final double TURN_DEGREES = 30;
+    // Intervall erst ändern, wenn es um mehr als diesen Faktor abweicht
+    static final double INTERVAL_HYSTERESIS = 1.25;
+
+    private long minIntervalMs = 1000;
+    private long maxIntervalMs = 30000;
+    private double minDistanceM = 5;
+
+    // zuletzt gespeicherter Punkt
+    private boolean hasAccepted;
+    private double accLat;
+    private double accLon;
+    private double accBearing = Double.NaN;
+
+    // letzter Roh-Fix (für Geschwindigkeit/Kurs ohne Sensorwerte)
+    private boolean hasPrev;
+    private double prevLat;
+    private double prevLon;
+    private long prevTime;
+
+    private int slowFixes;
+    private boolean stationary;
+    private long intervalMs = minIntervalMs;
+    private boolean intervalChanged;
+
+    private long accepted;
+    private long rejected;
+
+    public void configure(long minIntervalMs, long maxIntervalMs, double minDistanceM) {
+        this.minIntervalMs = Math.max(100, minIntervalMs);
+        this.maxIntervalMs = Math.max(this.minIntervalMs, maxIntervalMs);
+        this.minDistanceM = Math.max(0, minDistanceM);
+        long clamped = clamp(intervalMs);
+        if (clamped != intervalMs) {
+            intervalMs = clamped;
+            intervalChanged = true;
+        }
+    }
+
+    /**
+     * Bewertet einen Fix. speedMps/bearingDeg dürfen NaN sein (dann aus dem
+     * vorherigen Fix geschätzt). Liefert true, wenn der Fix gespeichert werden soll.
+     */
+    public boolean onFix(long time, double lat, double lon, double speedMps, double bearingDeg) {
+        double speed = speedMps;
+        double heading = bearingDeg;
+        if (hasPrev && (Double.isNaN(speed) || Double.isNaN(heading))) {
+            double d = GeoMath.distanceMeters(prevLat, prevLon, lat, lon);
+            long dt = time - prevTime;
+            if (Double.isNaN(speed) && dt > 0) speed = d / (dt / 1000.0);
+            if (Double.isNaN(heading) && d > 0) heading = GeoMath.bearingDegrees(prevLat, prevLon, lat, lon);
+        }
+        hasPrev = true;
+        prevLat = lat;
+        prevLon = lon;
+        prevTime = time;
+
+        // Bewegungszustand mit etwas Trägheit
+        if (!Double.isNaN(speed) && speed < STATIONARY_SPEED_MPS) slowFixes++;
+        else slowFixes = 0;
+        stationary = slowFixes >= STATIONARY_FIXES;
+
+        boolean turning = !stationary && !Double.isNaN(heading) && !Double.isNaN(accBearing)
+                && GeoMath.headingDelta(heading, accBearing) >= TURN_DEGREES;
+
+        updateInterval(speed, turning);
+        return filter(lat, lon, turning);
+    }
+
+    private void updateInterval(double speed, boolean turning) {
+        long wanted;
+        if (stationary) {
+            wanted = maxIntervalMs;
+        } else if (turning || Double.isNaN(speed) || speed <= 0) {
+            wanted = minIntervalMs;
+        } else {
+            wanted = clamp((long) (TARGET_SPACING_M / speed * 1000));
+        }
+        double ratio = (double) Math.max(wanted, intervalMs) / Math.min(wanted, intervalMs);
+        if (ratio > INTERVAL_HYSTERESIS) {
+            intervalMs = wanted;
+            intervalChanged = true;
+        }
+    }
+
+    // Mindestabstand; in Kurven reicht der halbe Abstand, damit die Form erhalten bleibt
+    private boolean filter(double lat, double lon, boolean turning) {
+        if (!hasAccepted) {
+            accept(lat, lon);
+            return true;
+        }
+        double d = GeoMath.distanceMeters(accLat, accLon, lat, lon);
+        if (d >= minDistanceM || (turning && d >= minDistanceM / 2)) {
+            if (d > 0) accBearing = GeoMath.bearingDegrees(accLat, accLon, lat, lon);
+            accept(lat, lon);
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    private void accept(double lat, double lon) {
+        hasAccepted = true;
+        accLat = lat;
+        accLon = lon;
+        accepted++;
+    }
+
+    private long clamp(long ms) {
+        return Math.max(minIntervalMs, Math.min(maxIntervalMs, ms));
+    }
+
+    public long intervalMs() {
+        return intervalMs;
+    }
+
+    public long minIntervalMs() {
+        return minIntervalMs;
+    }
+
+    public double minDistanceM() {
+        return minDistanceM;
+    }
+
+    // Im Stand reicht geringere Genauigkeit
+    public boolean highAccuracy() {
+        return !stationary;
+    }
+
+    // true einmal nach jeder Intervalländerung (Standortanfrage neu stellen)
+    public boolean consumeIntervalChange() {
+        boolean changed = intervalChanged;
+        intervalChanged = false;
+        return changed;
+    }
+
+    public long acceptedCount() {
+        return accepted;
+    }
+
+    public long rejectedCount() {
+        return rejected;
+    }
+}
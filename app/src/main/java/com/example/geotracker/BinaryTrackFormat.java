@@ -0,0 +1,593 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Kompaktes, spaltenweises Binärformat (.gtb).
+ *
+ * Aufbau (Little Endian):
+ * Header (40 Byte): magic, version (short), generation (short), pointCount, blockCount,
+ * dataEnd, firstTime, lastTime. generation wird bei jedem Neuschreiben der Datei
+ * (write, Zusammenfassen, repair) erhöht, damit Cursor und BlockIndex das erkennen;
+ * ältere Dateien haben dort 0.
+ * danach Blöcke: n, CRC32 der Punktdaten (0 = ohne, ältere Dateien), tMin, tMax,
+ * n x Zeit (long, Epoch-Millis), n x Lat (int, 1e-7 Grad), n x Lon (int, 1e-7 Grad).
+ * Gelesen wird über einen MappedByteBuffer, ohne Zeilen-Strings; die Prüfsummen
+ * werden nur bei repair() geprüft.
+ */
+public class BinaryTrackFormat implements TrackFormat {
+
+    public static final String EXTENSION = ".gtb";
+
+    static final int MAGIC = 0x4B525447; // "GTRK"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int BLOCK_HEADER_SIZE = 24;
+    static final int BYTES_PER_POINT = 8 + 4 + 4;
+    static final int MAX_BLOCK_POINTS = 4096;
+
+    // Ab so vielen kleinen Blöcken wird die Datei zusammengefasst
+    private static final int COMPACT_BLOCK_COUNT = 512;
+    private static final int COMPACT_MIN_AVG_POINTS = 64;
+
+    private static final double SCALE = 1e7;
+
+    // Kopfdaten einer Datei
+    static class Header {
+        int generation;
+        int pointCount;
+        int blockCount;
+        long dataEnd = HEADER_SIZE;
+        long firstTime;
+        long lastTime;
+    }
+
+    @Override
+    public String extension() {
+        return EXTENSION;
+    }
+
+    @Override
+    public TrackData read(File file) throws IOException {
+        TrackData data = new TrackData();
+        readFrom(file, HEADER_SIZE, data);
+        return data;
+    }
+
+    // Lesestand in einer Datei: Byte-Offset plus bereits gelesene Blöcke/Punkte
+    public static class Cursor {
+        long offset = HEADER_SIZE;
+        int blocks;
+        int points;
+        // Generation der Datei beim letzten Lesen, -1 = noch nicht gelesen bzw. ungeprüft
+        int generation = -1;
+
+        public long offset() {
+            return offset;
+        }
+
+        public int points() {
+            return points;
+        }
+    }
+
+    /**
+     * Liest alle Blöcke ab dem Byte-Offset {@code offset} und hängt sie an {@code into} an.
+     * Liefert den Offset hinter dem letzten gelesenen Block.
+     */
+    public long readFrom(File file, long offset, TrackData into) throws IOException {
+        Cursor c = new Cursor();
+        c.offset = Math.max(offset, HEADER_SIZE);
+        c.blocks = Integer.MIN_VALUE; // keine Plausibilitätsprüfung
+        c.points = Integer.MIN_VALUE;
+        readTail(file, c, into);
+        return c.offset;
+    }
+
+    /**
+     * Liest nur die Blöcke hinter dem Cursor und schiebt ihn weiter.
+     * Liefert false, wenn die Datei inzwischen neu geschrieben wurde (z.B. zusammengefasst);
+     * dann muss der Aufrufer komplett neu lesen.
+     */
+    public boolean readTail(File file, Cursor cursor, TrackData into) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return cursor.points <= 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            Header h = readHeader(buf);
+            if (h.blockCount < cursor.blocks || h.pointCount < cursor.points) return false;
+            if (cursor.generation >= 0 && h.generation != cursor.generation) return false;
+            cursor.generation = h.generation;
+            if (cursor.offset >= h.dataEnd) return true;
+
+            if (cursor.offset == HEADER_SIZE) into.ensureCapacity(into.size + h.pointCount);
+            long pos = cursor.offset;
+            while (pos + BLOCK_HEADER_SIZE <= h.dataEnd) {
+                int p = (int) pos;
+                int n = buf.getInt(p);
+                long end = pos + BLOCK_HEADER_SIZE + (long) n * BYTES_PER_POINT;
+                if (n <= 0 || end > h.dataEnd) {
+                    throw new IOException("Defekter Block bei Offset " + pos + " in " + file.getName());
+                }
+                decodeBlock(buf, p, n, into);
+                pos = end;
+                // Cursor je Block fortschreiben: bricht ein späterer Block ab, passen
+                // Offset, Zähler und into weiterhin zusammen
+                cursor.offset = pos;
+                cursor.blocks++;
+                cursor.points += n;
+            }
+            return true;
+        }
+    }
+
+    // Empfänger für blockweises Lesen; block wird danach wiederverwendet
+    public interface BlockHandler {
+        void onBlock(TrackData block) throws IOException;
+    }
+
+    /**
+     * Liest die Datei Block für Block in einen wiederverwendeten Puffer
+     * (höchstens MAX_BLOCK_POINTS Punkte), z.B. für den Export ohne den ganzen Track im Speicher.
+     */
+    public void forEachBlock(File file, BlockHandler handler) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            Header h = readHeader(buf);
+            TrackData block = new TrackData(Math.min(Math.max(h.pointCount, 1), MAX_BLOCK_POINTS));
+            long pos = HEADER_SIZE;
+            while (pos + BLOCK_HEADER_SIZE <= h.dataEnd) {
+                int p = (int) pos;
+                int n = buf.getInt(p);
+                long end = pos + BLOCK_HEADER_SIZE + (long) n * BYTES_PER_POINT;
+                if (n <= 0 || end > h.dataEnd) {
+                    throw new IOException("Defekter Block bei Offset " + pos + " in " + file.getName());
+                }
+                block.clear();
+                decodeBlock(buf, p, n, block);
+                handler.onBlock(block);
+                pos = end;
+            }
+        }
+    }
+
+    /**
+     * Dünner Index über die Blockköpfe einer Datei: je Block Offset, erster Punkt
+     * und tMin/tMax, gelesen ohne die Punktdaten. Dazu laufendes Maximum von tMax und
+     * Minimum von tMin ab dem Block; beide sind monoton, daher funktioniert die
+     * Binärsuche auch bei nicht streng sortierten Zeiten (z.B. importierte Dateien).
+     * Wird wie Cursor nur um neue Blöcke erweitert. Nicht threadsicher.
+     */
+    public static class BlockIndex {
+        long[] offset = new long[16];
+        int[] first = new int[16];
+        long[] tMin = new long[16];
+        long[] tMax = new long[16];
+        // größtes tMax in [0, i] bzw. kleinstes tMin in [i, count)
+        long[] maxUpTo = new long[16];
+        long[] minFrom = new long[16];
+        int count;
+        int points;
+        long end = HEADER_SIZE;
+        // Generation der Datei, für die der Index gilt, -1 = noch leer
+        int generation = -1;
+
+        public int blockCount() {
+            return count;
+        }
+
+        public int pointCount() {
+            return points;
+        }
+
+        // erster Block, der Zeiten >= from enthalten kann
+        public int firstBlock(long from) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxUpTo[mid] < from) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // hinter dem letzten Block, der Zeiten <= to enthalten kann
+        public int endBlock(long to) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (minFrom[mid] <= to) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // erster Punkt des Blocks
+        public int firstPoint(int block) {
+            return first[block];
+        }
+
+        // Block, der den Punkt mit dieser Nummer enthält (0 <= point < pointCount())
+        public int blockOfPoint(int point) {
+            int lo = 0;
+            int hi = count - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (first[mid] <= point) lo = mid;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+
+        void clear() {
+            count = 0;
+            points = 0;
+            end = HEADER_SIZE;
+            generation = -1;
+        }
+
+        void add(long off, long min, long max, int n) {
+            if (count == offset.length) {
+                int cap = count * 2;
+                offset = Arrays.copyOf(offset, cap);
+                first = Arrays.copyOf(first, cap);
+                tMin = Arrays.copyOf(tMin, cap);
+                tMax = Arrays.copyOf(tMax, cap);
+                maxUpTo = Arrays.copyOf(maxUpTo, cap);
+                minFrom = Arrays.copyOf(minFrom, cap);
+            }
+            offset[count] = off;
+            first[count] = points;
+            tMin[count] = min;
+            tMax[count] = max;
+            maxUpTo[count] = count == 0 ? max : Math.max(maxUpTo[count - 1], max);
+            minFrom[count] = min;
+            // neuer Block kann das Minimum der vorderen senken
+            for (int i = count - 1; i >= 0 && minFrom[i] > min; i--) minFrom[i] = min;
+            count++;
+            points += n;
+        }
+    }
+
+    /**
+     * Liest nur die Blockköpfe hinter dem bisherigen Indexende nach. Wurde die Datei
+     * neu geschrieben (zusammengefasst, erkennbar an der Generation im Header), wird
+     * der Index neu aufgebaut.
+     */
+    public void updateIndex(File file, BlockIndex index) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            index.clear();
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            updateIndex(buf, file, index);
+        }
+    }
+
+    private static Header updateIndex(ByteBuffer buf, File file, BlockIndex index) throws IOException {
+        Header h = readHeader(buf);
+        if (h.generation != index.generation || h.blockCount < index.count
+                || h.pointCount < index.points) {
+            index.clear();
+        }
+        index.generation = h.generation;
+        long pos = index.end;
+        while (pos + BLOCK_HEADER_SIZE <= h.dataEnd) {
+            int p = (int) pos;
+            int n = buf.getInt(p);
+            long end = pos + BLOCK_HEADER_SIZE + (long) n * BYTES_PER_POINT;
+            if (n <= 0 || end > h.dataEnd) {
+                throw new IOException("Defekter Block bei Offset " + pos + " in " + file.getName());
+            }
+            index.add(pos, buf.getLong(p + 8), buf.getLong(p + 16), n);
+            pos = end;
+        }
+        index.end = pos;
+        return h;
+    }
+
+    /**
+     * Hängt die Punkte mit from <= Zeit <= to an into an. Über den Index werden nur
+     * die Blöcke gelesen, deren Zeitbereich das Fenster berührt; liefert die Anzahl.
+     */
+    public int readTimeRange(File file, BlockIndex index, long from, long to, TrackData into) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE || to < from) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            updateIndex(buf, file, index);
+            int before = into.size;
+            int endBlock = index.endBlock(to);
+            for (int b = index.firstBlock(from); b < endBlock; b++) {
+                if (index.tMax[b] < from || index.tMin[b] > to) continue;
+                int p = (int) index.offset[b];
+                int n = buf.getInt(p);
+                int tPos = p + BLOCK_HEADER_SIZE;
+                int latPos = tPos + n * 8;
+                int lonPos = latPos + n * 4;
+                for (int i = 0; i < n; i++) {
+                    long t = buf.getLong(tPos + i * 8);
+                    if (t < from || t > to) continue;
+                    into.add(t, buf.getInt(latPos + i * 4) / SCALE, buf.getInt(lonPos + i * 4) / SCALE);
+                }
+            }
+            return into.size - before;
+        }
+    }
+
+    /**
+     * Dekodiert ab dem Block mit Punkt fromPoint bis zu blocks ganze Blöcke und hängt
+     * sie an into an, z.B. zum Abspielen Block für Block. Liefert die Nummer des ersten
+     * angehängten Punktes (höchstens fromPoint) oder -1, wenn es ab fromPoint nichts gibt.
+     * Der Index wird vorher aktualisiert; Punktnummern bleiben auch nach dem
+     * Zusammenfassen der Datei gültig, Blocknummern nicht.
+     */
+    public int readFromPoint(File file, BlockIndex index, int fromPoint, int blocks, TrackData into)
+            throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) return -1;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            updateIndex(buf, file, index);
+            if (fromPoint >= index.points) return -1;
+            int b = index.blockOfPoint(fromPoint);
+            int start = index.first[b];
+            for (int end = Math.min(index.count, b + blocks); b < end; b++) {
+                int p = (int) index.offset[b];
+                decodeBlock(buf, p, buf.getInt(p), into);
+            }
+            return start;
+        }
+    }
+
+    // Block ab Position p (Blockkopf) dekodieren
+    static void decodeBlock(ByteBuffer buf, int p, int n, TrackData into) {
+        into.ensureCapacity(into.size + n);
+        int tPos = p + BLOCK_HEADER_SIZE;
+        int latPos = tPos + n * 8;
+        int lonPos = latPos + n * 4;
+
+        buf.position(tPos);
+        buf.asLongBuffer().get(into.time, into.size, n);
+        double[] lat = into.lat;
+        double[] lon = into.lon;
+        int base = into.size;
+        for (int i = 0; i < n; i++) {
+            lat[base + i] = buf.getInt(latPos + i * 4) / SCALE;
+            lon[base + i] = buf.getInt(lonPos + i * 4) / SCALE;
+        }
+        into.size += n;
+    }
+
+    @Override
+    public void write(File file, TrackData data) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+             FileChannel ch = raf.getChannel()) {
+            raf.setLength(0);
+            Header h = new Header();
+            h.generation = nextGeneration(file);
+            writeBlocks(ch, h, data, 0, data.size);
+            writeHeader(ch, h);
+            ch.force(false);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Umbenennen fehlgeschlagen: " + file.getName());
+        }
+    }
+
+    @Override
+    public void append(File file, TrackData data, int from, int to) throws IOException {
+        append(file, data, from, to, false);
+    }
+
+    // sync: nach dem Schreiben fsync, damit der Block einen Absturz übersteht
+    public void append(File file, TrackData data, int from, int to, boolean sync) throws IOException {
+        if (to <= from) {
+            ensureFile(file);
+            return;
+        }
+        boolean compact;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel ch = raf.getChannel()) {
+            Header h = ch.size() >= HEADER_SIZE ? readHeader(ch) : new Header();
+            writeBlocks(ch, h, data, from, to);
+            // evtl. abgerissene Reste hinter dem letzten gültigen Block entfernen
+            if (ch.size() > h.dataEnd) ch.truncate(h.dataEnd);
+            writeHeader(ch, h);
+            if (sync) ch.force(false);
+            compact = h.blockCount > COMPACT_BLOCK_COUNT
+                    && h.pointCount / h.blockCount < COMPACT_MIN_AVG_POINTS;
+        }
+        if (compact) write(file, read(file));
+    }
+
+    // fsync der Datei, z.B. vor dem Leeren des Journals
+    public void sync(File file) throws IOException {
+        if (!file.exists()) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel ch = raf.getChannel()) {
+            ch.force(true);
+        }
+    }
+
+    /**
+     * Prüft alle Blöcke (Länge, Prüfsumme) bis zum Dateiende und stellt den Header
+     * neu her: abgerissene oder defekte Reste werden abgeschnitten, vollständige Blöcke
+     * hinter einem veralteten Header übernommen. Liefert true, wenn etwas geändert wurde.
+     */
+    public boolean repair(File file) throws IOException {
+        if (!file.exists()) return false;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel ch = raf.getChannel()) {
+            long size = ch.size();
+            Header old = size >= HEADER_SIZE ? readHeader(ch) : null;
+            Header h = new Header();
+            h.generation = old != null ? (old.generation + 1) & 0xFFFF : 0;
+            ByteBuffer buf = ByteBuffer.allocate(BLOCK_HEADER_SIZE + MAX_BLOCK_POINTS * BYTES_PER_POINT)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            long pos = HEADER_SIZE;
+            while (pos + BLOCK_HEADER_SIZE <= size) {
+                buf.clear().limit(BLOCK_HEADER_SIZE);
+                readFully(ch, buf, pos);
+                int n = buf.getInt(0);
+                int crc = buf.getInt(4);
+                if (n <= 0 || n > MAX_BLOCK_POINTS) break;
+                int payload = n * BYTES_PER_POINT;
+                if (pos + BLOCK_HEADER_SIZE + payload > size) break;
+                buf.limit(BLOCK_HEADER_SIZE + payload);
+                readFully(ch, buf, pos + BLOCK_HEADER_SIZE);
+                if (crc != 0 && crc != checksum(buf.array(), BLOCK_HEADER_SIZE, payload)) break;
+
+                if (h.pointCount == 0) h.firstTime = buf.getLong(BLOCK_HEADER_SIZE);
+                h.lastTime = buf.getLong(BLOCK_HEADER_SIZE + (n - 1) * 8);
+                h.pointCount += n;
+                h.blockCount++;
+                pos += BLOCK_HEADER_SIZE + payload;
+            }
+            h.dataEnd = pos;
+
+            boolean changed = old == null || size != h.dataEnd || old.dataEnd != h.dataEnd
+                    || old.pointCount != h.pointCount || old.blockCount != h.blockCount;
+            if (!changed) return false;
+            ch.truncate(h.dataEnd);
+            writeHeader(ch, h);
+            ch.force(true);
+            return true;
+        }
+    }
+
+    // Generation für eine neu geschriebene Datei: eins mehr als die bisherige
+    private static int nextGeneration(File file) {
+        if (!file.exists() || file.length() < HEADER_SIZE) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            return (readHeader(ch).generation + 1) & 0xFFFF;
+        } catch (IOException e) {
+            // unlesbarer Header: alte Leser prüfen ohnehin neu
+            return 0;
+        }
+    }
+
+    // Liest buf bis limit ab Dateiposition pos
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int r = ch.read(buf, pos);
+            if (r < 0) throw new IOException("Unerwartetes Dateiende");
+            pos += r;
+        }
+    }
+
+    // CRC32 der Punktdaten eines Blocks
+    static int checksum(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    // Legt eine leere Datei mit Header an, falls noch keine existiert
+    public void ensureFile(File file) throws IOException {
+        if (file.exists() && file.length() >= HEADER_SIZE) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel ch = raf.getChannel()) {
+            raf.setLength(0);
+            writeHeader(ch, new Header());
+        }
+    }
+
+    // Liest nur den Header (z.B. für die Punktanzahl)
+    public Header readHeader(File file) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) return new Header();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            return readHeader(ch);
+        }
+    }
+
+    private static void writeBlocks(FileChannel ch, Header h, TrackData data, int from, int to)
+            throws IOException {
+        int maxN = Math.min(to - from, MAX_BLOCK_POINTS);
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK_HEADER_SIZE + maxN * BYTES_PER_POINT)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long pos = h.dataEnd;
+        for (int start = from; start < to; start += MAX_BLOCK_POINTS) {
+            int n = Math.min(MAX_BLOCK_POINTS, to - start);
+            buf.clear();
+            long tMin = Long.MAX_VALUE, tMax = Long.MIN_VALUE;
+            for (int i = start; i < start + n; i++) {
+                tMin = Math.min(tMin, data.time[i]);
+                tMax = Math.max(tMax, data.time[i]);
+            }
+            buf.putInt(n).putInt(0).putLong(tMin).putLong(tMax);
+            for (int i = start; i < start + n; i++) buf.putLong(data.time[i]);
+            for (int i = start; i < start + n; i++) buf.putInt((int) Math.round(data.lat[i] * SCALE));
+            for (int i = start; i < start + n; i++) buf.putInt((int) Math.round(data.lon[i] * SCALE));
+            buf.putInt(4, checksum(buf.array(), BLOCK_HEADER_SIZE, n * BYTES_PER_POINT));
+            buf.flip();
+            while (buf.hasRemaining()) pos += ch.write(buf, pos);
+
+            if (h.pointCount == 0) h.firstTime = data.time[start];
+            h.lastTime = data.time[start + n - 1];
+            h.pointCount += n;
+            h.blockCount++;
+        }
+        h.dataEnd = pos;
+    }
+
+    private static void writeHeader(FileChannel ch, Header h) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putShort((short) VERSION).putShort((short) h.generation)
+                .putInt(h.pointCount).putInt(h.blockCount)
+                .putLong(h.dataEnd).putLong(h.firstTime).putLong(h.lastTime);
+        buf.flip();
+        long pos = 0;
+        while (buf.hasRemaining()) pos += ch.write(buf, pos);
+    }
+
+    private static Header readHeader(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long pos = 0;
+        while (buf.hasRemaining()) {
+            int r = ch.read(buf, pos);
+            if (r < 0) throw new IOException("Header unvollständig");
+            pos += r;
+        }
+        buf.flip();
+        return readHeader(buf);
+    }
+
+    static Header readHeader(ByteBuffer buf) throws IOException {
+        if (buf.getInt(0) != MAGIC) throw new IOException("Keine GTRK-Datei");
+        int version = buf.getShort(4) & 0xFFFF;
+        if (version != VERSION) throw new IOException("Unbekannte Version " + version);
+        Header h = new Header();
+        h.generation = buf.getShort(6) & 0xFFFF;
+        h.pointCount = buf.getInt(8);
+        h.blockCount = buf.getInt(12);
+        h.dataEnd = buf.getLong(16);
+        h.firstTime = buf.getLong(24);
+        h.lastTime = buf.getLong(32);
+        return h;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.geotracker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schreibt Text in festen Blöcken (char-Puffer) in einen Stream.
+ * Zahlen und Zeitstempel werden direkt in den Puffer formatiert, ohne
+ * Zwischen-Strings pro Punkt.
+ */
+public class ChunkedTextWriter implements Closeable {
+
+    public static final int DEFAULT_CHUNK_CHARS = 32 * 1024;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final Writer out;
+    private final char[] buf;
+    private int pos;
+
+    public ChunkedTextWriter(OutputStream out) {
+        this(out, DEFAULT_CHUNK_CHARS);
+    }
+
+    public ChunkedTextWriter(OutputStream out, int chunkChars) {
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        this.buf = new char[Math.max(64, chunkChars)];
+    }
+
+    public ChunkedTextWriter append(char c) throws IOException {
+        if (pos == buf.length) flushBuffer();
+        buf[pos++] = c;
+        return this;
+    }
+
+    public ChunkedTextWriter append(String s) throws IOException {
+        int len = s.length();
+        for (int off = 0; off < len; ) {
+            if (pos == buf.length) flushBuffer();
+            int n = Math.min(len - off, buf.length - pos);
+            s.getChars(off, off + n, buf, pos);
+            pos += n;
+            off += n;
+        }
+        return this;
+    }
+
+    public ChunkedTextWriter append(long v) throws IOException {
+        if (v < 0) {
+            append('-');
+            if (v == Long.MIN_VALUE) return append("9223372036854775808");
+            v = -v;
+        }
+        ensure(19);
+        int start = pos;
+        do {
+            buf[pos++] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        reverse(start, pos - 1);
+        return this;
+    }
+
+    // Koordinate mit höchstens 7 Nachkommastellen (Auflösung des Binärformats)
+    public ChunkedTextWriter appendCoord(double deg) throws IOException {
+        long v = Math.round(deg * 1e7);
+        if (v < 0) {
+            append('-');
+            v = -v;
+        }
+        append(v / 10_000_000L);
+        long frac = v % 10_000_000L;
+        ensure(8);
+        buf[pos++] = '.';
+        if (frac == 0) {
+            buf[pos++] = '0';
+            return this;
+        }
+        int digits = 7;
+        while (frac % 10 == 0) {
+            frac /= 10;
+            digits--;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buf[pos + i] = (char) ('0' + frac % 10);
+            frac /= 10;
+        }
+        pos += digits;
+        return this;
+    }
+
+    // yyyy-MM-ddTHH:mm:ss.SSSZ in UTC
+    public ChunkedTextWriter appendIsoUtc(long epochMillis) throws IOException {
+        appendIsoLocal(epochMillis);
+        return append('Z');
+    }
+
+    // yyyy-MM-ddTHH:mm:ss.SSS ohne Zone; epochMillis ist bereits um den Offset verschoben
+    public ChunkedTextWriter appendIsoLocal(long epochMillis) throws IOException {
+        long days = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        int ms = (int) Math.floorMod(epochMillis, MILLIS_PER_DAY);
+
+        // civil_from_days (H. Hinnant)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        ensure(23);
+        digits((int) year, 4);
+        buf[pos++] = '-';
+        digits(month, 2);
+        buf[pos++] = '-';
+        digits(day, 2);
+        buf[pos++] = 'T';
+        digits(ms / 3_600_000, 2);
+        buf[pos++] = ':';
+        digits(ms / 60_000 % 60, 2);
+        buf[pos++] = ':';
+        digits(ms / 1000 % 60, 2);
+        buf[pos++] = '.';
+        digits(ms % 1000, 3);
+        return this;
+    }
+
+    // Text für XML-Inhalte und -Attribute
+    public ChunkedTextWriter appendXmlEscaped(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&': append("&amp;"); break;
+                case '<': append("&lt;"); break;
+                case '>': append("&gt;"); break;
+                case '"': append("&quot;"); break;
+                case '\'': append("&apos;"); break;
+                default: append(c);
+            }
+        }
+        return this;
+    }
+
+    // Inhalt eines JSON-Strings (ohne Anführungszeichen)
+    public ChunkedTextWriter appendJsonEscaped(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\').append(c);
+            } else if (c < 0x20) {
+                append("\\u00");
+                append(Character.forDigit(c >> 4, 16));
+                append(Character.forDigit(c & 0xF, 16));
+            } else {
+                append(c);
+            }
+        }
+        return this;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+    private void digits(int v, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            buf[pos + i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        pos += width;
+    }
+
+    private void ensure(int n) throws IOException {
+        if (pos + n > buf.length) flushBuffer();
+    }
+
+    private void reverse(int a, int b) {
+        while (a < b) {
+            char t = buf[a];
+            buf[a++] = buf[b];
+            buf[b--] = t;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos == 0) return;
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
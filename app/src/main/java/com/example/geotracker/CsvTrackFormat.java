@@ -0,0 +1,90 @@
+package com.example.geotracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Altes Textformat "Timestamp,Latitude,Longitude".
+ * Wird nur noch für die Migration alter Dateien genutzt; exportiert wird über TrackExporter.
+ */
+public class CsvTrackFormat implements TrackFormat {
+
+    public static final String EXTENSION = ".csv";
+    public static final String HEADER = "Timestamp,Latitude,Longitude\n";
+
+    private final ZoneId zone;
+
+    public CsvTrackFormat() {
+        this(ZoneId.systemDefault());
+    }
+
+    public CsvTrackFormat(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    @Override
+    public String extension() {
+        return EXTENSION;
+    }
+
+    // Fehlerhafte Zeilen werden stillschweigend übersprungen
+    @Override
+    public TrackData read(File file) throws IOException {
+        return read(file, (line, message) -> { });
+    }
+
+    // Liest die Datei; übersprungene Zeilen gehen an errors
+    public TrackData read(File file, CsvTrackReader.ErrorHandler errors) throws IOException {
+        TrackData data = new TrackData();
+        if (!file.exists()) return data;
+        try (InputStream in = new FileInputStream(file)) {
+            new CsvTrackReader(zone, CsvTrackReader.DEFAULT_BUFFER_SIZE).read(in, data, errors);
+        }
+        return data;
+    }
+
+    @Override
+    public void write(File file, TrackData data) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            w.write(HEADER);
+            writeRows(w, data, 0, data.size);
+        }
+    }
+
+    @Override
+    public void append(File file, TrackData data, int from, int to) throws IOException {
+        boolean header = !file.exists() || file.length() == 0;
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            if (header) w.write(HEADER);
+            writeRows(w, data, from, to);
+        }
+    }
+
+    private void writeRows(Writer w, TrackData data, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            w.write(formatTime(data.time[i]));
+            w.write(',');
+            w.write(Double.toString(data.lat[i]));
+            w.write(',');
+            w.write(Double.toString(data.lon[i]));
+            w.write('\n');
+        }
+    }
+
+    // Zeitstempel wie bisher als LocalDateTime-Text
+    String formatTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone).toString();
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.geotracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Streamender Leser für Track-CSV ("Timestamp,Latitude,Longitude").
+ * Arbeitet direkt auf einem Byte-Puffer und parst Zahlen und Zeitstempel an Ort
+ * und Stelle; pro Zeile entstehen keine Objekte. Fehlerhafte Zeilen werden mit
+ * Zeilennummer an den ErrorHandler gemeldet und übersprungen.
+ *
+ * Zeitstempel: LocalDateTime-Text (yyyy-MM-ddTHH:mm[:ss[.SSS]]) oder Epoch-Millis.
+ */
+public class CsvTrackReader {
+
+    public interface RowHandler {
+        void onRow(long time, double lat, double lon);
+    }
+
+    public interface ErrorHandler {
+        void onError(long line, String message);
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ZoneRules rules;
+    private byte[] buf;
+
+    // Offset-Cache: die Zeitzone wird nur bei wechselnder Stunde neu befragt
+    private long cachedHour = Long.MIN_VALUE;
+    private int cachedOffsetSeconds;
+
+    // Ergebnis des letzten parseDouble/parseTime (vermeidet Rückgabeobjekte)
+    private double parsedDouble;
+    private long parsedTime;
+
+    public CsvTrackReader() {
+        this(ZoneId.systemDefault(), DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvTrackReader(ZoneId zone, int bufferSize) {
+        this.rules = zone.getRules();
+        this.buf = new byte[Math.max(bufferSize, 16)];
+    }
+
+    // Liest alle Zeilen in die Spalten von into; liefert die Anzahl gelesener Punkte
+    public long read(InputStream in, TrackData into, ErrorHandler errors) throws IOException {
+        return read(in, into::add, errors);
+    }
+
+    /**
+     * Liest den Stream bis zum Ende. Eine erste Zeile, die nicht mit einer Ziffer
+     * beginnt, gilt als Kopfzeile. Liefert die Anzahl gültiger Zeilen.
+     */
+    public long read(InputStream in, RowHandler rows, ErrorHandler errors) throws IOException {
+        long line = 0;
+        long count = 0;
+        int len = 0;      // gültige Bytes im Puffer
+        int start = 0;    // Anfang der aktuellen Zeile
+        boolean eof = false;
+
+        while (true) {
+            // nächstes Zeilenende suchen
+            int nl = -1;
+            for (int i = start; i < len; i++) {
+                if (buf[i] == '\n') {
+                    nl = i;
+                    break;
+                }
+            }
+            if (nl < 0) {
+                if (eof) {
+                    if (start < len) {
+                        line++;
+                        if (parseRow(start, len, line, rows, errors)) count++;
+                    }
+                    return count;
+                }
+                // Rest nach vorne schieben, ggf. Puffer vergrößern, nachladen
+                int rest = len - start;
+                if (start > 0) {
+                    System.arraycopy(buf, start, buf, 0, rest);
+                } else if (rest == buf.length) {
+                    byte[] bigger = new byte[buf.length * 2];
+                    System.arraycopy(buf, 0, bigger, 0, rest);
+                    buf = bigger;
+                }
+                start = 0;
+                len = rest;
+                int r = in.read(buf, len, buf.length - len);
+                if (r < 0) eof = true;
+                else len += r;
+                continue;
+            }
+
+            line++;
+            if (parseRow(start, nl, line, rows, errors)) count++;
+            start = nl + 1;
+        }
+    }
+
+    // Zeile [from, to) ohne '\n'; true, wenn ein Punkt geliefert wurde
+    private boolean parseRow(int from, int to, long line, RowHandler rows, ErrorHandler errors) {
+        if (to > from && buf[to - 1] == '\r') to--;
+        if (isBlank(from, to)) return false;
+        if (line == 1 && !isDigit(buf[skipSpaces(from, to)])) return false; // Kopfzeile
+
+        int c1 = indexOf(',', from, to);
+        int c2 = c1 < 0 ? -1 : indexOf(',', c1 + 1, to);
+        if (c2 < 0) {
+            report(errors, line, "zu wenige Spalten");
+            return false;
+        }
+        int c3 = indexOf(',', c2 + 1, to);
+        int end3 = c3 < 0 ? to : c3;
+
+        if (!parseTime(from, c1)) {
+            report(errors, line, "ungültiger Zeitstempel");
+            return false;
+        }
+        long time = parsedTime;
+        if (!parseDouble(c1 + 1, c2)) {
+            report(errors, line, "ungültige Breite");
+            return false;
+        }
+        double lat = parsedDouble;
+        if (!parseDouble(c2 + 1, end3)) {
+            report(errors, line, "ungültige Länge");
+            return false;
+        }
+        double lon = parsedDouble;
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            report(errors, line, "Koordinate außerhalb des Wertebereichs");
+            return false;
+        }
+        rows.onRow(time, lat, lon);
+        return true;
+    }
+
+    private static void report(ErrorHandler errors, long line, String message) {
+        if (errors != null) errors.onError(line, message);
+    }
+
+    // ---------- Zahlen ----------
+
+    // Dezimalzahl in [from, to); schneller Pfad ohne Objekte, sonst Double.parseDouble
+    boolean parseDouble(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimEnd(from, to);
+        if (from >= to) return false;
+
+        int i = from;
+        boolean neg = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            neg = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exp10 = 0;
+        boolean any = false;
+        boolean overflow = false;
+
+        while (i < to && isDigit(buf[i])) {
+            any = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (buf[i] - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                overflow = true;
+            }
+            i++;
+        }
+        if (i < to && buf[i] == '.') {
+            i++;
+            while (i < to && isDigit(buf[i])) {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (buf[i] - '0');
+                    if (mantissa != 0) digits++;
+                    exp10--;
+                } else {
+                    overflow = true;
+                }
+                i++;
+            }
+        }
+        if (!any) return slowParseDouble(from, to);
+        if (i < to && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean expNeg = false;
+            if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+                expNeg = buf[i] == '-';
+                i++;
+            }
+            int e = 0;
+            int expDigits = 0;
+            while (i < to && isDigit(buf[i]) && expDigits < 4) {
+                e = e * 10 + (buf[i] - '0');
+                expDigits++;
+                i++;
+            }
+            if (expDigits == 0) return false;
+            exp10 += expNeg ? -e : e;
+        }
+        if (i != to) return slowParseDouble(from, to);
+
+        if (overflow || exp10 < -22 || exp10 > 22) {
+            return slowParseDouble(from, to);
+        }
+        // bis 2^53 exakt; bei längerer Mantisse (z.B. 17 Stellen aus Double.toString)
+        // höchstens 1 ulp Abweichung, weit unter der gespeicherten Auflösung von 1e-7 Grad
+        double v = exp10 < 0 ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+        parsedDouble = neg ? -v : v;
+        return true;
+    }
+
+    private boolean slowParseDouble(int from, int to) {
+        try {
+            parsedDouble = Double.parseDouble(new String(buf, from, to - from, StandardCharsets.US_ASCII));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // ---------- Zeitstempel ----------
+
+    boolean parseTime(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimEnd(from, to);
+        if (from >= to) return false;
+
+        // reine Ziffern: Epoch-Millis
+        boolean allDigits = to - from <= 18;
+        for (int i = from; i < to && allDigits; i++) allDigits = isDigit(buf[i]);
+        if (allDigits) {
+            long v = 0;
+            for (int i = from; i < to; i++) v = v * 10 + (buf[i] - '0');
+            parsedTime = v;
+            return true;
+        }
+
+        // yyyy-MM-ddTHH:mm[:ss[.fraction]]
+        int n = to - from;
+        if (n < 16 || buf[from + 4] != '-' || buf[from + 7] != '-' || buf[from + 10] != 'T'
+                || buf[from + 13] != ':') {
+            return false;
+        }
+        int year = digits(from, 4);
+        int month = digits(from + 5, 2);
+        int day = digits(from + 8, 2);
+        int hour = digits(from + 11, 2);
+        int minute = digits(from + 14, 2);
+        int second = 0;
+        int millis = 0;
+        int i = from + 16;
+        if (i < to) {
+            if (buf[i] != ':' || i + 3 > to) return false;
+            second = digits(i + 1, 2);
+            i += 3;
+            if (i < to) {
+                if (buf[i] != '.') return false;
+                i++;
+                int fracDigits = 0;
+                while (i < to && isDigit(buf[i])) {
+                    if (fracDigits < 3) millis = millis * 10 + (buf[i] - '0');
+                    fracDigits++;
+                    i++;
+                }
+                if (fracDigits == 0 || i != to) return false;
+                for (int k = fracDigits; k < 3; k++) millis *= 10;
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+
+        long localSeconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        parsedTime = (localSeconds - offsetSeconds(localSeconds)) * 1000L + millis;
+        return true;
+    }
+
+    // Offset der Zeitzone für eine lokale Zeit, je Stunde zwischengespeichert
+    private int offsetSeconds(long localSeconds) {
+        long hour = Math.floorDiv(localSeconds, 3600);
+        if (hour != cachedHour) {
+            LocalDateTime ldt = LocalDateTime.ofEpochSecond(hour * 3600, 0, ZoneOffset.UTC);
+            cachedOffsetSeconds = rules.getOffset(ldt).getTotalSeconds();
+            cachedHour = hour;
+        }
+        return cachedOffsetSeconds;
+    }
+
+    // Tage seit 1970-01-01 (proleptischer Gregorianischer Kalender)
+    static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    // feste Anzahl Ziffern, -1 bei Nicht-Ziffer
+    private int digits(int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            if (!isDigit(buf[i])) return -1;
+            v = v * 10 + (buf[i] - '0');
+        }
+        return v;
+    }
+
+    // ---------- Hilfen ----------
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && (buf[from] == ' ' || buf[from] == '\t')) from++;
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && (buf[to - 1] == ' ' || buf[to - 1] == '\t')) to--;
+        return to;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] != ' ' && buf[i] != '\t') return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
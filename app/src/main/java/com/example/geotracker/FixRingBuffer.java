@@ -0,0 +1,98 @@
+package com.example.geotracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ringpuffer für Fixes zwischen genau einem Erzeuger (Location-Thread) und genau
+ * einem Verbraucher (I/O-Thread), ohne Sperren. Spaltenweise primitive Arrays,
+ * Kapazität eine Zweierpotenz. head/tail zählen fortlaufend; der Erzeuger schreibt
+ * erst die Werte und veröffentlicht dann tail (lazySet), der Verbraucher liest erst
+ * tail und gibt die Plätze danach über head frei.
+ * Ist der Puffer voll, wird der neue Fix verworfen und gezählt.
+ */
+public class FixRingBuffer {
+
+    // Empfänger beim Leeren, Aufruf auf dem Verbraucher-Thread
+    public interface Sink {
+        void accept(long time, double lat, double lon, double altitude);
+    }
+
+    private final int mask;
+    private final long[] time;
+    private final double[] lat;
+    private final double[] lon;
+    private final double[] alt;
+
+    // nächster zu lesender Platz (nur der Verbraucher schreibt)
+    private final AtomicLong head = new AtomicLong();
+    // nächster zu schreibender Platz (nur der Erzeuger schreibt)
+    private final AtomicLong tail = new AtomicLong();
+    // lokale Kopien, spart den Zugriff auf die Seite des anderen Threads
+    private long cachedHead;
+    private long cachedTail;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public FixRingBuffer(int capacity) {
+        int cap = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = cap - 1;
+        time = new long[cap];
+        lat = new double[cap];
+        lon = new double[cap];
+        alt = new double[cap];
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Nur vom Erzeuger-Thread; false = voll, der Fix wurde verworfen
+    public boolean offer(long t, double latitude, double longitude, double altitude) {
+        long tl = tail.get();
+        if (tl - cachedHead > mask) {
+            cachedHead = head.get();
+            if (tl - cachedHead > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        int i = (int) tl & mask;
+        time[i] = t;
+        lat[i] = latitude;
+        lon[i] = longitude;
+        alt[i] = altitude;
+        tail.lazySet(tl + 1);
+        return true;
+    }
+
+    /**
+     * Nur vom Verbraucher-Thread: übergibt alle vorhandenen Fixes in Reihenfolge an sink
+     * und liefert ihre Anzahl.
+     */
+    public int drain(Sink sink) {
+        long hd = head.get();
+        if (hd == cachedTail) {
+            cachedTail = tail.get();
+            if (hd == cachedTail) return 0;
+        }
+        long end = cachedTail;
+        for (long p = hd; p < end; p++) {
+            int i = (int) p & mask;
+            sink.accept(time[i], lat[i], lon[i], alt[i]);
+        }
+        head.lazySet(end);
+        return (int) (end - hd);
+    }
+
+    // ungefähr, von jedem Thread
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+}
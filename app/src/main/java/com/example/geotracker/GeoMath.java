@@ -0,0 +1,40 @@
+package com.example.geotracker;
+
+/**
+ * Kleine Geo-Hilfsfunktionen (Kugelmodell).
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_M = 6371008.8;
+
+    private GeoMath() {
+    }
+
+    // Großkreisentfernung in Metern (Haversine)
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double dp = p2 - p1;
+        double dl = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dp / 2) * Math.sin(dp / 2)
+                + Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // Anfangskurs von Punkt 1 nach Punkt 2 in Grad (0..360, 0 = Nord)
+    public static double bearingDegrees(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double dl = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(dl) * Math.cos(p2);
+        double x = Math.cos(p1) * Math.sin(p2) - Math.sin(p1) * Math.cos(p2) * Math.cos(dl);
+        double deg = Math.toDegrees(Math.atan2(y, x));
+        return deg < 0 ? deg + 360 : deg;
+    }
+
+    // Kleinster Winkel zwischen zwei Kursen (0..180)
+    public static double headingDelta(double a, double b) {
+        double d = Math.abs(a - b) % 360;
+        return d > 180 ? 360 - d : d;
+    }
+}
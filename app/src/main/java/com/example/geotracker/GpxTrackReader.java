@@ -0,0 +1,170 @@
+package com.example.geotracker;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Liest die Punkte (trkpt und rtept) einer GPX-Datei mit einem Pull-Parser,
+ * also ohne das Dokument im Speicher aufzubauen. Punkte ohne Zeitstempel
+ * übernehmen die Zeit des vorherigen Punkts.
+ *
+ * Punkte vor dem ersten Zeitstempel werden zurückgehalten und bekommen dessen Zeit,
+ * statt als 1970 gespeichert zu werden. Hat die Datei (z.B. eine geplante Route)
+ * keine Zeiten, gilt die Importzeit; damit der Puffer bei großen Dateien nicht
+ * wächst, wird nach MAX_LEADING_POINTS Punkten ohne Zeit ebenfalls die Importzeit
+ * genommen.
+ */
+public class GpxTrackReader {
+
+    static final int MAX_LEADING_POINTS = 4096;
+
+    private final XmlPullParser parser;
+
+    public GpxTrackReader(XmlPullParser parser) {
+        this.parser = parser;
+    }
+
+    // Liefert die Anzahl gelesener Punkte; Dateien ohne Zeiten bekommen die aktuelle Zeit
+    public long read(InputStream in, CsvTrackReader.RowHandler rows) throws IOException {
+        return read(in, rows, System.currentTimeMillis());
+    }
+
+    // importTime: Zeit für Punkte, vor denen die Datei keinen Zeitstempel hat
+    public long read(InputStream in, CsvTrackReader.RowHandler rows, long importTime) throws IOException {
+        long count = 0;
+        long lastTime = Long.MIN_VALUE;
+        // Punkte vor dem ersten Zeitstempel, Zeit wird beim Ausgeben gesetzt
+        TrackData leading = new TrackData();
+        try {
+            parser.setInput(in, null);
+            boolean inPoint = false;
+            double lat = 0;
+            double lon = 0;
+            long time = Long.MIN_VALUE;
+
+            for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+                if (event == XmlPullParser.START_TAG) {
+                    String name = localName(parser.getName());
+                    if (name.equals("trkpt") || name.equals("rtept")) {
+                        lat = parseCoord(parser.getAttributeValue(null, "lat"), 90);
+                        lon = parseCoord(parser.getAttributeValue(null, "lon"), 180);
+                        time = Long.MIN_VALUE;
+                        inPoint = true;
+                    } else if (inPoint && name.equals("time")) {
+                        time = parseIsoTime(parser.nextText().trim());
+                    }
+                } else if (event == XmlPullParser.END_TAG && inPoint) {
+                    String name = localName(parser.getName());
+                    if (name.equals("trkpt") || name.equals("rtept")) {
+                        inPoint = false;
+                        if (Double.isNaN(lat) || Double.isNaN(lon)) continue;
+                        count++;
+                        if (time != Long.MIN_VALUE) lastTime = time;
+                        if (lastTime == Long.MIN_VALUE) {
+                            leading.add(0, lat, lon);
+                            if (leading.size() < MAX_LEADING_POINTS) continue;
+                            lastTime = importTime;
+                            flush(leading, lastTime, rows);
+                            continue;
+                        }
+                        flush(leading, lastTime, rows);
+                        rows.onRow(lastTime, lat, lon);
+                    }
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException("Ungültige GPX-Datei: " + e.getMessage(), e);
+        }
+        flush(leading, importTime, rows);
+        return count;
+    }
+
+    // gibt die zurückgehaltenen Punkte mit time aus und leert den Puffer
+    private static void flush(TrackData leading, long time, CsvTrackReader.RowHandler rows) {
+        for (int i = 0; i < leading.size(); i++) rows.onRow(time, leading.latAt(i), leading.lonAt(i));
+        leading.clear();
+    }
+
+    private static String localName(String name) {
+        int colon = name.indexOf(':');
+        return colon < 0 ? name : name.substring(colon + 1);
+    }
+
+    // NaN bei fehlendem oder ungültigem Wert
+    private static double parseCoord(String s, double limit) {
+        if (s == null) return Double.NaN;
+        try {
+            double v = Double.parseDouble(s.trim());
+            return Math.abs(v) <= limit ? v : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm:ss[.fraction][Z|±hh:mm] in Epoch-Millis; ohne Zone gilt UTC.
+     * Long.MIN_VALUE, wenn der Text nicht lesbar ist.
+     */
+    static long parseIsoTime(String s) {
+        int n = s.length();
+        if (n >= 19 && s.charAt(4) == '-' && s.charAt(7) == '-' && s.charAt(10) == 'T'
+                && s.charAt(13) == ':' && s.charAt(16) == ':') {
+            int year = digits(s, 0, 4);
+            int month = digits(s, 5, 2);
+            int day = digits(s, 8, 2);
+            int hour = digits(s, 11, 2);
+            int minute = digits(s, 14, 2);
+            int second = digits(s, 17, 2);
+            int i = 19;
+            int millis = 0;
+            if (i < n && s.charAt(i) == '.') {
+                i++;
+                int fracDigits = 0;
+                while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                    if (fracDigits < 3) millis = millis * 10 + (s.charAt(i) - '0');
+                    fracDigits++;
+                    i++;
+                }
+                for (int k = fracDigits; k < 3; k++) millis *= 10;
+            }
+            int offsetSeconds = 0;
+            boolean zoneOk = i == n || (i == n - 1 && s.charAt(i) == 'Z');
+            if (!zoneOk && i == n - 6 && (s.charAt(i) == '+' || s.charAt(i) == '-') && s.charAt(i + 3) == ':') {
+                int oh = digits(s, i + 1, 2);
+                int om = digits(s, i + 4, 2);
+                if (oh >= 0 && om >= 0) {
+                    offsetSeconds = (s.charAt(i) == '-' ? -1 : 1) * (oh * 3600 + om * 60);
+                    zoneOk = true;
+                }
+            }
+            if (zoneOk && year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31
+                    && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 60) {
+                long secs = CsvTrackReader.daysFromCivil(year, month, day) * 86400L
+                        + hour * 3600L + minute * 60L + second - offsetSeconds;
+                return secs * 1000L + millis;
+            }
+        }
+        // seltene Schreibweisen
+        try {
+            return OffsetDateTime.parse(s).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // feste Anzahl Ziffern, -1 bei Nicht-Ziffer
+    private static int digits(String s, int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.geotracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Dichteraster für die Heatmap: Punkte aller Tracks je Zelle gezählt, BINS x BINS
+ * Zellen pro Kartenkachel einer Zoomstufe (Schlüssel TileDiskCache.tileIndex).
+ * Gerechnet wird mit Fork/Join in zwei Stufen: erst zählt jede Aufgabe einen
+ * Abschnitt eines Tracks in eigene Kacheln (nichts Gemeinsames, keine Sperren),
+ * dann werden die Teilergebnisse je Kachel parallel addiert.
+ * Nach compute() unveränderlich und von jedem Thread lesbar.
+ */
+public final class HeatmapGrid {
+
+    public static final int BINS = 64;
+    // darüber wird das Raster dieser Stufe gestreckt; je belegter Kachel 16 KB
+    public static final int MAX_ZOOM = 15;
+    // Punkte je Zählaufgabe
+    static final int CHUNK = 16_384;
+    // Kacheln je Additionsaufgabe
+    static final int MERGE_TILES = 16;
+
+    // Farbverlauf blau -> cyan -> grün -> gelb -> rot
+    private static final int[] RAMP = {0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF0000};
+    private static final int MIN_ALPHA = 96;
+
+    private final int zoom;
+    private final Map<Long, int[]> tiles;
+    private final int maxCount;
+    private final long pointCount;
+
+    private HeatmapGrid(int zoom, Map<Long, int[]> tiles, int maxCount, long pointCount) {
+        this.zoom = zoom;
+        this.tiles = tiles;
+        this.maxCount = maxCount;
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * Zählt alle Punkte der Tracks auf Stufe zoom (höchstens MAX_ZOOM) im Pool.
+     * Die Tracks müssen Snapshots sein, die sich währenddessen nicht ändern.
+     */
+    public static HeatmapGrid compute(int zoom, List<TrackData> tracks, ForkJoinPool pool) {
+        zoom = Math.max(0, Math.min(MAX_ZOOM, zoom));
+        List<Chunk> chunks = new ArrayList<>();
+        long points = 0;
+        for (TrackData d : tracks) {
+            int n = d.size();
+            points += n;
+            for (int from = 0; from < n; from += CHUNK) chunks.add(new Chunk(d, from, Math.min(n, from + CHUNK)));
+        }
+        if (chunks.isEmpty()) return new HeatmapGrid(zoom, new HashMap<>(), 0, 0);
+
+        // Stufe 1: je Abschnitt eigene Kacheln zählen
+        // je Abschnitt ein Platz, die Tasks setzen nur ihren eigenen
+        List<Map<Long, int[]>> partial = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+        pool.invoke(new CountTask(zoom, chunks, partial, 0, chunks.size()));
+
+        // Stufe 2: Teilergebnisse je Kachel addieren
+        Map<Long, List<int[]>> byTile = new HashMap<>();
+        for (Map<Long, int[]> p : partial) {
+            for (Map.Entry<Long, int[]> e : p.entrySet()) {
+                byTile.computeIfAbsent(e.getKey(), k -> new ArrayList<>(2)).add(e.getValue());
+            }
+        }
+        long[] keys = new long[byTile.size()];
+        List<List<int[]>> parts = new ArrayList<>(byTile.size());
+        int i = 0;
+        for (Map.Entry<Long, List<int[]>> e : byTile.entrySet()) {
+            keys[i++] = e.getKey();
+            parts.add(e.getValue());
+        }
+        int[][] sums = new int[keys.length][];
+        int max = pool.invoke(new MergeTask(parts, sums, 0, keys.length));
+
+        Map<Long, int[]> tiles = new HashMap<>(keys.length * 2);
+        for (int k = 0; k < keys.length; k++) tiles.put(keys[k], sums[k]);
+        return new HeatmapGrid(zoom, tiles, max, points);
+    }
+
+    public int zoom() {
+        return zoom;
+    }
+
+    public int tileCount() {
+        return tiles.size();
+    }
+
+    public int maxCount() {
+        return maxCount;
+    }
+
+    public long pointCount() {
+        return pointCount;
+    }
+
+    public boolean hasTile(long tile) {
+        return tiles.containsKey(tile);
+    }
+
+    // Zähler der Kachel (Zeile für Zeile von Nord nach Süd) oder null
+    int[] counts(long tile) {
+        return tiles.get(tile);
+    }
+
+    /**
+     * Farben der Kachel nach argb (BINS * BINS, Zeilen von Nord nach Süd); logarithmisch
+     * auf das Maximum der ganzen Stufe skaliert, damit Kachelgrenzen nicht sichtbar
+     * werden. false, wenn die Kachel keine Punkte hat.
+     */
+    public boolean render(long tile, int[] argb) {
+        int[] c = tiles.get(tile);
+        if (c == null) return false;
+        double scale = 1 / Math.log1p(maxCount);
+        for (int i = 0; i < c.length; i++) {
+            argb[i] = c[i] == 0 ? 0 : color(Math.log1p(c[i]) * scale);
+        }
+        return true;
+    }
+
+    // v in [0, 1]; Deckkraft steigt mit der Dichte
+    static int color(double v) {
+        v = Math.max(0, Math.min(1, v));
+        double pos = v * (RAMP.length - 1);
+        int i = Math.min(RAMP.length - 2, (int) pos);
+        double f = pos - i;
+        int a = RAMP[i];
+        int b = RAMP[i + 1];
+        int r = (int) Math.round(((a >> 16) & 0xFF) * (1 - f) + ((b >> 16) & 0xFF) * f);
+        int g = (int) Math.round(((a >> 8) & 0xFF) * (1 - f) + ((b >> 8) & 0xFF) * f);
+        int bl = (int) Math.round((a & 0xFF) * (1 - f) + (b & 0xFF) * f);
+        int alpha = (int) Math.round(MIN_ALPHA + (255 - MIN_ALPHA) * v);
+        return alpha << 24 | r << 16 | g << 8 | bl;
+    }
+
+    private static final class Chunk {
+        final TrackData data;
+        final int from;
+        final int to;
+
+        Chunk(TrackData data, int from, int to) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    // Abschnitte [lo, hi) halbieren, bis einer übrig ist; Ergebnis in partial.get(i)
+    private static final class CountTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int zoom;
+        private final List<Chunk> chunks;
+        private final List<Map<Long, int[]>> partial;
+        private final int lo;
+        private final int hi;
+
+        CountTask(int zoom, List<Chunk> chunks, List<Map<Long, int[]>> partial, int lo, int hi) {
+            this.zoom = zoom;
+            this.chunks = chunks;
+            this.partial = partial;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                Chunk c = chunks.get(lo);
+                partial.set(lo, count(c.data, c.from, c.to, zoom));
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new CountTask(zoom, chunks, partial, lo, mid),
+                    new CountTask(zoom, chunks, partial, mid, hi));
+        }
+    }
+
+    static Map<Long, int[]> count(TrackData d, int from, int to, int zoom) {
+        int bins = (1 << zoom) * BINS;
+        Map<Long, int[]> out = new HashMap<>();
+        // aufeinanderfolgende Punkte liegen meist in derselben Kachel
+        long lastKey = -1;
+        int[] last = null;
+        for (int i = from; i < to; i++) {
+            double lat = d.lat[i];
+            double lon = d.lon[i];
+            if (Double.isNaN(lat) || Double.isNaN(lon)) continue;
+            int bx = TileCorridor.tileX(lon, bins);
+            int by = TileCorridor.tileY(lat, bins);
+            long key = TileDiskCache.tileIndex(zoom, bx / BINS, by / BINS);
+            if (key != lastKey) {
+                last = out.computeIfAbsent(key, k -> new int[BINS * BINS]);
+                lastKey = key;
+            }
+            last[(by % BINS) * BINS + bx % BINS]++;
+        }
+        return out;
+    }
+
+    // Kacheln [lo, hi) addieren; liefert den größten Zellwert
+    private static final class MergeTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<int[]>> parts;
+        private final int[][] sums;
+        private final int lo;
+        private final int hi;
+
+        MergeTask(List<List<int[]>> parts, int[][] sums, int lo, int hi) {
+            this.parts = parts;
+            this.sums = sums;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo <= MERGE_TILES) {
+                int max = 0;
+                for (int k = lo; k < hi; k++) {
+                    List<int[]> p = parts.get(k);
+                    // die Teilarrays gehören nur diesem Lauf, das erste nimmt die Summe auf
+                    int[] sum = p.get(0);
+                    for (int j = 1; j < p.size(); j++) {
+                        int[] add = p.get(j);
+                        for (int i = 0; i < sum.length; i++) sum[i] += add[i];
+                    }
+                    for (int v : sum) if (v > max) max = v;
+                    sums[k] = sum;
+                }
+                return max;
+            }
+            int mid = (lo + hi) >>> 1;
+            MergeTask left = new MergeTask(parts, sums, lo, mid);
+            left.fork();
+            int right = new MergeTask(parts, sums, mid, hi).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.geotracker;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.Rect;
+
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Overlay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Heatmap aller übergebenen Tracks als eine Ebene aus Bitmap-Kacheln statt vieler
+ * Linien. Das Dichteraster (HeatmapGrid) wird je Zoomstufe im Fork/Join-Pool
+ * berechnet und für die letzten CACHED_ZOOMS Stufen behalten; bis das Raster einer
+ * neuen Stufe fertig ist, wird das vorige gestreckt gezeichnet. Bitmaps entstehen
+ * erst beim Zeichnen für Kacheln im Ausschnitt. Nur auf dem UI-Thread benutzen.
+ */
+public class HeatmapOverlay extends Overlay {
+
+    private static final int CACHED_ZOOMS = 3;
+    private static final int CACHED_BITMAPS = 128;
+    // weit herausgezoomt über einem feineren Raster: nicht zeichnen, bis das passende fertig ist
+    private static final int MAX_TILES_DRAWN = 256;
+
+    private final MapView map;
+    private final ForkJoinPool pool;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Map<String, TrackData> tracks = new HashMap<>();
+    private final LinkedHashMap<Integer, HeatmapGrid> grids = new LinkedHashMap<>(8, 0.75f, true);
+    private final LinkedHashMap<Long, Bitmap> bitmaps = new LinkedHashMap<Long, Bitmap>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Bitmap> eldest) {
+            return size() > CACHED_BITMAPS;
+        }
+    };
+    // zuletzt gezeichnetes Raster, die Bitmaps gehören dazu; darf veraltet sein
+    private HeatmapGrid shown;
+    // steigt bei jeder Datenänderung, ältere Ergebnisse werden verworfen
+    private long version;
+    private int pendingZoom = -1;
+    private long pendingVersion = -1;
+
+    // wiederverwendete Objekte
+    private final int[] argb = new int[HeatmapGrid.BINS * HeatmapGrid.BINS];
+    private final GeoPoint reuseGeo = new GeoPoint(0.0, 0.0);
+    private final Point reusePx = new Point();
+    private final Rect reuseRect = new Rect();
+
+    public HeatmapOverlay(MapView map) {
+        this.map = map;
+        this.pool = new ForkJoinPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    // Punkte eines Tracks (Snapshot) übernehmen; unverändert große Snapshots ändern nichts
+    public void setTrack(String filename, TrackData data) {
+        TrackData old = tracks.put(filename, data);
+        if (old != null && old.size() == data.size()) return;
+        invalidateGrids();
+    }
+
+    public void removeTrack(String filename) {
+        if (tracks.remove(filename) != null) invalidateGrids();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void invalidateGrids() {
+        version++;
+        grids.clear();
+        map.invalidate();
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection pj) {
+        if (tracks.isEmpty()) return;
+        int level = Math.max(0, Math.min(HeatmapGrid.MAX_ZOOM, (int) Math.round(pj.getZoomLevel())));
+        HeatmapGrid grid = grids.get(level);
+        if (grid == null) request(level);
+        else if (grid != shown) {
+            shown = grid;
+            bitmaps.clear();
+        }
+        if (shown == null) return;
+
+        int tiles = 1 << shown.zoom();
+        BoundingBox bb = pj.getBoundingBox();
+        int x0 = TileCorridor.tileX(bb.getLonWest(), tiles);
+        int x1 = TileCorridor.tileX(bb.getLonEast(), tiles);
+        int y0 = TileCorridor.tileY(bb.getLatNorth(), tiles);
+        int y1 = TileCorridor.tileY(bb.getLatSouth(), tiles);
+        if (x0 > x1) {
+            // über die Datumsgrenze: ganze Breite
+            x0 = 0;
+            x1 = tiles - 1;
+        }
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_TILES_DRAWN) return;
+
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                long key = TileDiskCache.tileIndex(shown.zoom(), x, y);
+                if (!shown.hasTile(key)) continue;
+                Bitmap b = bitmaps.get(key);
+                if (b == null) {
+                    shown.render(key, argb);
+                    b = Bitmap.createBitmap(argb, HeatmapGrid.BINS, HeatmapGrid.BINS, Bitmap.Config.ARGB_8888);
+                    bitmaps.put(key, b);
+                }
+                reuseGeo.setCoords(TileCorridor.tileLat(y, tiles), TileCorridor.tileLon(x, tiles));
+                pj.toPixels(reuseGeo, reusePx);
+                reuseRect.left = reusePx.x;
+                reuseRect.top = reusePx.y;
+                reuseGeo.setCoords(TileCorridor.tileLat(y + 1, tiles), TileCorridor.tileLon(x + 1, tiles));
+                pj.toPixels(reuseGeo, reusePx);
+                reuseRect.right = reusePx.x;
+                reuseRect.bottom = reusePx.y;
+                canvas.drawBitmap(b, null, reuseRect, paint);
+            }
+        }
+    }
+
+    // Raster der Stufe im Pool berechnen, Ergebnis auf dem UI-Thread übernehmen
+    private void request(int level) {
+        if (pendingZoom == level && pendingVersion == version) return;
+        pendingZoom = level;
+        pendingVersion = version;
+        long v = version;
+        List<TrackData> snapshot = new ArrayList<>(tracks.values());
+        pool.execute(() -> {
+            long start = System.nanoTime();
+            HeatmapGrid g = HeatmapGrid.compute(level, snapshot, pool);
+            PerfStats.global().recordSince(PerfStats.Timer.HEATMAP_GRID, start);
+            map.post(() -> {
+                if (pendingZoom == level && pendingVersion == v) pendingZoom = -1;
+                // Daten haben sich inzwischen geändert: das nächste draw() fordert neu an
+                if (v != version) return;
+                grids.put(level, g);
+                Iterator<Integer> it = grids.keySet().iterator();
+                while (grids.size() > CACHED_ZOOMS && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+                map.invalidate();
+            });
+        });
+    }
+
+    @Override
+    public void onDetach(MapView mapView) {
+        // ausgeblendet: Raster und Bitmaps freigeben, die Tracks bleiben gemerkt
+        grids.clear();
+        bitmaps.clear();
+        shown = null;
+        version++;
+        super.onDetach(mapView);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.geotracker;
+
+/**
+ * Filtert GPS-Fixes vor dem Speichern: verwirft Ausreißer (Genauigkeit,
+ * Geschwindigkeit, Beschleunigung) und glättet die übrigen mit einem kleinen
+ * Kalman-Filter (konstante Geschwindigkeit, je Achse in Metern).
+ *
+ * Gerechnet wird in einer lokalen Ebene um die letzte Schätzung, die nach jedem
+ * Fix neu verankert wird. Pro Fix wird nichts alloziert.
+ */
+public class LocationFilter {
+
+    // Wie streng gefiltert wird (pref_gps_filter)
+    public enum Strictness {
+        OFF(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, 0),
+        LOW(100, 100, 20, 2.0),
+        NORMAL(50, 70, 10, 1.0),
+        STRICT(25, 50, 5, 0.5);
+
+        // schlechtere Genauigkeit (Radius in m) wird verworfen
+        final double maxAccuracyM;
+        final double maxSpeedMps;
+        final double maxAccelMps2;
+        // Prozessrauschen (Beschleunigung in m/s²); kleiner = glatter, aber träger
+        final double processNoise;
+
+        Strictness(double maxAccuracyM, double maxSpeedMps, double maxAccelMps2, double processNoise) {
+            this.maxAccuracyM = maxAccuracyM;
+            this.maxSpeedMps = maxSpeedMps;
+            this.maxAccelMps2 = maxAccelMps2;
+            this.processNoise = processNoise;
+        }
+
+        // Wert aus den Einstellungen ("off", "low", "normal", "strict")
+        public static Strictness fromPref(String value) {
+            if (value == null) return NORMAL;
+            switch (value) {
+                case "off": return OFF;
+                case "low": return LOW;
+                case "strict": return STRICT;
+                default: return NORMAL;
+            }
+        }
+    }
+
+    // wenn der Fix keine Genauigkeit mitliefert
+    static final double DEFAULT_ACCURACY_M = 10;
+    // so viele Ausreißer in Folge sind kein Ausreißer mehr: neu beginnen
+    static final int MAX_CONSECUTIVE_REJECTS = 5;
+    // nach längeren Lücken (Tunnel, Pause) ist die alte Schätzung wertlos
+    static final long RESET_GAP_MS = 60_000;
+    // Abweichungen innerhalb dieser Streuung gelten als Messrauschen
+    static final double GATE_SIGMAS = 3;
+
+    private static final double M_PER_DEG = Math.toRadians(1) * GeoMath.EARTH_RADIUS_M;
+
+    private Strictness strictness = Strictness.NORMAL;
+
+    private boolean initialized;
+    private long lastTime;
+    // Schätzung: Position (Anker) und Geschwindigkeit Ost/Nord in m/s
+    private double lat;
+    private double lon;
+    private double ve;
+    private double vn;
+    // Kovarianz [Position, Geschwindigkeit], für beide Achsen gleich
+    private double p00;
+    private double p01;
+    private double p11;
+
+    private int consecutiveRejects;
+    private long accepted;
+    private long rejected;
+
+    public void setStrictness(Strictness strictness) {
+        this.strictness = strictness;
+    }
+
+    public Strictness strictness() {
+        return strictness;
+    }
+
+    public void reset() {
+        initialized = false;
+        consecutiveRejects = 0;
+    }
+
+    /**
+     * Bewertet einen Fix; accuracyM darf NaN sein. Bei true liegt die geglättete
+     * Position in lat()/lon(), bei false soll der Fix nicht gespeichert werden.
+     */
+    public boolean onFix(long time, double fixLat, double fixLon, double accuracyM) {
+        if (strictness == Strictness.OFF) {
+            lat = fixLat;
+            lon = fixLon;
+            accepted++;
+            return true;
+        }
+        if (accuracyM > strictness.maxAccuracyM) return reject();
+        double acc = Double.isNaN(accuracyM) || accuracyM <= 0 ? DEFAULT_ACCURACY_M : accuracyM;
+
+        long dtMs = time - lastTime;
+        if (!initialized || dtMs > RESET_GAP_MS || consecutiveRejects >= MAX_CONSECUTIVE_REJECTS) {
+            start(time, fixLat, fixLon, acc);
+            return true;
+        }
+        if (dtMs <= 0) return reject();
+        double dt = dtMs / 1000.0;
+
+        // Fix in Metern relativ zur letzten Schätzung
+        double mPerDegLon = M_PER_DEG * Math.cos(Math.toRadians(lat));
+        double ze = (fixLon - lon) * mPerDegLon;
+        double zn = (fixLat - lat) * M_PER_DEG;
+        if (ze > 180 * mPerDegLon) ze -= 360 * mPerDegLon;
+        else if (ze < -180 * mPerDegLon) ze += 360 * mPerDegLon;
+
+        // Geschwindigkeits-Gate: Sprung abzüglich Messunsicherheit
+        double jump = Math.max(0, Math.sqrt(ze * ze + zn * zn) - acc);
+        if (jump / dt > strictness.maxSpeedMps) return reject();
+
+        // Vorhersage
+        double pe = ve * dt;
+        double pn = vn * dt;
+        double q = strictness.processNoise * strictness.processNoise;
+        double dt2 = dt * dt;
+        double n00 = p00 + 2 * dt * p01 + dt2 * p11 + q * dt2 * dt / 3;
+        double n01 = p01 + dt * p11 + q * dt2 / 2;
+        double n11 = p11 + q * dt;
+
+        // Beschleunigungs-Gate: Abweichung von der Vorhersage jenseits von GATE_SIGMAS
+        // der erwarteten Streuung (bei unbekannter Geschwindigkeit entsprechend groß)
+        double ye = ze - pe;
+        double yn = zn - pn;
+        double s = n00 + acc * acc;
+        double miss = Math.max(0, Math.sqrt(ye * ye + yn * yn) - GATE_SIGMAS * Math.sqrt(s));
+        if (2 * miss / dt2 > strictness.maxAccelMps2) return reject();
+
+        // Korrektur
+        double k0 = n00 / s;
+        double k1 = n01 / s;
+        pe += k0 * ye;
+        pn += k0 * yn;
+        ve += k1 * ye;
+        vn += k1 * yn;
+        p00 = (1 - k0) * n00;
+        p01 = (1 - k0) * n01;
+        p11 = n11 - k1 * n01;
+
+        // neu verankern
+        lat += pn / M_PER_DEG;
+        lon += pe / mPerDegLon;
+        if (lon > 180) lon -= 360;
+        else if (lon < -180) lon += 360;
+        lastTime = time;
+        consecutiveRejects = 0;
+        accepted++;
+        return true;
+    }
+
+    private void start(long time, double fixLat, double fixLon, double acc) {
+        initialized = true;
+        lastTime = time;
+        lat = fixLat;
+        lon = fixLon;
+        ve = 0;
+        vn = 0;
+        p00 = acc * acc;
+        p01 = 0;
+        // Geschwindigkeit anfangs unbekannt (bis ~30 m/s)
+        p11 = 30 * 30;
+        consecutiveRejects = 0;
+        accepted++;
+    }
+
+    private boolean reject() {
+        consecutiveRejects++;
+        rejected++;
+        return false;
+    }
+
+    // geglättete Position des letzten angenommenen Fixes
+    public double lat() {
+        return lat;
+    }
+
+    public double lon() {
+        return lon;
+    }
+
+    public double speedMps() {
+        return Math.sqrt(ve * ve + vn * vn);
+    }
+
+    public long acceptedCount() {
+        return accepted;
+    }
+
+    public long rejectedCount() {
+        return rejected;
+    }
+}
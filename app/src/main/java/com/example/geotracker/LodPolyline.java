@@ -0,0 +1,143 @@
+package com.example.geotracker;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Point;
+
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Overlay;
+
+/**
+ * Track-Linie, die nur den sichtbaren Ausschnitt zeichnet: der räumliche Index
+ * liefert die Punktbereiche im Kartenausschnitt, daraus werden die Punkte der zur
+ * Zoomstufe passenden Detailstufe (TrackLod) gezeichnet.
+ * Gezeichnet wird direkt mit drawLines aus einem wiederverwendeten Puffer.
+ */
+public class LodPolyline extends Overlay {
+
+    // Rand um den Ausschnitt, Anteil der Ausschnittsgröße
+    private static final double VIEW_MARGIN = 0.1;
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    // wiederverwendete Objekte, damit draw() nichts alloziert
+    private final TrackSpatialIndex.Ranges visible = new TrackSpatialIndex.Ranges();
+    private final GeoPoint reuseGeo = new GeoPoint(0.0, 0.0);
+    private final Point reusePx = new Point();
+    private float[] lines = new float[1024];
+    private int lineLen;
+    private boolean hasPrev;
+    private float prevX;
+    private float prevY;
+
+    private TrackData data;
+    private TrackLod lod;
+    private TrackSpatialIndex index;
+
+    public LodPolyline() {
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    public void setWidth(float width) {
+        paint.setStrokeWidth(width);
+    }
+
+    public void setColor(int color) {
+        paint.setColor(color);
+    }
+
+    /**
+     * Punkte, Detailstufen und Index; lod und index werden im Hintergrund
+     * (TrackLoader) gepflegt und hier nur unter ihrem Lock gelesen.
+     */
+    public void setData(TrackData data, TrackLod lod, TrackSpatialIndex index) {
+        this.data = data;
+        this.lod = lod;
+        this.index = index;
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection pj) {
+        if (data == null || lod == null || index == null || data.size() < 2) return;
+        int size = data.size();
+
+        BoundingBox bb = pj.getBoundingBox();
+        double dLat = bb.getLatitudeSpan() * VIEW_MARGIN;
+        double dLon = bb.getLongitudeSpanWithDateLine() * VIEW_MARGIN;
+        synchronized (index) {
+            index.query(bb.getLatSouth() - dLat, bb.getLatNorth() + dLat,
+                    bb.getLonWest() - dLon, bb.getLonEast() + dLon, visible);
+        }
+        if (visible.count() == 0) return;
+
+        lineLen = 0;
+        synchronized (lod) {
+            int level = lod.levelFor(pj.getZoomLevel());
+            for (int r = 0; r < visible.count(); r++) {
+                // Index kann schon weiter sein als dieser Snapshot
+                int from = visible.fromAt(r);
+                int to = Math.min(visible.toAt(r), size - 1);
+                if (from >= to) continue;
+                hasPrev = false;
+                if (level < 0) {
+                    for (int i = from; i <= to; i++) vertex(canvas, pj, i);
+                } else {
+                    drawLevel(canvas, pj, level, from, to, size);
+                }
+            }
+        }
+        if (lineLen > 0) canvas.drawLines(lines, 0, lineLen, paint);
+    }
+
+    // Punkte der Stufe im Bereich [from, to], dazu je ein Nachbar außerhalb für die Randsegmente
+    private void drawLevel(Canvas canvas, Projection pj, int level, int from, int to, int size) {
+        int n = lod.size(level);
+        int pos = lowerBound(level, n, from);
+        if (pos > 0) pos--;
+        int last = -1;
+        for (; pos < n; pos++) {
+            int idx = lod.indexAt(level, pos);
+            if (idx >= size) break;
+            vertex(canvas, pj, idx);
+            last = idx;
+            if (idx > to) break;
+        }
+        // die Stufe endet nicht immer auf dem letzten Punkt des Snapshots
+        if (last >= 0 && last <= to && last < size - 1) vertex(canvas, pj, size - 1);
+    }
+
+    private int lowerBound(int level, int n, int value) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lod.indexAt(level, mid) < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void vertex(Canvas canvas, Projection pj, int i) {
+        reuseGeo.setCoords(data.lat[i], data.lon[i]);
+        pj.toPixels(reuseGeo, reusePx);
+        float x = reusePx.x;
+        float y = reusePx.y;
+        if (hasPrev) {
+            if (lineLen + 4 > lines.length) {
+                canvas.drawLines(lines, 0, lineLen, paint);
+                lineLen = 0;
+            }
+            lines[lineLen++] = prevX;
+            lines[lineLen++] = prevY;
+            lines[lineLen++] = x;
+            lines[lineLen++] = y;
+        }
+        prevX = x;
+        prevY = y;
+        hasPrev = true;
+    }
+}
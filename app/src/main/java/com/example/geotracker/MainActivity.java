@@ -1,22 +1,40 @@
 package com.example.geotracker;
 
 import android.Manifest;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.location.Location;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.util.Xml;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AlertDialog;
@@ -30,63 +48,214 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
 
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
-import com.google.android.gms.location.LocationServices;
 import com.google.android.material.navigation.NavigationView;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import org.osmdroid.tileprovider.MapTileProviderArray;
+import org.osmdroid.tileprovider.modules.MapTileDownloader;
+import org.osmdroid.tileprovider.modules.MapTileModuleProviderBase;
+import org.osmdroid.tileprovider.modules.NetworkAvailabliltyCheck;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.tileprovider.tilesource.XYTileSource;
+import org.osmdroid.tileprovider.util.SimpleRegisterReceiver;
+import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
-import org.osmdroid.views.overlay.Marker;
-import org.osmdroid.views.overlay.Polyline;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
-import java.time.LocalDateTime;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class MainActivity extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
 
+    private static final String TAG = "Geotracker";
     private static final int PERMISSIONS_REQUEST_LOCATION = 100;
+    private static final int PERMISSIONS_REQUEST_NOTIFICATIONS = 101;
+    private static final long PERF_REFRESH_MS = 1000;
+    // Vorab-Download: Band um den Track, Obergrenze und Drosselung
+    private static final double PREFETCH_BUFFER_M = 500;
+    private static final int PREFETCH_MIN_ZOOM = 8;
+    private static final int PREFETCH_MAX_TILES = 50_000;
+    private static final double PREFETCH_TILES_PER_SECOND = 10;
+    private static final int PREFETCH_THREADS = 4;
+    // Umkreissuche: Radien zur Auswahl und Anzahl bei "nächste Tracks"
+    private static final double[] NEARBY_RADII_M = {100, 500, 1000, 5000};
+    private static final int NEARBY_TRACKS = 5;
+    private static final String[] TIME_RANGES = {"Letzte Stunde", "Heute", "Gestern", "Letzte 7 Tage"};
+    private static final String[] REPLAY_SPEEDS = {"In einer Minute", "10-fach", "60-fach", "600-fach"};
+    // Raffung zu REPLAY_SPEEDS, 0 = passend zur Dauer
+    private static final double[] REPLAY_FACTORS = {0, 10, 60, 600};
+    private static final long REPLAY_FRAME_MS = 100;
+    // Foto eines Markers in der Detailansicht (längere Seite in Pixeln)
+    private static final int PHOTO_DETAIL_PX = 1024;
+    private static final long THUMB_DISK_BYTES = 32L << 20;
+    // wartender Marker über eine Neuerstellung der Activity (Kamera offen)
+    private static final String STATE_PENDING_TRACK = "pending_wp_track";
+    private static final String STATE_PENDING_TIME = "pending_wp_time";
+    private static final String STATE_PENDING_LAT = "pending_wp_lat";
+    private static final String STATE_PENDING_LON = "pending_wp_lon";
+    private static final String STATE_PENDING_COMMENT = "pending_wp_comment";
+    private static final String STATE_PENDING_PHOTO = "pending_wp_photo";
+    private static final String PREF_CURRENT_ID = "tracks_current_id";
+    // frühere Ablage der Track-Liste, wird einmalig in den Katalog übernommen
     private static final String PREF_TRACKS = "tracks_json";
     private static final String PREF_VISIBLE = "tracks_visible_json";
     private static final String PREF_CURRENT = "tracks_current_name";
 
-    private FusedLocationProviderClient fusedLocationClient;
-    private LocationCallback locationCallback;
     private TextView textView;
     private MapView map;
 
     private DrawerLayout drawerLayout;
     private ActionBarDrawerToggle drawerToggle;
 
-    // Track-Modell
-    public static class TrackInfo {
-        String name;      // Anzeigename
-        String filename;  // Dateiname im internen Speicher
-        int color;        // ARGB-Farbe
-
-        public TrackInfo(String name, String filename, int color) {
-            this.name = name;
-            this.filename = filename;
-            this.color = color;
-        }
-    }
-
+    // Track-Modell, Abbild des Katalogs
     private final List<TrackInfo> tracks = new ArrayList<>();
-    private boolean[] visibleTracks = new boolean[0];
     private TrackInfo currentTrack = null;
+    private TrackCatalog catalog;
 
     private final Gson gson = new Gson();
+    private TrackStorage storage;
+    private TrackPointCache trackCache;
+    private TrackLoader trackLoader;
+    // Katalog im Hintergrund gelesen (loadCatalog); bis dahin ist tracks leer
+    private boolean catalogLoaded;
+    // bis dahin gesperrt: Track-Aktionen im Drawer und die Buttons
+    private NavigationView navigationView;
+    private final List<Button> trackButtons = new ArrayList<>();
+    // Ergebnisse (Import, Foto), die vor dem Katalog eintreffen, z.B. nach einer Neuerstellung
+    private final List<Runnable> afterCatalogLoaded = new ArrayList<>();
+    // beim Start nicht geprüfte Dateien ausgeblendeter Tracks, geprüft beim ersten Laden
+    private final Set<String> uncheckedFiles = new HashSet<>();
+    // Kaltstart: nur die erste Activity des Prozesses misst, null nach dem Bericht
+    private static boolean processStarted;
+    private StartupTimes startupTimes;
+    // Schreibzugriffe auf Track-Dateien, nacheinander im Hintergrund
+    private final ScheduledExecutorService ioExecutor = Executors.newSingleThreadScheduledExecutor();
+    // lange Aufgaben (Export/Import), damit Schreibzugriffe nicht darauf warten
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor();
+    // Umkreissuche: Index pflegen und abfragen, unabhängig von langen Jobs
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+    // Gitter-Index über alle Tracks (files/proximity.idx), erst bei der ersten Suche geöffnet
+    private ProximityIndex proximityIndex;
+    private TrackImporter runningImport;
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importTrack);
+    private final ActivityResultLauncher<String> pickPhotoLauncher =
+            registerForActivityResult(new ActivityResultContracts.GetContent(), this::onPhotoPicked);
+    private final ActivityResultLauncher<Uri> takePhotoLauncher =
+            registerForActivityResult(new ActivityResultContracts.TakePicture(), this::onPhotoTaken);
+
+    // Marker mit Kommentar/Foto je Track-ID; Fotos liegen in files/photos
+    private final Map<Long, List<Waypoint>> waypoints = new HashMap<>();
+    private File photoDir;
+    private ThumbnailCache thumbnails;
+    // Marker, der auf sein Foto (Kamera/Galerie) wartet
+    private Waypoint pendingWaypoint;
+    private File pendingPhotoFile;
+    // offene Detailansicht, bekommt das große Bild nachgereicht
+    private ImageView detailImage;
+    private String detailPhoto;
+
+    // Standort und Routenaufzeichnung laufen im RecordingService; gebunden, solange sichtbar
+    private RecordingService recordingService;
+    private Button btnRecordRoute;
+    private Location lastLocation;
+    private final ServiceConnection recordingConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            recordingService = ((RecordingService.LocalBinder) binder).service();
+            recordingService.setListener(recordingListener);
+            // Einstellungen können sich geändert haben, während die Activity nicht gebunden war
+            recordingService.applyPrefs();
+            // während die Activity unsichtbar war, hat der Dienst den Katalog fortgeschrieben
+            refreshRecordingSummary();
+            updateRecordButton();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            recordingService = null;
+        }
+    };
+    private final RecordingService.Listener recordingListener = new RecordingService.Listener() {
+        @Override
+        public void onLocation(Location location) {
+            lastLocation = location;
+            updateStatusText();
+        }
+
+        @Override
+        public void onTrackFlushed(String filename, TrackSummary summary) {
+            applySummary(filename, summary);
+            refreshTrack(filename);
+        }
+
+        @Override
+        public void onRecordingChanged(String filename) {
+            updateRecordButton();
+        }
+
+        @Override
+        public void onRecordingError(String message) {
+            Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    // Kartenkacheln: eigener Cache mit Größengrenze, Server aus pref_tile_server ("" = OSM)
+    private TileDiskCache tileCache;
+    private OnlineTileSourceBase tileSource;
+    private String tileServer;
+    private TileDownloader runningTileDownload;
+
+    // Overlays pro Track, bleiben in der Karte und werden nur verlängert bzw. ein-/ausgehängt
+    private TrackOverlays trackOverlays;
+    // Dichte aller sichtbaren Tracks als eine Ebene (pref_heatmap)
+    private HeatmapOverlay heatmap;
+
+    // Zeitfenster bzw. Wiedergabe eines Tracks, hervorgehoben über den Tracks
+    private final TrackWindowOverlay windowOverlay = new TrackWindowOverlay();
+    private String windowFile;
+    private long windowFrom;
+    private long windowTo;
+    // Block-Indizes je Track-Datei, nur auf queryExecutor benutzt
+    private final Map<String, BinaryTrackFormat.BlockIndex> timeIndexes = new HashMap<>();
+    private TrackReplay replay;
+    private long replayStart;
+    private final Runnable replayTick = this::replayFrame;
+
+    // Debug-Overlay mit PerfStats (pref_perf_overlay), null = aus
+    private PerfOverlay perfOverlay;
+    private final Runnable perfRefresh = new Runnable() {
+        @Override
+        public void run() {
+            if (perfOverlay == null) return;
+            map.invalidate();
+            map.postDelayed(this, PERF_REFRESH_MS);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -99,7 +268,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         setSupportActionBar(toolbar);
 
         drawerLayout = findViewById(R.id.drawer_layout);
-        NavigationView navigationView = findViewById(R.id.nav_view);
+        navigationView = findViewById(R.id.nav_view);
         navigationView.setNavigationItemSelectedListener(this);
 
         drawerToggle = new ActionBarDrawerToggle(
@@ -117,12 +286,16 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         textView = findViewById(R.id.tv_active_geo);
         map = findViewById(R.id.map);
         map.setMultiTouchControls(true);
+        setupTileCache();
 
         // Buttons
         Button btnSaveLocation = findViewById(R.id.btn_save_location);
-        btnSaveLocation.setOnClickListener(v -> {
-            saveLocationToCSV();
-            loadAllTracksAndUpdateMap();
+        btnSaveLocation.setOnClickListener(v -> saveLocationToTrack());
+
+        btnRecordRoute = findViewById(R.id.btn_record_route);
+        btnRecordRoute.setOnClickListener(v -> {
+            if (RecordingService.recordingFilename() == null) startRouteRecording();
+            else stopRouteRecording();
         });
 
         Button btnUpdateMap = findViewById(R.id.btn_update_map);
@@ -134,55 +307,41 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         Button btnShareCsv = findViewById(R.id.btn_share_csv);
         btnShareCsv.setOnClickListener(v -> showExportDialog());
 
+        trackButtons.add(btnSaveLocation);
+        trackButtons.add(btnRecordRoute);
+        trackButtons.add(btnUpdateMap);
+        trackButtons.add(btnShareCsv);
+        setTrackActionsEnabled(false);
+
         ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
             Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
             v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
             return insets;
         });
 
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(LocationResult locationResult) {
-                if (locationResult == null) {
-                    textView.setText("Standort nicht verfügbar");
-                    return;
-                }
-                for (Location location : locationResult.getLocations()) {
-                    if (location != null) {
-                        String coords = "Latitude: " + location.getLatitude() +
-                                "\nLongitude: " + location.getLongitude();
-                        textView.setText(coords);
-                    }
-                }
-            }
-        };
+        storage = new TrackStorage(getFilesDir());
+        trackCache = new TrackPointCache(storage, Runtime.getRuntime().maxMemory() / 8);
+        trackLoader = new TrackLoader(trackCache, ContextCompat.getMainExecutor(this));
 
-        // Tracks + Einstellungen laden
-        loadTracksFromPrefs();
-        loadVisibleFromPrefs();
-        loadCurrentTrackFromPrefs();
+        catalog = TrackCatalog.get(this);
+        setupThumbnails();
+        if (savedInstanceState != null) restorePendingWaypoint(savedInstanceState);
+        heatmap = new HeatmapOverlay(map);
+        trackOverlays = new TrackOverlays(map, heatmap, thumbnails, this::showWaypointDialog);
 
-        // falls keine Tracks existieren, einen Standard-Track anlegen
-        if (tracks.isEmpty()) {
-            TrackInfo t = new TrackInfo("Standard", "track_standard.csv", 0xFF0000FF);
-            tracks.add(t);
-            currentTrack = t;
-            visibleTracks = new boolean[]{true};
-            saveAllTrackPrefs();
-            ensureCsvHasHeader(new File(getFilesDir(), t.filename));
+        // Karte sofort zeigen; Katalog, Migration und Wiederherstellung laufen im Hintergrund
+        if (!processStarted && savedInstanceState == null) {
+            startupTimes = new StartupTimes(Process.getStartUptimeMillis());
+            watchFirstFrame();
         }
-
-        loadAllTracksAndUpdateMap();
+        processStarted = true;
+        ioExecutor.execute(this::loadCatalog);
 
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions(this,
                     new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
                     PERMISSIONS_REQUEST_LOCATION);
-        } else {
-            startLocationUpdates();
         }
     }
 
@@ -209,144 +368,1329 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             showSelectCurrentTrackDialog();
         } else if (id == R.id.nav_visibility) {
             showTrackVisibilityDialog();
+        } else if (id == R.id.nav_import_track) {
+            importLauncher.launch(new String[]{"*/*"});
         } else if (id == R.id.nav_export_track) {
             showExportDialog();
         } else if (id == R.id.nav_delete_track) {
             showDeleteTrackDialog();
+        } else if (id == R.id.nav_add_waypoint) {
+            showAddWaypointDialog();
+        } else if (id == R.id.nav_nearby) {
+            showNearbyDialog();
+        } else if (id == R.id.nav_time_range) {
+            showTimeRangeDialog();
+        } else if (id == R.id.nav_replay) {
+            showReplayDialog();
+        } else if (id == R.id.nav_offline_map) {
+            showPrefetchDialog();
+        } else if (id == R.id.nav_dump_perf) {
+            dumpPerfStats();
         }
 
         drawerLayout.closeDrawer(androidx.core.view.GravityCompat.START);
         return true;
     }
 
-    // ---------- CSV + Tracks ----------
+    // ---------- Start ----------
+
+    /**
+     * Katalog lesen, alte Ablagen übernehmen und Dateien prüfen (ioExecutor). Früher
+     * lief das vor dem ersten Bild auf dem UI-Thread; jetzt ist die Karte schon zu
+     * sehen und die Tracks kommen mit onCatalogLoaded nach.
+     */
+    private void loadCatalog() {
+        // früher: Gson-Listen in den SharedPreferences
+        migrateTracksFromPrefs();
+        List<TrackInfo> list = catalog.all();
+        migrateLegacyTracks(list);
+        // falls keine Tracks existieren, einen Standard-Track anlegen
+        if (list.isEmpty()) {
+            TrackInfo t = new TrackInfo("Standard", TrackStorage.filenameFor("standard"), 0xFF0000FF);
+            t.summary = new TrackSummary();
+            catalog.insert(t);
+            list.add(t);
+            PreferenceManager.getDefaultSharedPreferences(this).edit().putLong(PREF_CURRENT_ID, t.id).apply();
+            try {
+                storage.create(t.filename);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        long currentId = PreferenceManager.getDefaultSharedPreferences(this).getLong(PREF_CURRENT_ID, -1);
+        Set<String> unchecked = new HashSet<>();
+        int recovered = recoverTracks(list, currentId, unchecked);
+        Map<Long, List<Waypoint>> rows = new HashMap<>();
+        for (Waypoint w : catalog.allWaypoints()) {
+            rows.computeIfAbsent(w.trackId, k -> new ArrayList<>()).add(w);
+        }
+        runOnUiThread(() -> onCatalogLoaded(list, rows, unchecked, recovered));
+    }
+
+    private void onCatalogLoaded(List<TrackInfo> list, Map<Long, List<Waypoint>> rows,
+                                 Set<String> unchecked, int recovered) {
+        if (isDestroyed()) return;
+        tracks.addAll(list);
+        waypoints.putAll(rows);
+        uncheckedFiles.addAll(unchecked);
+        catalogLoaded = true;
+        setTrackActionsEnabled(true);
+        loadCurrentTrackFromPrefs();
+        for (TrackInfo t : tracks) trackOverlays.setWaypoints(t, waypoints.get(t.id));
+        if (recovered > 0) {
+            Toast.makeText(this, recovered + " Punkte der letzten Aufzeichnung wiederhergestellt",
+                    Toast.LENGTH_LONG).show();
+        }
+
+        computeMissingSummaries();
+        centerOnCurrentTrack();
+        updateStatusText();
+        loadAllTracksAndUpdateMap();
+
+        for (Runnable r : afterCatalogLoaded) r.run();
+        afterCatalogLoaded.clear();
+    }
+
+    /**
+     * Bis der Katalog geladen ist, sind tracks und currentTrack leer; ein neuer Track
+     * oder Import käme sonst doppelt in die Liste bzw. würde überschrieben.
+     * Home, Einstellungen und PerfStats bleiben bedienbar.
+     */
+    private void setTrackActionsEnabled(boolean enabled) {
+        for (Button b : trackButtons) b.setEnabled(enabled);
+        Menu menu = navigationView.getMenu();
+        for (int i = 0; i < menu.size(); i++) {
+            MenuItem item = menu.getItem(i);
+            int id = item.getItemId();
+            if (id == R.id.nav_home || id == R.id.nav_settings || id == R.id.nav_dump_perf) continue;
+            item.setEnabled(enabled);
+        }
+    }
+
+    // true, wenn action bis nach onCatalogLoaded zurückgestellt wurde
+    private boolean deferUntilCatalogLoaded(Runnable action) {
+        if (catalogLoaded) return false;
+        afterCatalogLoaded.add(action);
+        return true;
+    }
+
+    // erstes gezeichnetes Bild der Activity als Messpunkt des Kaltstarts
+    private void watchFirstFrame() {
+        View root = findViewById(R.id.main);
+        ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                startupReached(StartupTimes.Phase.FIRST_FRAME);
+                // im onDraw selbst darf der Listener nicht entfernt werden
+                root.post(() -> root.getViewTreeObserver().removeOnDrawListener(this));
+            }
+        };
+        root.getViewTreeObserver().addOnDrawListener(listener);
+    }
 
-    private void ensureCsvHasHeader(File file) {
-        if (!file.exists()) {
-            try (FileOutputStream fos = openFileOutput(file.getName(), MODE_PRIVATE)) {
-                String header = "Timestamp,Latitude,Longitude\n";
-                fos.write(header.getBytes());
-            } catch (Exception e) {
+    // Messpunkt des Kaltstarts; sind alle erreicht, eine Zeile an startup.csv anhängen
+    private void startupReached(StartupTimes.Phase phase) {
+        if (startupTimes == null || !startupTimes.mark(phase, SystemClock.uptimeMillis())) return;
+        if (!startupTimes.isComplete()) return;
+        String line = startupTimes.csvLine(System.currentTimeMillis());
+        startupTimes = null;
+        File dir = getExternalFilesDir(null);
+        File file = new File(dir != null ? dir : getFilesDir(), "startup.csv");
+        ioExecutor.execute(() -> {
+            try {
+                StartupTimes.append(file, line);
+            } catch (IOException e) {
                 e.printStackTrace();
             }
+        });
+    }
+
+    // ---------- Track-Dateien ----------
+
+    // alte track_*.csv Dateien ins Binärformat überführen
+    private void migrateLegacyTracks(List<TrackInfo> list) {
+        for (TrackInfo t : list) {
+            try {
+                long[] skipped = new long[1];
+                String migrated = storage.migrateLegacy(t.filename, (line, message) -> {
+                    if (skipped[0]++ == 0) Log.w(TAG, t.filename + " Zeile " + line + ": " + message);
+                });
+                if (skipped[0] > 1) Log.w(TAG, t.filename + ": " + skipped[0] + " Zeilen übersprungen");
+                if (!migrated.equals(t.filename)) {
+                    t.filename = migrated;
+                    catalog.setFilename(t.id, migrated);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Nach einem Absturz: abgerissene Blöcke abschneiden und Journale unterbrochener
+     * Aufzeichnungen nachspielen. Läuft vor dem ersten Lesen der Dateien; ohne Absturz
+     * ist es nur ein Blick auf Header und Dateilänge.
+     *
+     * Prüft beim Start nur den aktuellen und die sichtbaren Tracks sowie alle mit
+     * Journal (abgebrochene Aufzeichnung). Die übrigen landen in unchecked und werden
+     * erst beim Einblenden geprüft; bis dahin liest niemand über dataEnd hinaus.
+     */
+    private int recoverTracks(List<TrackInfo> list, long currentId, Set<String> unchecked) {
+        int recovered = 0;
+        // die Datei einer im Dienst weiterlaufenden Aufzeichnung gehört dem Writer
+        String recording = RecordingService.recordingFilename();
+        for (TrackInfo t : list) {
+            if (t.filename.equals(recording)) continue;
+            if (!t.visible && t.id != currentId && !storage.hasJournal(t.filename)) {
+                unchecked.add(t.filename);
+                continue;
+            }
+            try {
+                int replayed = storage.recover(t.filename);
+                if (replayed < 0) continue;
+                recovered += replayed;
+                // Statistik passt nicht mehr zur Datei: neu berechnen
+                t.summary = null;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return recovered;
+    }
+
+    // beim Start übersprungene Datei prüfen (ioExecutor), danach laden
+    private void recoverThenRefresh(TrackInfo t) {
+        String filename = t.filename;
+        ioExecutor.execute(() -> {
+            boolean repaired = false;
+            try {
+                // inzwischen aufgezeichnet: die Datei gehört dem Writer
+                repaired = !filename.equals(RecordingService.recordingFilename())
+                        && storage.recover(filename) >= 0;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            boolean changed = repaired;
+            runOnUiThread(() -> {
+                if (findTrack(filename) != t) return;
+                if (changed) {
+                    t.summary = null;
+                    computeSummary(t);
+                }
+                refreshTrack(filename);
+            });
+        });
+    }
+
+    // Zusammenfassungen, die im Katalog noch fehlen, einmalig aus den Dateien berechnen
+    private void computeMissingSummaries() {
+        for (TrackInfo t : tracks) {
+            if (t.summary == null) computeSummary(t);
+        }
+    }
+
+    private void computeSummary(TrackInfo t) {
+        long id = t.id;
+        String filename = t.filename;
+        ioExecutor.execute(() -> {
+            TrackSummary s;
+            try {
+                s = storage.fileFor(filename).exists()
+                        ? TrackSummary.of(storage.load(filename))
+                        : new TrackSummary();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            // inzwischen per appendToSummary fortgeschrieben: die neuere behalten
+            TrackSummary current = s;
+            if (!catalog.setSummaryIfMissing(id, s)) {
+                TrackInfo stored = catalog.findByFilename(filename);
+                if (stored == null) return;
+                current = stored.summary;
+            }
+            TrackSummary applied = current;
+            runOnUiThread(() -> applySummary(filename, applied));
+        });
+    }
+
+    // Neue Zusammenfassung nach dem Schreiben übernehmen (UI-Thread)
+    private void applySummary(String filename, TrackSummary s) {
+        if (s == null) return;
+        for (TrackInfo t : tracks) {
+            if (t.filename.equals(filename)) t.summary = s;
+        }
+        if (currentTrack != null && currentTrack.filename.equals(filename)) updateStatusText();
+    }
+
+    // Position und Statistik des aktuellen Tracks (aus dem Katalog, ohne die Datei zu lesen)
+    private void updateStatusText() {
+        StringBuilder sb = new StringBuilder();
+        if (lastLocation != null) {
+            sb.append("Latitude: ").append(lastLocation.getLatitude())
+                    .append("\nLongitude: ").append(lastLocation.getLongitude());
         }
+        if (currentTrack != null && currentTrack.summary != null && !currentTrack.summary.isEmpty()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(currentTrack.name).append(": ").append(currentTrack.summary.describeStats());
+        }
+        if (sb.length() > 0) textView.setText(sb);
     }
 
-    private void saveLocationToCSV() {
+    private void ensureTrackFile(String filename) {
+        ioExecutor.execute(() -> {
+            try {
+                storage.create(filename);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void saveLocationToTrack() {
         if (currentTrack == null) {
             Toast.makeText(this, "Kein Track ausgewählt", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        String data = textView.getText().toString();
-        String[] lines = data.split("\n");
-        if (lines.length < 2) {
+        if (lastLocation == null) {
             Toast.makeText(this, "Ungültige Koordinaten", Toast.LENGTH_SHORT).show();
             return;
         }
+        double lat = lastLocation.getLatitude();
+        double lon = lastLocation.getLongitude();
+        double[] alt = {lastLocation.hasAltitude() ? lastLocation.getAltitude() : Double.NaN};
+
+        // Schreiben im Hintergrund, danach Karte neu laden
+        String filename = currentTrack.filename;
+        long time = System.currentTimeMillis();
+        // läuft gerade die Aufzeichnung in diesen Track: über den Dienst (Reihenfolge, Journal)
+        if (filename.equals(RecordingService.recordingFilename()) && recordingService != null) {
+            recordingService.addPoint(time, lat, lon, alt[0]);
+            Toast.makeText(this, "Koordinaten gespeichert", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        ioExecutor.execute(() -> {
+            boolean ok;
+            TrackSummary summary = null;
+            try {
+                storage.append(filename, time, lat, lon);
+                ok = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                ok = false;
+            }
+            if (ok) {
+                TrackData one = new TrackData(1);
+                one.add(time, lat, lon);
+                try {
+                    summary = catalog.appendToSummary(storage, filename, one, 0, 1, alt);
+                } catch (IOException e) {
+                    // der Punkt steht in der Datei, nur die Statistik fehlt bis zum nächsten Start
+                    e.printStackTrace();
+                }
+            }
+            boolean saved = ok;
+            TrackSummary updated = summary;
+            runOnUiThread(() -> {
+                applySummary(filename, updated);
+                Toast.makeText(this, saved ? "Koordinaten gespeichert" : "Fehler beim Speichern",
+                        Toast.LENGTH_SHORT).show();
+                refreshTrack(filename);
+            });
+        });
+    }
 
-        try {
-            double lat = Double.parseDouble(lines[0].split(":")[1].trim());
-            double lon = Double.parseDouble(lines[1].split(":")[1].trim());
+    // ---------- Routenmodus ----------
+
+    // Aufzeichnung im RecordingService (Vordergrunddienst), läuft auch ohne sichtbare Activity weiter
+    private void startRouteRecording() {
+        if (currentTrack == null) {
+            Toast.makeText(this, "Kein Track ausgewählt", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
+                    PERMISSIONS_REQUEST_LOCATION);
+            return;
+        }
+        // ohne Erlaubnis fehlt nur die Benachrichtigung, die Aufzeichnung läuft trotzdem
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                    PERMISSIONS_REQUEST_NOTIFICATIONS);
+        }
+        ContextCompat.startForegroundService(this,
+                RecordingService.startIntent(this, currentTrack.filename, currentTrack.name));
+        btnRecordRoute.setText("Aufzeichnung stoppen");
+        Toast.makeText(this, "Route wird aufgezeichnet", Toast.LENGTH_SHORT).show();
+    }
+
+    private void stopRouteRecording() {
+        if (RecordingService.recordingFilename() == null) return;
+        startService(RecordingService.stopIntent(this));
+        btnRecordRoute.setText("Route aufzeichnen");
+    }
 
-            File file = new File(getFilesDir(), currentTrack.filename);
-            ensureCsvHasHeader(file);
+    private void updateRecordButton() {
+        btnRecordRoute.setText(RecordingService.recordingFilename() != null
+                ? "Aufzeichnung stoppen" : "Route aufzeichnen");
+    }
 
-            String timestamp = LocalDateTime.now().toString();
-            String row = timestamp + "," + lat + "," + lon + "\n";
+    // laufende Aufzeichnung im neu gewählten Track fortsetzen
+    private void followCurrentTrack() {
+        String recording = RecordingService.recordingFilename();
+        if (recording != null && currentTrack != null && !recording.equals(currentTrack.filename)) {
+            startRouteRecording();
+        }
+    }
+
+    // Statistik des aufgezeichneten Tracks aus dem Katalog nachladen (nach Rückkehr in die App)
+    private void refreshRecordingSummary() {
+        String filename = RecordingService.recordingFilename();
+        if (filename == null) return;
+        ioExecutor.execute(() -> {
+            TrackInfo t = catalog.findByFilename(filename);
+            if (t == null || t.summary == null) return;
+            runOnUiThread(() -> {
+                applySummary(filename, t.summary);
+                refreshTrack(filename);
+            });
+        });
+    }
 
-            try (FileOutputStream fos = openFileOutput(currentTrack.filename, MODE_APPEND)) {
-                fos.write(row.getBytes());
-                Toast.makeText(this, "Koordinaten gespeichert", Toast.LENGTH_SHORT).show();
+    /**
+     * Lädt die sichtbaren Tracks (und den aktuellen) im Hintergrund; ältere Aufträge
+     * werden abgebrochen. Der aktuelle Track wird zuerst begonnen, jeder Track
+     * erscheint, sobald er fertig ist. Ausgeblendete Tracks werden nicht gelesen.
+     */
+    private void loadAllTracksAndUpdateMap() {
+        if (!catalogLoaded) return;
+        List<String> files = new ArrayList<>();
+        List<String> unchecked = new ArrayList<>();
+        if (currentTrack != null) files.add(currentTrack.filename);
+        for (TrackInfo t : tracks) {
+            if (t.visible && t != currentTrack) files.add(t.filename);
+        }
+        for (Iterator<String> it = files.iterator(); it.hasNext(); ) {
+            String f = it.next();
+            if (!uncheckedFiles.contains(f)) continue;
+            it.remove();
+            unchecked.add(f);
+        }
+        int count = files.size();
+        long start = System.nanoTime();
+        trackLoader.load(files, new TrackLoader.Listener() {
+            @Override
+            public void onTrackLoaded(TrackLoader.Result r) {
+                showTrack(r);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Fehler beim Speichern", Toast.LENGTH_SHORT).show();
+
+            @Override
+            public void onAllLoaded() {
+                PerfStats.global().recordSince(PerfStats.Timer.MAP_REFRESH, start);
+                // ohne aktuellen Track zählt der ganze Auftrag
+                startupReached(StartupTimes.Phase.CURRENT_TRACK);
+                if (startupTimes != null) startupTimes.setTracks(count, tracks.size());
+                startupReached(StartupTimes.Phase.ALL_TRACKS);
+            }
+        });
+        // erst nach dem neuen Auftrag, sonst verwirft er die Ergebnisse
+        for (String f : unchecked) refreshTrack(f);
+    }
+
+    /**
+     * Läuft auf dem UI-Thread mit den fertig geladenen Tracks: vorhandene Overlays
+     * werden nur um neue Punkte verlängert und passend zur Sichtbarkeit ein- oder
+     * ausgehängt, die Karte wird nicht neu aufgebaut.
+     */
+    private void showTrack(TrackLoader.Result r) {
+        TrackInfo t = findTrack(r.filename);
+        if (t == null) return;
+        if (trackOverlays.update(t, r) && t.visible) map.invalidate();
+        if (t != currentTrack) return;
+        centerOnCurrentTrack();
+        startupReached(StartupTimes.Phase.CURRENT_TRACK);
+    }
+
+    // Lädt nur einen Track nach (neue Punkte, neuer Track); nur sichtbare und der aktuelle
+    private void refreshTrack(String filename) {
+        TrackInfo t = findTrack(filename);
+        if (t == null || !(t.visible || t == currentTrack)) return;
+        if (uncheckedFiles.remove(filename)) {
+            recoverThenRefresh(t);
+            return;
         }
+        long start = System.nanoTime();
+        trackLoader.refresh(filename, r -> {
+            // inzwischen gelöscht?
+            if (findTrack(filename) != t) return;
+            if (trackOverlays.update(t, r) && t.visible) map.invalidate();
+            if (t == currentTrack) centerOnCurrentTrack();
+            PerfStats.global().recordSince(PerfStats.Timer.MAP_REFRESH, start);
+        });
     }
 
-    private List<GeoPoint> loadPointsFromCsv(String filename) {
-        List<GeoPoint> result = new ArrayList<>();
-        try (FileInputStream fis = openFileInput(filename);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(fis))) {
+    // Sichtbarkeit geändert: Overlays nur ein-/aushängen, noch nie geladene Tracks nachladen
+    private void applyVisibility(TrackInfo t) {
+        trackOverlays.sync(t);
+        if (t.visible && !trackOverlays.isLoaded(t.filename)) refreshTrack(t.filename);
+        map.invalidate();
+    }
 
-            String line;
-            boolean first = true;
-            while ((line = reader.readLine()) != null) {
-                if (first) { // Header überspringen
-                    first = false;
-                    continue;
-                }
-                String[] parts = line.split(",");
-                if (parts.length >= 3) {
-                    double lat = Double.parseDouble(parts[1].trim());
-                    double lon = Double.parseDouble(parts[2].trim());
-                    result.add(new GeoPoint(lat, lon));
+    // Auf letzten Punkt des aktuellen Tracks zentrieren (aus dem Katalog, ohne Datei)
+    private void centerOnCurrentTrack() {
+        if (currentTrack == null || currentTrack.summary == null || currentTrack.summary.isEmpty()) return;
+        TrackSummary s = currentTrack.summary;
+        map.getController().setCenter(new GeoPoint(s.lastLat(), s.lastLon()));
+        map.getController().setZoom(15);
+    }
+
+    // ---------- Marker mit Foto und Kommentar ----------
+
+    private void setupThumbnails() {
+        photoDir = new File(getFilesDir(), "photos");
+        photoDir.mkdirs();
+        long cacheBytes = Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+        thumbnails = new ThumbnailCache(photoDir, new File(getCacheDir(), "thumbs"), (int) cacheBytes,
+                THUMB_DISK_BYTES);
+        thumbnails.setListener((photo, sizePx) -> {
+            if (sizePx == PHOTO_DETAIL_PX) {
+                if (detailImage != null && photo.equals(detailPhoto)) {
+                    detailImage.setImageBitmap(thumbnails.get(photo, PHOTO_DETAIL_PX));
                 }
+            } else {
+                map.invalidate();
             }
-        } catch (Exception e) {
-            // Datei evtl. noch nicht vorhanden -> ignorieren
+        });
+    }
+
+    // Marker an der aktuellen Position im aktiven Track (Punkt- wie Routenmodus)
+    private void showAddWaypointDialog() {
+        if (currentTrack == null) {
+            Toast.makeText(this, "Kein Track ausgewählt", Toast.LENGTH_SHORT).show();
+            return;
         }
-        return result;
+        if (lastLocation == null) {
+            Toast.makeText(this, "Ungültige Koordinaten", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Waypoint w = new Waypoint(currentTrack.id, System.currentTimeMillis(),
+                lastLocation.getLatitude(), lastLocation.getLongitude(), "", null);
+
+        EditText input = new EditText(this);
+        input.setHint("Kommentar");
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Marker setzen");
+        builder.setView(input);
+        builder.setPositiveButton("Weiter", (d, which) -> {
+            w.comment = input.getText().toString().trim();
+            showWaypointPhotoDialog(w);
+        });
+        builder.setNegativeButton("Abbrechen", null);
+        builder.show();
     }
 
-    private void loadAllTracksAndUpdateMap() {
-        map.getOverlays().clear();
+    private void showWaypointPhotoDialog(Waypoint w) {
+        String[] options = {"Foto aufnehmen", "Foto aus Galerie", "Ohne Foto"};
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Foto zum Marker");
+        builder.setItems(options, (d, which) -> {
+            if (which == 0) {
+                pendingWaypoint = w;
+                pendingPhotoFile = new File(photoDir, "wp_" + w.time + ".jpg");
+                takePhotoLauncher.launch(FileProvider.getUriForFile(this,
+                        getPackageName() + ".fileprovider", pendingPhotoFile));
+            } else if (which == 1) {
+                pendingWaypoint = w;
+                pickPhotoLauncher.launch("image/*");
+            } else {
+                addWaypoint(w);
+            }
+        });
+        builder.show();
+    }
 
-        for (int i = 0; i < tracks.size(); i++) {
-            if (visibleTracks.length <= i || !visibleTracks[i]) continue;
+    // Marker, der noch auf Kamera oder Galerie wartet, über die Neuerstellung retten
+    private void savePendingWaypoint(Bundle state) {
+        Waypoint w = pendingWaypoint;
+        if (w == null) return;
+        state.putLong(STATE_PENDING_TRACK, w.trackId);
+        state.putLong(STATE_PENDING_TIME, w.time);
+        state.putDouble(STATE_PENDING_LAT, w.lat);
+        state.putDouble(STATE_PENDING_LON, w.lon);
+        state.putString(STATE_PENDING_COMMENT, w.comment);
+        if (pendingPhotoFile != null) state.putString(STATE_PENDING_PHOTO, pendingPhotoFile.getPath());
+    }
+
+    private void restorePendingWaypoint(Bundle state) {
+        if (!state.containsKey(STATE_PENDING_TRACK)) return;
+        pendingWaypoint = new Waypoint(state.getLong(STATE_PENDING_TRACK), state.getLong(STATE_PENDING_TIME),
+                state.getDouble(STATE_PENDING_LAT), state.getDouble(STATE_PENDING_LON),
+                state.getString(STATE_PENDING_COMMENT), null);
+        String photo = state.getString(STATE_PENDING_PHOTO);
+        pendingPhotoFile = photo != null ? new File(photo) : null;
+    }
+
+    private void onPhotoTaken(Boolean ok) {
+        if (deferUntilCatalogLoaded(() -> onPhotoTaken(ok))) return;
+        Waypoint w = pendingWaypoint;
+        File file = pendingPhotoFile;
+        pendingWaypoint = null;
+        pendingPhotoFile = null;
+        if (w == null || file == null) return;
+        if (ok != null && ok && file.length() > 0) {
+            w.photo = file.getName();
+            addWaypoint(w);
+        } else {
+            file.delete();
+            Toast.makeText(this, "Kein Foto aufgenommen", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // Foto aus der Galerie in den eigenen Ordner kopieren (Berechtigung gilt nur vorübergehend)
+    private void onPhotoPicked(Uri uri) {
+        if (deferUntilCatalogLoaded(() -> onPhotoPicked(uri))) return;
+        Waypoint w = pendingWaypoint;
+        pendingWaypoint = null;
+        if (w == null || uri == null) return;
+        File file = new File(photoDir, "wp_" + w.time + ".jpg");
+        jobExecutor.execute(() -> {
+            boolean copied;
+            try (InputStream in = getContentResolver().openInputStream(uri);
+                 OutputStream out = new FileOutputStream(file)) {
+                if (in == null) throw new IOException("Foto nicht lesbar: " + uri);
+                byte[] buf = new byte[64 * 1024];
+                for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+                copied = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                file.delete();
+                copied = false;
+            }
+            boolean ok = copied;
+            runOnUiThread(() -> {
+                if (!ok) {
+                    Toast.makeText(this, "Fehler beim Übernehmen des Fotos", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                w.photo = file.getName();
+                addWaypoint(w);
+            });
+        });
+    }
+
+    private void addWaypoint(Waypoint w) {
+        ioExecutor.execute(() -> {
+            catalog.insertWaypoint(w);
+            runOnUiThread(() -> {
+                waypoints.computeIfAbsent(w.trackId, k -> new ArrayList<>()).add(w);
+                Toast.makeText(this, "Marker gesetzt", Toast.LENGTH_SHORT).show();
+                showWaypoints(w.trackId);
+            });
+        });
+    }
+
+    // Detailansicht: Foto (im Hintergrund dekodiert) und Kommentar
+    private void showWaypointDialog(Waypoint w) {
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(48, 24, 48, 0);
+        if (w.hasPhoto()) {
+            ImageView image = new ImageView(this);
+            image.setAdjustViewBounds(true);
+            image.setMaxHeight(getResources().getDisplayMetrics().heightPixels / 2);
+            // bis das große Bild da ist, das Vorschaubild zeigen
+            Bitmap b = thumbnails.get(w.photo, PHOTO_DETAIL_PX);
+            if (b == null) b = thumbnails.get(w.photo, WaypointOverlay.ICON_PX);
+            if (b != null) image.setImageBitmap(b);
+            layout.addView(image);
+            detailImage = image;
+            detailPhoto = w.photo;
+        }
+        TextView text = new TextView(this);
+        text.setText(w.comment.isEmpty() ? "(ohne Kommentar)" : w.comment);
+        text.setPadding(0, 24, 0, 0);
+        layout.addView(text);
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(new SimpleDateFormat("dd.MM.yyyy HH:mm", Locale.GERMANY).format(new Date(w.time)));
+        builder.setView(layout);
+        builder.setPositiveButton("Schließen", null);
+        builder.setNegativeButton("Löschen", (d, which) -> deleteWaypoint(w));
+        builder.setOnDismissListener(d -> {
+            detailImage = null;
+            detailPhoto = null;
+        });
+        builder.show();
+    }
 
-            TrackInfo t = tracks.get(i);
-            List<GeoPoint> points = loadPointsFromCsv(t.filename);
-            if (points.isEmpty()) continue;
+    private void deleteWaypoint(Waypoint w) {
+        ioExecutor.execute(() -> catalog.deleteWaypoint(w.id));
+        List<Waypoint> list = waypoints.get(w.trackId);
+        if (list != null) list.remove(w);
+        deletePhoto(w);
+        showWaypoints(w.trackId);
+    }
 
-            // Marker
-            for (GeoPoint p : points) {
-                Marker m = new Marker(map);
-                m.setPosition(p);
-                m.setTitle(t.name);
-                // Option: Standard-Icon in Farbe t.color einfärben; hier nutzen wir Standardmarker
-                map.getOverlays().add(m);
+    // nur das Marker-Overlay dieses Tracks erneuern
+    private void showWaypoints(long trackId) {
+        TrackInfo t = findTrack(trackId);
+        if (t == null) return;
+        trackOverlays.setWaypoints(t, waypoints.get(trackId));
+        map.invalidate();
+    }
+
+    private void deletePhoto(Waypoint w) {
+        if (!w.hasPhoto()) return;
+        String photo = w.photo;
+        thumbnails.remove(photo);
+        ioExecutor.execute(() -> new File(photoDir, photo).delete());
+    }
+
+    // ---------- Tracks in der Nähe ----------
+
+    // Umkreis um den eigenen Standort (sonst die Kartenmitte), nächste Tracks oder Kartenausschnitt
+    private void showNearbyDialog() {
+        if (tracks.isEmpty()) {
+            Toast.makeText(this, "Keine Tracks vorhanden", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        double lat = lastLocation != null ? lastLocation.getLatitude() : map.getMapCenter().getLatitude();
+        double lon = lastLocation != null ? lastLocation.getLongitude() : map.getMapCenter().getLongitude();
+        String[] options = new String[NEARBY_RADII_M.length + 2];
+        for (int i = 0; i < NEARBY_RADII_M.length; i++) options[i] = "Umkreis " + formatDistance(NEARBY_RADII_M[i]);
+        options[NEARBY_RADII_M.length] = "Die " + NEARBY_TRACKS + " nächsten Tracks";
+        options[NEARBY_RADII_M.length + 1] = "Tracks im Kartenausschnitt";
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(lastLocation != null ? "Tracks in der Nähe (Standort)" : "Tracks in der Nähe (Kartenmitte)");
+        builder.setItems(options, (d, which) -> {
+            if (which < NEARBY_RADII_M.length) {
+                double radius = NEARBY_RADII_M[which];
+                queryProximityIndex(index -> index.tracksWithin(lat, lon, radius),
+                        hits -> showNearbyResults(options[which], hits));
+            } else if (which == NEARBY_RADII_M.length) {
+                queryProximityIndex(index -> index.nearestTracks(lat, lon, NEARBY_TRACKS),
+                        hits -> showNearbyResults(options[which], hits));
+            } else {
+                BoundingBox box = map.getBoundingBox();
+                queryProximityIndex(index -> index.tracksInBox(box.getLatSouth(), box.getLatNorth(),
+                        box.getLonWest(), box.getLonEast()), this::showTracksInView);
             }
+        });
+        builder.setNegativeButton("Abbrechen", null);
+        builder.show();
+    }
 
-            // Linie
-            if (points.size() > 1) {
-                Polyline line = new Polyline(map);
-                line.setPoints(points);
-                line.setColor(t.color);
-                line.setWidth(15f);
-                map.getOverlays().add(line);
+    /**
+     * Bringt den Index im Hintergrund auf den Stand der Dateien und fragt ihn ab;
+     * das Ergebnis kommt auf dem UI-Thread an.
+     */
+    private <T> void queryProximityIndex(Function<ProximityIndex, T> query, Consumer<T> onResult) {
+        List<TrackInfo> snapshot = new ArrayList<>(tracks);
+        queryExecutor.execute(() -> {
+            T result;
+            try {
+                if (proximityIndex == null) {
+                    proximityIndex = ProximityIndex.open(new File(getFilesDir(), "proximity.idx"));
+                }
+                catchUpProximityIndex(snapshot);
+                long start = System.nanoTime();
+                result = query.apply(proximityIndex);
+                PerfStats.global().recordSince(PerfStats.Timer.PROXIMITY_QUERY, start);
+            } catch (IOException e) {
+                e.printStackTrace();
+                runOnUiThread(() -> Toast.makeText(this, "Fehler bei der Umkreissuche", Toast.LENGTH_SHORT).show());
+                return;
             }
+            runOnUiThread(() -> onResult.accept(result));
+        });
+    }
+
+    // Nur Tracks, deren Punktzahl (Header) vom Index abweicht, werden gelesen
+    private void catchUpProximityIndex(List<TrackInfo> snapshot) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (TrackInfo t : snapshot) {
+            ids.add(t.id);
+            File file = storage.fileFor(t.filename);
+            int points = file.exists() ? storage.format().readHeader(file).pointCount : 0;
+            if (points == proximityIndex.pointCount(t.id)) continue;
+            proximityIndex.update(t.id, points == 0 ? new TrackData() : trackCache.get(t.filename));
+        }
+        proximityIndex.retainAll(ids);
+    }
+
+    private void removeFromProximityIndex(long trackId) {
+        if (proximityIndex == null) return;
+        try {
+            proximityIndex.remove(trackId);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeProximityIndex() {
+        if (proximityIndex == null) return;
+        try {
+            proximityIndex.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Treffer mit Entfernung; Auswahl zeigt den Track und springt zum nächsten Punkt
+    private void showNearbyResults(String title, List<ProximityIndex.Hit> hits) {
+        List<TrackInfo> found = new ArrayList<>();
+        List<ProximityIndex.Hit> foundHits = new ArrayList<>();
+        for (ProximityIndex.Hit h : hits) {
+            TrackInfo t = findTrack(h.trackId());
+            if (t == null) continue;
+            found.add(t);
+            foundHits.add(h);
+        }
+        if (found.isEmpty()) {
+            Toast.makeText(this, "Keine Tracks gefunden", Toast.LENGTH_SHORT).show();
+            return;
         }
+        String[] names = new String[found.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = found.get(i).name + " – " + formatDistance(foundHits.get(i).distanceM());
+        }
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(title);
+        builder.setItems(names, (d, which) -> {
+            ProximityIndex.Hit h = foundHits.get(which);
+            showTrack(found.get(which));
+            map.getController().animateTo(new GeoPoint(h.lat(), h.lon()));
+        });
+        builder.setNegativeButton("Schließen", null);
+        builder.show();
+    }
 
-        // Auf letzten Punkt des aktuellen Tracks zentrieren
-        if (currentTrack != null) {
-            List<GeoPoint> pts = loadPointsFromCsv(currentTrack.filename);
-            if (!pts.isEmpty()) {
-                map.getController().setCenter(pts.get(pts.size() - 1));
-                map.getController().setZoom(15);
+    private void showTracksInView(List<Long> ids) {
+        List<TrackInfo> found = new ArrayList<>();
+        for (long id : ids) {
+            TrackInfo t = findTrack(id);
+            if (t != null) found.add(t);
+        }
+        if (found.isEmpty()) {
+            Toast.makeText(this, "Keine Tracks im Kartenausschnitt", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String[] names = new String[found.size()];
+        for (int i = 0; i < names.length; i++) names[i] = found.get(i).label();
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Tracks im Kartenausschnitt");
+        builder.setItems(names, (d, which) -> showTrack(found.get(which)));
+        builder.setNegativeButton("Schließen", null);
+        builder.show();
+    }
+
+    private TrackInfo findTrack(long id) {
+        for (TrackInfo t : tracks) {
+            if (t.id == id) return t;
+        }
+        return null;
+    }
+
+    private TrackInfo findTrack(String filename) {
+        for (TrackInfo t : tracks) {
+            if (t.filename.equals(filename)) return t;
+        }
+        return null;
+    }
+
+    // Ausgeblendeten Track wieder einblenden
+    private void showTrack(TrackInfo t) {
+        if (t.visible) return;
+        t.visible = true;
+        ioExecutor.execute(() -> catalog.setVisible(t.id, true));
+        applyVisibility(t);
+    }
+
+    private static String formatDistance(double m) {
+        if (m < 1000) return String.format(Locale.GERMANY, "%.0f m", m);
+        return String.format(Locale.GERMANY, "%.1f km", m / 1000);
+    }
+
+    // ---------- Zeitfenster und Wiedergabe ----------
+
+    private void showTimeRangeDialog() {
+        if (currentTrack == null) {
+            Toast.makeText(this, "Kein Track ausgewählt", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        TrackInfo t = currentTrack;
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Zeitraum anzeigen");
+        builder.setItems(TIME_RANGES, (d, which) -> {
+            long[] range = timeRange(which, System.currentTimeMillis());
+            showTimeWindow(t, range[0], range[1]);
+        });
+        builder.setNeutralButton("Ausblenden", (d, w) -> clearTimeWindow());
+        builder.setNegativeButton("Abbrechen", null);
+        builder.show();
+    }
+
+    // [von, bis] in Epoch-Millis für TIME_RANGES[which]
+    private static long[] timeRange(int which, long now) {
+        Calendar midnight = Calendar.getInstance();
+        midnight.setTimeInMillis(now);
+        midnight.set(Calendar.HOUR_OF_DAY, 0);
+        midnight.set(Calendar.MINUTE, 0);
+        midnight.set(Calendar.SECOND, 0);
+        midnight.set(Calendar.MILLISECOND, 0);
+        long today = midnight.getTimeInMillis();
+        switch (which) {
+            case 0:
+                return new long[]{now - 3600_000L, now};
+            case 1:
+                return new long[]{today, now};
+            case 2:
+                midnight.add(Calendar.DAY_OF_MONTH, -1);
+                return new long[]{midnight.getTimeInMillis(), today - 1};
+            default:
+                midnight.add(Calendar.DAY_OF_MONTH, -6);
+                return new long[]{midnight.getTimeInMillis(), now};
+        }
+    }
+
+    // Liest nur die Blöcke im Zeitfenster (Binärsuche über den Block-Index)
+    private void showTimeWindow(TrackInfo t, long from, long to) {
+        stopReplay();
+        windowFile = t.filename;
+        windowFrom = from;
+        windowTo = to;
+        queryExecutor.execute(() -> {
+            TrackData points = new TrackData();
+            long start = System.nanoTime();
+            try {
+                storage.format().readTimeRange(storage.fileFor(t.filename), timeIndex(t.filename), from, to, points);
+            } catch (IOException e) {
+                e.printStackTrace();
+                runOnUiThread(() -> Toast.makeText(this, "Fehler beim Lesen", Toast.LENGTH_SHORT).show());
+                return;
             }
+            PerfStats.global().recordSince(PerfStats.Timer.TIME_RANGE_QUERY, start);
+            runOnUiThread(() -> {
+                if (!t.filename.equals(windowFile) || windowFrom != from || windowTo != to) return;
+                windowOverlay.clear();
+                windowOverlay.append(points);
+                trackOverlays.setHighlight(windowOverlay);
+                map.invalidate();
+                if (points.isEmpty()) {
+                    Toast.makeText(this, "Keine Punkte im Zeitraum", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                Toast.makeText(this, points.size() + " Punkte im Zeitraum", Toast.LENGTH_SHORT).show();
+                zoomTo(points);
+            });
+        });
+    }
+
+    private void clearTimeWindow() {
+        stopReplay();
+        windowFile = null;
+        windowOverlay.clear();
+        trackOverlays.setHighlight(null);
+        map.invalidate();
+    }
+
+    // nur auf queryExecutor
+    private BinaryTrackFormat.BlockIndex timeIndex(String filename) {
+        return timeIndexes.computeIfAbsent(filename, k -> new BinaryTrackFormat.BlockIndex());
+    }
+
+    private void zoomTo(TrackData points) {
+        double north = -90, south = 90, east = -180, west = 180;
+        for (int i = 0; i < points.size(); i++) {
+            north = Math.max(north, points.latAt(i));
+            south = Math.min(south, points.latAt(i));
+            east = Math.max(east, points.lonAt(i));
+            west = Math.min(west, points.lonAt(i));
+        }
+        if (north - south < 1e-3 && east - west < 1e-3) {
+            map.getController().setCenter(new GeoPoint(points.latAt(0), points.lonAt(0)));
+            return;
+        }
+        map.zoomToBoundingBox(new BoundingBox(north, east, south, west).increaseByScale(1.2f), true);
+    }
+
+    // Spielt den aktiven Track ab, bei gesetztem Zeitfenster nur dieses
+    private void showReplayDialog() {
+        if (replay != null) {
+            stopReplay();
+            Toast.makeText(this, "Wiedergabe beendet", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (currentTrack == null || currentTrack.summary == null || currentTrack.summary.isEmpty()) {
+            Toast.makeText(this, "Keine Punkte im aktiven Track", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        TrackInfo t = currentTrack;
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Track abspielen");
+        builder.setItems(REPLAY_SPEEDS, (d, which) -> startReplay(t, which));
+        builder.setNegativeButton("Abbrechen", null);
+        builder.show();
+    }
+
+    private void startReplay(TrackInfo t, int speedChoice) {
+        stopReplay();
+        boolean window = t.filename.equals(windowFile);
+        long from = window ? windowFrom : Long.MIN_VALUE;
+        long to = window ? windowTo : Long.MAX_VALUE;
+        double speed = REPLAY_FACTORS[speedChoice];
+        if (speed == 0) {
+            long first = Math.max(from, t.summary.firstTime());
+            long last = Math.min(to, t.summary.lastTime());
+            speed = TrackReplay.speedFor(last - first, 60_000);
         }
+        replay = new TrackReplay(storage.format(), storage.fileFor(t.filename), from, to, speed);
+        replayStart = SystemClock.uptimeMillis();
+        windowOverlay.clear();
+        trackOverlays.setHighlight(windowOverlay);
+        map.post(replayTick);
+    }
+
+    private void stopReplay() {
+        replay = null;
+        map.removeCallbacks(replayTick);
+    }
+
+    // Ein Schritt: nachlesen auf queryExecutor, anzeigen auf dem UI-Thread, dann den nächsten planen
+    private void replayFrame() {
+        TrackReplay r = replay;
+        if (r == null) return;
+        long elapsed = SystemClock.uptimeMillis() - replayStart;
+        queryExecutor.execute(() -> {
+            TrackData chunk = new TrackData();
+            boolean more;
+            try {
+                more = r.advance(elapsed, chunk);
+            } catch (IOException e) {
+                e.printStackTrace();
+                more = false;
+            }
+            boolean running = more;
+            runOnUiThread(() -> {
+                if (replay != r) return;
+                windowOverlay.append(chunk);
+                if (!chunk.isEmpty()) {
+                    int last = chunk.size() - 1;
+                    map.getController().setCenter(new GeoPoint(chunk.latAt(last), chunk.lonAt(last)));
+                }
+                map.invalidate();
+                if (running) {
+                    map.postDelayed(replayTick, REPLAY_FRAME_MS);
+                } else {
+                    replay = null;
+                    Toast.makeText(this, "Wiedergabe beendet", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+    }
+
+    // ---------- Kartenkacheln ----------
 
+    // Karte liest zuerst aus dem TileDiskCache; der Downloader schreibt in denselben Cache
+    private void setupTileCache() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        tileCache = new TileDiskCache(new File(getFilesDir(), "tiles"), tileCacheBytes(prefs));
+        tileServer = prefs.getString("pref_tile_server", "").trim();
+        tileSource = tileSourceFor(tileServer);
+        TileCacheProvider cacheProvider = new TileCacheProvider(tileCache, tileSource);
+        MapTileDownloader downloader = new MapTileDownloader(tileSource, cacheProvider,
+                new NetworkAvailabliltyCheck(this));
+        map.setTileProvider(new MapTileProviderArray(tileSource, new SimpleRegisterReceiver(this),
+                new MapTileModuleProviderBase[]{cacheProvider, downloader}));
+    }
+
+    private void applyMapPrefs() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        long maxBytes = tileCacheBytes(prefs);
+        // erster Aufruf liest den Cache-Ordner ein, daher im Hintergrund
+        ioExecutor.execute(() -> tileCache.setMaxBytes(maxBytes));
+        String server = prefs.getString("pref_tile_server", "").trim();
+        if (!server.equals(tileServer)) {
+            tileServer = server;
+            tileSource = tileSourceFor(server);
+            map.setTileSource(tileSource);
+        }
+        trackOverlays.setHeatmap(prefs.getBoolean("pref_heatmap", false), tracks);
         map.invalidate();
     }
 
-    private void shareCsvFile(String filename) {
-        File file = new File(getFilesDir(), filename);
+    private static long tileCacheBytes(SharedPreferences prefs) {
+        return Long.parseLong(prefs.getString("pref_tile_cache_mb", "200")) * 1024 * 1024;
+    }
 
-        if (!file.exists()) {
-            Toast.makeText(this, "CSV-Datei nicht gefunden", Toast.LENGTH_SHORT).show();
+    // Eigener Server (z.B. lokaler Testserver) im XYZ-Schema, sonst OSM
+    private static OnlineTileSourceBase tileSourceFor(String server) {
+        if (server.isEmpty()) return TileSourceFactory.MAPNIK;
+        String base = server.endsWith("/") ? server : server + "/";
+        return new XYTileSource("Eigen-" + Integer.toHexString(base.hashCode()),
+                0, 19, 256, ".png", new String[]{base});
+    }
+
+    private void showPrefetchDialog() {
+        if (tracks.isEmpty()) {
+            Toast.makeText(this, "Keine Tracks vorhanden", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (runningTileDownload != null) {
+            Toast.makeText(this, "Es läuft bereits ein Download", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // OSM verbietet Massendownloads (Tile Usage Policy), osmdroid hinterlegt das an der Quelle
+        if (!tileSource.getTileSourcePolicy().acceptsBulkDownload()) {
+            Toast.makeText(this, "Dieser Kartenserver erlaubt kein Vorab-Laden. "
+                    + "Eigenen Kachelserver in den Einstellungen eintragen.", Toast.LENGTH_LONG).show();
             return;
         }
 
-        Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".fileprovider", file);
+        String[] names = new String[tracks.size()];
+        int checked = 0;
+        for (int i = 0; i < tracks.size(); i++) {
+            names[i] = tracks.get(i).label();
+            if (currentTrack != null && tracks.get(i).id == currentTrack.id) checked = i;
+        }
+        final int[] selected = {checked};
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Karte entlang Track speichern");
+        builder.setSingleChoiceItems(names, checked, (d, which) -> selected[0] = which);
+        builder.setPositiveButton("Weiter", (d, w) -> showPrefetchZoomDialog(tracks.get(selected[0])));
+        builder.setNegativeButton("Abbrechen", null);
+        builder.show();
+    }
+
+    private void showPrefetchZoomDialog(TrackInfo track) {
+        String[] levels = {"Übersicht (Zoom 8–12)", "Standard (Zoom 8–15)", "Detail (Zoom 8–17)"};
+        int[] maxZooms = {12, 15, 17};
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Detailstufe");
+        builder.setItems(levels, (d, which) -> prefetchTiles(track, maxZooms[which]));
+        builder.setNegativeButton("Abbrechen", null);
+        builder.show();
+    }
+
+    // Lädt alle Kacheln im Band um den Track (gedrosselt) in den Kachel-Cache
+    private void prefetchTiles(TrackInfo track, int maxZoom) {
+        TileDownloader downloader = new TileDownloader(tileCache, tileSource.name(),
+                tileSource.getBaseUrl(), tileSource.imageFilenameEnding(),
+                org.osmdroid.config.Configuration.getInstance().getUserAgentValue());
+        int maxConcurrent = tileSource.getTileSourcePolicy().getMaxConcurrent();
+        downloader.setThreads(maxConcurrent > 0 ? Math.min(maxConcurrent, PREFETCH_THREADS) : PREFETCH_THREADS);
+        downloader.setTilesPerSecond(PREFETCH_TILES_PER_SECOND);
+        runningTileDownload = downloader;
+
+        ProgressBar bar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        bar.setMax(1000);
+        bar.setIndeterminate(true);
+        bar.setPadding(48, 24, 48, 0);
+        AlertDialog progress = new AlertDialog.Builder(this)
+                .setTitle("Karte speichern: " + track.label())
+                .setMessage("Kacheln werden ermittelt …")
+                .setView(bar)
+                .setCancelable(false)
+                .setNegativeButton("Abbrechen", (d, w) -> downloader.cancel())
+                .show();
+
+        jobExecutor.execute(() -> {
+            String msg;
+            try {
+                TrackData data = trackCache.get(track.filename);
+                long[] tiles = TileCorridor.tiles(data, PREFETCH_MIN_ZOOM,
+                        Math.min(maxZoom, tileSource.getMaximumZoomLevel()), PREFETCH_BUFFER_M, PREFETCH_MAX_TILES);
+                if (tiles == null) {
+                    msg = "Zu viele Kacheln (mehr als " + PREFETCH_MAX_TILES + "), bitte geringere Detailstufe wählen";
+                } else {
+                    runOnUiThread(() -> bar.setIndeterminate(false));
+                    TileDownloader.Result r = downloader.download(tiles, (done, total) -> runOnUiThread(() -> {
+                        bar.setProgress((int) ((long) done * 1000 / total));
+                        progress.setMessage(done + " von " + total + " Kacheln");
+                    }));
+                    msg = (r.cancelled ? "Abgebrochen: " : "") + r.downloaded + " Kacheln geladen ("
+                            + r.bytes / 1024 + " KB), " + r.skipped + " schon vorhanden";
+                    if (r.failed > 0) msg += ", " + r.failed + " fehlgeschlagen";
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                msg = "Fehler beim Lesen des Tracks";
+            }
+            String text = msg;
+            runOnUiThread(() -> {
+                runningTileDownload = null;
+                progress.dismiss();
+                Toast.makeText(this, text, Toast.LENGTH_LONG).show();
+                map.invalidate();
+            });
+        });
+    }
+
+    // ---------- Leistungsdaten ----------
 
-        Intent intent = new Intent(Intent.ACTION_SEND);
-        intent.setType("text/csv");
-        intent.putExtra(Intent.EXTRA_STREAM, uri);
-        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+    private void applyDebugPrefs() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        boolean show = prefs.getBoolean("pref_perf_overlay", false);
+        map.removeCallbacks(perfRefresh);
+        if (!show) perfOverlay = null;
+        else if (perfOverlay == null) perfOverlay = new PerfOverlay(PerfStats.global());
+        trackOverlays.setTop(perfOverlay);
+        map.invalidate();
+        if (show) map.postDelayed(perfRefresh, PERF_REFRESH_MS);
+    }
 
-        startActivity(Intent.createChooser(intent, "CSV-Datei teilen"));
+    // Bericht als Textdatei in den App-Ordner auf dem externen Speicher (per USB/adb erreichbar)
+    private void dumpPerfStats() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        File file = new File(dir, "perf_"
+                + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ROOT).format(new Date()) + ".txt");
+        String header = trackCache + System.lineSeparator() + tileCache;
+        ioExecutor.execute(() -> {
+            try {
+                PerfStats.global().dumpToFile(file, header);
+                runOnUiThread(() -> Toast.makeText(this, "Gespeichert: " + file.getAbsolutePath(),
+                        Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                e.printStackTrace();
+                runOnUiThread(() -> Toast.makeText(this, "Fehler beim Speichern der Leistungsdaten",
+                        Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    // Exportiert die Tracks im Hintergrund in cache/export und teilt die Datei
+    private void shareExport(List<TrackInfo> selection, TrackExporter.Format format, boolean gzip) {
+        File exportDir = new File(getCacheDir(), "export");
+        exportDir.mkdirs();
+        String baseName = selection.size() == 1
+                ? selection.get(0).filename.replace(BinaryTrackFormat.EXTENSION, "")
+                : "tracks_" + selection.size();
+        Toast.makeText(this, "Export läuft …", Toast.LENGTH_SHORT).show();
+
+        jobExecutor.execute(() -> {
+            File file;
+            try {
+                file = new TrackExporter(storage).exportToFile(selection, format, gzip, exportDir, baseName);
+            } catch (IOException e) {
+                e.printStackTrace();
+                runOnUiThread(() -> Toast.makeText(this, "Fehler beim Export", Toast.LENGTH_SHORT).show());
+                return;
+            }
+            runOnUiThread(() -> {
+                Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".fileprovider", file);
+
+                Intent intent = new Intent(Intent.ACTION_SEND);
+                intent.setType(gzip ? TrackExporter.GZIP_MIME_TYPE : format.mimeType);
+                intent.putExtra(Intent.EXTRA_STREAM, uri);
+                intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+                startActivity(Intent.createChooser(intent, "Export teilen"));
+            });
+        });
+    }
+
+    // ---------- Import ----------
+
+    // Importiert eine GPX- oder CSV-Datei (Dateiauswahl) als neuen Track
+    private void importTrack(Uri uri) {
+        if (uri == null || deferUntilCatalogLoaded(() -> importTrack(uri))) return;
+        if (runningImport != null) {
+            Toast.makeText(this, "Es läuft bereits ein Import", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String displayName = "Import";
+        long size = -1;
+        try (Cursor c = getContentResolver().query(uri, null, null, null, null)) {
+            if (c != null && c.moveToFirst()) {
+                int nameCol = c.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                int sizeCol = c.getColumnIndex(OpenableColumns.SIZE);
+                if (nameCol >= 0 && !c.isNull(nameCol)) displayName = c.getString(nameCol);
+                if (sizeCol >= 0 && !c.isNull(sizeCol)) size = c.getLong(sizeCol);
+            }
+        }
+
+        String sourceName = displayName;
+        long totalBytes = size;
+
+        TrackImporter importer = new TrackImporter(storage, Xml.newPullParser());
+        runningImport = importer;
+
+        ProgressBar bar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        bar.setMax(1000);
+        bar.setIndeterminate(totalBytes <= 0);
+        bar.setPadding(48, 24, 48, 0);
+        AlertDialog progress = new AlertDialog.Builder(this)
+                .setTitle("Importiere " + sourceName)
+                .setMessage("0 Punkte")
+                .setView(bar)
+                .setCancelable(false)
+                .setNegativeButton("Abbrechen", (d, w) -> importer.cancel())
+                .show();
+
+        jobExecutor.execute(() -> {
+            // Trackname aus dem Dateinamen, bei Bedarf durchnummeriert
+            int dot = sourceName.lastIndexOf('.');
+            String base = dot > 0 ? sourceName.substring(0, dot) : sourceName;
+            String name = base;
+            for (int n = 2; catalog.findByFilename(TrackStorage.filenameFor(name)) != null
+                    || storage.fileFor(TrackStorage.filenameFor(name)).exists(); n++) {
+                name = base + " (" + n + ")";
+            }
+            String trackName = name;
+            String filename = TrackStorage.filenameFor(name);
+            try (InputStream raw = getContentResolver().openInputStream(uri)) {
+                if (raw == null) throw new IOException("Datei nicht lesbar: " + uri);
+                BufferedInputStream in = new BufferedInputStream(raw, 64 * 1024);
+                in.mark(1);
+                int first = in.read();
+                in.reset();
+
+                TrackSummary summary = importer.importInto(in, totalBytes,
+                        TrackImporter.Format.guess(sourceName, first), filename,
+                        (read, total, points) -> runOnUiThread(() -> {
+                            if (total > 0) bar.setProgress((int) (read * 1000 / total));
+                            progress.setMessage(points + " Punkte");
+                        }));
+                long skipped = importer.skippedRows();
+                TrackInfo t = new TrackInfo(trackName, filename, 0xFFFF8800);
+                t.summary = summary;
+                catalog.insert(t);
+                runOnUiThread(() -> {
+                    runningImport = null;
+                    progress.dismiss();
+                    tracks.add(t);
+                    String msg = summary.pointCount() + " Punkte importiert";
+                    if (skipped > 0) msg += ", " + skipped + " Zeilen übersprungen";
+                    Toast.makeText(this, msg, Toast.LENGTH_LONG).show();
+                    refreshTrack(filename);
+                });
+            } catch (InterruptedIOException e) {
+                runOnUiThread(() -> {
+                    runningImport = null;
+                    progress.dismiss();
+                    Toast.makeText(this, "Import abgebrochen", Toast.LENGTH_SHORT).show();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                runOnUiThread(() -> {
+                    runningImport = null;
+                    progress.dismiss();
+                    Toast.makeText(this, "Fehler beim Import", Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
     }
 
     // ---------- Dialoge: Tracks verwalten ----------
@@ -379,23 +1723,30 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 Toast.makeText(this, "Name darf nicht leer sein", Toast.LENGTH_SHORT).show();
                 return;
             }
-            String filename = "track_" + name.replaceAll("\\s+", "_") + ".csv";
+            String filename = TrackStorage.filenameFor(name);
             int color = colorValues[selectedIndex[0]];
-            TrackInfo t = new TrackInfo(name, filename, color);
-            tracks.add(t);
-
-            // Sichtbarkeit erweitern
-            boolean[] newVisible = new boolean[tracks.size()];
-            System.arraycopy(visibleTracks, 0, newVisible, 0, visibleTracks.length);
-            newVisible[tracks.size() - 1] = true;
-            visibleTracks = newVisible;
-
-            currentTrack = t;
-            saveAllTrackPrefs();
-
-            File f = new File(getFilesDir(), filename);
-            ensureCsvHasHeader(f);
-            loadAllTracksAndUpdateMap();
+            ioExecutor.execute(() -> {
+                if (catalog.findByFilename(filename) != null) {
+                    runOnUiThread(() -> Toast.makeText(this, "Ein Track mit diesem Namen existiert bereits",
+                            Toast.LENGTH_SHORT).show());
+                    return;
+                }
+                TrackInfo t = new TrackInfo(name, filename, color);
+                t.summary = new TrackSummary();
+                catalog.insert(t);
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    tracks.add(t);
+
+                    currentTrack = t;
+                    saveCurrentTrackToPrefs();
+                    updateStatusText();
+
+                    ensureTrackFile(filename);
+                    followCurrentTrack();
+                    refreshTrack(filename);
+                });
+            });
         });
 
         builder.setNegativeButton("Abbrechen", null);
@@ -411,8 +1762,8 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         String[] names = new String[tracks.size()];
         int checked = -1;
         for (int i = 0; i < tracks.size(); i++) {
-            names[i] = tracks.get(i).name;
-            if (currentTrack != null && tracks.get(i).name.equals(currentTrack.name)) {
+            names[i] = tracks.get(i).label();
+            if (currentTrack != null && tracks.get(i).id == currentTrack.id) {
                 checked = i;
             }
         }
@@ -422,7 +1773,13 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         builder.setSingleChoiceItems(names, checked, (dialog, which) -> {
             currentTrack = tracks.get(which);
         });
-        builder.setPositiveButton("OK", (d, w) -> saveCurrentTrackToPrefs());
+        builder.setPositiveButton("OK", (d, w) -> {
+            saveCurrentTrackToPrefs();
+            if (currentTrack != null) refreshTrack(currentTrack.filename);
+            followCurrentTrack();
+            centerOnCurrentTrack();
+            updateStatusText();
+        });
         builder.setNegativeButton("Abbrechen", null);
         builder.show();
     }
@@ -433,22 +1790,28 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             return;
         }
 
-        if (visibleTracks.length != tracks.size()) {
-            visibleTracks = new boolean[tracks.size()];
-            for (int i = 0; i < visibleTracks.length; i++) visibleTracks[i] = true;
-        }
-
         String[] names = new String[tracks.size()];
-        for (int i = 0; i < tracks.size(); i++) names[i] = tracks.get(i).name;
+        boolean[] checked = new boolean[tracks.size()];
+        for (int i = 0; i < tracks.size(); i++) {
+            names[i] = tracks.get(i).label();
+            checked[i] = tracks.get(i).visible;
+        }
 
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Tracks anzeigen");
-        builder.setMultiChoiceItems(names, visibleTracks, (dialog, which, isChecked) -> {
-            visibleTracks[which] = isChecked;
+        builder.setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> {
+            checked[which] = isChecked;
         });
         builder.setPositiveButton("OK", (d, w) -> {
-            saveVisibleToPrefs();
-            loadAllTracksAndUpdateMap();
+            // nur geänderte Einträge schreiben
+            for (int i = 0; i < checked.length; i++) {
+                TrackInfo t = tracks.get(i);
+                if (t.visible == checked[i]) continue;
+                t.visible = checked[i];
+                boolean visible = t.visible;
+                ioExecutor.execute(() -> catalog.setVisible(t.id, visible));
+                applyVisibility(t);
+            }
         });
         builder.setNegativeButton("Abbrechen", null);
         builder.show();
@@ -460,11 +1823,41 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             return;
         }
         String[] names = new String[tracks.size()];
-        for (int i = 0; i < tracks.size(); i++) names[i] = tracks.get(i).name;
+        boolean[] checked = new boolean[tracks.size()];
+        for (int i = 0; i < tracks.size(); i++) {
+            names[i] = tracks.get(i).label();
+            checked[i] = currentTrack != null && tracks.get(i).id == currentTrack.id;
+        }
 
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
-        builder.setTitle("Track zum Export wählen");
-        builder.setItems(names, (dialog, which) -> shareCsvFile(tracks.get(which).filename));
+        builder.setTitle("Tracks zum Export wählen");
+        builder.setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> checked[which] = isChecked);
+        builder.setPositiveButton("Weiter", (d, w) -> {
+            List<TrackInfo> selection = new ArrayList<>();
+            for (int i = 0; i < checked.length; i++) {
+                if (checked[i]) selection.add(tracks.get(i));
+            }
+            if (selection.isEmpty()) {
+                Toast.makeText(this, "Kein Track gewählt", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showExportFormatDialog(selection);
+        });
+        builder.setNegativeButton("Abbrechen", null);
+        builder.show();
+    }
+
+    private void showExportFormatDialog(List<TrackInfo> selection) {
+        TrackExporter.Format[] formats = TrackExporter.Format.values();
+        String[] names = {"GPX", "GeoJSON", "KML", "CSV"};
+        final int[] selectedIndex = {0};
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Format");
+        builder.setSingleChoiceItems(names, 0, (dialog, which) -> selectedIndex[0] = which);
+        builder.setPositiveButton("Teilen", (d, w) -> shareExport(selection, formats[selectedIndex[0]], false));
+        builder.setNeutralButton("Komprimiert teilen", (d, w) -> shareExport(selection, formats[selectedIndex[0]], true));
+        builder.setNegativeButton("Abbrechen", null);
         builder.show();
     }
 
@@ -474,79 +1867,77 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             return;
         }
         String[] names = new String[tracks.size()];
-        for (int i = 0; i < tracks.size(); i++) names[i] = tracks.get(i).name;
+        for (int i = 0; i < tracks.size(); i++) names[i] = tracks.get(i).label();
 
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Track löschen");
         builder.setItems(names, (dialog, which) -> {
             TrackInfo t = tracks.get(which);
-            deleteFile(t.filename);
+            String recording = RecordingService.recordingFilename();
+            if (t.filename.equals(recording)) btnRecordRoute.setText("Route aufzeichnen");
+            // läuft der Dienst, löscht er die Dateien erst, wenn sein Writer geschlossen ist
+            boolean viaService = recording != null || recordingService != null;
+            if (viaService) startService(RecordingService.deleteIntent(this, t.filename));
+            ioExecutor.execute(() -> {
+                catalog.delete(t.id);
+                if (!viaService) storage.delete(t.filename);
+                trackLoader.invalidate(t.filename);
+            });
+            trackOverlays.remove(t);
+            uncheckedFiles.remove(t.filename);
+            if (t.filename.equals(windowFile)) clearTimeWindow();
+            queryExecutor.execute(() -> timeIndexes.remove(t.filename));
+            List<Waypoint> marked = waypoints.remove(t.id);
+            if (marked != null) for (Waypoint w : marked) deletePhoto(w);
+            queryExecutor.execute(() -> removeFromProximityIndex(t.id));
             tracks.remove(which);
 
-            // Sichtbarkeit anpassen
-            boolean[] newVisible = new boolean[tracks.size()];
-            for (int i = 0; i < newVisible.length; i++) newVisible[i] = i < visibleTracks.length && visibleTracks[i];
-            visibleTracks = newVisible;
-
-            if (currentTrack != null && currentTrack.name.equals(t.name)) {
+            if (currentTrack != null && currentTrack.id == t.id) {
                 currentTrack = tracks.isEmpty() ? null : tracks.get(0);
+                if (currentTrack != null) refreshTrack(currentTrack.filename);
             }
-            saveAllTrackPrefs();
-            loadAllTracksAndUpdateMap();
+            saveCurrentTrackToPrefs();
+            updateStatusText();
+            map.invalidate();
         });
         builder.show();
     }
 
     // ---------- SharedPreferences für Tracks ----------
 
-    private void loadTracksFromPrefs() {
+    /**
+     * Übernimmt die frühere Track-Liste (Gson in den SharedPreferences) einmalig
+     * in den Katalog; die Sichtbarkeit hing dort an der Listenposition.
+     */
+    private void migrateTracksFromPrefs() {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String json = prefs.getString(PREF_TRACKS, "[]");
+        String json = prefs.getString(PREF_TRACKS, null);
+        if (json == null) return;
+
+        // bereits übernommene Einträge werden übersprungen, ein abgebrochener Lauf kann wiederholt werden
         Type type = new TypeToken<List<TrackInfo>>() {}.getType();
         List<TrackInfo> list = gson.fromJson(json, type);
-        tracks.clear();
-        if (list != null) tracks.addAll(list);
-    }
-
-    private void saveTracksToPrefs() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        SharedPreferences.Editor ed = prefs.edit();
-        String json = gson.toJson(tracks);
-        ed.putString(PREF_TRACKS, json);
-        ed.apply();
-    }
-
-    private void loadVisibleFromPrefs() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String json = prefs.getString(PREF_VISIBLE, "");
-        if (json.isEmpty()) {
-            visibleTracks = new boolean[tracks.size()];
-            for (int i = 0; i < visibleTracks.length; i++) visibleTracks[i] = true;
-        } else {
-            boolean[] arr = gson.fromJson(json, boolean[].class);
-            if (arr != null && arr.length == tracks.size()) {
-                visibleTracks = arr;
-            } else {
-                visibleTracks = new boolean[tracks.size()];
-                for (int i = 0; i < visibleTracks.length; i++) visibleTracks[i] = true;
+        boolean[] visible = gson.fromJson(prefs.getString(PREF_VISIBLE, "null"), boolean[].class);
+        String currentName = prefs.getString(PREF_CURRENT, null);
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                TrackInfo t = list.get(i);
+                if (catalog.findByFilename(t.filename) != null) continue;
+                t.visible = visible == null || visible.length != list.size() || visible[i];
+                catalog.insert(t);
+                if (t.name.equals(currentName)) {
+                    prefs.edit().putLong(PREF_CURRENT_ID, t.id).apply();
+                }
             }
         }
-    }
-
-    private void saveVisibleToPrefs() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        SharedPreferences.Editor ed = prefs.edit();
-        String json = gson.toJson(visibleTracks);
-        ed.putString(PREF_VISIBLE, json);
-        ed.apply();
+        prefs.edit().remove(PREF_TRACKS).remove(PREF_VISIBLE).remove(PREF_CURRENT).apply();
     }
 
     private void loadCurrentTrackFromPrefs() {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String name = prefs.getString(PREF_CURRENT, null);
-        if (name == null) return;
+        long id = prefs.getLong(PREF_CURRENT_ID, -1);
         for (TrackInfo t : tracks) {
-            if (t.name.equals(name)) {
+            if (t.id == id) {
                 currentTrack = t;
                 break;
             }
@@ -556,46 +1947,78 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     private void saveCurrentTrackToPrefs() {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         SharedPreferences.Editor ed = prefs.edit();
-        ed.putString(PREF_CURRENT, currentTrack != null ? currentTrack.name : null);
+        if (currentTrack != null) ed.putLong(PREF_CURRENT_ID, currentTrack.id);
+        else ed.remove(PREF_CURRENT_ID);
         ed.apply();
-        saveTracksToPrefs();
     }
 
-    private void saveAllTrackPrefs() {
-        saveTracksToPrefs();
-        saveVisibleToPrefs();
-        saveCurrentTrackToPrefs();
+    // ---------- Location Lifecycle ----------
+
+    // Standort kommt vom RecordingService; hier nur Anzeige und Einstellungen weiterreichen
+    private void applyLocationPrefs() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        if (!prefs.getBoolean("pref_tracking_enabled", true)) textView.setText("Tracking deaktiviert");
+        if (recordingService != null) recordingService.applyPrefs();
     }
 
-    // ---------- Location Lifecycle ----------
+    @Override
+    protected void onStart() {
+        super.onStart();
+        bindService(new Intent(this, RecordingService.class), recordingConnection, Context.BIND_AUTO_CREATE);
+    }
 
-    private void startLocationUpdates() {
-        LocationRequest locationRequest = LocationRequest.create();
-        locationRequest.setInterval(1000);
-        locationRequest.setFastestInterval(500);
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // die Aufzeichnung läuft im Dienst weiter, nur die Anzeige endet
+        if (recordingService != null) recordingService.setListener(null);
+        recordingService = null;
+        unbindService(recordingConnection);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        savePendingWaypoint(outState);
+    }
 
-        fusedLocationClient.requestLocationUpdates(locationRequest,
-                locationCallback,
-                null);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        trackLoader.shutdown();
+        // erst nach den noch wartenden Schreibaufträgen schließen
+        if (runningImport != null) runningImport.cancel();
+        if (runningTileDownload != null) runningTileDownload.cancel();
+        thumbnails.shutdown();
+        heatmap.shutdown();
+        jobExecutor.shutdownNow();
+        queryExecutor.execute(this::closeProximityIndex);
+        queryExecutor.shutdown();
+        ioExecutor.shutdown();
     }
 
-    private void stopLocationUpdates() {
-        fusedLocationClient.removeLocationUpdates(locationCallback);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // im Hintergrund: Vorschaubilder freigeben, die Dateien bleiben
+        if (level >= TRIM_MEMORY_UI_HIDDEN) thumbnails.trimMemory();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        stopLocationUpdates();
+        map.removeCallbacks(perfRefresh);
+        stopReplay();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        applyLocationPrefs();
+        applyDebugPrefs();
+        applyMapPrefs();
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 == PackageManager.PERMISSION_GRANTED) {
-            startLocationUpdates();
             loadAllTracksAndUpdateMap();
         }
     }
@@ -605,7 +2028,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == PERMISSIONS_REQUEST_LOCATION) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                startLocationUpdates();
+                if (recordingService != null) recordingService.applyPrefs();
             } else {
                 textView.setText("Berechtigung zum Standortzugriff verweigert");
             }
@@ -0,0 +1,53 @@
+package com.example.geotracker;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Overlay;
+
+import java.util.List;
+
+/**
+ * Debug-Overlay: zeigt die Kurzfassung von PerfStats oben links über der Karte.
+ * Wird nur in die Karte gehängt, wenn pref_perf_overlay an ist.
+ */
+public class PerfOverlay extends Overlay {
+
+    private static final float TEXT_SIZE = 26f;
+    private static final float PADDING = 12f;
+
+    private final PerfStats stats;
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backgroundPaint = new Paint();
+
+    public PerfOverlay(PerfStats stats) {
+        this.stats = stats;
+        textPaint.setColor(0xFFFFFFFF);
+        textPaint.setTextSize(TEXT_SIZE);
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        backgroundPaint.setColor(0xA0000000);
+        backgroundPaint.setStyle(Paint.Style.FILL);
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection pj) {
+        List<String> lines = stats.summaryLines();
+        if (lines.isEmpty()) lines.add("Noch keine Messwerte");
+
+        float width = 0;
+        for (String line : lines) width = Math.max(width, textPaint.measureText(line));
+        float lineHeight = TEXT_SIZE * 1.2f;
+
+        // in Bildschirmkoordinaten zeichnen, unabhängig von Verschiebung und Drehung der Karte
+        pj.save(canvas, false, true);
+        canvas.drawRect(0, 0, width + 2 * PADDING, lines.size() * lineHeight + 2 * PADDING, backgroundPaint);
+        float y = PADDING + TEXT_SIZE;
+        for (String line : lines) {
+            canvas.drawText(line, PADDING, y, textPaint);
+            y += lineHeight;
+        }
+        pj.restore(canvas, true);
+    }
+}
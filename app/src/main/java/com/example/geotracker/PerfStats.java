@@ -0,0 +1,273 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Leistungszähler für Laden, Zeichnen und Schreiben. Zähler und Histogramme sind
+ * feste Arrays aus Atomics: ein Messwert kostet ein paar atomare Additionen,
+ * keine Sperre und keine Allokation. Lesen (Overlay, Dump) darf ungenau sein.
+ */
+public final class PerfStats {
+
+    // Dauern, gemessen in Mikrosekunden
+    public enum Timer {
+        TRACK_READ("Track lesen"),
+        TRACK_PREPARE("Detailstufen/Index"),
+        MAP_REFRESH("Karte aktualisieren"),
+        FIX_AGE("Alter Fix bei Callback"),
+        LOCATION_CALLBACK("Location-Callback"),
+        FLUSH_WAIT("Wartezeit im Puffer"),
+        FLUSH_WRITE("Block schreiben"),
+        PROXIMITY_QUERY("Umkreissuche"),
+        HEATMAP_GRID("Heatmap-Raster"),
+        TIME_RANGE_QUERY("Zeitfenster lesen"),
+        STARTUP_FIRST_FRAME("Start: erstes Bild"),
+        STARTUP_CURRENT_TRACK("Start: aktueller Track"),
+        STARTUP_ALL_TRACKS("Start: alle Tracks");
+
+        final String label;
+
+        Timer(String label) {
+            this.label = label;
+        }
+    }
+
+    public enum Counter {
+        BYTES_READ("Bytes gelesen"),
+        POINTS_PARSED("Punkte dekodiert"),
+        OVERLAYS_CREATED("Overlays erzeugt"),
+        OVERLAYS_ATTACHED("Overlays eingehängt"),
+        FIXES_RECEIVED("Fixes empfangen"),
+        FIXES_DROPPED("Fixes verworfen (Puffer voll)"),
+        POINTS_WRITTEN("Punkte geschrieben");
+
+        final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Histogramm mit logarithmischen Eimern: je Zweierpotenz SUB_BUCKETS gleich
+     * breite Eimer, also höchstens ~12 % Abweichung bei den Perzentilen.
+     */
+    static final class Histogram {
+        static final int SUB_BITS = 3;
+        static final int SUB_BUCKETS = 1 << SUB_BITS;
+        static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long m;
+            while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+                // erneut versuchen
+            }
+        }
+
+        static int bucketOf(long v) {
+            if (v < SUB_BUCKETS) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        // kleinster Wert, der in den Eimer fällt
+        static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return (1L << exp) + ((long) sub << (exp - SUB_BITS));
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        // Perzentil p (0..1); Mitte des Eimers, höchstens max
+        long percentile(double p) {
+            long n = count.get();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank && seen > 0) {
+                    long lo = lowerBound(b);
+                    long hi = b + 1 < BUCKETS ? lowerBound(b + 1) : Long.MAX_VALUE;
+                    return Math.min(max.get(), lo + (hi - lo - 1) / 2);
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int b = 0; b < BUCKETS; b++) buckets.set(b, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+    }
+
+    // letzte Ladevorgänge eines Tracks
+    static final class TrackLoad {
+        long loads;
+        long lastReadUs;
+        long lastPrepareUs;
+        long bytesRead;
+        long pointsParsed;
+    }
+
+    private static final PerfStats GLOBAL = new PerfStats();
+
+    private final Histogram[] timers = new Histogram[Timer.values().length];
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final Map<String, TrackLoad> tracks = new ConcurrentHashMap<>();
+    private volatile long since = System.currentTimeMillis();
+
+    PerfStats() {
+        for (int i = 0; i < timers.length; i++) timers[i] = new Histogram();
+    }
+
+    // gemeinsame Instanz der App
+    public static PerfStats global() {
+        return GLOBAL;
+    }
+
+    public void record(Timer timer, long nanos) {
+        timers[timer.ordinal()].record(nanos / 1000);
+    }
+
+    // Dauer seit startNanos (System.nanoTime())
+    public void recordSince(Timer timer, long startNanos) {
+        record(timer, System.nanoTime() - startNanos);
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    // Datei gelesen (auch nur das angehängte Ende)
+    public void trackRead(String filename, long nanos, long bytes, int points) {
+        record(Timer.TRACK_READ, nanos);
+        add(Counter.BYTES_READ, bytes);
+        add(Counter.POINTS_PARSED, points);
+        TrackLoad t = tracks.computeIfAbsent(filename, k -> new TrackLoad());
+        synchronized (t) {
+            t.loads++;
+            t.lastReadUs = nanos / 1000;
+            t.bytesRead += bytes;
+            t.pointsParsed += points;
+        }
+    }
+
+    // Detailstufen und Index aktualisiert
+    public void trackPrepared(String filename, long nanos) {
+        record(Timer.TRACK_PREPARE, nanos);
+        TrackLoad t = tracks.computeIfAbsent(filename, k -> new TrackLoad());
+        synchronized (t) {
+            t.lastPrepareUs = nanos / 1000;
+        }
+    }
+
+    public long count(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    Histogram histogram(Timer timer) {
+        return timers[timer.ordinal()];
+    }
+
+    public void reset() {
+        for (Histogram h : timers) h.reset();
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        tracks.clear();
+        since = System.currentTimeMillis();
+    }
+
+    // Kurzfassung für das Debug-Overlay, eine Zeile pro Wert
+    public List<String> summaryLines() {
+        List<String> lines = new ArrayList<>();
+        for (Timer t : Timer.values()) {
+            Histogram h = timers[t.ordinal()];
+            if (h.count() == 0) continue;
+            lines.add(String.format(Locale.GERMANY, "%s: p50 %s  p99 %s  (%d)",
+                    t.label, formatUs(h.percentile(0.5)), formatUs(h.percentile(0.99)), h.count()));
+        }
+        for (Counter c : Counter.values()) {
+            long v = count(c);
+            if (v != 0) lines.add(c.label + ": " + v);
+        }
+        return lines;
+    }
+
+    public void dump(Writer w) throws IOException {
+        w.write(String.format(Locale.ROOT, "Geotracker PerfStats, %d s seit Start/Reset%n%n",
+                (System.currentTimeMillis() - since) / 1000));
+        w.write(String.format(Locale.ROOT, "%-24s %8s %10s %10s %10s %10s %10s%n",
+                "Dauer (us)", "Anzahl", "Mittel", "p50", "p90", "p99", "Max"));
+        for (Timer t : Timer.values()) {
+            Histogram h = timers[t.ordinal()];
+            w.write(String.format(Locale.ROOT, "%-24s %8d %10.0f %10d %10d %10d %10d%n",
+                    t.name(), h.count(), h.mean(), h.percentile(0.5), h.percentile(0.9),
+                    h.percentile(0.99), h.max()));
+        }
+        w.write(String.format(Locale.ROOT, "%n%-24s %12s%n", "Zähler", "Wert"));
+        for (Counter c : Counter.values()) {
+            w.write(String.format(Locale.ROOT, "%-24s %12d%n", c.name(), count(c)));
+        }
+        w.write(String.format(Locale.ROOT, "%n%-32s %6s %12s %12s %14s %14s%n",
+                "Track", "Loads", "Lesen (us)", "Vorb. (us)", "Bytes", "Punkte"));
+        for (Map.Entry<String, TrackLoad> e : new TreeMap<>(tracks).entrySet()) {
+            TrackLoad t = e.getValue();
+            synchronized (t) {
+                w.write(String.format(Locale.ROOT, "%-32s %6d %12d %12d %14d %14d%n",
+                        e.getKey(), t.loads, t.lastReadUs, t.lastPrepareUs, t.bytesRead, t.pointsParsed));
+            }
+        }
+    }
+
+    // Schreibt den Bericht als Textdatei; header darf null sein (z.B. Cache-Zustand)
+    public void dumpToFile(File file, String header) throws IOException {
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            if (header != null) w.write(header + System.lineSeparator());
+            dump(w);
+        }
+    }
+
+    private static String formatUs(long us) {
+        if (us < 1000) return us + " µs";
+        if (us < 10_000_000) return String.format(Locale.GERMANY, "%.1f ms", us / 1000.0);
+        return String.format(Locale.GERMANY, "%.1f s", us / 1_000_000.0);
+    }
+}
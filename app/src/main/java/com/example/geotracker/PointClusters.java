@@ -0,0 +1,161 @@
+package com.example.geotracker;
+
+import java.util.Arrays;
+
+/**
+ * Fasst nahe Punkte eines Tracks für eine Zoomstufe zu Clustern zusammen.
+ * Gitter in Mercator-Pixeln, daher bleiben die Cluster beim Verschieben stabil
+ * und müssen nur beim Zoomwechsel neu berechnet werden. Neue Punkte werden
+ * inkrementell einsortiert. Das Gitter dient zugleich als Index für den
+ * sichtbaren Ausschnitt und für das Antippen.
+ */
+public class PointClusters {
+
+    public static final int CELL_PX = 48;
+    private static final double TILE_SIZE = 256;
+
+    private final int zoom;
+    private final double worldPx;
+
+    int count;
+    double[] sumLat = new double[16];
+    double[] sumLon = new double[16];
+    int[] size = new int[16];
+    int[] firstIndex = new int[16];
+    int[] lastIndex = new int[16];
+
+    // offene Adressierung: Zellschlüssel -> Clusternummer
+    private long[] keys = new long[64];
+    private int[] values = new int[64];
+    private int added;
+
+    public PointClusters(int zoom) {
+        this.zoom = zoom;
+        this.worldPx = TILE_SIZE * Math.pow(2, zoom);
+        Arrays.fill(values, -1);
+    }
+
+    public int zoom() {
+        return zoom;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // Anzahl der bereits einsortierten Punkte
+    public int pointCount() {
+        return added;
+    }
+
+    public double latAt(int c) {
+        return sumLat[c] / size[c];
+    }
+
+    public double lonAt(int c) {
+        return sumLon[c] / size[c];
+    }
+
+    public int sizeAt(int c) {
+        return size[c];
+    }
+
+    public int firstIndexAt(int c) {
+        return firstIndex[c];
+    }
+
+    public int lastIndexAt(int c) {
+        return lastIndex[c];
+    }
+
+    // Sortiert die Punkte [pointCount(), to) ein
+    public void addAll(TrackData data, int to) {
+        for (int i = added; i < to; i++) {
+            long key = cellKey(data.lat[i], data.lon[i]);
+            int c = find(key);
+            if (c < 0) {
+                c = newCluster(i);
+                put(key, c);
+            }
+            sumLat[c] += data.lat[i];
+            sumLon[c] += data.lon[i];
+            size[c]++;
+            lastIndex[c] = i;
+        }
+        added = Math.max(added, to);
+    }
+
+    long cellKey(double lat, double lon) {
+        return key((long) Math.floor(cellX(lon)), (long) Math.floor(cellY(lat)));
+    }
+
+    // Gitterkoordinaten (Zellen, nicht gerundet) dieser Zoomstufe
+    public double cellX(double lon) {
+        return (lon + 180.0) / 360.0 * worldPx / CELL_PX;
+    }
+
+    public double cellY(double lat) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, lat))));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldPx / CELL_PX;
+    }
+
+    // Cluster der Zelle (cx, cy) oder -1; der Clustermittelpunkt liegt immer in seiner Zelle
+    public int clusterInCell(long cx, long cy) {
+        return find(key(cx, cy));
+    }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private int newCluster(int pointIndex) {
+        if (count == size.length) {
+            int n = count * 2;
+            sumLat = Arrays.copyOf(sumLat, n);
+            sumLon = Arrays.copyOf(sumLon, n);
+            size = Arrays.copyOf(size, n);
+            firstIndex = Arrays.copyOf(firstIndex, n);
+            lastIndex = Arrays.copyOf(lastIndex, n);
+        }
+        firstIndex[count] = pointIndex;
+        return count++;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] < 0) return -1;
+            if (keys[i] == key) return values[i];
+        }
+    }
+
+    private void put(long key, int value) {
+        if (count * 2 > keys.length) rehash(keys.length * 2);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] >= 0) i = (i + 1) & mask;
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, -1);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] < 0) continue;
+            int i = slot(oldKeys[j], mask);
+            while (values[i] >= 0) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,643 @@
+package com.example.geotracker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Räumlicher Index über alle Tracks für Umkreis-, Nächste-Tracks- und Rechteck-Abfragen.
+ * Festes Gitter aus CELL_E7 großen Zellen (Grad * 1e7); je Zelle die Punkte
+ * (Track, Punktnummer, Lat/Lon) und die Tracks, die sie berühren. Eine Abfrage liest
+ * nur die Zellen um den gesuchten Bereich, kostet also etwa so viel wie Treffer.
+ *
+ * Persistent als Log-Datei (Little Endian): Header (16 Byte) magic, version, CELL_E7,
+ * reserviert; danach Datensätze Länge, CRC32, Nutzdaten. ADD: op, Track-ID, erster Punkt,
+ * Anzahl, je Punkt Lat/Lon int 1e-7; REMOVE: op, Track-ID. Beim Öffnen wird das Log
+ * nachgespielt und ab dem ersten defekten Datensatz abgeschnitten; die fehlenden Punkte
+ * trägt der nächste update() nach. Übersteigen gelöschte Punkte die lebenden, wird
+ * das Log neu geschrieben.
+ */
+public class ProximityIndex implements Closeable {
+
+    static final int MAGIC = 0x58495047; // "GPIX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    // 0,005° ≈ 550 m in Nord-Süd-Richtung
+    static final int CELL_E7 = 50_000;
+    static final int LAT_CELLS = (int) (1_800_000_000L / CELL_E7);
+    static final int LON_CELLS = (int) (3_600_000_000L / CELL_E7);
+
+    private static final int OP_ADD = 1;
+    private static final int OP_REMOVE = 2;
+    private static final int ADD_HEADER = 4 + 8 + 4 + 4;
+    private static final double SCALE = 1e7;
+    private static final double M_PER_DEG = Math.toRadians(1) * GeoMath.EARTH_RADIUS_M;
+    private static final double CELL_M = CELL_E7 / SCALE * M_PER_DEG;
+
+    // Treffer einer Abfrage: nächster Punkt eines Tracks bzw. ein einzelner Punkt
+    public static class Hit {
+        final long trackId;
+        final int point;
+        final double lat;
+        final double lon;
+        final double distanceM;
+
+        Hit(long trackId, int point, double lat, double lon, double distanceM) {
+            this.trackId = trackId;
+            this.point = point;
+            this.lat = lat;
+            this.lon = lon;
+            this.distanceM = distanceM;
+        }
+
+        public long trackId() {
+            return trackId;
+        }
+
+        // Punktnummer im Track
+        public int point() {
+            return point;
+        }
+
+        public double lat() {
+            return lat;
+        }
+
+        public double lon() {
+            return lon;
+        }
+
+        public double distanceM() {
+            return distanceM;
+        }
+    }
+
+    // Punkte einer Zelle (je 4 ints: Slot, Punkt, Lat, Lon) und die berührenden Slots
+    private static class Cell {
+        int[] postings = new int[4 * 8];
+        int size;
+        int[] slots = new int[2];
+        int slotCount;
+
+        void add(int slot, int point, int lat, int lon) {
+            if (4 * (size + 1) > postings.length) postings = Arrays.copyOf(postings, postings.length * 2);
+            int o = 4 * size++;
+            postings[o] = slot;
+            postings[o + 1] = point;
+            postings[o + 2] = lat;
+            postings[o + 3] = lon;
+            // Punkte eines Tracks kommen meist am Stück: zuletzt eingetragenen Slot zuerst prüfen
+            for (int i = slotCount - 1; i >= 0; i--) {
+                if (slots[i] == slot) return;
+            }
+            if (slotCount == slots.length) slots = Arrays.copyOf(slots, slotCount * 2);
+            slots[slotCount++] = slot;
+        }
+    }
+
+    // Indexierter Track; removed = nur noch tote Einträge in den Zellen
+    private static class TrackEntry {
+        final long id;
+        final int slot;
+        int points;
+        boolean removed;
+
+        TrackEntry(long id, int slot) {
+            this.id = id;
+            this.slot = slot;
+        }
+    }
+
+    private final File file;
+    // werden beim Verdichten durch die neue Datei ersetzt
+    private RandomAccessFile raf;
+    private FileChannel ch;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buf = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+    private long end;
+
+    private final HashMap<Long, Cell> cells = new HashMap<>();
+    private final HashMap<Long, TrackEntry> tracks = new HashMap<>();
+    private final List<TrackEntry> slots = new ArrayList<>();
+    private long livePoints;
+    private long deadPoints;
+
+    private ProximityIndex(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.ch = raf.getChannel();
+    }
+
+    /**
+     * Öffnet den Index (oder legt ihn an) und spielt das Log nach. Ein unbrauchbarer
+     * Header (andere Version oder Zellgröße) verwirft den Index; er wird dann über
+     * update() neu aufgebaut.
+     */
+    public static ProximityIndex open(File file) throws IOException {
+        ProximityIndex index = new ProximityIndex(file);
+        try {
+            index.load();
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    // ---------- Pflege ----------
+
+    // Anzahl indexierter Punkte des Tracks (0 = unbekannt)
+    public synchronized int pointCount(long trackId) {
+        TrackEntry t = tracks.get(trackId);
+        return t == null ? 0 : t.points;
+    }
+
+    /**
+     * Übernimmt die Punkte [pointCount(trackId), data.size()) des Tracks. Ist data
+     * kürzer als der Index (Track neu geschrieben), wird der Track neu indexiert.
+     */
+    public synchronized void update(long trackId, TrackData data) throws IOException {
+        TrackEntry t = tracks.get(trackId);
+        int size = data.size();
+        if (t != null && size < t.points) {
+            remove(trackId);
+            t = null;
+        }
+        int from = t == null ? 0 : t.points;
+        if (from == size) return;
+        putAdd(trackId, from, data, from, size);
+        end = writeRecord(ch, end);
+        apply(trackId, from, data, from, size);
+        compactIfWasteful();
+    }
+
+    public synchronized void remove(long trackId) throws IOException {
+        TrackEntry t = tracks.get(trackId);
+        if (t == null) return;
+        buf.clear();
+        buf.putInt(0).putInt(0).putInt(OP_REMOVE).putLong(trackId);
+        end = writeRecord(ch, end);
+        applyRemove(trackId);
+        compactIfWasteful();
+    }
+
+    // Alle Tracks, die nicht in ids vorkommen, entfernen (z.B. nach Löschen ohne Index)
+    public synchronized void retainAll(Iterable<Long> ids) throws IOException {
+        HashMap<Long, Boolean> keep = new HashMap<>();
+        for (Long id : ids) keep.put(id, Boolean.TRUE);
+        for (Long id : new ArrayList<>(tracks.keySet())) {
+            if (!keep.containsKey(id)) remove(id);
+        }
+    }
+
+    public synchronized int trackCount() {
+        return tracks.size();
+    }
+
+    public synchronized long pointCount() {
+        return livePoints;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        raf.close();
+    }
+
+    // ---------- Abfragen ----------
+
+    /**
+     * Alle Punkte im Umkreis, nach Entfernung sortiert; höchstens limit Treffer
+     * (die nächsten).
+     */
+    public synchronized List<Hit> pointsWithin(double lat, double lon, double radiusM, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        forEachCellAround(lat, lon, radiusM, cell -> {
+            int[] p = cell.postings;
+            for (int o = 0; o < 4 * cell.size; o += 4) {
+                TrackEntry t = slots.get(p[o]);
+                if (t.removed) continue;
+                double d = GeoMath.distanceMeters(lat, lon, p[o + 2] / SCALE, p[o + 3] / SCALE);
+                if (d <= radiusM) hits.add(new Hit(t.id, p[o + 1], p[o + 2] / SCALE, p[o + 3] / SCALE, d));
+            }
+        });
+        hits.sort((a, b) -> Double.compare(a.distanceM, b.distanceM));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    // Tracks, die im Umkreis vorbeikommen, je Track der nächste Punkt; nach Entfernung sortiert
+    public synchronized List<Hit> tracksWithin(double lat, double lon, double radiusM) {
+        Map<Integer, Hit> best = new HashMap<>();
+        forEachCellAround(lat, lon, radiusM, cell -> collectNearest(cell, lat, lon, radiusM, -1, best));
+        return sorted(best, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Die k nächsten Tracks, je Track der nächste Punkt. Sucht in Ringen um die Zelle
+     * des Punkts, bis kein weiterer Ring einen näheren Treffer enthalten kann; wird der
+     * Ring größer als der Index, folgen die übrigen Zellen nach ihrem Mindestabstand.
+     * Zellen, die nicht näher als der k-te Treffer liegen können, werden übersprungen.
+     */
+    public synchronized List<Hit> nearestTracks(double lat, double lon, int k) {
+        Map<Integer, Hit> best = new HashMap<>();
+        if (k <= 0 || cells.isEmpty()) return new ArrayList<>();
+        int cy = latCell(toE7(lat));
+        int cx = lonCell(toE7(lon));
+        double kth = Double.MAX_VALUE;
+        int r = 0;
+        for (; (2L * r + 1) * (2L * r + 1) <= cells.size() && 2 * r + 1 < LON_CELLS; r++) {
+            for (int y = cy - r; y <= cy + r; y++) {
+                if (y < 0 || y >= LAT_CELLS) continue;
+                boolean edge = y == cy - r || y == cy + r;
+                for (int x = cx - r; x <= cx + r; x += edge ? 1 : 2 * r) {
+                    int wrapped = Math.floorMod(x, LON_CELLS);
+                    Cell cell = cells.get(key(y, wrapped));
+                    if (cell != null) {
+                        double bound = cellDistance(y, wrapped, lat, lon);
+                        if (bound <= kth && collectNearest(cell, lat, lon, Double.MAX_VALUE, bound, best)) kth = kthDistance(best, k);
+                    }
+                    if (r == 0) break;
+                }
+            }
+            // alles außerhalb des Rings ist mindestens r Zellen entfernt
+            if (kth <= minDistanceBeyond(lat, r)) return sorted(best, k);
+        }
+
+        // übrige Zellen nach Mindestabstand
+        int n = 0;
+        long[] keys = new long[cells.size()];
+        double[] bounds = new double[cells.size()];
+        for (long key : cells.keySet()) {
+            if (ring(key, cy, cx) < r) continue;
+            keys[n] = key;
+            bounds[n++] = cellDistance((int) (key / LON_CELLS), (int) (key % LON_CELLS), lat, lon);
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(bounds[a], bounds[b]));
+        for (int i : order) {
+            if (bounds[i] > kth) break;
+            if (collectNearest(cells.get(keys[i]), lat, lon, Double.MAX_VALUE, bounds[i], best)) kth = kthDistance(best, k);
+        }
+        return sorted(best, k);
+    }
+
+    /**
+     * IDs der Tracks mit mindestens einem Punkt im Rechteck, aufsteigend.
+     * west > east bedeutet ein Rechteck über die Datumsgrenze.
+     */
+    public synchronized List<Long> tracksInBox(double south, double north, double west, double east) {
+        int s = toE7(south);
+        int n = toE7(north);
+        int w = toE7(west);
+        int e = toE7(east);
+        boolean[] found = new boolean[slots.size()];
+        // Ostrand genau auf 180° gehört zur letzten Spalte, nicht zur ersten
+        int x1 = w <= e && e >= 1_800_000_000 ? LON_CELLS - 1 : lonCell(e);
+        forEachCellInBox(latCell(s), latCell(n), lonCell(w), x1, (cell, y, x) -> {
+            // Zelle ganz im Rechteck: alle berührenden Tracks, sonst die Punkte prüfen
+            boolean inside = y * CELL_E7 - 900_000_000 >= s && (y + 1) * CELL_E7 - 900_000_000 <= n
+                    && lonCellInside(x, w, e);
+            for (int i = 0; i < cell.slotCount; i++) {
+                if (inside) found[cell.slots[i]] = true;
+            }
+            if (inside) return;
+            int[] p = cell.postings;
+            for (int o = 0; o < 4 * cell.size; o += 4) {
+                if (found[p[o]]) continue;
+                int lat = p[o + 2];
+                int lon = p[o + 3];
+                if (lat < s || lat > n) continue;
+                if (w <= e ? lon >= w && lon <= e : lon >= w || lon <= e) found[p[o]] = true;
+            }
+        });
+        List<Long> result = new ArrayList<>();
+        for (int slot = 0; slot < found.length; slot++) {
+            TrackEntry t = slots.get(slot);
+            if (found[slot] && !t.removed) result.add(t.id);
+        }
+        result.sort(null);
+        return result;
+    }
+
+    // ---------- Gitter ----------
+
+    private interface CellVisitor {
+        void visit(Cell cell);
+    }
+
+    private interface BoxVisitor {
+        void visit(Cell cell, int latCell, int lonCell);
+    }
+
+    private static int toE7(double deg) {
+        return (int) Math.round(deg * SCALE);
+    }
+
+    private static int latCell(int latE7) {
+        return Math.max(0, Math.min(LAT_CELLS - 1, Math.floorDiv(latE7 + 900_000_000, CELL_E7)));
+    }
+
+    private static int lonCell(int lonE7) {
+        return Math.floorMod(Math.floorDiv(lonE7 + 1_800_000_000L, CELL_E7), LON_CELLS);
+    }
+
+    private static long key(int latCell, int lonCell) {
+        return (long) latCell * LON_CELLS + lonCell;
+    }
+
+    // Chebyshev-Abstand der Zelle key zur Zelle (cy, cx) in Zellen, über die Datumsgrenze
+    private static int ring(long key, int cy, int cx) {
+        int y = (int) (key / LON_CELLS);
+        int x = (int) (key % LON_CELLS);
+        int dx = Math.abs(x - cx);
+        return Math.max(Math.abs(y - cy), Math.min(dx, LON_CELLS - dx));
+    }
+
+    private static boolean lonCellInside(int x, int w, int e) {
+        long lo = (long) x * CELL_E7 - 1_800_000_000L;
+        long hi = lo + CELL_E7;
+        return w <= e ? lo >= w && hi <= e : lo >= w || hi <= e;
+    }
+
+    /**
+     * Untergrenze der Entfernung zu Punkten außerhalb von Ring r: r Zellen in
+     * Nord-Süd-Richtung oder r Zellen Länge am polnächsten Rand des Rings.
+     */
+    private static double minDistanceBeyond(double lat, int r) {
+        double edgeLat = Math.min(90, Math.abs(lat) + (r + 1) * (CELL_E7 / SCALE));
+        return r * CELL_M * Math.cos(Math.toRadians(edgeLat));
+    }
+
+    /**
+     * Mindestabstand vom Punkt zur Zelle: Entfernung zum nächsten Punkt des Zellrechtecks,
+     * mit Sicherheitsfaktor, weil Großkreise vom Rechteckrand abweichen.
+     */
+    private static double cellDistance(int latCell, int lonCell, double lat, double lon) {
+        double south = ((long) latCell * CELL_E7 - 900_000_000) / SCALE;
+        double west = ((long) lonCell * CELL_E7 - 1_800_000_000L) / SCALE;
+        double cell = CELL_E7 / SCALE;
+        double nearLat = Math.max(south, Math.min(south + cell, lat));
+        // Länge relativ zum Westrand (0..360): in der Zelle, westlich des Ostrands oder östlich des Westrands
+        double offset = Math.floorMod(Math.round((lon - west) * SCALE), 3_600_000_000L) / SCALE;
+        double nearLon;
+        if (offset <= cell) nearLon = lon;
+        else if (offset - cell <= 360 - offset) nearLon = lon - (offset - cell);
+        else nearLon = lon + (360 - offset);
+        return 0.99 * GeoMath.distanceMeters(lat, lon, nearLat, nearLon);
+    }
+
+    private void forEachCellAround(double lat, double lon, double radiusM, CellVisitor visitor) {
+        double dLat = radiusM / M_PER_DEG;
+        double maxLat = Math.min(90, Math.abs(lat) + dLat);
+        double cos = Math.cos(Math.toRadians(maxLat));
+        double dLon = cos < 1e-9 ? 360 : radiusM / (M_PER_DEG * cos);
+        int y0 = latCell(toE7(lat - dLat));
+        int y1 = latCell(toE7(lat + dLat));
+        if (dLon >= 180) {
+            forEachCellInBox(y0, y1, 0, LON_CELLS - 1, (cell, y, x) -> visitor.visit(cell));
+        } else {
+            forEachCellInBox(y0, y1, lonCell(toE7(lon - dLon)), lonCell(toE7(lon + dLon)),
+                    (cell, y, x) -> visitor.visit(cell));
+        }
+    }
+
+    // Zellen [y0..y1] x [x0..x1]; x0 > x1 über die Datumsgrenze. Bei großen Bereichen alle belegten Zellen filtern.
+    private void forEachCellInBox(int y0, int y1, int x0, int x1, BoxVisitor visitor) {
+        long width = x0 <= x1 ? x1 - x0 + 1 : LON_CELLS - x0 + x1 + 1;
+        long area = (long) (y1 - y0 + 1) * width;
+        if (area > cells.size()) {
+            for (Map.Entry<Long, Cell> e : cells.entrySet()) {
+                int y = (int) (e.getKey() / LON_CELLS);
+                int x = (int) (e.getKey() % LON_CELLS);
+                if (y < y0 || y > y1) continue;
+                if (x0 <= x1 ? x < x0 || x > x1 : x < x0 && x > x1) continue;
+                visitor.visit(e.getValue(), y, x);
+            }
+            return;
+        }
+        for (int y = y0; y <= y1; y++) {
+            for (long i = 0; i < width; i++) {
+                int x = (int) ((x0 + i) % LON_CELLS);
+                Cell cell = cells.get(key(y, x));
+                if (cell != null) visitor.visit(cell, y, x);
+            }
+        }
+    }
+
+    /**
+     * Nächster Punkt je Track innerhalb radiusM; liefert true, wenn sich ein Treffer
+     * verbessert hat. bound ist der Mindestabstand der Zelle: Tracks, deren Treffer
+     * schon so nah ist, werden übersprungen.
+     */
+    private boolean collectNearest(Cell cell, double lat, double lon, double radiusM, double bound,
+                                   Map<Integer, Hit> best) {
+        boolean changed = false;
+        int[] p = cell.postings;
+        for (int o = 0; o < 4 * cell.size; o += 4) {
+            TrackEntry t = slots.get(p[o]);
+            if (t.removed) continue;
+            Hit h = best.get(p[o]);
+            if (h != null && h.distanceM <= bound) continue;
+            double d = GeoMath.distanceMeters(lat, lon, p[o + 2] / SCALE, p[o + 3] / SCALE);
+            if (d > radiusM || (h != null && d >= h.distanceM)) continue;
+            best.put(p[o], new Hit(t.id, p[o + 1], p[o + 2] / SCALE, p[o + 3] / SCALE, d));
+            changed = true;
+        }
+        return changed;
+    }
+
+    // Entfernung des k-ten Tracks; unbegrenzt, solange weniger als k gefunden sind
+    private static double kthDistance(Map<Integer, Hit> best, int k) {
+        if (best.size() < k) return Double.MAX_VALUE;
+        double[] d = new double[best.size()];
+        int i = 0;
+        for (Hit h : best.values()) d[i++] = h.distanceM;
+        Arrays.sort(d);
+        return d[k - 1];
+    }
+
+    private static List<Hit> sorted(Map<Integer, Hit> best, int limit) {
+        List<Hit> hits = new ArrayList<>(best.values());
+        hits.sort((a, b) -> Double.compare(a.distanceM, b.distanceM));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    // ---------- Speicherstand ----------
+
+    private void apply(long trackId, int first, TrackData data, int from, int to) {
+        TrackEntry t = tracks.get(trackId);
+        if (t == null) {
+            t = new TrackEntry(trackId, slots.size());
+            slots.add(t);
+            tracks.put(trackId, t);
+        }
+        for (int i = from; i < to; i++) {
+            int lat = toE7(data.lat[i]);
+            int lon = toE7(data.lon[i]);
+            long key = key(latCell(lat), lonCell(lon));
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                cell = new Cell();
+                cells.put(key, cell);
+            }
+            cell.add(t.slot, first + i - from, lat, lon);
+        }
+        t.points = first + to - from;
+        livePoints += to - from;
+    }
+
+    private void applyRemove(long trackId) {
+        TrackEntry t = tracks.remove(trackId);
+        if (t == null) return;
+        t.removed = true;
+        livePoints -= t.points;
+        deadPoints += t.points;
+    }
+
+    // ADD-Datensatz der Punkte [from, to) in buf vorbereiten
+    private void putAdd(long trackId, int first, TrackData data, int from, int to) {
+        int n = to - from;
+        int size = 8 + ADD_HEADER + 8 * n;
+        if (buf.capacity() < size) buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.clear();
+        buf.putInt(0).putInt(0).putInt(OP_ADD).putLong(trackId).putInt(first).putInt(n);
+        for (int i = from; i < to; i++) buf.putInt(toE7(data.lat[i])).putInt(toE7(data.lon[i]));
+    }
+
+    // buf enthält Platzhalter für Länge/CRC und die Nutzdaten; schreibt ab pos, liefert das neue Ende
+    private long writeRecord(FileChannel target, long pos) throws IOException {
+        int len = buf.position() - 8;
+        buf.putInt(0, len);
+        crc.reset();
+        crc.update(buf.array(), 8, len);
+        buf.putInt(4, (int) crc.getValue());
+        buf.flip();
+        while (buf.hasRemaining()) pos += target.write(buf, pos);
+        return pos;
+    }
+
+    private void load() throws IOException {
+        long size = ch.size();
+        ByteBuffer b = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining() && ch.read(b, b.position()) > 0) {
+            // weiterlesen
+        }
+        b.flip();
+        if (b.limit() < HEADER_SIZE || b.getInt(0) != MAGIC || b.getInt(4) != VERSION || b.getInt(8) != CELL_E7) {
+            end = writeHeader(ch);
+            return;
+        }
+        byte[] array = b.array();
+        CRC32 check = new CRC32();
+        TrackData points = new TrackData();
+        int p = HEADER_SIZE;
+        while (p + 8 <= b.limit()) {
+            int len = b.getInt(p);
+            if (len < 4 || p + 8 + len > b.limit()) break;
+            check.reset();
+            check.update(array, p + 8, len);
+            if ((int) check.getValue() != b.getInt(p + 4)) break;
+            int q = p + 8;
+            int op = b.getInt(q);
+            if (op == OP_ADD && len >= ADD_HEADER) {
+                long trackId = b.getLong(q + 4);
+                int first = b.getInt(q + 12);
+                int n = b.getInt(q + 16);
+                if (n < 0 || ADD_HEADER + 8L * n != len || first != pointCount(trackId)) break;
+                points.clear();
+                points.ensureCapacity(n);
+                for (int i = 0, o = q + ADD_HEADER; i < n; i++, o += 8) {
+                    points.add(0, b.getInt(o) / SCALE, b.getInt(o + 4) / SCALE);
+                }
+                apply(trackId, first, points, 0, n);
+            } else if (op == OP_REMOVE && len >= 12) {
+                applyRemove(b.getLong(q + 4));
+            } else {
+                break;
+            }
+            p += 8 + len;
+        }
+        // abgerissenen Rest abschneiden, neue Datensätze folgen direkt
+        if (p < size) ch.truncate(p);
+        end = p;
+        compactIfWasteful();
+    }
+
+    // leert target und schreibt den Header; liefert das Ende
+    private static long writeHeader(FileChannel target) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).putInt(VERSION).putInt(CELL_E7).putInt(0);
+        h.flip();
+        target.truncate(0);
+        long pos = 0;
+        while (h.hasRemaining()) pos += target.write(h, pos);
+        return pos;
+    }
+
+    private void compactIfWasteful() throws IOException {
+        if (deadPoints > 1024 && deadPoints > livePoints) compact();
+    }
+
+    /**
+     * Schreibt das Log neu (ein ADD je Track) und baut die Zellen ohne gelöschte
+     * Tracks auf. Erst in eine .tmp-Datei, dann per Umbenennen ersetzt; bis dahin
+     * bleibt das alte Log gültig.
+     */
+    private void compact() throws IOException {
+        // Punkte der lebenden Tracks aus den Zellen zurückgewinnen
+        TrackData[] data = new TrackData[slots.size()];
+        for (TrackEntry t : tracks.values()) {
+            data[t.slot] = new TrackData(t.points);
+            data[t.slot].size = t.points;
+        }
+        for (Cell cell : cells.values()) {
+            int[] p = cell.postings;
+            for (int o = 0; o < 4 * cell.size; o += 4) {
+                TrackData d = data[p[o]];
+                if (d == null) continue;
+                d.lat[p[o + 1]] = p[o + 2] / SCALE;
+                d.lon[p[o + 1]] = p[o + 3] / SCALE;
+            }
+        }
+        List<TrackEntry> live = new ArrayList<>(tracks.values());
+        live.sort((a, b) -> Integer.compare(a.slot, b.slot));
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        long pos;
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+             FileChannel outCh = out.getChannel()) {
+            pos = writeHeader(outCh);
+            for (TrackEntry t : live) {
+                putAdd(t.id, 0, data[t.slot], 0, t.points);
+                pos = writeRecord(outCh, pos);
+            }
+            outCh.force(true);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Index nicht ersetzbar: " + file.getName());
+        }
+        // der alte Kanal zeigt noch auf die ersetzte Datei
+        raf.close();
+        raf = new RandomAccessFile(file, "rw");
+        ch = raf.getChannel();
+        end = pos;
+
+        cells.clear();
+        tracks.clear();
+        slots.clear();
+        livePoints = 0;
+        deadPoints = 0;
+        for (TrackEntry t : live) apply(t.id, 0, data[t.slot], 0, t.points);
+    }
+}
@@ -0,0 +1,488 @@
+package com.example.geotracker;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+
+import androidx.core.app.NotificationCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Standort und Routenaufzeichnung, unabhängig von der Activity.
+ *
+ * Fixes kommen auf einem eigenen HandlerThread an, werden dort gefiltert und
+ * gesampelt und über einen FixRingBuffer (ohne Sperren) an den I/O-Thread
+ * übergeben, der sie in den TrackWriter schreibt. Die Activity bindet sich nur,
+ * solange sie sichtbar ist, und bekommt Positionen gedrosselt (UI_UPDATE_MS)
+ * auf dem UI-Thread. Während einer Aufzeichnung läuft der Dienst im Vordergrund
+ * weiter; ohne sichtbare Activity werden Fixes gebündelt zugestellt (Akku).
+ */
+public class RecordingService extends Service {
+
+    static final String ACTION_START = "com.example.geotracker.action.START_RECORDING";
+    static final String ACTION_STOP = "com.example.geotracker.action.STOP_RECORDING";
+    static final String ACTION_DELETE = "com.example.geotracker.action.DELETE_TRACK";
+    static final String EXTRA_FILENAME = "filename";
+    static final String EXTRA_NAME = "name";
+
+    // Positionen an die UI höchstens so oft
+    static final long UI_UPDATE_MS = 500;
+    // ohne sichtbare Activity sammelt der Standortdienst Fixes und liefert sie gebündelt
+    static final long BACKGROUND_BATCH_MS = 60_000;
+    static final int BUFFER_FIXES = 1024;
+
+    private static final String CHANNEL_ID = "recording";
+    private static final int NOTIFICATION_ID = 1;
+
+    // Datei der laufenden Aufzeichnung im Prozess, null = keine (z.B. für die Wiederherstellung)
+    private static volatile String recordingFilename;
+
+    // Rückmeldungen an die sichtbare Activity, alle auf dem UI-Thread
+    public interface Listener {
+        void onLocation(Location location);
+
+        void onTrackFlushed(String filename, TrackSummary summary);
+
+        // filename null = Aufzeichnung beendet
+        void onRecordingChanged(String filename);
+
+        void onRecordingError(String message);
+    }
+
+    public class LocalBinder extends Binder {
+        RecordingService service() {
+            return RecordingService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Listener listener;
+    private volatile boolean uiVisible;
+
+    // ---------- nur auf dem Location-Thread ----------
+    private HandlerThread locationThread;
+    private Handler locationHandler;
+    private FusedLocationProviderClient fusedLocationClient;
+    private LocationCallback locationCallback;
+    // Intervall und Mindestabstand je nach Bewegung
+    private final AdaptiveSampler sampler = new AdaptiveSampler();
+    // Ausreißer und Rauschen vor dem Sampler entfernen
+    private final LocationFilter locationFilter = new LocationFilter();
+    private boolean trackingEnabled = true;
+    private boolean recording;
+    // ohne gebundene Activity (auch nach einem Neustart durch das System)
+    private boolean background = true;
+
+    // ---------- Übergabe an den I/O-Thread ----------
+    private final FixRingBuffer buffer = new FixRingBuffer(BUFFER_FIXES);
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private final Runnable drainTask = this::drain;
+    // Schreibzugriffe auf die Track-Datei der Aufzeichnung
+    private final ScheduledExecutorService ioExecutor = Executors.newSingleThreadScheduledExecutor();
+    // nur auf dem I/O-Thread
+    private TrackWriter writer;
+    private TrackStorage storage;
+    private TrackCatalog catalog;
+
+    // ---------- gedrosselte Positionen für die UI ----------
+    private volatile Location latestLocation;
+    private final AtomicBoolean uiUpdateQueued = new AtomicBoolean();
+    private long lastUiUpdate;
+    private final Runnable uiUpdate = new Runnable() {
+        @Override
+        public void run() {
+            uiUpdateQueued.set(false);
+            lastUiUpdate = SystemClock.elapsedRealtime();
+            Location l = latestLocation;
+            if (listener != null && l != null) listener.onLocation(l);
+        }
+    };
+
+    public static Intent startIntent(Context context, String filename, String name) {
+        return new Intent(context, RecordingService.class)
+                .setAction(ACTION_START)
+                .putExtra(EXTRA_FILENAME, filename)
+                .putExtra(EXTRA_NAME, name);
+    }
+
+    public static Intent stopIntent(Context context) {
+        return new Intent(context, RecordingService.class).setAction(ACTION_STOP);
+    }
+
+    // Dateien eines Tracks löschen; wird er gerade aufgezeichnet, vorher die Aufzeichnung beenden
+    public static Intent deleteIntent(Context context, String filename) {
+        return new Intent(context, RecordingService.class)
+                .setAction(ACTION_DELETE)
+                .putExtra(EXTRA_FILENAME, filename);
+    }
+
+    public static String recordingFilename() {
+        return recordingFilename;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        storage = new TrackStorage(getFilesDir());
+        catalog = TrackCatalog.get(this);
+        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+        locationThread = new HandlerThread("location", Process.THREAD_PRIORITY_BACKGROUND);
+        locationThread.start();
+        locationHandler = new Handler(locationThread.getLooper());
+        locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(LocationResult locationResult) {
+                onLocations(locationResult);
+            }
+        };
+        applyPrefs();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        setUiVisible(true);
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        setUiVisible(true);
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        listener = null;
+        setUiVisible(false);
+        return true;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : null;
+        if (ACTION_START.equals(action)) {
+            String filename = intent.getStringExtra(EXTRA_FILENAME);
+            String name = intent.getStringExtra(EXTRA_NAME);
+            startForegroundNotification(name != null ? name : filename);
+            startRecording(filename);
+            // nach einem Neustart durch das System mit derselben Datei weitermachen
+            return START_REDELIVER_INTENT;
+        }
+        if (ACTION_STOP.equals(action)) {
+            stopRecording();
+            stopForeground(true);
+            stopSelf(startId);
+        }
+        if (ACTION_DELETE.equals(action)) {
+            String filename = intent.getStringExtra(EXTRA_FILENAME);
+            if (filename.equals(recordingFilename)) stopRecording();
+            // über den Standort-Thread hinter closeNow() einer eben beendeten Aufzeichnung,
+            // sonst legen deren letzter Block oder Checkpoint die Dateien wieder an
+            locationHandler.post(() -> ioExecutor.execute(() -> storage.delete(filename)));
+            if (recordingFilename == null) {
+                stopForeground(true);
+                stopSelf(startId);
+            }
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        stopRecording();
+        // hinter dem Beenden der Aufzeichnung: erst deren Schreibaufträge, dann beenden.
+        // shutdown() am Ende der I/O-Kette, sonst könnte eine noch laufende Aufgabe
+        // danach nichts mehr einreihen (RejectedExecutionException auf dem I/O-Thread).
+        // Den Katalog teilt sich der Dienst mit der Activity, er bleibt offen
+        locationHandler.post(() -> {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+            ioExecutor.execute(ioExecutor::shutdown);
+        });
+        locationThread.quitSafely();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        Location l = latestLocation;
+        if (listener != null && l != null) listener.onLocation(l);
+    }
+
+    // ---------- Aufzeichnung ----------
+
+    /**
+     * Beginnt die Aufzeichnung in filename (eine laufende in eine andere Datei wird
+     * beendet). Der Writer wird auf dem I/O-Thread gesetzt, bevor der Location-Thread
+     * Fixes in den Puffer legt; beim Beenden leert der I/O-Thread den Puffer in den
+     * alten Writer, bevor der nächste gesetzt wird.
+     */
+    private void startRecording(String filename) {
+        if (filename == null || filename.equals(recordingFilename)) return;
+        stopRecording();
+        recordingFilename = filename;
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        int maxBatch = Integer.parseInt(prefs.getString("pref_flush_points", "30"));
+        long maxDelayMs = Long.parseLong(prefs.getString("pref_flush_seconds", "10")) * 1000L;
+        TrackWriter.Durability durability = prefs.getBoolean("pref_flush_sync", false)
+                ? TrackWriter.Durability.SYNC_JOURNAL
+                : TrackWriter.Durability.BUFFERED;
+        TrackWriter w = new TrackWriter(storage, filename, maxBatch, maxDelayMs, durability, ioExecutor,
+                new TrackWriter.FlushListener() {
+            @Override
+            public void onFlushed(String filename, TrackData batch, double[] altitudes) {
+                TrackSummary s;
+                try {
+                    s = catalog.appendToSummary(storage, filename, batch, 0, batch.size(), altitudes);
+                } catch (IOException e) {
+                    // der Block steht in der Datei, nur die Statistik bleibt zurück
+                    e.printStackTrace();
+                    s = null;
+                }
+                TrackSummary summary = s;
+                mainHandler.post(() -> {
+                    if (listener != null) listener.onTrackFlushed(filename, summary);
+                });
+            }
+
+            @Override
+            public void onFlushFailed(String filename, IOException e) {
+                e.printStackTrace();
+                notifyError("Fehler beim Speichern der Route");
+            }
+        });
+        locationHandler.post(() -> {
+            ioExecutor.execute(() -> {
+                recoverBeforeRecording(filename);
+                writer = w;
+            });
+            recording = true;
+            updateLocationRequest();
+        });
+        if (listener != null) listener.onRecordingChanged(filename);
+    }
+
+    private void stopRecording() {
+        if (recordingFilename == null) return;
+        recordingFilename = null;
+        locationHandler.post(() -> {
+            recording = false;
+            // Rest aus dem Puffer noch in diesen Writer, danach hier auf dem I/O-Thread
+            // schließen: letzter Block und Checkpoint sind fertig, bevor es weitergeht
+            ioExecutor.execute(() -> {
+                drain();
+                if (writer != null) writer.closeNow();
+                writer = null;
+            });
+            updateLocationRequest();
+        });
+        if (listener != null) listener.onRecordingChanged(null);
+    }
+
+    /**
+     * Ein abgebrochener Lauf (Prozess beendet, Dienst neu gestartet) hinterlässt
+     * ein Journal; vor dem neuen Writer nachtragen, sonst ersetzt dieser es.
+     */
+    private void recoverBeforeRecording(String filename) {
+        try {
+            if (storage.recover(filename) < 0) return;
+            TrackInfo t = catalog.findByFilename(filename);
+            if (t != null) catalog.setSummary(t.id, TrackSummary.of(storage.load(filename)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Einzelner Punkt (Punktmodus) in die laufende Aufzeichnung, in Reihenfolge mit den Fixes
+    public void addPoint(long time, double lat, double lon, double altitude) {
+        locationHandler.post(() -> {
+            if (!recording) return;
+            offer(time, lat, lon, altitude);
+            ioExecutor.execute(() -> {
+                drain();
+                if (writer != null) writer.flushAsync();
+            });
+        });
+    }
+
+    // Location-Thread: in den Puffer, den I/O-Thread höchstens einmal wecken
+    private void offer(long time, double lat, double lon, double altitude) {
+        if (!buffer.offer(time, lat, lon, altitude)) {
+            PerfStats.global().add(PerfStats.Counter.FIXES_DROPPED, 1);
+        }
+        if (drainQueued.compareAndSet(false, true)) ioExecutor.execute(drainTask);
+    }
+
+    // I/O-Thread: alles aus dem Puffer in den Writer
+    private void drain() {
+        // vor dem Leeren zurücksetzen, sonst ginge ein gleichzeitiges Wecken verloren
+        drainQueued.set(false);
+        TrackWriter w = writer;
+        if (w == null) {
+            buffer.drain((time, lat, lon, alt) -> { });
+            return;
+        }
+        buffer.drain(w::add);
+    }
+
+    // ---------- Standort ----------
+
+    // Einstellungen neu lesen (Start, nach den Einstellungen) und die Anfrage anpassen
+    public void applyPrefs() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        boolean enabled = prefs.getBoolean("pref_tracking_enabled", true);
+        long minInterval = Long.parseLong(prefs.getString("pref_update_interval", "1000"));
+        long maxInterval = Long.parseLong(prefs.getString("pref_max_interval", "30")) * 1000L;
+        double minDistance = Double.parseDouble(prefs.getString("pref_min_distance", "5"));
+        LocationFilter.Strictness strictness =
+                LocationFilter.Strictness.fromPref(prefs.getString("pref_gps_filter", "normal"));
+        locationHandler.post(() -> {
+            trackingEnabled = enabled;
+            sampler.configure(minInterval, maxInterval, minDistance);
+            locationFilter.setStrictness(strictness);
+            sampler.consumeIntervalChange();
+            updateLocationRequest();
+        });
+    }
+
+    private void setUiVisible(boolean visible) {
+        uiVisible = visible;
+        locationHandler.post(() -> {
+            background = !visible;
+            updateLocationRequest();
+        });
+        // beim Verlassen der Activity das Gepufferte schreiben, damit die Karte beim Zurückkehren aktuell ist
+        if (!visible) {
+            ioExecutor.execute(() -> {
+                drain();
+                if (writer != null) writer.flushAsync();
+            });
+        }
+    }
+
+    // Location-Thread: Updates nur, wenn jemand sie braucht (sichtbare UI oder Aufzeichnung)
+    private void updateLocationRequest() {
+        if (!trackingEnabled || (background && !recording)) {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+            return;
+        }
+        long interval = sampler.intervalMs();
+        LocationRequest locationRequest = LocationRequest.create();
+        locationRequest.setInterval(interval);
+        locationRequest.setFastestInterval(Math.min(interval, sampler.minIntervalMs()));
+        // kein setSmallestDisplacement: der Sampler braucht auch im Stillstand Fixes,
+        // um das Intervall zu verlängern und auf balanced power zu wechseln
+        locationRequest.setPriority(sampler.highAccuracy()
+                ? LocationRequest.PRIORITY_HIGH_ACCURACY
+                : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+        // im Hintergrund darf der Standortdienst sammeln, das Gerät wacht seltener auf
+        if (background) locationRequest.setMaxWaitTime(Math.max(interval, BACKGROUND_BATCH_MS));
+        try {
+            // ersetzt eine bestehende Anfrage mit demselben Callback
+            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback,
+                    locationThread.getLooper());
+        } catch (SecurityException e) {
+            e.printStackTrace();
+            notifyError("Keine Berechtigung für den Standort");
+        }
+    }
+
+    // Location-Thread
+    private void onLocations(LocationResult locationResult) {
+        if (locationResult == null) return;
+        PerfStats stats = PerfStats.global();
+        long callbackStart = System.nanoTime();
+        for (Location location : locationResult.getLocations()) {
+            if (location == null) continue;
+            stats.add(PerfStats.Counter.FIXES_RECEIVED, 1);
+            stats.record(PerfStats.Timer.FIX_AGE,
+                    SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos());
+            latestLocation = location;
+            // Ausreißer verwerfen, danach mit der geglätteten Position weiter
+            if (!locationFilter.onFix(location.getTime(), location.getLatitude(),
+                    location.getLongitude(), location.hasAccuracy() ? location.getAccuracy() : Double.NaN)) {
+                continue;
+            }
+            double lat = locationFilter.lat();
+            double lon = locationFilter.lon();
+            boolean keep = sampler.onFix(location.getTime(), lat, lon,
+                    location.hasSpeed() ? location.getSpeed() : Double.NaN,
+                    location.hasBearing() ? location.getBearing() : Double.NaN);
+            if (keep && recording) {
+                offer(location.getTime(), lat, lon, location.hasAltitude() ? location.getAltitude() : Double.NaN);
+            }
+        }
+        // neues Intervall/Genauigkeit anfordern
+        if (sampler.consumeIntervalChange()) updateLocationRequest();
+        queueUiUpdate();
+        stats.recordSince(PerfStats.Timer.LOCATION_CALLBACK, callbackStart);
+    }
+
+    // höchstens alle UI_UPDATE_MS eine Position an die UI, immer die neueste
+    private void queueUiUpdate() {
+        if (!uiVisible || !uiUpdateQueued.compareAndSet(false, true)) return;
+        long wait = UI_UPDATE_MS - (SystemClock.elapsedRealtime() - lastUiUpdate);
+        mainHandler.postDelayed(uiUpdate, Math.max(0, wait));
+    }
+
+    private void notifyError(String message) {
+        mainHandler.post(() -> {
+            if (listener != null) listener.onRecordingError(message);
+        });
+    }
+
+    // ---------- Benachrichtigung ----------
+
+    private void startForegroundNotification(String trackName) {
+        NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            nm.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Routenaufzeichnung",
+                    NotificationManager.IMPORTANCE_LOW));
+        }
+        PendingIntent open = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 1, stopIntent(this),
+                PendingIntent.FLAG_IMMUTABLE);
+        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_menu_mylocation)
+                .setContentTitle("Route wird aufgezeichnet")
+                .setContentText(trackName)
+                .setContentIntent(open)
+                .addAction(0, "Stoppen", stop)
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Messpunkte eines Kaltstarts, gemessen ab Prozessstart: erstes Bild, aktueller
+ * Track auf der Karte, alle sichtbaren Tracks geladen. Jeder Punkt zählt nur beim
+ * ersten Erreichen. Die Zeilen in startup.csv machen mehrere Starts vergleichbar.
+ * Nur auf dem UI-Thread benutzen.
+ */
+public class StartupTimes {
+
+    public enum Phase {
+        FIRST_FRAME(PerfStats.Timer.STARTUP_FIRST_FRAME),
+        CURRENT_TRACK(PerfStats.Timer.STARTUP_CURRENT_TRACK),
+        ALL_TRACKS(PerfStats.Timer.STARTUP_ALL_TRACKS);
+
+        final PerfStats.Timer timer;
+
+        Phase(PerfStats.Timer timer) {
+            this.timer = timer;
+        }
+    }
+
+    static final String CSV_HEADER = "zeit;erstes_bild_ms;aktueller_track_ms;alle_tracks_ms;geladen;tracks";
+
+    private final long startMs;
+    private final long[] reached = new long[Phase.values().length];
+    private int loadedTracks;
+    private int totalTracks;
+
+    // startMs und alle späteren Zeitpunkte aus derselben Uhr (SystemClock.uptimeMillis)
+    public StartupTimes(long startMs) {
+        this.startMs = startMs;
+        Arrays.fill(reached, -1);
+    }
+
+    /** Merkt den Messpunkt; false, wenn er schon erreicht war. */
+    public boolean mark(Phase phase, long nowMs) {
+        if (reached[phase.ordinal()] >= 0) return false;
+        long ms = Math.max(0, nowMs - startMs);
+        reached[phase.ordinal()] = ms;
+        PerfStats.global().record(phase.timer, ms * 1_000_000);
+        return true;
+    }
+
+    // Millisekunden bis zum Messpunkt, -1 = noch nicht erreicht
+    public long millis(Phase phase) {
+        return reached[phase.ordinal()];
+    }
+
+    public boolean isComplete() {
+        for (long ms : reached) if (ms < 0) return false;
+        return true;
+    }
+
+    public void setTracks(int loaded, int total) {
+        loadedTracks = loaded;
+        totalTracks = total;
+    }
+
+    public String csvLine(long wallTime) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT).format(new Date(wallTime))
+                + ";" + millis(Phase.FIRST_FRAME)
+                + ";" + millis(Phase.CURRENT_TRACK)
+                + ";" + millis(Phase.ALL_TRACKS)
+                + ";" + loadedTracks
+                + ";" + totalTracks;
+    }
+
+    // Zeile anhängen, bei neuer Datei mit Kopfzeile
+    public static void append(File file, String line) throws IOException {
+        boolean fresh = !file.exists() || file.length() == 0;
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            if (fresh) w.write(CSV_HEADER + "\n");
+            w.write(line + "\n");
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.geotracker;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verkleinerte Bilder der Marker-Fotos in zwei Stufen: LruCache im Speicher
+ * und JPEG-Dateien im Cache-Ordner, beide mit Grenze in Bytes und
+ * LRU-Verdrängung; die Reihenfolge der Dateien überlebt einen Neustart über
+ * das Änderungsdatum. Dekodiert wird nur im Hintergrund und gleich verkleinert
+ * (inSampleSize), nie das Foto in voller Größe. Die jüngste Anfrage wird
+ * zuerst bearbeitet, damit beim Verschieben der Karte der aktuelle Ausschnitt
+ * vorgeht. Fertige Bilder meldet der Listener auf dem UI-Thread.
+ */
+public class ThumbnailCache {
+
+    public interface Listener {
+        void onThumbnailReady(String photo, int sizePx);
+    }
+
+    private static final int DECODER_THREADS = 2;
+    private static final int DISK_QUALITY = 85;
+
+    private final File photoDir;
+    private final File diskDir;
+    private final LruCache<String, Bitmap> memory;
+    // Datei-Stufe: Name -> Bytes in Zugriffsreihenfolge, beim ersten Zugriff aus dem Ordner gelesen
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxDiskBytes;
+    private long diskBytes;
+    private boolean diskLoaded;
+    private final ExecutorService decoder;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    // nur auf dem UI-Thread
+    private final Set<String> inFlight = new HashSet<>();
+    private final Set<String> failed = new HashSet<>();
+    private Listener listener;
+
+    public ThumbnailCache(File photoDir, File diskDir, int maxBytes, long maxDiskBytes) {
+        this.photoDir = photoDir;
+        this.diskDir = diskDir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+        // LIFO: neue Anfragen vorne einreihen
+        this.decoder = new ThreadPoolExecutor(DECODER_THREADS, DECODER_THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingDeque<Runnable>() {
+                    @Override
+                    public boolean offer(Runnable r) {
+                        return offerFirst(r);
+                    }
+                }, r -> {
+                    Thread t = new Thread(r, "thumbnails");
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Nur UI-Thread: Bild mit der längeren Seite sizePx aus dem Speicher oder null.
+     * Fehlt es, wird es im Hintergrund geladen und danach der Listener gerufen.
+     */
+    public Bitmap get(String photo, int sizePx) {
+        String key = key(photo, sizePx);
+        Bitmap b = memory.get(key);
+        if (b != null || failed.contains(key) || !inFlight.add(key)) return b;
+        decoder.execute(() -> {
+            Bitmap loaded = load(photo, sizePx);
+            main.post(() -> {
+                inFlight.remove(key);
+                if (loaded == null) {
+                    failed.add(key);
+                    return;
+                }
+                memory.put(key, loaded);
+                if (listener != null) listener.onThumbnailReady(photo, sizePx);
+            });
+        });
+        return null;
+    }
+
+    // Vorschaubilder eines gelöschten Fotos entfernen (UI-Thread)
+    public void remove(String photo) {
+        String prefix = photo + "@";
+        for (Map.Entry<String, Bitmap> e : memory.snapshot().entrySet()) {
+            if (e.getKey().startsWith(prefix)) memory.remove(e.getKey());
+        }
+        String diskPrefix = photo + "_";
+        decoder.execute(() -> {
+            synchronized (disk) {
+                loadDisk();
+                for (Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<String, Long> e = it.next();
+                    if (!e.getKey().startsWith(diskPrefix)) continue;
+                    new File(diskDir, e.getKey()).delete();
+                    diskBytes -= e.getValue();
+                    it.remove();
+                }
+            }
+        });
+    }
+
+    // Speicher freigeben (onTrimMemory); die Dateien bleiben
+    public void trimMemory() {
+        memory.evictAll();
+    }
+
+    public void shutdown() {
+        decoder.shutdownNow();
+    }
+
+    private static String key(String photo, int sizePx) {
+        return photo + "@" + sizePx;
+    }
+
+    // Läuft im Hintergrund: erst Datei-Cache, sonst Foto verkleinert dekodieren
+    private Bitmap load(String photo, int sizePx) {
+        File cached = new File(diskDir, photo + "_" + sizePx + ".jpg");
+        if (diskHit(cached)) {
+            Bitmap b = BitmapFactory.decodeFile(cached.getPath());
+            if (b != null) return b;
+        }
+
+        File src = new File(photoDir, photo);
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(src.getPath(), opts);
+        if (opts.outWidth <= 0 || opts.outHeight <= 0) return null;
+
+        opts.inJustDecodeBounds = false;
+        opts.inSampleSize = sampleSizeFor(opts.outWidth, opts.outHeight, sizePx);
+        Bitmap decoded = BitmapFactory.decodeFile(src.getPath(), opts);
+        if (decoded == null) return null;
+
+        // auf die Zielgröße bringen und nach EXIF drehen
+        float scale = Math.min(1f, (float) sizePx / Math.max(decoded.getWidth(), decoded.getHeight()));
+        Matrix m = new Matrix();
+        m.postScale(scale, scale);
+        m.postRotate(rotationOf(src));
+        Bitmap result = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), m, true);
+        if (result != decoded) decoded.recycle();
+
+        diskDir.mkdirs();
+        File tmp = new File(diskDir, cached.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            result.compress(Bitmap.CompressFormat.JPEG, DISK_QUALITY, out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (tmp.renameTo(cached)) diskPut(cached);
+        else tmp.delete();
+        return result;
+    }
+
+    // Decoder-Thread: liegt die Datei im Cache, wird sie als zuletzt benutzt markiert
+    private boolean diskHit(File file) {
+        synchronized (disk) {
+            loadDisk();
+            if (disk.get(file.getName()) == null) return false;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    // Decoder-Thread: neue Datei aufnehmen und älteste löschen, bis die Grenze passt
+    private void diskPut(File file) {
+        synchronized (disk) {
+            loadDisk();
+            Long old = disk.put(file.getName(), file.length());
+            diskBytes += file.length() - (old != null ? old : 0);
+            for (Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+                 diskBytes > maxDiskBytes && it.hasNext(); ) {
+                Map.Entry<String, Long> e = it.next();
+                if (e.getKey().equals(file.getName())) continue;
+                new File(diskDir, e.getKey()).delete();
+                diskBytes -= e.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    // Index der Datei-Stufe aus dem Ordner, älteste zuerst
+    private void loadDisk() {
+        if (diskLoaded) return;
+        diskLoaded = true;
+        File[] files = diskDir.listFiles();
+        if (files == null) return;
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> modified[i]));
+        for (int i : order) {
+            File f = files[i];
+            // .tmp gehört evtl. gerade dem anderen Decoder-Thread
+            if (!f.getName().endsWith(".jpg")) continue;
+            disk.put(f.getName(), f.length());
+            diskBytes += f.length();
+        }
+    }
+
+    // größte Zweierpotenz, bei der die längere Seite noch mindestens sizePx bleibt
+    static int sampleSizeFor(int width, int height, int sizePx) {
+        int longer = Math.max(width, height);
+        int sample = 1;
+        while (longer / (sample * 2) >= sizePx) sample *= 2;
+        return sample;
+    }
+
+    private static float rotationOf(File photo) {
+        try {
+            int o = new ExifInterface(photo.getPath())
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (o) {
+                case ExifInterface.ORIENTATION_ROTATE_90: return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180: return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270: return 270;
+                default: return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
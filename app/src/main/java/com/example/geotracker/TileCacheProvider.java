@@ -0,0 +1,124 @@
+package com.example.geotracker;
+
+import android.graphics.drawable.Drawable;
+
+import org.osmdroid.config.Configuration;
+import org.osmdroid.tileprovider.modules.IFilesystemCache;
+import org.osmdroid.tileprovider.modules.MapTileModuleProviderBase;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+/**
+ * Bindet den TileDiskCache an osmdroid: als Kachelquelle vor dem Downloader
+ * (liest aus dem Cache) und als dessen Schreibziel (IFilesystemCache). Damit
+ * teilen sich angesehene und vorab geladene Kacheln dieselbe Größengrenze.
+ */
+public class TileCacheProvider extends MapTileModuleProviderBase implements IFilesystemCache {
+
+    private final TileDiskCache cache;
+    private volatile ITileSource tileSource;
+
+    public TileCacheProvider(TileDiskCache cache, ITileSource tileSource) {
+        super(Configuration.getInstance().getTileFileSystemThreads(),
+                Configuration.getInstance().getTileFileSystemMaxQueueSize());
+        this.cache = cache;
+        this.tileSource = tileSource;
+    }
+
+    // ---------- Kachelquelle ----------
+
+    @Override
+    protected String getName() {
+        return "Geotracker-Kachelcache";
+    }
+
+    @Override
+    protected String getThreadGroupName() {
+        return "tilecache";
+    }
+
+    @Override
+    public TileLoader getTileLoader() {
+        return new TileLoader() {
+            @Override
+            public Drawable loadTile(long index) {
+                ITileSource source = tileSource;
+                return source == null ? null : TileCacheProvider.this.loadTile(source, index);
+            }
+        };
+    }
+
+    @Override
+    public boolean getUsesDataConnection() {
+        return false;
+    }
+
+    @Override
+    public int getMinimumZoomLevel() {
+        ITileSource source = tileSource;
+        return source == null ? 0 : source.getMinimumZoomLevel();
+    }
+
+    @Override
+    public int getMaximumZoomLevel() {
+        ITileSource source = tileSource;
+        return source == null ? 0 : source.getMaximumZoomLevel();
+    }
+
+    @Override
+    public void setTileSource(ITileSource tileSource) {
+        this.tileSource = tileSource;
+    }
+
+    // ---------- IFilesystemCache (Schreibziel des Downloaders) ----------
+
+    @Override
+    public boolean saveFile(ITileSource source, long index, InputStream in, Long expirationTime) {
+        try {
+            cache.put(source.name(), index, in);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean exists(ITileSource source, long index) {
+        return cache.contains(source.name(), index);
+    }
+
+    @Override
+    public void onDetach() {
+        // nichts offen
+    }
+
+    @Override
+    public boolean remove(ITileSource source, long index) {
+        return cache.remove(source.name(), index);
+    }
+
+    @Override
+    public Long getExpirationTimestamp(ITileSource source, long index) {
+        return null;
+    }
+
+    @Override
+    public Drawable loadTile(ITileSource source, long index) {
+        File file = cache.get(source.name(), index);
+        if (file == null) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            return source.getDrawable(in);
+        } catch (FileNotFoundException e) {
+            // inzwischen verdrängt
+            return null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.geotracker;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Kacheln entlang eines Tracks: alle Kacheln, die ein Band von bufferM Metern
+ * um die Strecke berühren, je Zoomstufe von minZoom bis maxZoom. Die Liste ist
+ * nach Zoom und dann entlang der Strecke sortiert, damit ein abgebrochener
+ * Download zuerst die groben Stufen vollständig hat.
+ */
+public final class TileCorridor {
+
+    // Web-Mercator-Grenze (osmdroid/OSM)
+    static final double MAX_LAT = 85.05112878;
+
+    private TileCorridor() {
+    }
+
+    /**
+     * Kachelindizes (TileDiskCache.tileIndex) oder null, wenn mehr als maxTiles
+     * nötig wären; so kann die Oberfläche vor sehr großen Downloads warnen.
+     */
+    public static long[] tiles(TrackData track, int minZoom, int maxZoom, double bufferM, int maxTiles) {
+        LinkedHashSet<Long> out = new LinkedHashSet<>();
+        for (int z = minZoom; z <= maxZoom; z++) {
+            addZoom(track, z, bufferM, out, maxTiles);
+            if (out.size() > maxTiles) return null;
+        }
+        long[] result = new long[out.size()];
+        int i = 0;
+        for (Long index : out) result[i++] = index;
+        return result;
+    }
+
+    // Anzahl Kacheln pro Zoomstufe, ohne Obergrenze (für die Vorschau im Dialog)
+    public static int count(TrackData track, int zoom, double bufferM) {
+        LinkedHashSet<Long> out = new LinkedHashSet<>();
+        addZoom(track, zoom, bufferM, out, Integer.MAX_VALUE);
+        return out.size();
+    }
+
+    private static void addZoom(TrackData track, int z, double bufferM, LinkedHashSet<Long> out, int maxTiles) {
+        int n = track.size();
+        if (n == 0) return;
+        int tiles = 1 << z;
+        // Schrittweite: höchstens eine halbe Kachel bzw. der Puffer, damit keine Kachel übersprungen wird
+        double prevLat = track.latAt(0), prevLon = track.lonAt(0);
+        addAround(prevLat, prevLon, z, tiles, bufferM, out);
+        for (int i = 1; i < n && out.size() <= maxTiles; i++) {
+            double lat = track.latAt(i), lon = track.lonAt(i);
+            double d = GeoMath.distanceMeters(prevLat, prevLon, lat, lon);
+            double step = Math.max(1, Math.min(tileSizeM(lat, z) / 2, Math.max(bufferM, 1)));
+            int parts = (int) Math.min(10_000, Math.ceil(d / step));
+            for (int k = 1; k <= parts; k++) {
+                double f = (double) k / parts;
+                addAround(prevLat + (lat - prevLat) * f, prevLon + (lon - prevLon) * f, z, tiles, bufferM, out);
+            }
+            prevLat = lat;
+            prevLon = lon;
+        }
+    }
+
+    // Alle Kacheln im Rechteck lat/lon ± bufferM
+    private static void addAround(double lat, double lon, int z, int tiles, double bufferM, LinkedHashSet<Long> out) {
+        double dLat = Math.toDegrees(bufferM / GeoMath.EARTH_RADIUS_M);
+        double cos = Math.max(0.01, Math.cos(Math.toRadians(lat)));
+        double dLon = Math.min(180, dLat / cos);
+        int x0 = tileX(lon - dLon, tiles), x1 = tileX(lon + dLon, tiles);
+        int y0 = tileY(lat + dLat, tiles), y1 = tileY(lat - dLat, tiles);
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                out.add(TileDiskCache.tileIndex(z, x, y));
+            }
+        }
+    }
+
+    static int tileX(double lon, int tiles) {
+        int x = (int) Math.floor((lon + 180) / 360 * tiles);
+        return Math.max(0, Math.min(tiles - 1, x));
+    }
+
+    static int tileY(double lat, int tiles) {
+        lat = Math.max(-MAX_LAT, Math.min(MAX_LAT, lat));
+        double r = Math.toRadians(lat);
+        int y = (int) Math.floor((1 - Math.log(Math.tan(r) + 1 / Math.cos(r)) / Math.PI) / 2 * tiles);
+        return Math.max(0, Math.min(tiles - 1, y));
+    }
+
+    // Nordwestecke der Kachel x/y (tiles Kacheln je Achse)
+    static double tileLon(int x, int tiles) {
+        return (double) x / tiles * 360 - 180;
+    }
+
+    static double tileLat(int y, int tiles) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * y / tiles))));
+    }
+
+    // Kantenlänge einer Kachel in Metern auf Breite lat
+    static double tileSizeM(double lat, int z) {
+        return 2 * Math.PI * GeoMath.EARTH_RADIUS_M * Math.cos(Math.toRadians(lat)) / (1 << z);
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kachel-Cache auf dem Dateisystem mit Größengrenze und LRU-Verdrängung.
+ * Dateien liegen unter dir/quelle/z/x/y.tile; der Index (Pfad -> Größe, in
+ * Zugriffsreihenfolge) lebt im Speicher und wird beim ersten Zugriff aus den
+ * Dateien aufgebaut. Die Zugriffsreihenfolge überlebt einen Neustart über das
+ * Änderungsdatum, das bei Zugriffen höchstens alle TOUCH_INTERVAL_MS gesetzt wird.
+ *
+ * Schlüssel ist der osmdroid-Kachelindex (zoom << 58 | x << 29 | y).
+ */
+public class TileDiskCache {
+
+    public static final String EXTENSION = ".tile";
+    static final long TOUCH_INTERVAL_MS = 60 * 60_000L;
+
+    private static class Entry {
+        long bytes;
+        long touched;
+
+        Entry(long bytes, long touched) {
+            this.bytes = bytes;
+            this.touched = touched;
+        }
+    }
+
+    private final File dir;
+    private long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private boolean loaded;
+    private long usedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TileDiskCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    public static long tileIndex(int zoom, int x, int y) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    public static int zoom(long index) {
+        return (int) (index >>> 58);
+    }
+
+    public static int x(long index) {
+        return (int) ((index >>> 29) & 0x1FFFFFFF);
+    }
+
+    public static int y(long index) {
+        return (int) (index & 0x1FFFFFFF);
+    }
+
+    // Grenze ändern (Einstellungen); verdrängt sofort, falls nötig
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        ensureLoaded();
+        trimToSize();
+    }
+
+    public synchronized boolean contains(String source, long index) {
+        ensureLoaded();
+        return entries.containsKey(key(source, index));
+    }
+
+    /**
+     * Datei der Kachel oder null; zählt als Zugriff (LRU). Die Datei kann
+     * danach verdrängt werden, Aufrufer müssen mit FileNotFoundException rechnen.
+     */
+    public File get(String source, long index) {
+        String key = key(source, index);
+        boolean touch;
+        synchronized (this) {
+            ensureLoaded();
+            Entry e = entries.get(key);
+            if (e == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            long now = System.currentTimeMillis();
+            touch = now - e.touched > TOUCH_INTERVAL_MS;
+            if (touch) e.touched = now;
+        }
+        File file = new File(dir, key);
+        if (touch) file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    // Speichert die Kachel (über eine .tmp-Datei), verdrängt bei Bedarf ältere; liefert die Größe
+    public long put(String source, long index, InputStream in) throws IOException {
+        // vorher laden: der erste Scan räumt liegengebliebene .tmp-Dateien weg
+        synchronized (this) {
+            ensureLoaded();
+        }
+        String key = key(source, index);
+        File file = new File(dir, key);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Ordner nicht anlegbar: " + parent);
+        }
+        File tmp = new File(parent, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        long bytes = 0;
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            byte[] buf = new byte[8192];
+            for (int n; (n = in.read(buf)) > 0; ) {
+                out.write(buf, 0, n);
+                bytes += n;
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        synchronized (this) {
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Umbenennen fehlgeschlagen: " + file);
+            }
+            Entry old = entries.put(key, new Entry(bytes, System.currentTimeMillis()));
+            if (old != null) usedBytes -= old.bytes;
+            usedBytes += bytes;
+            trimToSize();
+        }
+        return bytes;
+    }
+
+    public synchronized boolean remove(String source, long index) {
+        ensureLoaded();
+        String key = key(source, index);
+        Entry e = entries.remove(key);
+        if (e == null) return false;
+        usedBytes -= e.bytes;
+        return new File(dir, key).delete();
+    }
+
+    public synchronized void clear() {
+        ensureLoaded();
+        for (String key : entries.keySet()) new File(dir, key).delete();
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized long usedBytes() {
+        ensureLoaded();
+        return usedBytes;
+    }
+
+    public synchronized int tileCount() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    private static String key(String source, long index) {
+        return source + '/' + zoom(index) + '/' + x(index) + '/' + y(index) + EXTENSION;
+    }
+
+    // Älteste Kacheln löschen, bis die Grenze wieder eingehalten ist
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            new File(dir, eldest.getKey()).delete();
+            usedBytes -= eldest.getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    // Index einmalig aus den Dateien aufbauen, älteste zuerst
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        List<File> files = new ArrayList<>();
+        collect(dir, files);
+        List<Object[]> found = new ArrayList<>(files.size());
+        for (File f : files) {
+            if (f.getName().endsWith(".tmp")) {
+                f.delete();
+                continue;
+            }
+            found.add(new Object[]{f, f.lastModified()});
+        }
+        found.sort((a, b) -> Long.compare((Long) a[1], (Long) b[1]));
+        String root = dir.getPath() + File.separator;
+        for (Object[] o : found) {
+            File f = (File) o[0];
+            String key = f.getPath().substring(root.length()).replace(File.separatorChar, '/');
+            long bytes = f.length();
+            entries.put(key, new Entry(bytes, (Long) o[1]));
+            usedBytes += bytes;
+        }
+        trimToSize();
+    }
+
+    private static void collect(File d, List<File> out) {
+        File[] children = d.listFiles();
+        if (children == null) return;
+        for (File c : children) {
+            if (c.isDirectory()) collect(c, out);
+            else if (c.getName().endsWith(EXTENSION) || c.getName().endsWith(".tmp")) out.add(c);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TileDiskCache{tiles=" + entries.size() + ", bytes=" + usedBytes + "/" + maxBytes
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+}
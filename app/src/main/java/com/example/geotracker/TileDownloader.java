@@ -0,0 +1,204 @@
+package com.example.geotracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lädt Kacheln vorab in den TileDiskCache: wenige parallele Verbindungen und
+ * ein gemeinsames Ratenlimit (Token-Bucket), damit der Kachelserver nicht
+ * überlastet wird. Bereits vorhandene Kacheln werden übersprungen. Bei 429/503
+ * wird das Limit für die angegebene Retry-After-Zeit pausiert.
+ *
+ * URL wie bei osmdroid: baseUrl + z/x/y + extension, z.B.
+ * "https://tile.openstreetmap.org/" + "12/2176/1420" + ".png".
+ */
+public class TileDownloader {
+
+    public interface Listener {
+        // aus den Download-Threads; done zählt auch übersprungene und fehlgeschlagene
+        void onProgress(int done, int total);
+    }
+
+    public static final class Result {
+        public int downloaded;
+        public int skipped;
+        public int failed;
+        public boolean cancelled;
+        public long bytes;
+    }
+
+    // zurückhaltende Vorgaben, falls der Aufrufer nichts setzt
+    public static final int DEFAULT_THREADS = 2;
+    public static final double DEFAULT_TILES_PER_SECOND = 2;
+    static final int MAX_ATTEMPTS = 3;
+    static final long DEFAULT_RETRY_AFTER_MS = 10_000;
+    static final int TIMEOUT_MS = 15_000;
+
+    private final TileDiskCache cache;
+    private final String source;
+    private final String baseUrl;
+    private final String extension;
+    private final String userAgent;
+    private int threads = DEFAULT_THREADS;
+    private long intervalNanos = (long) (1e9 / DEFAULT_TILES_PER_SECOND);
+
+    private final Object rateLock = new Object();
+    private long nextSlotNanos;
+    // gilt für den ganzen Auftrag; ein Abbruch vor download() geht so nicht verloren
+    private volatile boolean cancelled;
+
+    public TileDownloader(TileDiskCache cache, String source, String baseUrl, String extension, String userAgent) {
+        this.cache = cache;
+        this.source = source;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.extension = extension;
+        this.userAgent = userAgent;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // <= 0 schaltet die Drosselung ab (nur für eigene/lokale Server)
+    public void setTilesPerSecond(double tilesPerSecond) {
+        intervalNanos = tilesPerSecond <= 0 ? 0 : (long) (1e9 / tilesPerSecond);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    String urlFor(long index) {
+        return baseUrl + TileDiskCache.zoom(index) + "/" + TileDiskCache.x(index) + "/"
+                + TileDiskCache.y(index) + extension;
+    }
+
+    /**
+     * Lädt alle fehlenden Kacheln; blockiert bis fertig oder abgebrochen.
+     * Aufruf im Hintergrund (jobExecutor), listener darf null sein.
+     * Ein TileDownloader ist ein Auftrag: nach cancel() lädt er nichts mehr.
+     */
+    public Result download(long[] tiles, Listener listener) {
+        Result result = new Result();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "tile-download");
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < threads; w++) {
+            workers.add(pool.submit(() -> {
+                for (int i; !cancelled && (i = next.getAndIncrement()) < tiles.length; ) {
+                    long index = tiles[i];
+                    long bytes = cache.contains(source, index) ? -1 : fetch(index);
+                    synchronized (result) {
+                        if (bytes == -1) result.skipped++;
+                        else if (bytes < 0) result.failed++;
+                        else {
+                            result.downloaded++;
+                            result.bytes += bytes;
+                        }
+                    }
+                    if (listener != null) listener.onProgress(done.incrementAndGet(), tiles.length);
+                }
+            }));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> f : workers) f.get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            cancelled = true;
+        }
+        try {
+            pool.awaitTermination(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        result.cancelled = cancelled;
+        return result;
+    }
+
+    // Bytes der Kachel oder -2 bei Fehler
+    private long fetch(long index) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !cancelled; attempt++) {
+            if (!acquire()) return -2;
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) new URL(urlFor(index)).openConnection();
+                conn.setConnectTimeout(TIMEOUT_MS);
+                conn.setReadTimeout(TIMEOUT_MS);
+                conn.setRequestProperty("User-Agent", userAgent);
+                int code = conn.getResponseCode();
+                if (code == HttpURLConnection.HTTP_OK) {
+                    try (InputStream in = conn.getInputStream()) {
+                        return cache.put(source, index, in);
+                    }
+                }
+                if (code == 429 || code == HttpURLConnection.HTTP_UNAVAILABLE) {
+                    backOff(conn.getHeaderField("Retry-After"));
+                    continue;
+                }
+                // 404 & Co.: kein erneuter Versuch
+                return -2;
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (conn != null) conn.disconnect();
+            }
+        }
+        return -2;
+    }
+
+    // Wartet auf den nächsten freien Zeitschlitz; false bei Abbruch
+    private boolean acquire() {
+        long wait;
+        synchronized (rateLock) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlotNanos);
+            nextSlotNanos = slot + intervalNanos;
+            wait = slot - now;
+        }
+        while (wait > 0 && !cancelled) {
+            long ms = Math.min(TimeUnit.NANOSECONDS.toMillis(wait) + 1, 200);
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            wait -= TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+        return !cancelled;
+    }
+
+    // Server bittet um Pause: alle Threads warten mit
+    private void backOff(String retryAfter) {
+        long ms = DEFAULT_RETRY_AFTER_MS;
+        if (retryAfter != null) {
+            try {
+                ms = Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException ignored) {
+                // HTTP-Datum: beim Standardwert bleiben
+            }
+        }
+        synchronized (rateLock) {
+            nextSlotNanos = Math.max(nextSlotNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.geotracker;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Katalog aller Tracks in SQLite: stabile IDs, Sichtbarkeit je Track und die
+ * zwischengespeicherte Zusammenfassung (TrackSummary). Änderungen betreffen
+ * immer nur die eine Zeile des Tracks. Dazu die Marker (Waypoint) je Track.
+ */
+public class TrackCatalog extends SQLiteOpenHelper {
+
+    private static final String DB_NAME = "tracks.db";
+    private static final int DB_VERSION = 3;
+    private static final String TABLE = "tracks";
+    private static final String WAYPOINTS = "waypoints";
+    private static final String[] WAYPOINT_COLUMNS = {"id", "track_id", "time", "lat", "lon", "comment", "photo"};
+
+    private static final String[] COLUMNS = {
+            "id", "name", "filename", "color", "visible",
+            "point_count", "min_lat", "max_lat", "min_lon", "max_lon",
+            "first_time", "last_time", "length_m", "last_lat", "last_lon",
+            "moving_ms", "max_speed", "min_alt", "max_alt", "ascent_m", "descent_m", "alt_ref"
+    };
+
+    // Spalten der Statistik, die mit Version 2 dazugekommen sind
+    private static final String STATS_COLUMNS_V2 = "moving_ms INTEGER, max_speed REAL, "
+            + "min_alt REAL, max_alt REAL, ascent_m REAL, descent_m REAL, alt_ref REAL";
+
+    private static TrackCatalog instance;
+
+    private TrackCatalog(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    // Ein Katalog je Prozess für Activity und Dienst; bleibt bis zum Prozessende offen
+    public static synchronized TrackCatalog get(Context context) {
+        if (instance == null) instance = new TrackCatalog(context.getApplicationContext());
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // point_count NULL = Zusammenfassung noch nicht berechnet
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL, "
+                + "filename TEXT NOT NULL UNIQUE, "
+                + "color INTEGER NOT NULL, "
+                + "visible INTEGER NOT NULL DEFAULT 1, "
+                + "point_count INTEGER, "
+                + "min_lat REAL, max_lat REAL, min_lon REAL, max_lon REAL, "
+                + "first_time INTEGER, last_time INTEGER, "
+                + "length_m REAL, "
+                + "last_lat REAL, last_lon REAL, "
+                + STATS_COLUMNS_V2 + ")");
+        createWaypoints(db);
+    }
+
+    // Version 3: Marker mit Kommentar und Foto
+    private static void createWaypoints(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + WAYPOINTS + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "track_id INTEGER NOT NULL, "
+                + "time INTEGER NOT NULL, "
+                + "lat REAL NOT NULL, lon REAL NOT NULL, "
+                + "comment TEXT NOT NULL DEFAULT '', "
+                + "photo TEXT)");
+        db.execSQL("CREATE INDEX waypoints_track ON " + WAYPOINTS + " (track_id)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            for (String column : STATS_COLUMNS_V2.split(", ")) {
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + column);
+            }
+            // alte Zusammenfassungen ohne Bewegungszeit einmalig neu berechnen lassen
+            db.execSQL("UPDATE " + TABLE + " SET point_count = NULL");
+        }
+        if (oldVersion < 3) createWaypoints(db);
+    }
+
+    // Alle Tracks in Anlagereihenfolge
+    public List<TrackInfo> all() {
+        List<TrackInfo> result = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE, COLUMNS, null, null, null, null, "id")) {
+            while (c.moveToNext()) result.add(read(c));
+        }
+        return result;
+    }
+
+    public TrackInfo findByFilename(String filename) {
+        try (Cursor c = getReadableDatabase().query(TABLE, COLUMNS, "filename = ?",
+                new String[]{filename}, null, null, null)) {
+            return c.moveToFirst() ? read(c) : null;
+        }
+    }
+
+    // Legt den Track an und setzt t.id; summary darf null sein
+    public void insert(TrackInfo t) {
+        ContentValues v = new ContentValues();
+        v.put("name", t.name);
+        v.put("filename", t.filename);
+        v.put("color", t.color);
+        v.put("visible", t.visible ? 1 : 0);
+        if (t.summary != null) putSummary(v, t.summary);
+        t.id = getWritableDatabase().insertOrThrow(TABLE, null, v);
+    }
+
+    public void setVisible(long id, boolean visible) {
+        ContentValues v = new ContentValues();
+        v.put("visible", visible ? 1 : 0);
+        update(id, v);
+    }
+
+    public void setFilename(long id, String filename) {
+        ContentValues v = new ContentValues();
+        v.put("filename", filename);
+        update(id, v);
+    }
+
+    public void setSummary(long id, TrackSummary s) {
+        ContentValues v = new ContentValues();
+        putSummary(v, s);
+        update(id, v);
+    }
+
+    /**
+     * Setzt die aus der Datei berechnete Zusammenfassung nur, wenn noch keine da ist;
+     * false, wenn inzwischen appendToSummary eine (neuere) geschrieben hat.
+     */
+    public boolean setSummaryIfMissing(long id, TrackSummary s) {
+        ContentValues v = new ContentValues();
+        putSummary(v, s);
+        return getWritableDatabase().update(TABLE, v, "id = ? AND point_count IS NULL",
+                new String[]{Long.toString(id)}) > 0;
+    }
+
+    /**
+     * Schreibt die Zusammenfassung um die Punkte [from, to) fort und liefert sie;
+     * null, wenn der Track nicht (mehr) im Katalog ist. Die Punkte müssen schon in
+     * der Datei stehen: fehlt die Zusammenfassung noch, wird sie in derselben
+     * Transaktion aus der Datei berechnet, enthält sie die Punkte schon (aus der Datei
+     * berechnet, nachdem sie geschrieben waren), bleibt sie unverändert.
+     * altitudes parallel zu data, darf null sein.
+     */
+    public TrackSummary appendToSummary(TrackStorage storage, String filename, TrackData data,
+                                        int from, int to, double[] altitudes) throws IOException {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            TrackInfo t = findByFilename(filename);
+            if (t == null) return null;
+            if (t.summary == null) {
+                t.summary = TrackSummary.of(storage.load(filename));
+            } else {
+                int filePoints = storage.format().readHeader(storage.fileFor(filename)).pointCount;
+                if (t.summary.pointCount() + (to - from) > filePoints) {
+                    db.setTransactionSuccessful();
+                    return t.summary;
+                }
+                t.summary.addAll(data, from, to, altitudes);
+            }
+            setSummary(t.id, t.summary);
+            db.setTransactionSuccessful();
+            return t.summary;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Löscht den Track samt Markern (die Fotos löscht der Aufrufer)
+    public void delete(long id) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(WAYPOINTS, "track_id = ?", new String[]{Long.toString(id)});
+            db.delete(TABLE, "id = ?", new String[]{Long.toString(id)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // ---------- Marker ----------
+
+    // Alle Marker, zeitlich sortiert
+    public List<Waypoint> allWaypoints() {
+        List<Waypoint> result = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(WAYPOINTS, WAYPOINT_COLUMNS, null, null,
+                null, null, "track_id, time")) {
+            while (c.moveToNext()) {
+                Waypoint w = new Waypoint(c.getLong(1), c.getLong(2), c.getDouble(3), c.getDouble(4),
+                        c.getString(5), c.isNull(6) ? null : c.getString(6));
+                w.id = c.getLong(0);
+                result.add(w);
+            }
+        }
+        return result;
+    }
+
+    // Legt den Marker an und setzt w.id
+    public void insertWaypoint(Waypoint w) {
+        ContentValues v = new ContentValues();
+        v.put("track_id", w.trackId);
+        v.put("time", w.time);
+        v.put("lat", w.lat);
+        v.put("lon", w.lon);
+        v.put("comment", w.comment);
+        if (w.photo != null) v.put("photo", w.photo);
+        w.id = getWritableDatabase().insertOrThrow(WAYPOINTS, null, v);
+    }
+
+    public void deleteWaypoint(long id) {
+        getWritableDatabase().delete(WAYPOINTS, "id = ?", new String[]{Long.toString(id)});
+    }
+
+    private void update(long id, ContentValues v) {
+        getWritableDatabase().update(TABLE, v, "id = ?", new String[]{Long.toString(id)});
+    }
+
+    private static void putSummary(ContentValues v, TrackSummary s) {
+        v.put("point_count", s.pointCount);
+        v.put("min_lat", s.minLat);
+        v.put("max_lat", s.maxLat);
+        v.put("min_lon", s.minLon);
+        v.put("max_lon", s.maxLon);
+        v.put("first_time", s.firstTime);
+        v.put("last_time", s.lastTime);
+        v.put("length_m", s.lengthM);
+        v.put("last_lat", s.lastLat);
+        v.put("last_lon", s.lastLon);
+        v.put("moving_ms", s.movingMs);
+        v.put("max_speed", s.maxSpeedMps);
+        v.put("min_alt", s.minAlt);
+        v.put("max_alt", s.maxAlt);
+        v.put("ascent_m", s.ascentM);
+        v.put("descent_m", s.descentM);
+        v.put("alt_ref", s.altRef);
+    }
+
+    private static TrackInfo read(Cursor c) {
+        TrackInfo t = new TrackInfo(c.getString(1), c.getString(2), c.getInt(3));
+        t.id = c.getLong(0);
+        t.visible = c.getInt(4) != 0;
+        if (!c.isNull(5)) {
+            TrackSummary s = new TrackSummary();
+            s.pointCount = c.getInt(5);
+            // leere Tracks haben NaN-Koordinaten, die SQLite als NULL speichert
+            s.minLat = readDouble(c, 6);
+            s.maxLat = readDouble(c, 7);
+            s.minLon = readDouble(c, 8);
+            s.maxLon = readDouble(c, 9);
+            s.firstTime = c.getLong(10);
+            s.lastTime = c.getLong(11);
+            s.lengthM = c.getDouble(12);
+            s.lastLat = readDouble(c, 13);
+            s.lastLon = readDouble(c, 14);
+            s.movingMs = c.getLong(15);
+            s.maxSpeedMps = c.getDouble(16);
+            s.minAlt = readDouble(c, 17);
+            s.maxAlt = readDouble(c, 18);
+            s.ascentM = c.getDouble(19);
+            s.descentM = c.getDouble(20);
+            s.altRef = readDouble(c, 21);
+            t.summary = s;
+        }
+        return t;
+    }
+
+    private static double readDouble(Cursor c, int column) {
+        return c.isNull(column) ? Double.NaN : c.getDouble(column);
+    }
+}
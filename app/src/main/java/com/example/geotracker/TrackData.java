@@ -0,0 +1,86 @@
+package com.example.geotracker;
+
+import java.util.Arrays;
+
+/**
+ * Spaltenweise Punktliste eines Tracks (Zeit in Epoch-Millis, Lat/Lon in Grad).
+ * Primitive Arrays statt einem Objekt pro Punkt.
+ */
+public class TrackData {
+
+    long[] time;
+    double[] lat;
+    double[] lon;
+    int size;
+
+    public TrackData() {
+        this(16);
+    }
+
+    public TrackData(int capacity) {
+        capacity = Math.max(capacity, 1);
+        time = new long[capacity];
+        lat = new double[capacity];
+        lon = new double[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long timeAt(int i) {
+        return time[i];
+    }
+
+    public double latAt(int i) {
+        return lat[i];
+    }
+
+    public double lonAt(int i) {
+        return lon[i];
+    }
+
+    public void add(long t, double latitude, double longitude) {
+        ensureCapacity(size + 1);
+        time[size] = t;
+        lat[size] = latitude;
+        lon[size] = longitude;
+        size++;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= time.length) return;
+        int newCap = Math.max(capacity, time.length + (time.length >> 1) + 1);
+        time = Arrays.copyOf(time, newCap);
+        lat = Arrays.copyOf(lat, newCap);
+        lon = Arrays.copyOf(lon, newCap);
+    }
+
+    /**
+     * Unveränderliche Sicht auf die ersten size() Punkte. Teilt die Arrays; spätere
+     * Anhänge landen nur hinter dem Ende der Sicht oder in neu allozierten Arrays.
+     */
+    public TrackData snapshot() {
+        return new TrackData(time, lat, lon, size);
+    }
+
+    private TrackData(long[] time, double[] lat, double[] lon, int size) {
+        this.time = time;
+        this.lat = lat;
+        this.lon = lon;
+        this.size = size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Ungefährer Speicherbedarf der Arrays (für Cache-Grenzen)
+    public long estimatedBytes() {
+        return (long) time.length * (8 + 8 + 8);
+    }
+}
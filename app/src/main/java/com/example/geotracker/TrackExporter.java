@@ -0,0 +1,211 @@
+package com.example.geotracker;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportiert einen oder mehrere Tracks als GPX, GeoJSON, KML oder CSV.
+ * Die Tracks werden blockweise aus den Binärdateien gelesen und direkt in den
+ * Ausgabestrom geschrieben; das Dokument entsteht nie komplett im Speicher.
+ * Mehrere Tracks landen als eigene trk/Feature/Placemark in einer Datei.
+ */
+public class TrackExporter {
+
+    public enum Format {
+        GPX(".gpx", "application/gpx+xml"),
+        GEOJSON(".geojson", "application/geo+json"),
+        KML(".kml", "application/vnd.google-earth.kml+xml"),
+        CSV(".csv", "text/csv");
+
+        public final String extension;
+        public final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+    }
+
+    public static final String GZIP_EXTENSION = ".gz";
+    public static final String GZIP_MIME_TYPE = "application/gzip";
+
+    private static final int STREAM_BUFFER = 64 * 1024;
+
+    private final TrackStorage storage;
+    private final ZoneId zone;
+
+    public TrackExporter(TrackStorage storage) {
+        this(storage, ZoneId.systemDefault());
+    }
+
+    // zone nur für CSV (lokale Zeit wie im alten Format)
+    public TrackExporter(TrackStorage storage, ZoneId zone) {
+        this.storage = storage;
+        this.zone = zone;
+    }
+
+    /**
+     * Schreibt die Tracks nach dir/baseName + Endung (+ .gz) und liefert die Datei.
+     * Geschrieben wird in eine .tmp-Datei, die erst am Ende umbenannt wird.
+     */
+    public File exportToFile(List<TrackInfo> tracks, Format format, boolean gzip,
+                             File dir, String baseName) throws IOException {
+        File file = new File(dir, baseName + format.extension + (gzip ? GZIP_EXTENSION : ""));
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), STREAM_BUFFER)) {
+            export(tracks, format, gzip, out);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Umbenennen fehlgeschlagen: " + file.getName());
+        }
+        return file;
+    }
+
+    public void export(List<TrackInfo> tracks, Format format, boolean gzip, OutputStream out)
+            throws IOException {
+        GZIPOutputStream gz = gzip ? new GZIPOutputStream(out, STREAM_BUFFER) : null;
+        ChunkedTextWriter w = new ChunkedTextWriter(gz != null ? gz : out);
+        switch (format) {
+            case GPX:
+                writeGpx(tracks, w);
+                break;
+            case GEOJSON:
+                writeGeoJson(tracks, w);
+                break;
+            case KML:
+                writeKml(tracks, w);
+                break;
+            case CSV:
+                writeCsv(tracks, w);
+                break;
+        }
+        w.flush();
+        if (gz != null) gz.finish();
+    }
+
+    // ---------- GPX 1.1 ----------
+
+    private void writeGpx(List<TrackInfo> tracks, ChunkedTextWriter w) throws IOException {
+        w.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<gpx version=\"1.1\" creator=\"Geotracker\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+        for (TrackInfo t : tracks) {
+            int count = pointCount(t);
+            if (count == 0) continue;
+            w.append("<trk><name>").appendXmlEscaped(t.name).append("</name><trkseg>\n");
+            forEachPoint(t, count, (time, lat, lon) -> w.append("<trkpt lat=\"").appendCoord(lat)
+                    .append("\" lon=\"").appendCoord(lon)
+                    .append("\"><time>").appendIsoUtc(time)
+                    .append("</time></trkpt>\n"));
+            w.append("</trkseg></trk>\n");
+        }
+        w.append("</gpx>\n");
+    }
+
+    // ---------- GeoJSON ----------
+
+    // Zeiten als properties.coordTimes (wie togeojson); dafür ein zweiter Durchgang über die Blöcke
+    private void writeGeoJson(List<TrackInfo> tracks, ChunkedTextWriter w) throws IOException {
+        w.append("{\"type\":\"FeatureCollection\",\"features\":[");
+        boolean firstFeature = true;
+        for (TrackInfo t : tracks) {
+            int count = pointCount(t);
+            if (count == 0) continue;
+            if (!firstFeature) w.append(',');
+            firstFeature = false;
+
+            w.append("\n{\"type\":\"Feature\",\"geometry\":{\"type\":\"")
+                    .append(count == 1 ? "Point" : "LineString").append("\",\"coordinates\":");
+            if (count > 1) w.append('[');
+            boolean[] first = {true};
+            forEachPoint(t, count, (time, lat, lon) -> {
+                if (!first[0]) w.append(',');
+                first[0] = false;
+                w.append('[').appendCoord(lon).append(',').appendCoord(lat).append(']');
+            });
+            if (count > 1) w.append(']');
+
+            w.append("},\"properties\":{\"name\":\"").appendJsonEscaped(t.name).append("\",\"coordTimes\":[");
+            first[0] = true;
+            forEachPoint(t, count, (time, lat, lon) -> {
+                if (!first[0]) w.append(',');
+                first[0] = false;
+                w.append('"').appendIsoUtc(time).append('"');
+            });
+            w.append("]}}");
+        }
+        w.append("\n]}\n");
+    }
+
+    // ---------- KML 2.2 ----------
+
+    // gx:Track erwartet erst alle Zeiten, dann alle Koordinaten: zwei Durchgänge
+    private void writeKml(List<TrackInfo> tracks, ChunkedTextWriter w) throws IOException {
+        w.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<kml xmlns=\"http://www.opengis.net/kml/2.2\" xmlns:gx=\"http://www.google.com/kml/ext/2.2\">\n")
+                .append("<Document><name>Geotracker</name>\n");
+        for (TrackInfo t : tracks) {
+            int count = pointCount(t);
+            if (count == 0) continue;
+            w.append("<Placemark><name>").appendXmlEscaped(t.name).append("</name><gx:Track>\n");
+            forEachPoint(t, count, (time, lat, lon) ->
+                    w.append("<when>").appendIsoUtc(time).append("</when>\n"));
+            forEachPoint(t, count, (time, lat, lon) ->
+                    w.append("<gx:coord>").appendCoord(lon).append(' ')
+                            .appendCoord(lat).append(" 0</gx:coord>\n"));
+            w.append("</gx:Track></Placemark>\n");
+        }
+        w.append("</Document>\n</kml>\n");
+    }
+
+    // ---------- CSV (altes Format, lokale Zeit) ----------
+
+    private void writeCsv(List<TrackInfo> tracks, ChunkedTextWriter w) throws IOException {
+        w.append(CsvTrackFormat.HEADER);
+        long[] hour = {Long.MIN_VALUE};
+        long[] offsetMs = {0};
+        for (TrackInfo t : tracks) {
+            forEachPoint(t, pointCount(t), (time, lat, lon) -> {
+                // Zonen-Offset nur einmal pro Stunde nachschlagen
+                long h = Math.floorDiv(time, 3_600_000L);
+                if (h != hour[0]) {
+                    hour[0] = h;
+                    offsetMs[0] = zone.getRules().getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * 1000L;
+                }
+                w.appendIsoLocal(time + offsetMs[0]).append(',')
+                        .appendCoord(lat).append(',')
+                        .appendCoord(lon).append('\n');
+            });
+        }
+    }
+
+    private interface PointHandler {
+        void onPoint(long time, double lat, double lon) throws IOException;
+    }
+
+    /**
+     * Liefert die ersten limit Punkte des Tracks blockweise aus der Datei. Das Limit
+     * hält mehrere Durchgänge gleich lang, auch wenn währenddessen angehängt wird.
+     */
+    private void forEachPoint(TrackInfo t, int limit, PointHandler handler) throws IOException {
+        int[] remaining = {limit};
+        storage.format().forEachBlock(storage.fileFor(t.filename), block -> {
+            int n = Math.min(block.size, remaining[0]);
+            for (int i = 0; i < n; i++) handler.onPoint(block.time[i], block.lat[i], block.lon[i]);
+            remaining[0] -= n;
+        });
+    }
+
+    private int pointCount(TrackInfo t) throws IOException {
+        return storage.format().readHeader(storage.fileFor(t.filename)).pointCount;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Austauschbares Dateiformat für Track-Dateien.
+ */
+public interface TrackFormat {
+
+    // Dateiendung inkl. Punkt, z.B. ".gtb"
+    String extension();
+
+    // Liest alle Punkte der Datei; fehlende Datei -> leerer Track
+    TrackData read(File file) throws IOException;
+
+    // Schreibt die Datei komplett neu
+    void write(File file, TrackData data) throws IOException;
+
+    // Hängt die Punkte [from, to) an die Datei an
+    void append(File file, TrackData data, int from, int to) throws IOException;
+}
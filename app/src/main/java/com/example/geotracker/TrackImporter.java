@@ -0,0 +1,137 @@
+package com.example.geotracker;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Importiert externe GPX- oder CSV-Dateien in eine neue Track-Datei.
+ * Gelesen wird streamend, geschrieben blockweise (BATCH_POINTS Punkte), daher
+ * bleibt der Speicherbedarf unabhängig von der Dateigröße. Läuft im Hintergrund;
+ * Fortschritt wird nach jedem Block gemeldet, cancel() bricht ab.
+ */
+public class TrackImporter {
+
+    public enum Format {
+        GPX, CSV;
+
+        // nach Dateiendung, sonst nach dem ersten Zeichen ('<' = XML)
+        public static Format guess(String name, int firstChar) {
+            String lower = name == null ? "" : name.toLowerCase();
+            if (lower.endsWith(".gpx")) return GPX;
+            if (lower.endsWith(".csv")) return CSV;
+            return firstChar == '<' ? GPX : CSV;
+        }
+    }
+
+    public interface ProgressListener {
+        // totalBytes ist -1, wenn die Größe unbekannt ist
+        void onProgress(long bytesRead, long totalBytes, int points);
+    }
+
+    static final int BATCH_POINTS = BinaryTrackFormat.MAX_BLOCK_POINTS;
+
+    private final TrackStorage storage;
+    private final XmlPullParser gpxParser;
+    private volatile boolean cancelled;
+    private long skippedRows;
+
+    public TrackImporter(TrackStorage storage, XmlPullParser gpxParser) {
+        this.storage = storage;
+        this.gpxParser = gpxParser;
+    }
+
+    // Kann von einem anderen Thread aufgerufen werden
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Anzahl übersprungener, fehlerhafter CSV-Zeilen des letzten Imports
+    public long skippedRows() {
+        return skippedRows;
+    }
+
+    /**
+     * Liest in und schreibt die Punkte nach filename. Liefert die Zusammenfassung
+     * für den Katalog. Bei Abbruch oder Fehler wird die angefangene Datei gelöscht;
+     * ein Abbruch endet mit einer InterruptedIOException.
+     */
+    public TrackSummary importInto(InputStream in, long totalBytes, Format format, String filename,
+                                   ProgressListener listener) throws IOException {
+        CountingInputStream counted = new CountingInputStream(in);
+        TrackData batch = new TrackData(BATCH_POINTS);
+        TrackSummary summary = new TrackSummary();
+        skippedRows = 0;
+
+        CsvTrackReader.RowHandler rows = (time, lat, lon) -> {
+            batch.add(time, lat, lon);
+            summary.add(time, lat, lon);
+            if (batch.size() >= BATCH_POINTS) {
+                try {
+                    writeBatch(filename, batch);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (listener != null) listener.onProgress(counted.count, totalBytes, summary.pointCount());
+            }
+        };
+
+        boolean ok = false;
+        try {
+            storage.create(filename);
+            if (format == Format.GPX) {
+                new GpxTrackReader(gpxParser).read(counted, rows);
+            } else {
+                new CsvTrackReader().read(counted, rows, (line, message) -> skippedRows++);
+            }
+            writeBatch(filename, batch);
+            if (listener != null) listener.onProgress(counted.count, totalBytes, summary.pointCount());
+            ok = true;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (!ok) storage.delete(filename);
+        }
+        return summary;
+    }
+
+    private void writeBatch(String filename, TrackData batch) throws IOException {
+        if (cancelled) throw new InterruptedIOException("Import abgebrochen");
+        storage.append(filename, batch, 0, batch.size());
+        batch.clear();
+    }
+
+    // Zählt die gelesenen Bytes für die Fortschrittsanzeige
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
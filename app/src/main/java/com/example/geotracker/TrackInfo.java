@@ -0,0 +1,26 @@
+package com.example.geotracker;
+
+/**
+ * Eintrag im Track-Katalog.
+ */
+public class TrackInfo {
+    long id;              // stabile ID im Katalog
+    String name;          // Anzeigename
+    String filename;      // Dateiname im internen Speicher
+    int color;            // ARGB-Farbe
+    boolean visible;
+    TrackSummary summary; // null = noch nicht berechnet
+
+    public TrackInfo(String name, String filename, int color) {
+        this.name = name;
+        this.filename = filename;
+        this.color = color;
+        this.visible = true;
+    }
+
+    // Name mit Kurzinfo für Auswahllisten
+    public String label() {
+        if (summary == null || summary.isEmpty()) return name;
+        return name + " (" + summary.describe() + ")";
+    }
+}
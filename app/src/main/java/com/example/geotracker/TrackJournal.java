@@ -0,0 +1,195 @@
+package com.example.geotracker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Write-Ahead-Journal für die Routenaufzeichnung (Datei neben dem Track, Endung .wal).
+ * Punkte landen hier, bevor sie als Block in den Track geschrieben werden; mehrere
+ * Punkte werden gemeinsam geschrieben (Group Commit), fsync höchstens einmal pro Gruppe.
+ *
+ * Aufbau (Little Endian): Header (16 Byte) magic, version, basePoints, reserviert;
+ * danach Datensätze: Länge der Nutzdaten, CRC32, Nutzdaten (Zeit long, Lat/Lon int 1e-7).
+ * basePoints ist die Punktzahl des Tracks beim letzten Checkpoint, Datensatz i gehört
+ * also zu Trackpunkt basePoints + i.
+ */
+public class TrackJournal implements Closeable {
+
+    public static final String EXTENSION = ".wal";
+
+    static final int MAGIC = 0x4C415747; // "GWAL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int PAYLOAD_SIZE = 8 + 4 + 4;
+    static final int RECORD_SIZE = 4 + 4 + PAYLOAD_SIZE;
+
+    private static final double SCALE = 1e7;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel ch;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buf = ByteBuffer.allocate(64 * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private int basePoints;
+    private int records;
+    private long end = HEADER_SIZE;
+
+    private TrackJournal(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.ch = raf.getChannel();
+    }
+
+    public static File fileFor(File track) {
+        return new File(track.getParentFile(), track.getName() + EXTENSION);
+    }
+
+    // Neues, leeres Journal für einen Track mit basePoints Punkten (ein altes wird ersetzt)
+    public static TrackJournal create(File track, int basePoints) throws IOException {
+        TrackJournal j = new TrackJournal(fileFor(track));
+        try {
+            j.reset(basePoints);
+        } catch (IOException e) {
+            j.close();
+            throw e;
+        }
+        return j;
+    }
+
+    /**
+     * Hängt die Punkte from..to-1 mit einem einzigen write an; ohne fsync
+     * (dafür sync()), übersteht aber schon einen Absturz der App.
+     */
+    public void append(TrackData data, int from, int to) throws IOException {
+        int n = to - from;
+        if (n <= 0) return;
+        if (buf.capacity() < n * RECORD_SIZE) {
+            buf = ByteBuffer.allocate(n * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buf.clear();
+        byte[] array = buf.array();
+        for (int i = from; i < to; i++) {
+            int p = buf.position();
+            buf.putInt(PAYLOAD_SIZE).putInt(0)
+                    .putLong(data.time[i])
+                    .putInt((int) Math.round(data.lat[i] * SCALE))
+                    .putInt((int) Math.round(data.lon[i] * SCALE));
+            crc.reset();
+            crc.update(array, p + 8, PAYLOAD_SIZE);
+            buf.putInt(p + 4, (int) crc.getValue());
+        }
+        buf.flip();
+        long pos = end;
+        while (buf.hasRemaining()) pos += ch.write(buf, pos);
+        end = pos;
+        records += n;
+    }
+
+    // fsync für alles bisher Angehängte (Group Commit)
+    public void sync() throws IOException {
+        ch.force(false);
+    }
+
+    /**
+     * Checkpoint: der Track ist bis newBasePoints gesichert (fsync), das Journal
+     * wird geleert und beginnt dort neu.
+     */
+    public void reset(int newBasePoints) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).putInt(VERSION).putInt(newBasePoints).putInt(0);
+        h.flip();
+        ch.truncate(HEADER_SIZE);
+        long pos = 0;
+        while (h.hasRemaining()) pos += ch.write(h, pos);
+        ch.force(true);
+        basePoints = newBasePoints;
+        records = 0;
+        end = HEADER_SIZE;
+    }
+
+    public int basePoints() {
+        return basePoints;
+    }
+
+    public int records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    // Schließen und entfernen, nachdem der Track gesichert ist
+    public void delete() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Journal nicht löschbar: " + file.getName());
+        }
+    }
+
+    /**
+     * Liest die gültigen Datensätze und liefert basePoints, bei unbrauchbarem Header -1.
+     * Am ersten abgerissenen oder defekten Datensatz wird aufgehört.
+     */
+    static int read(File journal, TrackData into) throws IOException {
+        if (!journal.exists() || journal.length() < HEADER_SIZE) return -1;
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "r");
+             FileChannel ch = raf.getChannel()) {
+            long size = ch.size();
+            ByteBuffer b = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (b.hasRemaining() && ch.read(b) >= 0) {
+                // weiterlesen
+            }
+            b.flip();
+            if (b.getInt(0) != MAGIC || b.getInt(4) != VERSION) return -1;
+            int base = b.getInt(8);
+            byte[] array = b.array();
+            CRC32 crc = new CRC32();
+            into.ensureCapacity(into.size() + (b.limit() - HEADER_SIZE) / RECORD_SIZE);
+            for (int p = HEADER_SIZE; p + 8 <= b.limit(); ) {
+                int len = b.getInt(p);
+                if (len < PAYLOAD_SIZE || p + 8 + len > b.limit()) break;
+                crc.reset();
+                crc.update(array, p + 8, len);
+                if ((int) crc.getValue() != b.getInt(p + 4)) break;
+                // längere Datensätze (spätere Versionen): nur die bekannten Felder lesen
+                into.add(b.getLong(p + 8), b.getInt(p + 16) / SCALE, b.getInt(p + 20) / SCALE);
+                p += 8 + len;
+            }
+            return base;
+        }
+    }
+
+    /**
+     * Wiederherstellung beim Start: hängt die Journal-Punkte, die noch nicht im Track
+     * stehen, an (mit fsync) und löscht das Journal. Der Track muss vorher mit
+     * BinaryTrackFormat.repair() geprüft sein. Liefert die Zahl der nachgetragenen Punkte.
+     */
+    public static int recover(BinaryTrackFormat format, File track) throws IOException {
+        File journal = fileFor(track);
+        TrackData records = new TrackData();
+        int base = read(journal, records);
+        int replayed = 0;
+        if (base >= 0 && records.size() > 0) {
+            int points = format.readHeader(track).pointCount;
+            // Punkte vor dem Checkpoint fehlen (Track beschädigt): alles aus dem Journal nehmen
+            int from = Math.max(0, Math.min(points - base, records.size()));
+            if (from < records.size()) {
+                format.append(track, records, from, records.size(), true);
+                replayed = records.size() - from;
+            }
+        }
+        if (journal.exists() && !journal.delete()) {
+            throw new IOException("Journal nicht löschbar: " + journal.getName());
+        }
+        return replayed;
+    }
+}
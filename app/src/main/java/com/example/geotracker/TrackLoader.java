@@ -0,0 +1,172 @@
+package com.example.geotracker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lädt Tracks im Hintergrund: Dateien lesen, Punkte dekodieren, Detailstufen
+ * und räumlichen Index vorbereiten passiert parallel auf einem begrenzten Thread-Pool.
+ * Jeder Track wird über resultExecutor (UI-Thread) zurückgegeben, sobald er fertig
+ * ist, die Tracks werden in der übergebenen Reihenfolge begonnen.
+ * Ein neuer Ladeauftrag bricht einen noch laufenden älteren ab.
+ */
+public class TrackLoader {
+
+    public static class Result {
+        final String filename;
+        final TrackData data;
+        final TrackLod lod;
+        final TrackSpatialIndex index;
+
+        Result(String filename, TrackData data, TrackLod lod, TrackSpatialIndex index) {
+            this.filename = filename;
+            this.data = data;
+            this.lod = lod;
+            this.index = index;
+        }
+    }
+
+    public interface Listener {
+        void onTrackLoaded(Result result);
+
+        // alle Tracks des Auftrags geliefert (oder nicht lesbar)
+        default void onAllLoaded() {
+        }
+    }
+
+    private final TrackPointCache cache;
+    private final Executor resultExecutor;
+    private final ExecutorService workers;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+    private final Map<String, TrackLod> lods = new ConcurrentHashMap<>();
+    private final Map<String, TrackSpatialIndex> indexes = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> running;
+
+    public TrackLoader(TrackPointCache cache, Executor resultExecutor) {
+        this(cache, resultExecutor, Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    public TrackLoader(TrackPointCache cache, Executor resultExecutor, int threads) {
+        this.cache = cache;
+        this.resultExecutor = resultExecutor;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        pool.allowCoreThreadTimeOut(true);
+        this.workers = pool;
+    }
+
+    /**
+     * Lädt die Dateien parallel; wichtige Tracks (z. B. den aktuellen) zuerst übergeben.
+     * listener bekommt jeden Track einzeln, sobald er fertig ist; Tracks, die nicht
+     * gelesen werden konnten, fehlen.
+     */
+    public synchronized void load(List<String> filenames, Listener listener) {
+        long gen = generation.incrementAndGet();
+        if (running != null) running.cancel(true);
+        List<String> files = new ArrayList<>(filenames);
+        running = coordinator.submit(() -> run(gen, files, listener));
+    }
+
+    /**
+     * Lädt nur einen Track nach (z. B. nach dem Anhängen neuer Punkte), ohne einen
+     * laufenden Gesamtauftrag abzubrechen. Startet danach ein neuer Gesamtauftrag,
+     * wird das Ergebnis verworfen; der neue Auftrag bringt es ohnehin mit.
+     */
+    public void refresh(String filename, Listener listener) {
+        long gen = generation.get();
+        workers.execute(() -> {
+            Result r;
+            try {
+                r = loadOne(gen, filename);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            deliver(gen, r, listener);
+        });
+    }
+
+    private void run(long gen, List<String> files, Listener listener) {
+        List<Future<?>> futures = new ArrayList<>(files.size());
+        for (String f : files) {
+            futures.add(workers.submit(() -> {
+                deliver(gen, loadOne(gen, f), listener);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            // von einem neueren Auftrag abgelöst
+            for (Future<?> future : futures) future.cancel(true);
+            return;
+        }
+
+        if (!isCurrent(gen)) return;
+        resultExecutor.execute(() -> {
+            if (isCurrent(gen)) listener.onAllLoaded();
+        });
+    }
+
+    private void deliver(long gen, Result r, Listener listener) {
+        if (r == null || !isCurrent(gen)) return;
+        resultExecutor.execute(() -> {
+            if (isCurrent(gen)) listener.onTrackLoaded(r);
+        });
+    }
+
+    private Result loadOne(long gen, String filename) throws IOException {
+        if (!isCurrent(gen)) return null;
+        TrackData data = cache.get(filename);
+        if (!isCurrent(gen)) return null;
+
+        long start = System.nanoTime();
+        TrackLod lod = lods.computeIfAbsent(filename, k -> new TrackLod());
+        synchronized (lod) {
+            lod.update(data, data.size());
+        }
+        TrackSpatialIndex index = indexes.computeIfAbsent(filename, k -> new TrackSpatialIndex());
+        synchronized (index) {
+            index.update(data, data.size());
+        }
+        PerfStats.global().trackPrepared(filename, System.nanoTime() - start);
+        return new Result(filename, data, lod, index);
+    }
+
+    private boolean isCurrent(long gen) {
+        return generation.get() == gen;
+    }
+
+    // Nach dem Löschen eines Tracks
+    public void invalidate(String filename) {
+        lods.remove(filename);
+        indexes.remove(filename);
+        cache.invalidate(filename);
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.geotracker;
+
+import java.util.Arrays;
+
+/**
+ * Detailstufen (Level of Detail) einer Track-Linie.
+ * Pro Stufe werden die Punkte mit Douglas-Peucker vereinfacht, Toleranz ist
+ * TOLERANCE_PX Bildschirmpixel bei der Zoomstufe der Stufe. Gerechnet wird in
+ * normierten Mercator-Koordinaten (0..1).
+ *
+ * Die Stufen bilden eine Pyramide: die feinste Stufe vereinfacht die Rohpunkte,
+ * jede gröbere Stufe die Punkte der nächstfeineren. Gerechnet wird abschnittsweise
+ * (höchstens MAX_RUN Quellpunkte); abgeschlossene Abschnitte bleiben stehen, beim
+ * Anhängen wird nur der offene letzte Abschnitt neu berechnet.
+ */
+public class TrackLod {
+
+    public static final int MIN_ZOOM = 3;
+    public static final int MAX_ZOOM = 19;
+    public static final int ZOOM_STEP = 2;
+    static final double TOLERANCE_PX = 1.0;
+    static final int MAX_RUN = 512;
+    private static final double TILE_SIZE = 256;
+
+    // Indizes der Punkte, die in einer Stufe übrig bleiben
+    static class Level {
+        final int zoom;
+        final double tolSq;
+        int[] idx = new int[16];
+        int size;
+        int anchor;    // Start des offenen Abschnitts (Position in der Quelle)
+        int anchorPos; // Position des Ankers in idx
+
+        Level(int zoom) {
+            this.zoom = zoom;
+            double tol = TOLERANCE_PX / (TILE_SIZE * Math.pow(2, zoom));
+            this.tolSq = tol * tol;
+        }
+
+        void add(int i) {
+            if (size == idx.length) idx = Arrays.copyOf(idx, size * 2);
+            idx[size++] = i;
+        }
+    }
+
+    private final Level[] levels;
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private int projected;
+
+    // Hilfsspeicher für den Douglas-Peucker-Stapel
+    private int[] stack = new int[64];
+    private boolean[] keep = new boolean[2 * MAX_RUN + 1];
+
+    public TrackLod() {
+        levels = new Level[(MAX_ZOOM - MIN_ZOOM) / ZOOM_STEP + 1];
+        for (int i = 0; i < levels.length; i++) levels[i] = new Level(MIN_ZOOM + i * ZOOM_STEP);
+    }
+
+    public void reset() {
+        projected = 0;
+        for (Level l : levels) {
+            l.size = 0;
+            l.anchor = 0;
+            l.anchorPos = 0;
+        }
+    }
+
+    public int pointCount() {
+        return projected;
+    }
+
+    public int levelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Stufe für eine Kartenzoomstufe: die gröbste Stufe, deren Toleranz bei diesem
+     * Zoom noch unter TOLERANCE_PX liegt; -1 heißt Rohdaten verwenden.
+     */
+    public int levelFor(double zoom) {
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i].zoom >= zoom) return i;
+        }
+        return -1;
+    }
+
+    public int size(int level) {
+        return levels[level].size;
+    }
+
+    public int indexAt(int level, int i) {
+        return levels[level].idx[i];
+    }
+
+    // Übernimmt die Punkte [pointCount(), size) aus data
+    public void update(TrackData data, int size) {
+        if (size < projected) reset();
+        if (size == projected) return;
+
+        if (x.length < size) {
+            int cap = Math.max(size, x.length * 2);
+            x = Arrays.copyOf(x, cap);
+            y = Arrays.copyOf(y, cap);
+        }
+        for (int i = projected; i < size; i++) {
+            x[i] = (data.lon[i] + 180.0) / 360.0;
+            double sin = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, data.lat[i]))));
+            y[i] = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+        }
+        projected = size;
+
+        // von fein nach grob, jede Stufe liest aus der feineren
+        Level finest = levels[levels.length - 1];
+        updateLevel(finest, null, size, size - 1);
+        for (int i = levels.length - 2; i >= 0; i--) {
+            Level src = levels[i + 1];
+            updateLevel(levels[i], src.idx, src.size, src.anchorPos);
+        }
+    }
+
+    /**
+     * src: Quellindizes (null = Rohpunkte), srcSize: Anzahl Quellpunkte,
+     * stableEnd: bis zu dieser Quellposition ändert sich die Quelle nicht mehr.
+     */
+    private void updateLevel(Level l, int[] src, int srcSize, int stableEnd) {
+        // alles ab dem Anker verwerfen und den Anker neu setzen
+        l.size = l.anchorPos;
+        l.add(source(src, l.anchor));
+        if (srcSize == 1) return;
+
+        int start = l.anchor;
+        while (stableEnd - start > MAX_RUN) {
+            simplify(l, src, start, start + MAX_RUN);
+            start += MAX_RUN;
+            l.anchorPos = l.size - 1;
+        }
+        l.anchor = start;
+        simplify(l, src, start, srcSize - 1);
+    }
+
+    private static int source(int[] src, int pos) {
+        return src == null ? pos : src[pos];
+    }
+
+    // Douglas-Peucker auf den Quellpositionen [from, to]; from ist bereits in der Stufe
+    private void simplify(Level l, int[] src, int from, int to) {
+        int len = to - from;
+        if (len <= 0) return;
+        if (keep.length < len + 1) keep = new boolean[len + 1];
+        Arrays.fill(keep, 0, len + 1, false);
+        keep[len] = true;
+
+        int sp = 0;
+        stack[sp++] = from;
+        stack[sp++] = to;
+        while (sp > 0) {
+            int b = stack[--sp];
+            int a = stack[--sp];
+            if (b - a < 2) continue;
+
+            int pa = source(src, a);
+            int pb = source(src, b);
+            int maxI = -1;
+            double maxD = l.tolSq;
+            for (int i = a + 1; i < b; i++) {
+                double d = segDistSq(source(src, i), pa, pb);
+                if (d > maxD) {
+                    maxD = d;
+                    maxI = i;
+                }
+            }
+            if (maxI < 0) continue;
+            keep[maxI - from] = true;
+            if (sp + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[sp++] = a;
+            stack[sp++] = maxI;
+            stack[sp++] = maxI;
+            stack[sp++] = b;
+        }
+        for (int i = 1; i <= len; i++) {
+            if (keep[i]) l.add(source(src, from + i));
+        }
+    }
+
+    private double segDistSq(int p, int a, int b) {
+        double dx = x[b] - x[a];
+        double dy = y[b] - y[a];
+        double px = x[p] - x[a];
+        double py = y[p] - y[a];
+        double lenSq = dx * dx + dy * dy;
+        if (lenSq > 0) {
+            double t = Math.max(0, Math.min(1, (px * dx + py * dy) / lenSq));
+            px -= t * dx;
+            py -= t * dy;
+        }
+        return px * px + py * py;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.geotracker;
+
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.overlay.Overlay;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hält pro Track eine Ebene (Linie, Punkte, Marker), die über Aktualisierungen
+ * hinweg bestehen bleibt. Neue Punkte verlängern die vorhandenen Overlays,
+ * Ein-/Ausblenden hängt sie nur in die Karte ein bzw. aus, Löschen entfernt nur
+ * die Ebene des Tracks. Die Karte wird nie komplett geleert und neu aufgebaut.
+ * Die Punkte sichtbarer Tracks gehen außerdem an die Heatmap; im Heatmap-Modus
+ * ersetzt sie Linien und Punkte aller Tracks, die Marker bleiben.
+ *
+ * Reihenfolge in der Karte: Heatmap, alle Linien, darüber alle Punkte, darüber alle
+ * Marker, dann ein hervorgehobener Ausschnitt, ganz oben ein optionales Overlay
+ * (PerfOverlay). Nur auf dem UI-Thread benutzen.
+ */
+public class TrackOverlays {
+
+    private static final int RANK_HEATMAP = 0;
+    private static final int RANK_LINE = 1;
+    private static final int RANK_POINTS = 2;
+    private static final int RANK_WAYPOINTS = 3;
+    private static final int RANK_HIGHLIGHT = 4;
+    private static final int RANK_TOP = 5;
+    private static final float LINE_WIDTH = 15f;
+
+    private static class Layer {
+        final LodPolyline line;
+        final TrackPointsOverlay points;
+        WaypointOverlay waypoints;
+        // zuletzt übernommener Snapshot und seine Größe, -1 = noch nichts geladen
+        TrackData data;
+        int size = -1;
+
+        Layer(LodPolyline line, TrackPointsOverlay points) {
+            this.line = line;
+            this.points = points;
+        }
+    }
+
+    private final MapView map;
+    private final HeatmapOverlay heatmap;
+    private final ThumbnailCache thumbnails;
+    private final WaypointOverlay.OnTapListener tapListener;
+    private final Map<String, Layer> layers = new HashMap<>();
+    // eingehängte Overlays mit ihrem Rang
+    private final Map<Overlay, Integer> attached = new IdentityHashMap<>();
+    private Overlay highlight;
+    private Overlay top;
+    private boolean heatmapMode;
+
+    public TrackOverlays(MapView map, HeatmapOverlay heatmap, ThumbnailCache thumbnails,
+                         WaypointOverlay.OnTapListener tapListener) {
+        this.map = map;
+        this.heatmap = heatmap;
+        this.thumbnails = thumbnails;
+        this.tapListener = tapListener;
+    }
+
+    // true, wenn für den Track schon Punkte übernommen wurden
+    public boolean isLoaded(String filename) {
+        Layer l = layers.get(filename);
+        return l != null && l.size >= 0;
+    }
+
+    /**
+     * Übernimmt einen geladenen Snapshot; die Overlays werden nur um die neuen
+     * Punkte fortgeführt. Ältere Snapshots (kleiner als der angezeigte, etwa von
+     * einem überholten Ladeauftrag) werden ignoriert. Liefert true bei Änderung.
+     */
+    public boolean update(TrackInfo t, TrackLoader.Result r) {
+        Layer l = layer(t);
+        int size = r.data.size();
+        if (size <= l.size) return false;
+        l.line.setColor(t.color);
+        l.line.setData(r.data, r.lod, r.index);
+        l.points.setData(r.data, size);
+        l.data = r.data;
+        l.size = size;
+        sync(t);
+        return true;
+    }
+
+    // Marker des Tracks ersetzen; das Overlay wird beim ersten Marker angelegt
+    public void setWaypoints(TrackInfo t, List<Waypoint> list) {
+        Layer l = layer(t);
+        if (l.waypoints == null) {
+            if (list == null || list.isEmpty()) return;
+            l.waypoints = new WaypointOverlay(t.color, thumbnails, tapListener);
+            PerfStats.global().add(PerfStats.Counter.OVERLAYS_CREATED, 1);
+        }
+        l.waypoints.setWaypoints(list != null ? list : Collections.emptyList());
+        sync(t);
+    }
+
+    // Overlays des Tracks an t.visible anpassen: nur ein- oder aushängen
+    public void sync(TrackInfo t) {
+        Layer l = layers.get(t.filename);
+        if (l == null) return;
+        show(l.line, RANK_LINE, t.visible && !heatmapMode && l.size > 1);
+        show(l.points, RANK_POINTS, t.visible && !heatmapMode && l.size > 0);
+        if (l.waypoints != null) show(l.waypoints, RANK_WAYPOINTS, t.visible && !l.waypoints.isEmpty());
+        // die Heatmap bekommt die Daten auch ausgeschaltet, gerechnet wird erst beim Zeichnen
+        if (t.visible && l.data != null) heatmap.setTrack(t.filename, l.data);
+        else heatmap.removeTrack(t.filename);
+    }
+
+    // Heatmap statt Linien und Punkte; tracks = alle Tracks, deren Overlays umgehängt werden
+    public void setHeatmap(boolean on, List<TrackInfo> tracks) {
+        if (on == heatmapMode) return;
+        heatmapMode = on;
+        show(heatmap, RANK_HEATMAP, on);
+        for (TrackInfo t : tracks) sync(t);
+    }
+
+    // Ebene des gelöschten Tracks entfernen, die anderen bleiben unberührt
+    public void remove(TrackInfo t) {
+        Layer l = layers.remove(t.filename);
+        if (l == null) return;
+        detach(l.line);
+        detach(l.points);
+        if (l.waypoints != null) detach(l.waypoints);
+        heatmap.removeTrack(t.filename);
+    }
+
+    // hervorgehobener Ausschnitt (Zeitfenster, Wiedergabe) über den Markern, null = keiner
+    public void setHighlight(Overlay overlay) {
+        if (overlay == highlight) return;
+        if (highlight != null) detach(highlight);
+        highlight = overlay;
+        if (overlay != null) attach(overlay, RANK_HIGHLIGHT);
+    }
+
+    // Overlay über allen Tracks, null = keins
+    public void setTop(Overlay overlay) {
+        if (overlay == top) return;
+        if (top != null) detach(top);
+        top = overlay;
+        if (overlay != null) attach(overlay, RANK_TOP);
+    }
+
+    private Layer layer(TrackInfo t) {
+        Layer l = layers.get(t.filename);
+        if (l == null) {
+            LodPolyline line = new LodPolyline();
+            line.setWidth(LINE_WIDTH);
+            line.setColor(t.color);
+            l = new Layer(line, new TrackPointsOverlay(t.name, t.color));
+            layers.put(t.filename, l);
+            PerfStats.global().add(PerfStats.Counter.OVERLAYS_CREATED, 2);
+        }
+        return l;
+    }
+
+    private void show(Overlay o, int rank, boolean visible) {
+        if (visible) attach(o, rank);
+        else detach(o);
+    }
+
+    // hinter das letzte Overlay mit gleichem oder kleinerem Rang einfügen
+    private void attach(Overlay o, int rank) {
+        if (attached.containsKey(o)) return;
+        List<Overlay> list = map.getOverlays();
+        int pos = list.size();
+        for (int i = 0; i < list.size(); i++) {
+            Integer r = attached.get(list.get(i));
+            if (r != null && r > rank) {
+                pos = i;
+                break;
+            }
+        }
+        list.add(pos, o);
+        attached.put(o, rank);
+        PerfStats.global().add(PerfStats.Counter.OVERLAYS_ATTACHED, 1);
+    }
+
+    private void detach(Overlay o) {
+        if (attached.remove(o) == null) return;
+        map.getOverlays().remove(o);
+        // offene Info-Fenster schließen
+        o.onDetach(map);
+    }
+}
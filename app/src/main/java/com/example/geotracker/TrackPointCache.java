@@ -0,0 +1,147 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU-Cache für Track-Punkte, Schlüssel ist TrackInfo.filename.
+ * Merkt sich pro Track, bis wohin die Datei gelesen wurde, und liest beim
+ * nächsten Zugriff nur die neu angehängten Blöcke nach.
+ */
+public class TrackPointCache {
+
+    private static class Entry {
+        TrackData data = new TrackData();
+        BinaryTrackFormat.Cursor cursor = new BinaryTrackFormat.Cursor();
+        long bytes;
+    }
+
+    private final TrackStorage storage;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long pointsRead;
+
+    public TrackPointCache(TrackStorage storage, long maxBytes) {
+        this.storage = storage;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Liefert die Punkte des Tracks; neu angehängte Punkte werden nachgelesen.
+     * Das Ergebnis ist ein Snapshot und bleibt gültig, auch wenn später nachgelesen wird.
+     * Verschiedene Tracks können parallel gelesen werden.
+     */
+    public TrackData get(String filename) throws IOException {
+        Entry e;
+        synchronized (this) {
+            e = entries.get(filename);
+            if (e == null) {
+                misses++;
+                e = new Entry();
+                entries.put(filename, e);
+            } else {
+                hits++;
+            }
+        }
+
+        TrackData snapshot;
+        int read;
+        long bytes;
+        long start = System.nanoTime();
+        long fileBytes;
+        try {
+            synchronized (e) {
+                File file = storage.fileFor(filename);
+                int before = e.data.size();
+                long offset = e.cursor.offset();
+                if (!storage.format().readTail(file, e.cursor, e.data)) {
+                    // Datei wurde neu geschrieben -> komplett neu lesen (neue Arrays, alte Snapshots bleiben gültig)
+                    e.data = new TrackData();
+                    e.cursor = new BinaryTrackFormat.Cursor();
+                    before = 0;
+                    offset = e.cursor.offset();
+                    storage.format().readTail(file, e.cursor, e.data);
+                }
+                read = e.data.size() - before;
+                fileBytes = e.cursor.offset() - offset;
+                bytes = e.data.estimatedBytes();
+                snapshot = e.data.snapshot();
+            }
+        } catch (IOException ex) {
+            // halb gelesenen Eintrag nicht behalten, der nächste Zugriff liest neu
+            synchronized (this) {
+                if (entries.get(filename) == e) invalidate(filename);
+            }
+            throw ex;
+        }
+        PerfStats.global().trackRead(filename, System.nanoTime() - start, fileBytes, read);
+
+        synchronized (this) {
+            pointsRead += read;
+            // nur abrechnen, wenn der Eintrag nicht inzwischen verdrängt wurde
+            if (entries.get(filename) == e) {
+                usedBytes += bytes - e.bytes;
+                e.bytes = bytes;
+                trimToSize(filename);
+            }
+        }
+        return snapshot;
+    }
+
+    public synchronized void invalidate(String filename) {
+        Entry e = entries.remove(filename);
+        if (e != null) usedBytes -= e.bytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    // Älteste Einträge verwerfen, den gerade benutzten aber behalten
+    private void trimToSize(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue;
+            usedBytes -= eldest.getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    // Anzahl der insgesamt aus Dateien dekodierten Punkte
+    public synchronized long pointsRead() {
+        return pointsRead;
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TrackPointCache{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", pointsRead=" + pointsRead + ", bytes=" + usedBytes + "/" + maxBytes + "}";
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.geotracker;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.view.MotionEvent;
+
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Marker;
+import org.osmdroid.views.overlay.Overlay;
+import org.osmdroid.views.overlay.infowindow.InfoWindow;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Zeichnet alle Punkte eines Tracks in einem Durchgang direkt aus den Spalten-Arrays.
+ * Nahe Punkte werden je Zoomstufe zu Clustern zusammengefasst; nur für den
+ * angetippten Cluster wird ein echtes Info-Fenster (Marker) gebaut.
+ * Zeichnen und Antippen fragen nur die Gitterzellen im Ausschnitt bzw. um den
+ * Tippunkt ab.
+ */
+public class TrackPointsOverlay extends Overlay {
+
+    private static final float POINT_RADIUS = 10f;
+    private static final float TOUCH_SLOP = 24f;
+    private static final int SCREEN_MARGIN = 64;
+    // Nachbarzellen, in die ein Clusterkreis (samt Tippradius) hineinragen kann
+    private static final int CELL_MARGIN = 3;
+
+    private final String title;
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    // wiederverwendete Objekte, damit draw() nichts alloziert
+    private final GeoPoint reuseGeo = new GeoPoint(0.0, 0.0);
+    private final Point reusePx = new Point();
+
+    private TrackData data;
+    private int pointCount;
+    private PointClusters clusters;
+    private Marker tapMarker;
+
+    public TrackPointsOverlay(String title, int color) {
+        this.title = title;
+        fillPaint.setColor(color);
+        fillPaint.setStyle(Paint.Style.FILL);
+        strokePaint.setColor(0xFFFFFFFF);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(3f);
+        textPaint.setColor(0xFFFFFFFF);
+        textPaint.setTextSize(28f);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    // Punkte [0, size) von data anzeigen; bei wachsendem Track werden die Cluster fortgeführt
+    public void setData(TrackData data, int size) {
+        if (size < pointCount) clusters = null;
+        this.data = data;
+        this.pointCount = size;
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection pj) {
+        if (data == null || pointCount == 0) return;
+        PointClusters cl = clustersFor((int) Math.round(pj.getZoomLevel()));
+
+        // Zellen im Ausschnitt; nur wenn das weniger sind als Cluster, über das Gitter gehen
+        BoundingBox bb = pj.getBoundingBox();
+        long x0 = (long) Math.floor(cl.cellX(bb.getLonWest())) - CELL_MARGIN;
+        long x1 = (long) Math.floor(cl.cellX(bb.getLonEast())) + CELL_MARGIN;
+        long y0 = (long) Math.floor(cl.cellY(bb.getLatNorth())) - CELL_MARGIN;
+        long y1 = (long) Math.floor(cl.cellY(bb.getLatSouth())) + CELL_MARGIN;
+        long cells = (x1 - x0 + 1) * (y1 - y0 + 1);
+        if (x0 <= x1 && cells < cl.count()) {
+            for (long cy = y0; cy <= y1; cy++) {
+                for (long cx = x0; cx <= x1; cx++) {
+                    int c = cl.clusterInCell(cx, cy);
+                    if (c >= 0) drawCluster(canvas, pj, cl, c);
+                }
+            }
+        } else {
+            for (int c = 0; c < cl.count(); c++) drawCluster(canvas, pj, cl, c);
+        }
+    }
+
+    private void drawCluster(Canvas canvas, Projection pj, PointClusters cl, int c) {
+        reuseGeo.setCoords(cl.latAt(c), cl.lonAt(c));
+        pj.toPixels(reuseGeo, reusePx);
+        if (reusePx.x < -SCREEN_MARGIN || reusePx.y < -SCREEN_MARGIN
+                || reusePx.x > canvas.getWidth() + SCREEN_MARGIN
+                || reusePx.y > canvas.getHeight() + SCREEN_MARGIN) return;
+
+        int n = cl.sizeAt(c);
+        float r = radiusFor(n);
+        canvas.drawCircle(reusePx.x, reusePx.y, r, fillPaint);
+        canvas.drawCircle(reusePx.x, reusePx.y, r, strokePaint);
+        if (n > 1) {
+            canvas.drawText(Integer.toString(n), reusePx.x, reusePx.y - (textPaint.ascent() + textPaint.descent()) / 2, textPaint);
+        }
+    }
+
+    @Override
+    public boolean onSingleTapConfirmed(MotionEvent e, MapView mapView) {
+        if (data == null || pointCount == 0) return false;
+        Projection pj = mapView.getProjection();
+        PointClusters cl = clustersFor((int) Math.round(pj.getZoomLevel()));
+
+        // nur die Zellen um den Tippunkt prüfen
+        pj.fromPixels((int) e.getX(), (int) e.getY(), reuseGeo);
+        long tx = (long) Math.floor(cl.cellX(reuseGeo.getLongitude()));
+        long ty = (long) Math.floor(cl.cellY(reuseGeo.getLatitude()));
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+        for (long cy = ty - CELL_MARGIN; cy <= ty + CELL_MARGIN; cy++) {
+            for (long cx = tx - CELL_MARGIN; cx <= tx + CELL_MARGIN; cx++) {
+                int c = cl.clusterInCell(cx, cy);
+                if (c < 0) continue;
+                reuseGeo.setCoords(cl.latAt(c), cl.lonAt(c));
+                pj.toPixels(reuseGeo, reusePx);
+                double dx = reusePx.x - e.getX();
+                double dy = reusePx.y - e.getY();
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (d <= radiusFor(cl.sizeAt(c)) + TOUCH_SLOP && d < bestDist) {
+                    best = c;
+                    bestDist = d;
+                }
+            }
+        }
+        if (best < 0) return false;
+
+        showInfo(mapView, cl, best);
+        return true;
+    }
+
+    private void showInfo(MapView mapView, PointClusters cl, int c) {
+        InfoWindow.closeAllInfoWindowsOn(mapView);
+        if (tapMarker == null) tapMarker = new Marker(mapView);
+
+        SimpleDateFormat fmt = new SimpleDateFormat("dd.MM. HH:mm", Locale.GERMANY);
+        String from = fmt.format(new Date(data.timeAt(cl.firstIndexAt(c))));
+        String to = fmt.format(new Date(data.timeAt(cl.lastIndexAt(c))));
+        int n = cl.sizeAt(c);
+
+        tapMarker.setPosition(new GeoPoint(cl.latAt(c), cl.lonAt(c)));
+        tapMarker.setTitle(title);
+        tapMarker.setSnippet(n == 1 ? from : n + " Punkte, " + from + " – " + to);
+        tapMarker.showInfoWindow();
+    }
+
+    private PointClusters clustersFor(int zoom) {
+        if (clusters == null || clusters.zoom() != zoom) {
+            clusters = new PointClusters(zoom);
+        }
+        if (clusters.pointCount() < pointCount) clusters.addAll(data, pointCount);
+        return clusters;
+    }
+
+    private static float radiusFor(int n) {
+        if (n <= 1) return POINT_RADIUS;
+        return POINT_RADIUS + 6f * (float) (Math.log(n) / Math.log(2));
+    }
+
+    @Override
+    public void onDetach(MapView mapView) {
+        if (tapMarker != null) tapMarker.closeInfoWindow();
+        super.onDetach(mapView);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Spielt einen Track (oder ein Zeitfenster daraus) zeitgerafft ab und liest dabei
+ * Block für Block über den BlockIndex nach, statt die ganze Datei zu laden. Der
+ * Aufrufer fragt regelmäßig mit der seit dem Start vergangenen Zeit nach und bekommt
+ * die bis dahin erreichten Punkte. Pausen, die gerafft länger als MAX_IDLE_MS
+ * dauern würden, werden übersprungen. Nur von einem Thread benutzen.
+ */
+public class TrackReplay {
+
+    static final long MAX_IDLE_MS = 1500;
+
+    private final BinaryTrackFormat format;
+    private final File file;
+    private final long from;
+    private final long to;
+    private final double speed;
+    private final BinaryTrackFormat.BlockIndex index = new BinaryTrackFormat.BlockIndex();
+
+    // aktuell gelesener Block; bufferFirst = Punktnummer von buffer[0] in der Datei
+    private final TrackData buffer = new TrackData(BinaryTrackFormat.MAX_BLOCK_POINTS);
+    private int bufferFirst;
+    // nächste Punktnummer
+    private int next;
+    private boolean started;
+    private boolean done;
+    // Trackzeit beim Start und Summe der übersprungenen Pausen
+    private long startTime;
+    private long skipped;
+    private int emitted;
+
+    public TrackReplay(BinaryTrackFormat format, File file, long from, long to, double speed) {
+        this.format = format;
+        this.file = file;
+        this.from = from;
+        this.to = to;
+        this.speed = speed;
+    }
+
+    // Raffung, damit durationMs Trackzeit in etwa targetMs dauern (mindestens Echtzeit)
+    public static double speedFor(long durationMs, long targetMs) {
+        return Math.max(1.0, (double) durationMs / targetMs);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public int emittedCount() {
+        return emitted;
+    }
+
+    // Trackzeit, die nach elapsedMs Wiedergabe erreicht ist
+    public long trackTime(long elapsedMs) {
+        return startTime + (long) (elapsedMs * speed) + skipped;
+    }
+
+    /**
+     * Hängt alle Punkte an out an, die nach elapsedMs Wiedergabezeit erreicht sind.
+     * Liefert false, wenn der Track bzw. das Zeitfenster zu Ende ist.
+     */
+    public boolean advance(long elapsedMs, TrackData out) throws IOException {
+        if (done) return false;
+        if (!started) {
+            started = true;
+            format.updateIndex(file, index);
+            int b = index.firstBlock(from);
+            if (b >= index.blockCount()) return finish();
+            next = index.firstPoint(b);
+            if (!fill()) return finish();
+            // erster Punkt im Fenster bestimmt den Start
+            while (true) {
+                if (next - bufferFirst >= buffer.size() && !fill()) return finish();
+                if (next >= endPoint()) return finish();
+                long t = buffer.time[next - bufferFirst];
+                if (t >= from && t <= to) {
+                    startTime = t;
+                    break;
+                }
+                next++;
+            }
+        }
+
+        long target = trackTime(elapsedMs);
+        while (true) {
+            if (next - bufferFirst >= buffer.size() && !fill()) return finish();
+            if (next >= endPoint()) return finish();
+            int i = next - bufferFirst;
+            long t = buffer.time[i];
+            if (t < from || t > to) {
+                next++;
+                continue;
+            }
+            if (t > target) {
+                if (t - target <= MAX_IDLE_MS * speed) return true;
+                // lange Pause: direkt zum nächsten Punkt springen
+                skipped += t - target;
+                target = t;
+            }
+            out.add(t, buffer.lat[i], buffer.lon[i]);
+            next++;
+            emitted++;
+        }
+    }
+
+    private boolean finish() {
+        done = true;
+        return false;
+    }
+
+    // Block mit Punkt next lesen (aktualisiert den Index); false am Dateiende
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int first = format.readFromPoint(file, index, next, 1, buffer);
+        if (first < 0) return false;
+        bufferFirst = first;
+        return true;
+    }
+
+    // hinter dem letzten Punkt, der noch im Fenster liegen kann
+    private int endPoint() {
+        int b = index.endBlock(to);
+        return b < index.blockCount() ? index.firstPoint(b) : index.pointCount();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.geotracker;
+
+import java.util.Arrays;
+
+/**
+ * Räumlicher Index eines Tracks für das Zeichnen nur des sichtbaren Ausschnitts.
+ * Gepacktes R-Baum-Prinzip über die zeitliche Reihenfolge: ein Blatt umfasst
+ * LEAF_POINTS aufeinanderfolgende Punkte (plus den ersten Punkt des nächsten
+ * Blatts, damit kein Segment fehlt), ein Knoten NODE_LEAVES Blätter. Da Tracks
+ * räumlich zusammenhängend sind, bleiben die Rechtecke klein.
+ * Beim Anhängen werden nur das letzte Blatt und der letzte Knoten neu berechnet.
+ */
+public class TrackSpatialIndex {
+
+    public static final int LEAF_POINTS = 64;
+    static final int NODE_LEAVES = 64;
+
+    // Zusammenhängende Punktbereiche [from, to] (inklusive) als Ergebnis einer Abfrage
+    public static class Ranges {
+        int[] from = new int[16];
+        int[] to = new int[16];
+        int count;
+
+        public int count() {
+            return count;
+        }
+
+        public int fromAt(int i) {
+            return from[i];
+        }
+
+        public int toAt(int i) {
+            return to[i];
+        }
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(int a, int b) {
+            if (count > 0 && to[count - 1] >= a) {
+                to[count - 1] = Math.max(to[count - 1], b);
+                return;
+            }
+            if (count == from.length) {
+                from = Arrays.copyOf(from, count * 2);
+                to = Arrays.copyOf(to, count * 2);
+            }
+            from[count] = a;
+            to[count] = b;
+            count++;
+        }
+    }
+
+    // je Rechteck: minLat, maxLat, minLon, maxLon
+    private double[] leafBox = new double[4 * 16];
+    private double[] nodeBox = new double[4 * 4];
+    private int leaves;
+    private int nodes;
+    private int indexed;
+
+    public void reset() {
+        leaves = 0;
+        nodes = 0;
+        indexed = 0;
+    }
+
+    public int pointCount() {
+        return indexed;
+    }
+
+    // Übernimmt die Punkte [pointCount(), size) aus data
+    public void update(TrackData data, int size) {
+        if (size < indexed) reset();
+        if (size == indexed || size == 0) return;
+
+        // das Blatt mit dem bisher letzten Punkt ändert sich mit
+        int firstLeaf = Math.max(0, (indexed - 1) / LEAF_POINTS);
+        int lastLeaf = size == 1 ? 0 : (size - 2) / LEAF_POINTS;
+        if (leafBox.length < 4 * (lastLeaf + 1)) {
+            leafBox = Arrays.copyOf(leafBox, Math.max(4 * (lastLeaf + 1), leafBox.length * 2));
+        }
+        for (int l = firstLeaf; l <= lastLeaf; l++) {
+            int from = l * LEAF_POINTS;
+            int to = Math.min(from + LEAF_POINTS, size - 1);
+            box(data, from, to, leafBox, 4 * l);
+        }
+        leaves = lastLeaf + 1;
+
+        int firstNode = firstLeaf / NODE_LEAVES;
+        int lastNode = lastLeaf / NODE_LEAVES;
+        if (nodeBox.length < 4 * (lastNode + 1)) {
+            nodeBox = Arrays.copyOf(nodeBox, Math.max(4 * (lastNode + 1), nodeBox.length * 2));
+        }
+        for (int n = firstNode; n <= lastNode; n++) {
+            int from = n * NODE_LEAVES;
+            int to = Math.min(from + NODE_LEAVES, leaves);
+            union(leafBox, from, to, nodeBox, 4 * n);
+        }
+        nodes = lastNode + 1;
+        indexed = size;
+    }
+
+    /**
+     * Sammelt die Punktbereiche, deren Blatt das Rechteck schneidet. west > east
+     * bedeutet ein Ausschnitt über die Datumsgrenze.
+     */
+    public void query(double south, double north, double west, double east, Ranges out) {
+        out.clear();
+        for (int n = 0; n < nodes; n++) {
+            if (!intersects(nodeBox, 4 * n, south, north, west, east)) continue;
+            int last = Math.min((n + 1) * NODE_LEAVES, leaves);
+            for (int l = n * NODE_LEAVES; l < last; l++) {
+                if (!intersects(leafBox, 4 * l, south, north, west, east)) continue;
+                int from = l * LEAF_POINTS;
+                out.add(from, Math.min(from + LEAF_POINTS, indexed - 1));
+            }
+        }
+    }
+
+    private static void box(TrackData data, int from, int to, double[] out, int o) {
+        double minLat = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE;
+        for (int i = from; i <= to; i++) {
+            double lat = data.lat[i];
+            double lon = data.lon[i];
+            if (lat < minLat) minLat = lat;
+            if (lat > maxLat) maxLat = lat;
+            if (lon < minLon) minLon = lon;
+            if (lon > maxLon) maxLon = lon;
+        }
+        out[o] = minLat;
+        out[o + 1] = maxLat;
+        out[o + 2] = minLon;
+        out[o + 3] = maxLon;
+    }
+
+    private static void union(double[] src, int from, int to, double[] out, int o) {
+        out[o] = Double.MAX_VALUE;
+        out[o + 1] = -Double.MAX_VALUE;
+        out[o + 2] = Double.MAX_VALUE;
+        out[o + 3] = -Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            int s = 4 * i;
+            out[o] = Math.min(out[o], src[s]);
+            out[o + 1] = Math.max(out[o + 1], src[s + 1]);
+            out[o + 2] = Math.min(out[o + 2], src[s + 2]);
+            out[o + 3] = Math.max(out[o + 3], src[s + 3]);
+        }
+    }
+
+    private static boolean intersects(double[] b, int o, double south, double north, double west, double east) {
+        if (b[o + 1] < south || b[o] > north) return false;
+        if (west <= east) return b[o + 3] >= west && b[o + 2] <= east;
+        return b[o + 3] >= west || b[o + 2] <= east;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Zugriff auf die Track-Dateien im internen Speicher.
+ * Speichert im Binärformat; alte track_*.csv Dateien werden beim ersten Zugriff migriert.
+ */
+public class TrackStorage {
+
+    private final File dir;
+    private final BinaryTrackFormat format = new BinaryTrackFormat();
+    private final CsvTrackFormat csv = new CsvTrackFormat();
+
+    public TrackStorage(File dir) {
+        this.dir = dir;
+    }
+
+    public File fileFor(String filename) {
+        return new File(dir, filename);
+    }
+
+    public BinaryTrackFormat format() {
+        return format;
+    }
+
+    // Dateiname für einen neuen Track
+    public static String filenameFor(String trackName) {
+        return "track_" + trackName.replaceAll("\\s+", "_") + BinaryTrackFormat.EXTENSION;
+    }
+
+    /**
+     * Wandelt eine alte CSV-Datei ins Binärformat um und liefert den neuen Dateinamen.
+     * Bereits binäre Namen werden unverändert zurückgegeben; übersprungene Zeilen
+     * gehen an errors.
+     */
+    public String migrateLegacy(String filename, CsvTrackReader.ErrorHandler errors) throws IOException {
+        if (!filename.endsWith(CsvTrackFormat.EXTENSION)) return filename;
+
+        String binName = filename.substring(0, filename.length() - CsvTrackFormat.EXTENSION.length())
+                + BinaryTrackFormat.EXTENSION;
+        File csvFile = new File(dir, filename);
+        File binFile = new File(dir, binName);
+
+        if (!binFile.exists()) {
+            if (csvFile.exists()) {
+                format.write(binFile, csv.read(csvFile, errors));
+            } else {
+                format.ensureFile(binFile);
+            }
+        }
+        if (csvFile.exists() && !csvFile.delete()) {
+            throw new IOException("Alte CSV-Datei konnte nicht gelöscht werden: " + filename);
+        }
+        return binName;
+    }
+
+    public void create(String filename) throws IOException {
+        format.ensureFile(new File(dir, filename));
+    }
+
+    public TrackData load(String filename) throws IOException {
+        return format.read(new File(dir, filename));
+    }
+
+    public void append(String filename, long time, double lat, double lon) throws IOException {
+        TrackData one = new TrackData(1);
+        one.add(time, lat, lon);
+        append(filename, one, 0, 1);
+    }
+
+    public void append(String filename, TrackData data, int from, int to) throws IOException {
+        format.append(new File(dir, filename), data, from, to);
+    }
+
+    public void append(String filename, TrackData data, int from, int to, boolean sync) throws IOException {
+        format.append(new File(dir, filename), data, from, to, sync);
+    }
+
+    // fsync der Track-Datei
+    public void sync(String filename) throws IOException {
+        format.sync(new File(dir, filename));
+    }
+
+    /**
+     * Nach einem Absturz: Track-Datei reparieren (abgerissene Blöcke, veralteter Header)
+     * und das Journal einer unterbrochenen Aufzeichnung nachspielen. Liefert -1, wenn
+     * nichts zu tun war, sonst die Zahl der nachgetragenen Punkte.
+     */
+    public int recover(String filename) throws IOException {
+        File file = new File(dir, filename);
+        boolean hasJournal = TrackJournal.fileFor(file).exists();
+        if (!file.exists() && !hasJournal) return -1;
+        // ohne Journal reicht der günstige Vergleich von Header und Dateilänge
+        boolean repaired = (hasJournal || format.readHeader(file).dataEnd != file.length())
+                && format.repair(file);
+        int replayed = hasJournal ? TrackJournal.recover(format, file) : 0;
+        return repaired || replayed > 0 ? replayed : -1;
+    }
+
+    // abgebrochene Aufzeichnung: das Journal liegt noch neben der Datei
+    public boolean hasJournal(String filename) {
+        return TrackJournal.fileFor(new File(dir, filename)).exists();
+    }
+
+    public boolean delete(String filename) {
+        TrackJournal.fileFor(new File(dir, filename)).delete();
+        return new File(dir, filename).delete();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.geotracker;
+
+import java.util.Locale;
+
+/**
+ * Laufende Statistik eines Tracks: Anzahl, Ausdehnung, Zeitraum, Länge,
+ * Bewegungszeit, Höchstgeschwindigkeit und (falls bekannt) Höhe.
+ * Jeder Punkt kostet O(1); der Zustand wird im Katalog gespeichert und beim
+ * Anhängen fortgeschrieben, damit Katalog und Dialoge keine Track-Datei lesen müssen.
+ */
+public class TrackSummary {
+
+    // langsamer gilt als Stillstand (GPS-Rauschen im Stand)
+    static final double MOVING_SPEED_MPS = 0.5;
+    // längere Lücken sind Pausen der Aufzeichnung, keine Bewegung
+    static final long MAX_GAP_MS = 5 * 60_000L;
+    // Höchstgeschwindigkeit nur über Abschnitte ab dieser Dauer (kurze Sprünge sind Rauschen)
+    static final long MIN_SPEED_INTERVAL_MS = 1000;
+    // Höhenänderungen darunter zählen nicht zum Anstieg
+    static final double ELEVATION_NOISE_M = 3;
+
+    int pointCount;
+    double minLat = Double.NaN;
+    double maxLat = Double.NaN;
+    double minLon = Double.NaN;
+    double maxLon = Double.NaN;
+    long firstTime;
+    long lastTime;
+    double lengthM;
+    double lastLat = Double.NaN;
+    double lastLon = Double.NaN;
+    long movingMs;
+    double maxSpeedMps;
+    // Höhe: NaN, solange kein Punkt eine Höhe hatte
+    double minAlt = Double.NaN;
+    double maxAlt = Double.NaN;
+    double ascentM;
+    double descentM;
+    double altRef = Double.NaN;   // Bezugshöhe für die Schwelle
+
+    public static TrackSummary of(TrackData data) {
+        TrackSummary s = new TrackSummary();
+        s.addAll(data, 0, data.size());
+        return s;
+    }
+
+    public void add(long time, double lat, double lon) {
+        add(time, lat, lon, Double.NaN);
+    }
+
+    // altitude NaN = unbekannt
+    public void add(long time, double lat, double lon, double altitude) {
+        if (pointCount == 0) {
+            minLat = maxLat = lat;
+            minLon = maxLon = lon;
+            firstTime = time;
+        } else {
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+            double d = GeoMath.distanceMeters(lastLat, lastLon, lat, lon);
+            lengthM += d;
+            long dt = time - lastTime;
+            if (dt > 0 && dt <= MAX_GAP_MS) {
+                double speed = d * 1000.0 / dt;
+                if (speed >= MOVING_SPEED_MPS) movingMs += dt;
+                if (dt >= MIN_SPEED_INTERVAL_MS && speed > maxSpeedMps) maxSpeedMps = speed;
+            }
+        }
+        if (!Double.isNaN(altitude)) addAltitude(altitude);
+        lastTime = time;
+        lastLat = lat;
+        lastLon = lon;
+        pointCount++;
+    }
+
+    private void addAltitude(double alt) {
+        if (Double.isNaN(minAlt)) {
+            minAlt = maxAlt = altRef = alt;
+            return;
+        }
+        minAlt = Math.min(minAlt, alt);
+        maxAlt = Math.max(maxAlt, alt);
+        double delta = alt - altRef;
+        if (delta >= ELEVATION_NOISE_M) {
+            ascentM += delta;
+            altRef = alt;
+        } else if (delta <= -ELEVATION_NOISE_M) {
+            descentM -= delta;
+            altRef = alt;
+        }
+    }
+
+    // Punkte [from, to) von data
+    public void addAll(TrackData data, int from, int to) {
+        addAll(data, from, to, null);
+    }
+
+    // altitudes parallel zu data (NaN = unbekannt), darf null sein
+    public void addAll(TrackData data, int from, int to, double[] altitudes) {
+        for (int i = from; i < to; i++) {
+            add(data.time[i], data.lat[i], data.lon[i], altitudes != null ? altitudes[i] : Double.NaN);
+        }
+    }
+
+    public boolean isEmpty() {
+        return pointCount == 0;
+    }
+
+    public int pointCount() {
+        return pointCount;
+    }
+
+    public long firstTime() {
+        return firstTime;
+    }
+
+    public long lastTime() {
+        return lastTime;
+    }
+
+    public double lengthM() {
+        return lengthM;
+    }
+
+    public double lastLat() {
+        return lastLat;
+    }
+
+    public double lastLon() {
+        return lastLon;
+    }
+
+    public long movingMs() {
+        return movingMs;
+    }
+
+    public double maxSpeedMps() {
+        return maxSpeedMps;
+    }
+
+    // Durchschnitt über die Bewegungszeit; 0 ohne Bewegung
+    public double avgSpeedMps() {
+        return movingMs > 0 ? lengthM * 1000.0 / movingMs : 0;
+    }
+
+    public boolean hasAltitude() {
+        return !Double.isNaN(minAlt);
+    }
+
+    public double minAltitude() {
+        return minAlt;
+    }
+
+    public double maxAltitude() {
+        return maxAlt;
+    }
+
+    public double ascentM() {
+        return ascentM;
+    }
+
+    public double descentM() {
+        return descentM;
+    }
+
+    // z.B. "123 Punkte, 4,2 km"
+    public String describe() {
+        String points = pointCount == 1 ? "1 Punkt" : pointCount + " Punkte";
+        return points + ", " + formatLength(lengthM);
+    }
+
+    // mehrzeilig für die Statusanzeige: Strecke, Bewegungszeit, Geschwindigkeiten, Höhe
+    public String describeStats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Strecke: ").append(formatLength(lengthM))
+                .append(String.format(Locale.GERMANY, ", in Bewegung %d:%02d h",
+                        movingMs / 3_600_000L, movingMs / 60_000L % 60));
+        sb.append(String.format(Locale.GERMANY, "\nØ %.1f km/h, max. %.1f km/h",
+                avgSpeedMps() * 3.6, maxSpeedMps * 3.6));
+        if (hasAltitude()) {
+            sb.append(String.format(Locale.GERMANY, "\nHöhe %.0f–%.0f m, ↑ %.0f m ↓ %.0f m",
+                    minAlt, maxAlt, ascentM, descentM));
+        }
+        return sb.toString();
+    }
+
+    private static String formatLength(double m) {
+        if (m < 1000) return String.format(Locale.GERMANY, "%.0f m", m);
+        return String.format(Locale.GERMANY, "%.1f km", m / 1000);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.geotracker;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Point;
+
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Overlay;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Hervorgehobener Ausschnitt eines Tracks: ein Zeitfenster oder der bisher
+ * abgespielte Teil. Zeichnet die Punkte als Linie, den letzten als Kopf und dessen
+ * Uhrzeit unten links. Punkte näher als MIN_SEGMENT_PX am vorigen werden beim
+ * Zeichnen übersprungen; draw() alloziert nichts.
+ */
+public class TrackWindowOverlay extends Overlay {
+
+    private static final float MIN_SEGMENT_PX = 2f;
+    private static final float HEAD_RADIUS = 16f;
+    private static final float TEXT_SIZE = 36f;
+    private static final float PADDING = 16f;
+
+    private final TrackData data = new TrackData();
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint headPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backgroundPaint = new Paint();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("dd.MM. HH:mm:ss", Locale.GERMANY);
+    // Uhrzeit des letzten Punktes, nur bei neuen Punkten neu formatiert
+    private String label;
+
+    // wiederverwendete Objekte
+    private final GeoPoint reuseGeo = new GeoPoint(0.0, 0.0);
+    private final Point reusePx = new Point();
+    private float[] lines = new float[1024];
+
+    public TrackWindowOverlay() {
+        linePaint.setColor(0xFFE040FB);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(10f);
+        linePaint.setStrokeCap(Paint.Cap.ROUND);
+        headPaint.setColor(0xFFE040FB);
+        headPaint.setStyle(Paint.Style.FILL);
+        strokePaint.setColor(0xFFFFFFFF);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(4f);
+        textPaint.setColor(0xFFFFFFFF);
+        textPaint.setTextSize(TEXT_SIZE);
+        backgroundPaint.setColor(0xA0000000);
+        backgroundPaint.setStyle(Paint.Style.FILL);
+    }
+
+    public void clear() {
+        data.clear();
+        label = null;
+    }
+
+    public void append(TrackData chunk) {
+        int n = chunk.size();
+        if (n == 0) return;
+        data.ensureCapacity(data.size() + n);
+        for (int i = 0; i < n; i++) data.add(chunk.timeAt(i), chunk.latAt(i), chunk.lonAt(i));
+        label = timeFormat.format(new Date(data.timeAt(data.size() - 1)));
+    }
+
+    public TrackData data() {
+        return data;
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection pj) {
+        int size = data.size();
+        if (size == 0) return;
+
+        int len = 0;
+        float prevX = 0;
+        float prevY = 0;
+        for (int i = 0; i < size; i++) {
+            reuseGeo.setCoords(data.lat[i], data.lon[i]);
+            pj.toPixels(reuseGeo, reusePx);
+            float x = reusePx.x;
+            float y = reusePx.y;
+            if (i > 0) {
+                if (i < size - 1 && Math.abs(x - prevX) < MIN_SEGMENT_PX && Math.abs(y - prevY) < MIN_SEGMENT_PX) continue;
+                if (len + 4 > lines.length) {
+                    canvas.drawLines(lines, 0, len, linePaint);
+                    len = 0;
+                }
+                lines[len++] = prevX;
+                lines[len++] = prevY;
+                lines[len++] = x;
+                lines[len++] = y;
+            }
+            prevX = x;
+            prevY = y;
+        }
+        if (len > 0) canvas.drawLines(lines, 0, len, linePaint);
+        canvas.drawCircle(prevX, prevY, HEAD_RADIUS, headPaint);
+        canvas.drawCircle(prevX, prevY, HEAD_RADIUS, strokePaint);
+
+        if (label == null) return;
+        // Uhrzeit in Bildschirmkoordinaten, unabhängig von Verschiebung und Drehung der Karte
+        pj.save(canvas, false, true);
+        float width = textPaint.measureText(label);
+        float bottom = canvas.getHeight() - PADDING;
+        canvas.drawRect(PADDING, bottom - TEXT_SIZE - 2 * PADDING, width + 3 * PADDING, bottom, backgroundPaint);
+        canvas.drawText(label, 2 * PADDING, bottom - PADDING - textPaint.descent(), textPaint);
+        pj.restore(canvas, true);
+    }
+}
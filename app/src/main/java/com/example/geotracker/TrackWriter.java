@@ -0,0 +1,280 @@
+package com.example.geotracker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gepufferter Schreiber für die Routenaufzeichnung.
+ * Fixes werden im Speicher gesammelt und blockweise geschrieben, sobald
+ * maxBatch Punkte erreicht sind oder der älteste Punkt maxDelayMs wartet.
+ * Vorher landen sie gruppenweise (spätestens nach JOURNAL_COMMIT_MS) im
+ * TrackJournal, damit ein Absturz höchstens diese letzte Gruppe kostet.
+ * Geschrieben wird immer auf dem übergebenen I/O-Executor.
+ */
+public class TrackWriter implements Closeable {
+
+    // Wie sicher ein geschriebener Punkt ist
+    public enum Durability {
+        // Journal im Page-Cache: übersteht einen Absturz der App, nicht aber einen Stromausfall
+        BUFFERED,
+        // fsync des Journals einmal pro Gruppe; übersteht auch einen Stromausfall
+        SYNC_JOURNAL
+    }
+
+    // spätestens so lange wartet ein Punkt auf das Journal
+    static final long JOURNAL_COMMIT_MS = 1000;
+    // ab so vielen Journal-Einträgen wird der Track gesichert und das Journal geleert
+    static final int CHECKPOINT_RECORDS = 1024;
+
+    public interface FlushListener {
+        /**
+         * batch und altitudes (parallel zu batch, NaN = unbekannt) sind nur während
+         * des Aufrufs gültig (läuft auf dem I/O-Executor). Die Höhe steht nicht im
+         * Binärformat, sie wird nur für die Statistik weitergereicht.
+         */
+        void onFlushed(String filename, TrackData batch, double[] altitudes);
+
+        void onFlushFailed(String filename, IOException e);
+    }
+
+    private final TrackStorage storage;
+    private final String filename;
+    private final int maxBatch;
+    private final long maxDelayMs;
+    private final Durability durability;
+    private final ScheduledExecutorService io;
+    private final FlushListener listener;
+
+    // Doppelpuffer: in pending wird gesammelt, writing wird gerade geschrieben
+    private TrackData pending;
+    private TrackData writing;
+    private double[] pendingAlt;
+    private double[] writingAlt;
+    private long pendingSinceNanos;   // Zeitpunkt des ältesten Punkts in pending
+    private ScheduledFuture<?> timer;
+    private boolean flushQueued;
+    private boolean closed;
+
+    // Gruppe für das Journal, ebenfalls doppelt gepuffert
+    private TrackData journalPending;
+    private TrackData journalWriting;
+    private ScheduledFuture<?> journalTimer;
+    // nur auf dem I/O-Executor
+    private TrackJournal journal;
+    private boolean journalFailed;
+    // ein Block fehlt im Track: weitere Punkte nur noch ins Journal, damit der Track ein Präfix bleibt
+    private boolean writeFailed;
+
+    public TrackWriter(TrackStorage storage, String filename, int maxBatch, long maxDelayMs,
+                       Durability durability, ScheduledExecutorService io, FlushListener listener) {
+        this.storage = storage;
+        this.filename = filename;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayMs = Math.max(0, maxDelayMs);
+        this.durability = durability;
+        this.io = io;
+        this.listener = listener;
+        this.pending = new TrackData(this.maxBatch);
+        this.writing = new TrackData(this.maxBatch);
+        this.pendingAlt = new double[this.maxBatch];
+        this.writingAlt = new double[this.maxBatch];
+        this.journalPending = new TrackData(this.maxBatch);
+        this.journalWriting = new TrackData(this.maxBatch);
+    }
+
+    public String filename() {
+        return filename;
+    }
+
+    // Nimmt einen Fix an; kehrt sofort zurück, geschrieben wird später im Block
+    public void add(long time, double lat, double lon) {
+        add(time, lat, lon, Double.NaN);
+    }
+
+    // altitude in Metern, NaN = unbekannt
+    public synchronized void add(long time, double lat, double lon, double altitude) {
+        if (closed) return;
+        int i = pending.size();
+        if (i == 0) pendingSinceNanos = System.nanoTime();
+        if (i == pendingAlt.length) pendingAlt = Arrays.copyOf(pendingAlt, i + (i >> 1) + 1);
+        pendingAlt[i] = altitude;
+        pending.add(time, lat, lon);
+        journalPending.add(time, lat, lon);
+        if (journalPending.size() == 1 && journalTimer == null) {
+            journalTimer = io.schedule(this::commitJournal, Math.min(JOURNAL_COMMIT_MS, maxDelayMs),
+                    TimeUnit.MILLISECONDS);
+        }
+        if (pending.size() >= maxBatch) {
+            queueFlush();
+        } else if (pending.size() == 1 && timer == null) {
+            timer = io.schedule(this::flushPending, maxDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    // Schreibt alles Gepufferte so bald wie möglich
+    public synchronized void flushAsync() {
+        if (pending.size() > 0) queueFlush();
+    }
+
+    private void queueFlush() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        if (flushQueued) return;
+        flushQueued = true;
+        io.execute(this::flushPending);
+    }
+
+    /**
+     * Group Commit: alle seit dem letzten Mal gesammelten Punkte mit einem write
+     * ins Journal, bei SYNC_JOURNAL mit einem fsync. Läuft auf dem I/O-Executor.
+     */
+    private void commitJournal() {
+        TrackData group;
+        synchronized (this) {
+            if (journalTimer != null) {
+                journalTimer.cancel(false);
+                journalTimer = null;
+            }
+            if (journalPending.size() == 0) return;
+            group = journalPending;
+            journalPending = journalWriting;
+            journalWriting = group;
+        }
+        if (journalFailed) {
+            group.clear();
+            return;
+        }
+        try {
+            if (journal == null) {
+                // Basis: alles bis hier steht schon im Track (gleicher Executor, gleiche Reihenfolge)
+                journal = TrackJournal.create(storage.fileFor(filename),
+                        storage.format().readHeader(storage.fileFor(filename)).pointCount);
+            }
+            journal.append(group, 0, group.size());
+            if (durability == Durability.SYNC_JOURNAL) journal.sync();
+        } catch (IOException e) {
+            // ohne lückenloses Journal lieber keins: ab hier nur noch direkt in den Track
+            journalFailed = true;
+            if (journal != null) {
+                try {
+                    journal.delete();
+                } catch (IOException ignored) {
+                    // Wiederherstellung fängt ein veraltetes Journal über basePoints ab
+                }
+                journal = null;
+            }
+            if (listener != null) listener.onFlushFailed(filename, e);
+        } finally {
+            group.clear();
+        }
+    }
+
+    // Track sichern und Journal leeren; mit close=true wird es danach gelöscht
+    private void checkpoint(boolean close) {
+        if (journal == null) return;
+        try {
+            // nach Schreibfehlern bleibt das Journal für die Wiederherstellung liegen
+            if (!writeFailed) {
+                storage.sync(filename);
+                if (close) journal.delete();
+                else journal.reset(storage.format().readHeader(storage.fileFor(filename)).pointCount);
+            } else if (close) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            if (listener != null) listener.onFlushFailed(filename, e);
+        }
+        if (close) journal = null;
+    }
+
+    // Läuft auf dem I/O-Executor
+    private void flushPending() {
+        // Journal zuerst, damit es alles enthält, was gleich im Track landet
+        commitJournal();
+        TrackData batch;
+        double[] altitudes;
+        long since;
+        synchronized (this) {
+            flushQueued = false;
+            timer = null;
+            if (pending.size() == 0) return;
+            batch = pending;
+            pending = writing;
+            writing = batch;
+            since = pendingSinceNanos;
+            altitudes = pendingAlt;
+            pendingAlt = writingAlt;
+            writingAlt = altitudes;
+        }
+
+        int n = batch.size();
+        PerfStats stats = PerfStats.global();
+        long start = System.nanoTime();
+        stats.record(PerfStats.Timer.FLUSH_WAIT, start - since);
+        if (writeFailed && journal != null) {
+            // steht im Journal und wird beim nächsten Start nachgetragen
+            batch.clear();
+            return;
+        }
+        try {
+            // kein fsync pro Block: das Journal sichert die Punkte bis zum nächsten Checkpoint
+            storage.append(filename, batch, 0, n, false);
+            stats.recordSince(PerfStats.Timer.FLUSH_WRITE, start);
+            stats.add(PerfStats.Counter.POINTS_WRITTEN, n);
+            if (listener != null) listener.onFlushed(filename, batch, altitudes);
+        } catch (IOException e) {
+            writeFailed = true;
+            if (listener != null) listener.onFlushFailed(filename, e);
+        } finally {
+            batch.clear();
+        }
+        if (journal != null && journal.records() >= CHECKPOINT_RECORDS) checkpoint(false);
+    }
+
+    /**
+     * Schreibt den Rest und nimmt danach nichts mehr an. Blockiert nicht;
+     * der letzte Block wird hinter bereits eingereihten Aufgaben geschrieben,
+     * danach wird der Track gesichert und das Journal entfernt.
+     */
+    @Override
+    public void close() {
+        if (markClosed()) io.execute(this::finish);
+    }
+
+    /**
+     * Wie close(), aber sofort und ohne neue Aufgabe: nur auf dem I/O-Executor aufrufen,
+     * z.B. wenn dieser gleich danach beendet wird. Kehrt erst zurück, wenn der letzte
+     * Block geschrieben und das Journal entfernt ist.
+     */
+    public void closeNow() {
+        if (markClosed()) finish();
+    }
+
+    // false, wenn schon geschlossen
+    private synchronized boolean markClosed() {
+        if (closed) return false;
+        closed = true;
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        flushQueued = true;
+        return true;
+    }
+
+    // Läuft auf dem I/O-Executor
+    private void finish() {
+        flushPending();
+        checkpoint(true);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.geotracker;
+
+/**
+ * Markierter Punkt eines Tracks mit Kommentar und optionalem Foto.
+ */
+public class Waypoint {
+    long id;            // ID im Katalog
+    long trackId;       // Track, zu dem der Marker gehört
+    long time;          // Epoch-Millis
+    double lat;
+    double lon;
+    String comment;     // "" = ohne Kommentar
+    String photo;       // Dateiname im Foto-Ordner, null = ohne Foto
+
+    public Waypoint(long trackId, long time, double lat, double lon, String comment, String photo) {
+        this.trackId = trackId;
+        this.time = time;
+        this.lat = lat;
+        this.lon = lon;
+        this.comment = comment == null ? "" : comment;
+        this.photo = photo;
+    }
+
+    public boolean hasPhoto() {
+        return photo != null;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.geotracker;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Overlay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zeichnet die Marker eines Tracks: mit Foto als kleines Vorschaubild über dem
+ * Punkt, sonst als Stecknadel. Vorschaubilder kommen aus dem ThumbnailCache und
+ * werden nur für Marker im Ausschnitt angefordert; draw() alloziert nichts.
+ */
+public class WaypointOverlay extends Overlay {
+
+    public interface OnTapListener {
+        void onWaypointTapped(Waypoint w);
+    }
+
+    public static final int ICON_PX = 96;
+    // mehr Fotos pro Bild lohnen sich nicht (überlappen ohnehin), der Rest als Stecknadel
+    private static final int MAX_PHOTOS_DRAWN = 64;
+    private static final float PIN_RADIUS = 14f;
+    private static final float FRAME = 4f;
+    private static final float TOUCH_SLOP = 16f;
+
+    private final ThumbnailCache thumbnails;
+    private final OnTapListener tapListener;
+    private final Paint pinPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint framePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final List<Waypoint> waypoints = new ArrayList<>();
+
+    // wiederverwendete Objekte
+    private final GeoPoint reuseGeo = new GeoPoint(0.0, 0.0);
+    private final Point reusePx = new Point();
+    private final RectF reuseRect = new RectF();
+    private final Rect reuseSrc = new Rect();
+
+    public WaypointOverlay(int color, ThumbnailCache thumbnails, OnTapListener tapListener) {
+        this.thumbnails = thumbnails;
+        this.tapListener = tapListener;
+        pinPaint.setColor(color);
+        pinPaint.setStyle(Paint.Style.FILL);
+        framePaint.setColor(0xFFFFFFFF);
+        framePaint.setStyle(Paint.Style.FILL);
+        strokePaint.setColor(0xFF000000);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(2f);
+    }
+
+    public void setWaypoints(List<Waypoint> list) {
+        waypoints.clear();
+        waypoints.addAll(list);
+    }
+
+    public boolean isEmpty() {
+        return waypoints.isEmpty();
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection pj) {
+        BoundingBox bb = pj.getBoundingBox();
+        int photos = 0;
+        for (int i = 0, n = waypoints.size(); i < n; i++) {
+            Waypoint w = waypoints.get(i);
+            if (!inBox(bb, w)) continue;
+            reuseGeo.setCoords(w.lat, w.lon);
+            pj.toPixels(reuseGeo, reusePx);
+            Bitmap b = null;
+            if (w.hasPhoto() && photos < MAX_PHOTOS_DRAWN) {
+                photos++;
+                b = thumbnails.get(w.photo, ICON_PX);
+            }
+            if (b != null) drawPhoto(canvas, b);
+            else drawPin(canvas, w.hasPhoto());
+        }
+    }
+
+    // Vorschaubild mit weißem Rahmen, unten mittig über dem Punkt
+    private void drawPhoto(Canvas canvas, Bitmap b) {
+        float scale = (float) ICON_PX / Math.max(b.getWidth(), b.getHeight());
+        float w = b.getWidth() * scale;
+        float h = b.getHeight() * scale;
+        iconRect(w, h, reuseRect);
+        canvas.drawRect(reuseRect.left - FRAME, reuseRect.top - FRAME,
+                reuseRect.right + FRAME, reuseRect.bottom + FRAME, framePaint);
+        reuseSrc.set(0, 0, b.getWidth(), b.getHeight());
+        canvas.drawBitmap(b, reuseSrc, reuseRect, bitmapPaint);
+        canvas.drawCircle(reusePx.x, reusePx.y, FRAME, pinPaint);
+    }
+
+    private void drawPin(Canvas canvas, boolean photoPending) {
+        float cy = reusePx.y - PIN_RADIUS * 1.5f;
+        canvas.drawLine(reusePx.x, reusePx.y, reusePx.x, cy, strokePaint);
+        canvas.drawCircle(reusePx.x, cy, PIN_RADIUS, pinPaint);
+        canvas.drawCircle(reusePx.x, cy, PIN_RADIUS, strokePaint);
+        // Foto noch nicht geladen: weißer Punkt in der Nadel
+        if (photoPending) canvas.drawCircle(reusePx.x, cy, PIN_RADIUS / 3, framePaint);
+    }
+
+    // Rechteck des Vorschaubilds über dem Punkt in reusePx
+    private void iconRect(float w, float h, RectF out) {
+        float bottom = reusePx.y - 2 * FRAME;
+        out.set(reusePx.x - w / 2, bottom - h, reusePx.x + w / 2, bottom);
+    }
+
+    @Override
+    public boolean onSingleTapConfirmed(MotionEvent e, MapView mapView) {
+        if (tapListener == null || waypoints.isEmpty()) return false;
+        Projection pj = mapView.getProjection();
+        BoundingBox bb = pj.getBoundingBox();
+        // oben liegende (zuletzt gezeichnete) Marker zuerst
+        for (int i = waypoints.size() - 1; i >= 0; i--) {
+            Waypoint w = waypoints.get(i);
+            if (!inBox(bb, w)) continue;
+            reuseGeo.setCoords(w.lat, w.lon);
+            pj.toPixels(reuseGeo, reusePx);
+            if (w.hasPhoto()) iconRect(ICON_PX, ICON_PX, reuseRect);
+            else reuseRect.set(reusePx.x - PIN_RADIUS, reusePx.y - PIN_RADIUS * 2.5f,
+                    reusePx.x + PIN_RADIUS, reusePx.y);
+            reuseRect.inset(-TOUCH_SLOP, -TOUCH_SLOP);
+            if (reuseRect.contains(e.getX(), e.getY())) {
+                tapListener.onWaypointTapped(w);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inBox(BoundingBox bb, Waypoint w) {
+        return w.lat <= bb.getLatNorth() && w.lat >= bb.getLatSouth()
+                && (bb.getLonWest() <= bb.getLonEast()
+                ? w.lon >= bb.getLonWest() && w.lon <= bb.getLonEast()
+                : w.lon >= bb.getLonWest() || w.lon <= bb.getLonEast());
+    }
+}
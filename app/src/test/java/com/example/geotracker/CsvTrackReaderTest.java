@@ -0,0 +1,183 @@
+package com.example.geotracker;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für CsvTrackReader, inkl. Durchsatzvergleich mit dem alten
+ * zeilenweisen Parser (BufferedReader + split + ein Objekt pro Zeile).
+ */
+public class CsvTrackReaderTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+    @Test
+    public void parsesRowsLikeTheJdk() throws IOException {
+        String csv = generate(5000, 1);
+        TrackData data = new TrackData();
+        long n = new CsvTrackReader(ZONE, CsvTrackReader.DEFAULT_BUFFER_SIZE)
+                .read(in(csv), data, (line, msg) -> fail("Zeile " + line + ": " + msg));
+
+        String[] lines = csv.split("\n");
+        assertEquals(lines.length - 1, n);
+        for (int i = 1; i < lines.length; i++) {
+            String[] parts = lines[i].split(",");
+            long t = LocalDateTime.parse(parts[0]).atZone(ZONE).toInstant().toEpochMilli();
+            assertEquals("Zeit Zeile " + i, t, data.timeAt(i - 1));
+            double lat = Double.parseDouble(parts[1]);
+            double lon = Double.parseDouble(parts[2]);
+            assertEquals(lat, data.latAt(i - 1), Math.ulp(lat));
+            assertEquals(lon, data.lonAt(i - 1), Math.ulp(lon));
+        }
+    }
+
+    @Test
+    public void handlesRowsAcrossBufferBoundaries() throws IOException {
+        String csv = generate(2000, 2);
+        TrackData big = new TrackData();
+        TrackData tiny = new TrackData();
+        new CsvTrackReader(ZONE, CsvTrackReader.DEFAULT_BUFFER_SIZE).read(in(csv), big, null);
+        new CsvTrackReader(ZONE, 16).read(in(csv), tiny, null);
+
+        assertEquals(big.size(), tiny.size());
+        for (int i = 0; i < big.size(); i++) {
+            assertEquals(big.timeAt(i), tiny.timeAt(i));
+            assertEquals(big.latAt(i), tiny.latAt(i), 0.0);
+            assertEquals(big.lonAt(i), tiny.lonAt(i), 0.0);
+        }
+    }
+
+    @Test
+    public void acceptsHeaderCrLfBlankLinesAndEpochMillis() throws IOException {
+        String csv = "Timestamp,Latitude,Longitude\r\n"
+                + "2024-03-31T01:59:59.5,48.1,11.5\r\n"
+                + "\r\n"
+                + "1711846800000, -33.25 , 151.2\r\n"
+                + "2024-05-01T10:00,1.0E-5,-0.0\n";
+        TrackData data = new TrackData();
+        long n = new CsvTrackReader(ZONE, 64).read(in(csv), data, (line, msg) -> fail(msg));
+
+        assertEquals(3, n);
+        assertEquals(LocalDateTime.parse("2024-03-31T01:59:59.5").atZone(ZONE).toInstant().toEpochMilli(),
+                data.timeAt(0));
+        assertEquals(1711846800000L, data.timeAt(1));
+        assertEquals(-33.25, data.latAt(1), 0.0);
+        assertEquals(1.0E-5, data.latAt(2), 0.0);
+        assertEquals(LocalDateTime.parse("2024-05-01T10:00").atZone(ZONE).toInstant().toEpochMilli(),
+                data.timeAt(2));
+    }
+
+    @Test
+    public void reportsMalformedRowsWithLineNumbers() throws IOException {
+        String csv = "Timestamp,Latitude,Longitude\n"
+                + "2024-05-01T10:00:00,48.1,11.5\n"
+                + "2024-05-01T10:00:01,48.x,11.5\n"
+                + "2024-05-01T10:00:02\n"
+                + "gestern,48.1,11.5\n"
+                + "2024-05-01T10:00:03,95.0,11.5\n"
+                + "2024-05-01T10:00:04,48.2,11.6\n"
+                + "2024-05-01T10:0"; // abgerissene letzte Zeile
+        List<String> errors = new ArrayList<>();
+        TrackData data = new TrackData();
+        long n = new CsvTrackReader(ZONE, 32).read(in(csv), data, (line, msg) -> errors.add(line + ":" + msg));
+
+        assertEquals(2, n);
+        assertEquals(5, errors.size());
+        assertTrue(errors.get(0).startsWith("3:"));
+        assertTrue(errors.get(1).startsWith("4:"));
+        assertTrue(errors.get(2).startsWith("5:"));
+        assertTrue(errors.get(3).startsWith("6:"));
+        assertTrue(errors.get(4).startsWith("8:"));
+        assertEquals(48.2, data.latAt(1), 0.0);
+    }
+
+    @Test
+    public void throughputComparedToLegacyParser() throws IOException {
+        byte[] csv = generate(200_000, 3).getBytes(StandardCharsets.UTF_8);
+        CsvTrackReader reader = new CsvTrackReader(ZONE, CsvTrackReader.DEFAULT_BUFFER_SIZE);
+
+        // Aufwärmen
+        for (int i = 0; i < 3; i++) {
+            legacyParse(new ByteArrayInputStream(csv));
+            reader.read(new ByteArrayInputStream(csv), new TrackData(), null);
+        }
+
+        int rounds = 5;
+        long legacyNanos = 0;
+        long streamNanos = 0;
+        int legacyRows = 0;
+        long streamRows = 0;
+        for (int i = 0; i < rounds; i++) {
+            long t0 = System.nanoTime();
+            legacyRows = legacyParse(new ByteArrayInputStream(csv)).size();
+            long t1 = System.nanoTime();
+            streamRows = reader.read(new ByteArrayInputStream(csv), new TrackData(), null);
+            long t2 = System.nanoTime();
+            legacyNanos += t1 - t0;
+            streamNanos += t2 - t1;
+        }
+
+        assertEquals(legacyRows, streamRows);
+        double legacyRate = legacyRows * rounds / (legacyNanos / 1e9);
+        double streamRate = streamRows * rounds / (streamNanos / 1e9);
+        System.out.printf("CSV-Parser: alt %.0f Zeilen/s, streamend %.0f Zeilen/s (Faktor %.1f)%n",
+                legacyRate, streamRate, streamRate / legacyRate);
+    }
+
+    // Verhalten des früheren MainActivity.loadPointsFromCsv (ohne Zeitstempel)
+    private static List<double[]> legacyParse(InputStream in) throws IOException {
+        List<double[]> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (first) {
+                    first = false;
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length >= 3) {
+                    double lat = Double.parseDouble(parts[1].trim());
+                    double lon = Double.parseDouble(parts[2].trim());
+                    result.add(new double[]{lat, lon});
+                }
+            }
+        }
+        return result;
+    }
+
+    // Synthetischer Track im Format von CsvTrackFormat
+    private static String generate(int rows, long seed) {
+        Random rnd = new Random(seed);
+        StringBuilder sb = new StringBuilder(CsvTrackFormat.HEADER);
+        long t = LocalDateTime.parse("2024-03-30T22:00:00").atZone(ZONE).toInstant().toEpochMilli();
+        double lat = 48.137154;
+        double lon = 11.576124;
+        for (int i = 0; i < rows; i++) {
+            t += 500 + rnd.nextInt(1500);
+            lat += (rnd.nextDouble() - 0.5) * 1e-4;
+            lon += (rnd.nextDouble() - 0.5) * 1e-4;
+            sb.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(t), ZONE)).append(',')
+                    .append(lat).append(',').append(lon).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static InputStream in(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.geotracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für FixRingBuffer: Reihenfolge, Verwerfen bei vollem Puffer und ein
+ * Erzeuger/Verbraucher-Lauf über zwei Threads.
+ */
+public class FixRingBufferTest {
+
+    @Test
+    public void capacityIsPowerOfTwo() {
+        assertEquals(2, new FixRingBuffer(1).capacity());
+        assertEquals(8, new FixRingBuffer(8).capacity());
+        assertEquals(16, new FixRingBuffer(9).capacity());
+        assertEquals(1024, new FixRingBuffer(1000).capacity());
+    }
+
+    @Test
+    public void drainsInOrderAndDropsWhenFull() {
+        FixRingBuffer buf = new FixRingBuffer(4);
+        for (int i = 0; i < 4; i++) assertTrue(buf.offer(i, i + 0.5, -i, i * 10));
+        assertFalse(buf.offer(99, 0, 0, 0));
+        assertEquals(1, buf.droppedCount());
+        assertEquals(4, buf.size());
+
+        List<Long> times = new ArrayList<>();
+        int n = buf.drain((t, lat, lon, alt) -> {
+            assertEquals(t + 0.5, lat, 0);
+            assertEquals(-t, lon, 0);
+            assertEquals(t * 10, alt, 0);
+            times.add(t);
+        });
+        assertEquals(4, n);
+        assertEquals(List.of(0L, 1L, 2L, 3L), times);
+        assertTrue(buf.isEmpty());
+        assertEquals(0, buf.drain((t, lat, lon, alt) -> fail()));
+
+        // nach dem Leeren wieder Platz, auch über die Umlaufgrenze hinweg
+        for (int i = 4; i < 7; i++) assertTrue(buf.offer(i, i + 0.5, -i, i * 10));
+        times.clear();
+        buf.drain((t, lat, lon, alt) -> times.add(t));
+        assertEquals(List.of(4L, 5L, 6L), times);
+    }
+
+    @Test
+    public void producerAndConsumerOnTwoThreads() throws InterruptedException {
+        final int total = 500_000;
+        FixRingBuffer buf = new FixRingBuffer(64);
+        AtomicLong expected = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                while (!buf.offer(i, i * 1e-6, -i * 1e-6, i)) Thread.yield();
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            while (expected.get() < total) {
+                int n = buf.drain((t, lat, lon, alt) -> {
+                    long want = expected.getAndIncrement();
+                    if (t != want || lat != want * 1e-6 || lon != -want * 1e-6 || alt != want) {
+                        errors.incrementAndGet();
+                    }
+                });
+                if (n == 0) Thread.yield();
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join(30_000);
+        consumer.join(30_000);
+
+        assertFalse(producer.isAlive() || consumer.isAlive());
+        assertEquals(0, errors.get());
+        assertEquals(total, expected.get());
+        assertTrue(buf.isEmpty());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.geotracker;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für HeatmapGrid: paralleles Raster gegen einfaches Zählen Punkt für Punkt,
+ * über Abschnitts- und Kachelgrenzen hinweg, sowie die Farbskala.
+ */
+public class HeatmapGridTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdown() {
+        POOL.shutdownNow();
+    }
+
+    // Irrfahrt mit normalverteilten Schritten ohne Richtung, streut über viele Kacheln
+    private static TrackData gaussianRandomWalk(Random rnd, double lat0, double lon0, int n) {
+        TrackData d = new TrackData(n);
+        double lat = lat0, lon = lon0;
+        for (int i = 0; i < n; i++) {
+            d.add(i * 1000L, lat, lon);
+            lat += rnd.nextGaussian() * 2e-4;
+            lon += rnd.nextGaussian() * 3e-4;
+        }
+        return d;
+    }
+
+    // Zelle direkt aus der Mercator-Formel, unabhängig von count()
+    private static Map<Long, int[]> bruteForce(List<TrackData> tracks, int zoom) {
+        int bins = (1 << zoom) * HeatmapGrid.BINS;
+        Map<Long, int[]> out = new HashMap<>();
+        for (TrackData d : tracks) {
+            for (int i = 0; i < d.size(); i++) {
+                double r = Math.toRadians(d.latAt(i));
+                int bx = (int) Math.floor((d.lonAt(i) + 180) / 360 * bins);
+                int by = (int) Math.floor((1 - Math.log(Math.tan(r) + 1 / Math.cos(r)) / Math.PI) / 2 * bins);
+                long key = TileDiskCache.tileIndex(zoom, bx / HeatmapGrid.BINS, by / HeatmapGrid.BINS);
+                out.computeIfAbsent(key, k -> new int[HeatmapGrid.BINS * HeatmapGrid.BINS])
+                        [(by % HeatmapGrid.BINS) * HeatmapGrid.BINS + bx % HeatmapGrid.BINS]++;
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void parallelGridMatchesSerialCount() {
+        Random rnd = new Random(1);
+        List<TrackData> tracks = new ArrayList<>();
+        // mehr als ein Abschnitt pro Track, verteilt über viele Kacheln
+        for (int t = 0; t < 12; t++) tracks.add(gaussianRandomWalk(rnd, 48.0 + rnd.nextDouble(), 11.0 + rnd.nextDouble(), 40_000));
+        long total = 12 * 40_000L;
+
+        for (int zoom : new int[]{3, 10, 15}) {
+            HeatmapGrid grid = HeatmapGrid.compute(zoom, tracks, POOL);
+            Map<Long, int[]> expected = bruteForce(tracks, zoom);
+            assertEquals(zoom, grid.zoom());
+            assertEquals(total, grid.pointCount());
+            assertEquals(expected.size(), grid.tileCount());
+
+            long sum = 0;
+            int max = 0;
+            for (Map.Entry<Long, int[]> e : expected.entrySet()) {
+                assertTrue(grid.hasTile(e.getKey()));
+                assertArrayEquals(e.getValue(), grid.counts(e.getKey()));
+                for (int v : e.getValue()) {
+                    sum += v;
+                    max = Math.max(max, v);
+                }
+            }
+            assertEquals(total, sum);
+            assertEquals(max, grid.maxCount());
+        }
+    }
+
+    @Test
+    public void zoomIsClampedAndEmptyInputGivesEmptyGrid() {
+        HeatmapGrid empty = HeatmapGrid.compute(12, new ArrayList<>(), POOL);
+        assertEquals(0, empty.tileCount());
+        assertFalse(empty.render(TileDiskCache.tileIndex(12, 0, 0), new int[HeatmapGrid.BINS * HeatmapGrid.BINS]));
+
+        TrackData d = new TrackData();
+        d.add(0, 48.1, 11.5);
+        HeatmapGrid grid = HeatmapGrid.compute(30, List.of(d), POOL);
+        assertEquals(HeatmapGrid.MAX_ZOOM, grid.zoom());
+        assertEquals(1, grid.tileCount());
+        assertEquals(1, grid.maxCount());
+    }
+
+    @Test
+    public void renderScalesToMaximumOfZoom() {
+        TrackData d = new TrackData();
+        for (int i = 0; i < 100; i++) d.add(i, 48.1, 11.5);
+        d.add(100, 48.2, 11.6);
+        HeatmapGrid grid = HeatmapGrid.compute(8, List.of(d), POOL);
+
+        int[] argb = new int[HeatmapGrid.BINS * HeatmapGrid.BINS];
+        int tiles = 1 << 8;
+        long hot = TileDiskCache.tileIndex(8, TileCorridor.tileX(11.5, tiles), TileCorridor.tileY(48.1, tiles));
+        assertTrue(grid.render(hot, argb));
+        int filled = 0;
+        int strongest = 0;
+        for (int c : argb) {
+            if (c == 0) continue;
+            filled++;
+            strongest = Math.max(strongest, c >>> 24);
+        }
+        // beide Punkte in einer Kachel, aber in verschiedenen Zellen
+        assertEquals(2, filled);
+        assertEquals(255, strongest);
+    }
+
+    @Test
+    public void colorRampGetsHotterAndMoreOpaque() {
+        assertEquals(0x0000FF, HeatmapGrid.color(0) & 0xFFFFFF);
+        assertEquals(0xFF0000, HeatmapGrid.color(1) & 0xFFFFFF);
+        assertEquals(0xFF, HeatmapGrid.color(1) >>> 24);
+        int prevAlpha = -1;
+        for (double v = 0; v <= 1; v += 0.05) {
+            int a = HeatmapGrid.color(v) >>> 24;
+            assertTrue(a >= prevAlpha);
+            prevAlpha = a;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.geotracker;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für LocationFilter auf synthetischen Spuren mit Rauschen und Ausreißern.
+ * Gibt verworfene Punkte und den Positionsfehler (RMS gegen die wahre Spur)
+ * roh und gefiltert aus.
+ */
+public class LocationFilterTest {
+
+    private static final double LAT0 = 48.137;
+    private static final double LON0 = 11.575;
+    private static final double M_PER_DEG = Math.toRadians(1) * GeoMath.EARTH_RADIUS_M;
+
+    // Synthetische Spur: wahre Position in Metern (Ost/Nord) und der gemeldete Fix
+    private static class Trace {
+        final int n;
+        final long[] time;
+        final double[] trueE;
+        final double[] trueN;
+        final double[] lat;
+        final double[] lon;
+        final double[] accuracy;
+        final boolean[] outlier;
+
+        Trace(int n) {
+            this.n = n;
+            time = new long[n];
+            trueE = new double[n];
+            trueN = new double[n];
+            lat = new double[n];
+            lon = new double[n];
+            accuracy = new double[n];
+            outlier = new boolean[n];
+        }
+    }
+
+    private static class Result {
+        int dropped;
+        int droppedOutliers;
+        int outliers;
+        double rawRms;
+        double filteredRms;
+    }
+
+    /**
+     * Fußweg/Fahrt mit 1 Hz: Geschwindigkeit speed, langsame Kurven, Gauß-Rauschen
+     * sigma; ein Anteil spikeRate Mehrwege-Sprünge (150–400 m, Genauigkeit trotzdem
+     * gut gemeldet) und badRate Fixes mit schlechter Genauigkeit (80–150 m).
+     */
+    private static Trace generate(int n, double speed, double sigma, double spikeRate,
+                                  double badRate, long seed) {
+        Random rnd = new Random(seed);
+        Trace t = new Trace(n);
+        double e = 0, no = 0, heading = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                heading += Math.toRadians(rnd.nextGaussian() * 3);
+                e += speed * Math.sin(heading);
+                no += speed * Math.cos(heading);
+            }
+            t.time[i] = 1_700_000_000_000L + i * 1000L;
+            t.trueE[i] = e;
+            t.trueN[i] = no;
+            double me = e + rnd.nextGaussian() * sigma;
+            double mn = no + rnd.nextGaussian() * sigma;
+            t.accuracy[i] = sigma * 1.5;
+            double r = rnd.nextDouble();
+            if (i > 10 && r < spikeRate) {
+                double jump = 150 + rnd.nextDouble() * 250;
+                double dir = rnd.nextDouble() * 2 * Math.PI;
+                me += jump * Math.sin(dir);
+                mn += jump * Math.cos(dir);
+                t.outlier[i] = true;
+            } else if (i > 10 && r < spikeRate + badRate) {
+                double bad = 80 + rnd.nextDouble() * 70;
+                me = e + rnd.nextGaussian() * bad;
+                mn = no + rnd.nextGaussian() * bad;
+                t.accuracy[i] = bad;
+                t.outlier[i] = true;
+            }
+            t.lat[i] = LAT0 + mn / M_PER_DEG;
+            t.lon[i] = LON0 + me / (M_PER_DEG * Math.cos(Math.toRadians(LAT0)));
+        }
+        return t;
+    }
+
+    private static double errorM(Trace t, int i, double lat, double lon) {
+        double e = (lon - LON0) * M_PER_DEG * Math.cos(Math.toRadians(LAT0));
+        double n = (lat - LAT0) * M_PER_DEG;
+        return Math.hypot(e - t.trueE[i], n - t.trueN[i]);
+    }
+
+    private static Result run(Trace t, LocationFilter.Strictness strictness, String label) {
+        LocationFilter f = new LocationFilter();
+        f.setStrictness(strictness);
+        Result r = new Result();
+        double rawSq = 0, filteredSq = 0;
+        int kept = 0;
+        for (int i = 0; i < t.n; i++) {
+            double raw = errorM(t, i, t.lat[i], t.lon[i]);
+            rawSq += raw * raw;
+            if (t.outlier[i]) r.outliers++;
+            if (f.onFix(t.time[i], t.lat[i], t.lon[i], t.accuracy[i])) {
+                double err = errorM(t, i, f.lat(), f.lon());
+                filteredSq += err * err;
+                kept++;
+            } else {
+                r.dropped++;
+                if (t.outlier[i]) r.droppedOutliers++;
+            }
+        }
+        r.rawRms = Math.sqrt(rawSq / t.n);
+        r.filteredRms = Math.sqrt(filteredSq / Math.max(1, kept));
+        System.out.printf("%-28s %5d Fixes, %4d verworfen (%d/%d Ausreißer), RMS roh %6.1f m -> gefiltert %5.1f m%n",
+                label, t.n, r.dropped, r.droppedOutliers, r.outliers, r.rawRms, r.filteredRms);
+        return r;
+    }
+
+    @Test
+    public void walkWithSpikesAndBadFixes() {
+        Trace t = generate(3600, 1.4, 5, 0.02, 0.02, 1);
+        Result r = run(t, LocationFilter.Strictness.NORMAL, "Fußweg, normal");
+        assertEquals("alle Ausreißer verworfen", r.outliers, r.droppedOutliers);
+        assertTrue("kaum gute Fixes verworfen", r.dropped - r.droppedOutliers < t.n / 100);
+        assertTrue("Fehler halbiert", r.filteredRms < r.rawRms / 2);
+    }
+
+    @Test
+    public void stationaryJitterIsSmoothed() {
+        Trace t = generate(600, 0, 6, 0, 0, 2);
+        Result r = run(t, LocationFilter.Strictness.NORMAL, "Stillstand, normal");
+        assertEquals(0, r.dropped);
+        assertTrue(r.filteredRms < r.rawRms * 0.6);
+    }
+
+    @Test
+    public void carKeepsUpWithMotion() {
+        Trace t = generate(1800, 25, 4, 0.01, 0, 3);
+        Result r = run(t, LocationFilter.Strictness.NORMAL, "Auto 90 km/h, normal");
+        assertEquals(r.outliers, r.droppedOutliers);
+        assertTrue(r.dropped - r.droppedOutliers < t.n / 100);
+        assertTrue(r.filteredRms < r.rawRms);
+    }
+
+    @Test
+    public void strictnessLevels() {
+        Trace t = generate(3600, 1.4, 8, 0.03, 0.05, 4);
+        Result off = run(t, LocationFilter.Strictness.OFF, "Fußweg, aus");
+        Result low = run(t, LocationFilter.Strictness.LOW, "Fußweg, locker");
+        Result normal = run(t, LocationFilter.Strictness.NORMAL, "Fußweg, normal");
+        Result strict = run(t, LocationFilter.Strictness.STRICT, "Fußweg, streng");
+        assertEquals(0, off.dropped);
+        assertEquals(off.rawRms, off.filteredRms, 1e-6);
+        assertTrue(low.dropped <= normal.dropped);
+        assertTrue(normal.dropped <= strict.dropped);
+        assertTrue(strict.filteredRms <= normal.filteredRms);
+        assertTrue(normal.filteredRms < low.filteredRms);
+    }
+
+    @Test
+    public void restartsAfterGapOrRealJump() {
+        LocationFilter f = new LocationFilter();
+        long t0 = 1_700_000_000_000L;
+        assertTrue(f.onFix(t0, LAT0, LON0, 5));
+        assertTrue(f.onFix(t0 + 1000, LAT0, LON0, 5));
+        // 5 km weiter nach 2 Minuten (z.B. Tunnel): neue Schätzung statt Ausreißer
+        double lat = LAT0 + 5000 / M_PER_DEG;
+        assertTrue(f.onFix(t0 + 121_000, lat, LON0, 5));
+        assertEquals(lat, f.lat(), 1e-9);
+        // dauerhaft versetzte Position (Sprung ohne Lücke) wird nach einigen Fixes übernommen
+        double moved = lat + 2000 / M_PER_DEG;
+        int rejected = 0;
+        for (int i = 1; i <= 10; i++) {
+            if (!f.onFix(t0 + 121_000 + i * 1000L, moved, LON0, 5)) rejected++;
+        }
+        assertEquals(LocationFilter.MAX_CONSECUTIVE_REJECTS, rejected);
+        assertEquals(moved, f.lat(), 1e-6);
+    }
+
+    @Test
+    public void rejectsDuplicateAndOutOfOrderFixes() {
+        LocationFilter f = new LocationFilter();
+        assertTrue(f.onFix(2000, LAT0, LON0, 5));
+        assertFalse(f.onFix(2000, LAT0, LON0, 5));
+        assertFalse(f.onFix(1000, LAT0, LON0, 5));
+        assertTrue(f.onFix(3000, LAT0, LON0, Double.NaN));
+        assertEquals(2, f.rejectedCount());
+    }
+
+    @Test
+    public void hotPathDoesNotAllocate() {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (!(mx instanceof com.sun.management.ThreadMXBean)) return;
+        com.sun.management.ThreadMXBean hs = (com.sun.management.ThreadMXBean) mx;
+        if (!hs.isThreadAllocatedMemorySupported()) return;
+
+        Trace t = generate(3600, 1.4, 5, 0.02, 0.02, 5);
+        LocationFilter f = new LocationFilter();
+        long id = Thread.currentThread().getId();
+        int accepted = 0;
+        for (int round = 0; round < 3; round++) {
+            long before = hs.getThreadAllocatedBytes(id);
+            for (int i = 0; i < t.n; i++) {
+                // Zeit je Runde fortsetzen, sonst wären alle Fixes "veraltet"
+                if (f.onFix(t.time[i] + round * 3_600_000L, t.lat[i], t.lon[i], t.accuracy[i])) accepted++;
+            }
+            long allocated = hs.getThreadAllocatedBytes(id) - before;
+            if (round > 0) assertTrue("alloziert: " + allocated + " Bytes", allocated < 1024);
+        }
+        assertTrue(accepted > 0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.geotracker;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für die Histogramme und den Bericht von PerfStats.
+ */
+public class PerfStatsTest {
+
+    @Test
+    public void bucketsCoverAllValuesInOrder() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789L, Long.MAX_VALUE};
+        int prev = -1;
+        for (long v : values) {
+            int b = PerfStats.Histogram.bucketOf(v);
+            assertTrue(b >= prev);
+            assertTrue(b < PerfStats.Histogram.BUCKETS);
+            assertTrue("untere Grenze " + v, PerfStats.Histogram.lowerBound(b) <= v);
+            if (b + 1 < PerfStats.Histogram.BUCKETS) {
+                assertTrue("obere Grenze " + v, PerfStats.Histogram.lowerBound(b + 1) > v);
+            }
+            prev = b;
+        }
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        PerfStats.Histogram h = new PerfStats.Histogram();
+        Random rnd = new Random(1);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-normal wie Latenzen: meist ~1 ms, wenige lange Ausreißer
+            values[i] = (long) Math.exp(7 + rnd.nextGaussian());
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double p : new double[]{0.5, 0.9, 0.99}) {
+            long exact = values[(int) Math.ceil(p * values.length) - 1];
+            assertEquals("p" + p, exact, h.percentile(p), exact * 0.13);
+        }
+        assertEquals(values[values.length - 1], h.max());
+        assertEquals(values.length, h.count());
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws InterruptedException {
+        PerfStats stats = new PerfStats();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    stats.record(PerfStats.Timer.FLUSH_WRITE, i * 1000L);
+                    stats.add(PerfStats.Counter.POINTS_WRITTEN, 2);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(200_000, stats.histogram(PerfStats.Timer.FLUSH_WRITE).count());
+        assertEquals(400_000, stats.count(PerfStats.Counter.POINTS_WRITTEN));
+        assertEquals(49_999, stats.histogram(PerfStats.Timer.FLUSH_WRITE).max());
+    }
+
+    @Test
+    public void dumpListsTimersCountersAndTracks() throws IOException {
+        PerfStats stats = new PerfStats();
+        stats.trackRead("track_a.gtb", 2_000_000, 4096, 256);
+        stats.trackRead("track_a.gtb", 1_000_000, 160, 10);
+        stats.trackPrepared("track_a.gtb", 500_000);
+        StringWriter w = new StringWriter();
+        stats.dump(w);
+        String report = w.toString();
+        assertTrue(report, report.contains("TRACK_READ"));
+        assertTrue(report, report.matches("(?s).*BYTES_READ\\s+4256.*"));
+        assertTrue(report, report.matches("(?s).*track_a\\.gtb\\s+2\\s+1000\\s+500\\s+4256\\s+266.*"));
+
+        stats.reset();
+        assertEquals(0, stats.count(PerfStats.Counter.POINTS_PARSED));
+        assertTrue(stats.summaryLines().isEmpty());
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.geotracker;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für ProximityIndex: Abfragen gegen eine Brute-Force-Suche über alle Punkte,
+ * Fortschreiben, Löschen mit Verdichten und Wiederöffnen nach abgerissenem Log.
+ */
+public class ProximityIndexTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.getRoot();
+        file = new File(dir, "proximity.idx");
+    }
+
+    // Zufallsweg um (lat0, lon0) mit ~10 m Schritten
+    private static TrackData walk(Random rnd, double lat0, double lon0, int n) {
+        TrackData d = new TrackData(n);
+        double lat = lat0, lon = lon0, heading = rnd.nextDouble() * 2 * Math.PI;
+        for (int i = 0; i < n; i++) {
+            d.add(1_700_000_000_000L + i * 1000L, lat, lon);
+            heading += rnd.nextGaussian() * 0.2;
+            lat += Math.cos(heading) * 1e-4;
+            lon += Math.sin(heading) * 1.5e-4;
+        }
+        return d;
+    }
+
+    private static Map<Long, TrackData> tracks(long seed, int count, int points) {
+        Random rnd = new Random(seed);
+        Map<Long, TrackData> tracks = new HashMap<>();
+        for (long id = 1; id <= count; id++) {
+            tracks.put(id, walk(rnd, 48.1 + rnd.nextDouble() * 0.2, 11.5 + rnd.nextDouble() * 0.2, points));
+        }
+        return tracks;
+    }
+
+    // nächste Entfernung je Track innerhalb radiusM (E7-gerundete Koordinaten wie im Index)
+    private static Map<Long, Double> bruteForce(Map<Long, TrackData> tracks, double lat, double lon, double radiusM) {
+        Map<Long, Double> best = new HashMap<>();
+        for (Map.Entry<Long, TrackData> e : tracks.entrySet()) {
+            TrackData d = e.getValue();
+            for (int i = 0; i < d.size(); i++) {
+                double dist = GeoMath.distanceMeters(lat, lon, Math.round(d.latAt(i) * 1e7) / 1e7,
+                        Math.round(d.lonAt(i) * 1e7) / 1e7);
+                if (dist > radiusM) continue;
+                Double old = best.get(e.getKey());
+                if (old == null || dist < old) best.put(e.getKey(), dist);
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void radiusAndNearestMatchBruteForce() throws IOException {
+        Map<Long, TrackData> tracks = tracks(1, 40, 2000);
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            for (Map.Entry<Long, TrackData> e : tracks.entrySet()) index.update(e.getKey(), e.getValue());
+            assertEquals(40, index.trackCount());
+            assertEquals(80_000, index.pointCount());
+
+            Random rnd = new Random(2);
+            for (int q = 0; q < 20; q++) {
+                double lat = 48.1 + rnd.nextDouble() * 0.3;
+                double lon = 11.5 + rnd.nextDouble() * 0.3;
+                double radius = 200 + rnd.nextDouble() * 3000;
+
+                Map<Long, Double> expected = bruteForce(tracks, lat, lon, radius);
+                List<ProximityIndex.Hit> hits = index.tracksWithin(lat, lon, radius);
+                assertEquals(expected.size(), hits.size());
+                for (ProximityIndex.Hit h : hits) assertEquals(expected.get(h.trackId()), h.distanceM(), 1e-6);
+
+                List<ProximityIndex.Hit> points = index.pointsWithin(lat, lon, radius, Integer.MAX_VALUE);
+                for (int i = 1; i < points.size(); i++) {
+                    assertTrue(points.get(i - 1).distanceM() <= points.get(i).distanceM());
+                }
+                for (ProximityIndex.Hit h : points) {
+                    TrackData d = tracks.get(h.trackId());
+                    assertEquals(d.latAt(h.point()), h.lat(), 1e-7);
+                    assertEquals(d.lonAt(h.point()), h.lon(), 1e-7);
+                }
+
+                List<Double> all = new ArrayList<>(bruteForce(tracks, lat, lon, Double.MAX_VALUE).values());
+                all.sort(null);
+                List<ProximityIndex.Hit> nearest = index.nearestTracks(lat, lon, 5);
+                assertEquals(5, nearest.size());
+                for (int i = 0; i < 5; i++) assertEquals(all.get(i), nearest.get(i).distanceM(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void nearestFindsFarTracks() throws IOException {
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            Random rnd = new Random(3);
+            index.update(1, walk(rnd, 48.1, 11.5, 100));
+            index.update(2, walk(rnd, 52.5, 13.4, 100));
+            List<ProximityIndex.Hit> nearest = index.nearestTracks(40.0, 10.0, 5);
+            assertEquals(2, nearest.size());
+            assertEquals(1, nearest.get(0).trackId());
+            assertEquals(2, nearest.get(1).trackId());
+            assertTrue(index.tracksWithin(40.0, 10.0, 100_000).isEmpty());
+        }
+    }
+
+    @Test
+    public void boxQueryAcrossDateline() throws IOException {
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            TrackData west = new TrackData();
+            west.add(0, -17.0, -179.99);
+            TrackData east = new TrackData();
+            east.add(0, -17.0, 179.99);
+            TrackData elsewhere = new TrackData();
+            elsewhere.add(0, -17.0, 0);
+            index.update(1, west);
+            index.update(2, east);
+            index.update(3, elsewhere);
+            assertEquals(List.of(1L, 2L), index.tracksInBox(-18, -16, 179, -179));
+            assertEquals(List.of(3L), index.tracksInBox(-18, -16, -1, 1));
+            assertEquals(List.of(1L, 2L, 3L), index.tracksInBox(-90, 90, -180, 180));
+            assertEquals(2, index.tracksWithin(-17.0, 180.0, 5000).size());
+        }
+    }
+
+    @Test
+    public void boxQueryMatchesBruteForce() throws IOException {
+        Map<Long, TrackData> tracks = tracks(4, 30, 500);
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            for (Map.Entry<Long, TrackData> e : tracks.entrySet()) index.update(e.getKey(), e.getValue());
+            Random rnd = new Random(5);
+            for (int q = 0; q < 50; q++) {
+                double south = 48.1 + rnd.nextDouble() * 0.25;
+                double west = 11.5 + rnd.nextDouble() * 0.25;
+                double north = south + rnd.nextDouble() * 0.05;
+                double east = west + rnd.nextDouble() * 0.05;
+                TreeSet<Long> expected = new TreeSet<>();
+                for (Map.Entry<Long, TrackData> e : tracks.entrySet()) {
+                    TrackData d = e.getValue();
+                    for (int i = 0; i < d.size(); i++) {
+                        if (d.latAt(i) >= south && d.latAt(i) <= north && d.lonAt(i) >= west && d.lonAt(i) <= east) {
+                            expected.add(e.getKey());
+                            break;
+                        }
+                    }
+                }
+                assertEquals(new ArrayList<>(expected), index.tracksInBox(south, north, west, east));
+            }
+        }
+    }
+
+    @Test
+    public void persistsAppendsAndRemovals() throws IOException {
+        Random rnd = new Random(6);
+        TrackData a = walk(rnd, 48.1, 11.5, 3000);
+        TrackData b = walk(rnd, 48.1, 11.5, 3000);
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            TrackData part = new TrackData();
+            for (int i = 0; i < 1000; i++) part.add(a.timeAt(i), a.latAt(i), a.lonAt(i));
+            index.update(1, part);
+            index.update(1, a);
+            index.update(2, b);
+        }
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            assertEquals(3000, index.pointCount(1));
+            assertEquals(3000, index.pointCount(2));
+            assertEquals(2, index.tracksWithin(48.1, 11.5, 10).size());
+            index.remove(2);
+            assertEquals(1, index.tracksWithin(48.1, 11.5, 10).size());
+        }
+        // Punkte von b sind tot: zweites Entfernen verdichtet das Log
+        long before = file.length();
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            assertEquals(0, index.pointCount(2));
+            index.update(3, walk(rnd, 48.2, 11.6, 10));
+            index.remove(3);
+            index.remove(1);
+            index.update(1, a);
+        }
+        assertTrue(file.length() < before);
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            assertEquals(1, index.trackCount());
+            assertEquals(List.of(1L), index.tracksInBox(48, 49, 11, 12));
+        }
+    }
+
+    @Test
+    public void tornLogIsCutAndCaughtUp() throws IOException {
+        Random rnd = new Random(7);
+        TrackData a = walk(rnd, 48.1, 11.5, 500);
+        TrackData part = new TrackData();
+        for (int i = 0; i < 300; i++) part.add(a.timeAt(i), a.latAt(i), a.lonAt(i));
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            index.update(1, part);
+            index.update(1, a);
+        }
+        // letzten Datensatz abreißen
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            assertEquals(300, index.pointCount(1));
+            index.update(1, a);
+            assertEquals(500, index.pointCount(1));
+        }
+        try (ProximityIndex index = ProximityIndex.open(file)) {
+            assertEquals(500, index.pointCount(1));
+            ProximityIndex.Hit h = index.nearestTracks(a.latAt(499), a.lonAt(499), 1).get(0);
+            assertEquals(499, h.point());
+            assertEquals(0, h.distanceM(), 0.01);
+        }
+    }
+}
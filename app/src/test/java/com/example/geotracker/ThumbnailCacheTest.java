@@ -0,0 +1,36 @@
+package com.example.geotracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für die Wahl von inSampleSize in ThumbnailCache.
+ */
+public class ThumbnailCacheTest {
+
+    @Test
+    public void sampleSizeKeepsLongerSideAtLeastTarget() {
+        // 4000 / 8 = 500 >= 256, 4000 / 16 = 250 wäre zu klein
+        assertEquals(8, ThumbnailCache.sampleSizeFor(4000, 3000, 256));
+        assertEquals(8, ThumbnailCache.sampleSizeFor(3000, 4000, 256));
+        assertEquals(2, ThumbnailCache.sampleSizeFor(512, 512, 256));
+        assertEquals(1, ThumbnailCache.sampleSizeFor(511, 10, 256));
+    }
+
+    @Test
+    public void smallPhotosAreNotSampled() {
+        assertEquals(1, ThumbnailCache.sampleSizeFor(100, 50, 256));
+        assertEquals(1, ThumbnailCache.sampleSizeFor(256, 256, 256));
+        assertEquals(1, ThumbnailCache.sampleSizeFor(1, 1, 1024));
+    }
+
+    @Test
+    public void resultIsPowerOfTwo() {
+        for (int w = 1; w <= 5000; w += 37) {
+            int s = ThumbnailCache.sampleSizeFor(w, w / 2 + 1, 96);
+            assertEquals(0, s & (s - 1));
+            assertTrue(w / s >= Math.min(w, 96));
+        }
+    }
+}
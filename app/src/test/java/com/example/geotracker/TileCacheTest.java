@@ -0,0 +1,230 @@
+package com.example.geotracker;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für TileDiskCache, TileCorridor und TileDownloader gegen einen lokalen
+ * Ersatz-Kachelserver (com.sun.net.httpserver), nie gegen tile.openstreetmap.org.
+ */
+public class TileCacheTest {
+
+    private static final String SOURCE = "Test";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private File dir;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger throttleNext = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.getRoot();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            int now = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(now, Math::max);
+            try {
+                if (throttleNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    exchange.getResponseHeaders().add("Retry-After", "1");
+                    exchange.sendResponseHeaders(429, -1);
+                    return;
+                }
+                Thread.sleep(20);
+                // Inhalt = Pfad, so lässt sich prüfen, was wo gespeichert wurde
+                byte[] body = exchange.getRequestURI().getPath().getBytes();
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    private static void put(TileDiskCache cache, long index, int bytes) throws IOException {
+        cache.put(SOURCE, index, new ByteArrayInputStream(new byte[bytes]));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondLimit() throws IOException {
+        TileDiskCache cache = new TileDiskCache(dir, 3000);
+        long a = TileDiskCache.tileIndex(10, 1, 1);
+        long b = TileDiskCache.tileIndex(10, 1, 2);
+        long c = TileDiskCache.tileIndex(10, 1, 3);
+        long d = TileDiskCache.tileIndex(10, 1, 4);
+        put(cache, a, 1000);
+        put(cache, b, 1000);
+        put(cache, c, 1000);
+        assertNotNull(cache.get(SOURCE, a));
+        put(cache, d, 1000);
+        // b war am längsten unbenutzt
+        assertFalse(cache.contains(SOURCE, b));
+        assertTrue(cache.contains(SOURCE, a));
+        assertTrue(cache.contains(SOURCE, d));
+        assertEquals(3000, cache.usedBytes());
+        assertEquals(1, cache.evictionCount());
+
+        cache.setMaxBytes(1500);
+        assertEquals(1, cache.tileCount());
+        assertTrue(cache.contains(SOURCE, d));
+
+        // neuer Index aus den Dateien (Neustart)
+        TileDiskCache reopened = new TileDiskCache(dir, 1500);
+        assertEquals(1, reopened.tileCount());
+        assertEquals(1000, reopened.usedBytes());
+        assertTrue(reopened.contains(SOURCE, d));
+    }
+
+    @Test
+    public void tileIndexRoundTrip() {
+        long index = TileDiskCache.tileIndex(19, 274_000, 180_000);
+        assertEquals(19, TileDiskCache.zoom(index));
+        assertEquals(274_000, TileDiskCache.x(index));
+        assertEquals(180_000, TileDiskCache.y(index));
+    }
+
+    @Test
+    public void corridorCoversTrackAndBuffer() {
+        // 10 km nach Osten durch München
+        TrackData track = new TrackData();
+        track.add(0, 48.137, 11.50);
+        track.add(1, 48.137, 11.635);
+        long[] tiles = TileCorridor.tiles(track, 10, 15, 300, 100_000);
+        assertNotNull(tiles);
+        Set<Long> set = new HashSet<>();
+        for (long t : tiles) set.add(t);
+        assertEquals("keine Duplikate", tiles.length, set.size());
+        // Zoom aufsteigend
+        for (int i = 1; i < tiles.length; i++) {
+            assertTrue(TileDiskCache.zoom(tiles[i - 1]) <= TileDiskCache.zoom(tiles[i]));
+        }
+        // jeder Punkt der Strecke (auch 250 m daneben) liegt in einer Kachel der Liste
+        for (int z = 10; z <= 15; z++) {
+            int n = 1 << z;
+            for (double lon = 11.50; lon <= 11.635; lon += 0.001) {
+                for (double off : new double[]{-250, 0, 250}) {
+                    double lat = 48.137 + Math.toDegrees(off / GeoMath.EARTH_RADIUS_M);
+                    long t = TileDiskCache.tileIndex(z, TileCorridor.tileX(lon, n), TileCorridor.tileY(lat, n));
+                    assertTrue("z" + z + " " + lat + "," + lon, set.contains(t));
+                }
+            }
+        }
+        // schmales Band: bei z15 (~800 m Kacheln) nur wenige Kachelreihen
+        assertTrue(TileCorridor.count(track, 15, 300) < 60);
+        assertNull("Obergrenze", TileCorridor.tiles(track, 10, 15, 300, 10));
+    }
+
+    @Test
+    public void downloadsMissingTilesWithinRateAndConcurrency() throws IOException {
+        TileDiskCache cache = new TileDiskCache(dir, 10_000_000);
+        long[] tiles = new long[20];
+        for (int i = 0; i < tiles.length; i++) tiles[i] = TileDiskCache.tileIndex(12, 2176 + i, 1420);
+        put(cache, tiles[0], 10);
+
+        TileDownloader downloader = new TileDownloader(cache, SOURCE, baseUrl(), ".png", "GeotrackerTest");
+        downloader.setThreads(3);
+        downloader.setTilesPerSecond(40);
+        AtomicInteger lastProgress = new AtomicInteger();
+        long start = System.nanoTime();
+        TileDownloader.Result r = downloader.download(tiles, (done, total) -> lastProgress.accumulateAndGet(done, Math::max));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Kacheln: %d geladen, %d übersprungen in %.2f s, max. %d parallel%n",
+                r.downloaded, r.skipped, seconds, maxInFlight.get());
+
+        assertEquals(19, r.downloaded);
+        assertEquals(1, r.skipped);
+        assertEquals(0, r.failed);
+        assertEquals(20, lastProgress.get());
+        assertEquals(19, requests.get());
+        assertTrue("parallel: " + maxInFlight.get(), maxInFlight.get() <= 3);
+        // 19 Anfragen bei 40/s brauchen mindestens 18 Abstände à 25 ms
+        assertTrue("gedrosselt: " + seconds, seconds >= 18 * 0.025 * 0.9);
+        assertEquals(20, cache.tileCount());
+        assertEquals("/12/2177/1420.png", new String(Files.readAllBytes(cache.get(SOURCE, tiles[1]).toPath())));
+    }
+
+    @Test
+    public void backsOffOnTooManyRequests() {
+        TileDiskCache cache = new TileDiskCache(dir, 10_000_000);
+        TileDownloader downloader = new TileDownloader(cache, SOURCE, baseUrl(), ".png", "GeotrackerTest");
+        downloader.setThreads(1);
+        downloader.setTilesPerSecond(0);
+        throttleNext.set(1);
+        long start = System.nanoTime();
+        TileDownloader.Result r = downloader.download(new long[]{TileDiskCache.tileIndex(5, 1, 1)}, null);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(1, r.downloaded);
+        assertEquals(2, requests.get());
+        assertTrue("Retry-After beachtet: " + seconds, seconds >= 0.9);
+    }
+
+    @Test
+    public void cancelStopsEarly() {
+        TileDiskCache cache = new TileDiskCache(dir, 10_000_000);
+        long[] tiles = new long[100];
+        for (int i = 0; i < tiles.length; i++) tiles[i] = TileDiskCache.tileIndex(14, i, 0);
+        TileDownloader downloader = new TileDownloader(cache, SOURCE, baseUrl(), ".png", "GeotrackerTest");
+        downloader.setTilesPerSecond(20);
+        TileDownloader.Result r = downloader.download(tiles, (done, total) -> {
+            if (done == 5) downloader.cancel();
+        });
+        assertTrue(r.cancelled);
+        assertTrue("angefragt: " + requests.get(), requests.get() < 10);
+    }
+
+    @Test
+    public void cancelBeforeStartIsKept() {
+        TileDiskCache cache = new TileDiskCache(dir, 10_000_000);
+        TileDownloader downloader = new TileDownloader(cache, SOURCE, baseUrl(), ".png", "GeotrackerTest");
+        downloader.setTilesPerSecond(0);
+        // z.B. "Abbrechen" gedrückt, bevor der Job im jobExecutor dran ist
+        downloader.cancel();
+        TileDownloader.Result r = downloader.download(new long[]{TileDiskCache.tileIndex(5, 1, 1)}, null);
+        assertTrue(r.cancelled);
+        assertEquals(0, r.downloaded);
+        assertEquals(0, requests.get());
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.geotracker;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für Journal und Wiederherstellung: abgerissene Blöcke, veralteter Header,
+ * abgerissene Journal-Datensätze und ein während der Aufzeichnung "getöteter" Writer.
+ */
+public class TrackJournalTest {
+
+    private static final String NAME = "track_test.gtb";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private File dir;
+    private TrackStorage storage;
+    private File track;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.getRoot();
+        storage = new TrackStorage(dir);
+        track = storage.fileFor(NAME);
+        storage.create(NAME);
+    }
+
+    private static TrackData points(int from, int to) {
+        TrackData d = new TrackData();
+        for (int i = from; i < to; i++) d.add(1_700_000_000_000L + i * 1000L, 48 + i * 1e-4, 11 + i * 1e-4);
+        return d;
+    }
+
+    private static void assertPoints(TrackData expected, TrackData actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.timeAt(i), actual.timeAt(i));
+            assertEquals(expected.latAt(i), actual.latAt(i), 1e-7);
+            assertEquals(expected.lonAt(i), actual.lonAt(i), 1e-7);
+        }
+    }
+
+    @Test
+    public void repairCutsTornBlock() throws IOException {
+        storage.append(NAME, points(0, 50), 0, 50);
+        long good = track.length();
+        storage.append(NAME, points(50, 80), 0, 30);
+        // Absturz mitten im zweiten Block, Header bereits geschrieben
+        try (RandomAccessFile raf = new RandomAccessFile(track, "rw")) {
+            raf.setLength(good + 100);
+        }
+        assertEquals(0, storage.recover(NAME));
+        assertEquals(good, track.length());
+        assertPoints(points(0, 50), storage.load(NAME));
+        assertEquals(-1, storage.recover(NAME));
+    }
+
+    @Test
+    public void repairDetectsCorruptPayloadAndStaleHeader() throws IOException {
+        storage.append(NAME, points(0, 40), 0, 40);
+        byte[] header = new byte[BinaryTrackFormat.HEADER_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(track, "r")) {
+            raf.readFully(header);
+        }
+        storage.append(NAME, points(40, 60), 0, 20);
+        storage.append(NAME, points(60, 70), 0, 10);
+        try (RandomAccessFile raf = new RandomAccessFile(track, "rw")) {
+            // Header nie aktualisiert (Blöcke vollständig), letzter Block beschädigt
+            raf.write(header);
+            raf.seek(raf.length() - 3);
+            raf.write(new byte[]{1, 2, 3});
+        }
+        assertEquals(0, storage.recover(NAME));
+        // der vollständige zweite Block wird übernommen, der beschädigte dritte nicht
+        assertPoints(points(0, 60), storage.load(NAME));
+    }
+
+    @Test
+    public void replaysOnlyMissingJournalRecords() throws IOException {
+        storage.append(NAME, points(0, 10), 0, 10);
+        try (TrackJournal j = TrackJournal.create(track, 10)) {
+            j.append(points(10, 40), 0, 30);
+        }
+        // die ersten 20 Journal-Punkte haben es noch in den Track geschafft
+        storage.append(NAME, points(10, 30), 0, 20);
+        // letzter Datensatz abgerissen
+        File wal = TrackJournal.fileFor(track);
+        try (RandomAccessFile raf = new RandomAccessFile(wal, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        assertEquals(9, storage.recover(NAME));
+        assertFalse(wal.exists());
+        assertPoints(points(0, 39), storage.load(NAME));
+    }
+
+    @Test
+    public void killedWriterLosesNothingCommitted() throws Exception {
+        storage.append(NAME, points(0, 5), 0, 5);
+        ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor();
+        // große Blöcke: ohne Journal wären die letzten Punkte nur im Speicher
+        TrackWriter writer = new TrackWriter(storage, NAME, 64, 60_000,
+                TrackWriter.Durability.SYNC_JOURNAL, io, null);
+        TrackData all = points(5, 205);
+        for (int i = 0; i < 192; i++) writer.add(all.timeAt(i), all.latAt(i), all.lonAt(i));
+        // bis hier als Blöcke im Track
+        writer.flushAsync();
+        io.submit(() -> { }).get();
+        for (int i = 192; i < all.size(); i++) writer.add(all.timeAt(i), all.latAt(i), all.lonAt(i));
+        // warten, bis die letzte Gruppe im Journal ist, dann "Prozess beenden"
+        Thread.sleep(TrackWriter.JOURNAL_COMMIT_MS + 300);
+        io.shutdownNow();
+        assertTrue(io.awaitTermination(5, TimeUnit.SECONDS));
+
+        // die letzten 8 Punkte stehen nur im Journal
+        assertEquals(5 + 192, storage.format().readHeader(track).pointCount);
+        assertEquals(8, storage.recover(NAME));
+        assertPoints(points(0, 205), storage.load(NAME));
+    }
+
+    @Test
+    public void cleanCloseRemovesJournal() throws Exception {
+        ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor();
+        TrackWriter writer = new TrackWriter(storage, NAME, 10, 60_000,
+                TrackWriter.Durability.BUFFERED, io, null);
+        TrackData all = points(0, 25);
+        for (int i = 0; i < all.size(); i++) writer.add(all.timeAt(i), all.latAt(i), all.lonAt(i));
+        writer.close();
+        io.shutdown();
+        assertTrue(io.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(TrackJournal.fileFor(track).exists());
+        assertEquals(-1, storage.recover(NAME));
+        assertPoints(all, storage.load(NAME));
+    }
+
+    @Test
+    public void closeNowOnIoThreadBeforeShutdown() throws Exception {
+        ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor();
+        TrackWriter writer = new TrackWriter(storage, NAME, 10, 60_000,
+                TrackWriter.Durability.SYNC_JOURNAL, io, null);
+        TrackData all = points(0, 25);
+        // wie RecordingService beim Beenden: Rest übergeben, schließen und Executor beenden
+        Future<?> last = io.submit(() -> {
+            for (int i = 0; i < all.size(); i++) writer.add(all.timeAt(i), all.latAt(i), all.lonAt(i));
+            writer.closeNow();
+            io.shutdown();
+        });
+        last.get();
+        assertTrue(io.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(TrackJournal.fileFor(track).exists());
+        assertPoints(all, storage.load(NAME));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.geotracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für TrackLoader: jeder Track wird einzeln geliefert, in der übergebenen
+ * Reihenfolge begonnen, und ein neuerer Auftrag verdrängt die Ergebnisse des älteren.
+ */
+public class TrackLoaderTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private File dir;
+    private TrackStorage storage;
+    // Ersatz für den UI-Thread: Ergebnisse werden erst beim Abarbeiten zugestellt
+    private final BlockingQueue<Runnable> ui = new LinkedBlockingQueue<>();
+    private TrackLoader loader;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.getRoot();
+        storage = new TrackStorage(dir);
+        loader = new TrackLoader(new TrackPointCache(storage, 64L << 20), ui::add, 1);
+    }
+
+    @After
+    public void tearDown() {
+        loader.shutdown();
+    }
+
+    private String track(String name, int n) throws IOException {
+        TrackData d = new TrackData(n);
+        for (int i = 0; i < n; i++) d.add(i * 1000L, 48.1 + i * 1e-5, 11.5);
+        String filename = name + BinaryTrackFormat.EXTENSION;
+        new BinaryTrackFormat().write(storage.fileFor(filename), d);
+        return filename;
+    }
+
+    private static class Recorder implements TrackLoader.Listener {
+        final List<String> loaded = new ArrayList<>();
+        boolean all;
+
+        @Override
+        public void onTrackLoaded(TrackLoader.Result result) {
+            assertFalse("Track nach onAllLoaded", all);
+            loaded.add(result.filename);
+        }
+
+        @Override
+        public void onAllLoaded() {
+            all = true;
+        }
+    }
+
+    // UI-Aufgaben abarbeiten, bis der Auftrag fertig ist
+    private void drain(Recorder r) throws InterruptedException {
+        while (!r.all) {
+            Runnable task = ui.poll(10, TimeUnit.SECONDS);
+            assertNotNull("Auftrag nicht fertig", task);
+            task.run();
+        }
+    }
+
+    @Test
+    public void deliversEachTrackInGivenOrder() throws Exception {
+        List<String> files = Arrays.asList(track("aktuell", 5000), track("a", 20_000), track("b", 100));
+        Recorder r = new Recorder();
+        loader.load(files, r);
+        drain(r);
+        // ein Worker: Reihenfolge wie übergeben, der erste Track kommt zuerst an
+        assertEquals(files, r.loaded);
+    }
+
+    @Test
+    public void newerLoadDropsOlderResults() throws Exception {
+        String a = track("a", 1000);
+        String b = track("b", 1000);
+        Recorder old = new Recorder();
+        loader.load(List.of(a), old);
+        Recorder current = new Recorder();
+        loader.load(List.of(a, b), current);
+        drain(current);
+        // übrige Aufgaben des alten Auftrags dürfen nichts mehr zustellen
+        Runnable task;
+        while ((task = ui.poll(100, TimeUnit.MILLISECONDS)) != null) task.run();
+        assertTrue(old.loaded.isEmpty());
+        assertFalse(old.all);
+        assertEquals(List.of(a, b), current.loaded);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.geotracker;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für Zeitfenster-Abfragen über den BlockIndex von BinaryTrackFormat und
+ * das blockweise Abspielen mit TrackReplay.
+ */
+public class TrackTimeRangeTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private final BinaryTrackFormat format = new BinaryTrackFormat();
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.getRoot();
+        file = new File(dir, "track" + BinaryTrackFormat.EXTENSION);
+    }
+
+    // 1 Punkt pro Sekunde, dazwischen eine Nachtpause von 10 Stunden
+    private static TrackData track(int n) {
+        TrackData d = new TrackData(n);
+        long t = T0;
+        for (int i = 0; i < n; i++) {
+            if (i == n / 2) t += 10 * 3600_000L;
+            d.add(t, 48.1 + i * 1e-5, 11.5 + i * 1e-5);
+            t += 1000;
+        }
+        return d;
+    }
+
+    private static int countInRange(TrackData d, long from, long to) {
+        int n = 0;
+        for (int i = 0; i < d.size(); i++) if (d.timeAt(i) >= from && d.timeAt(i) <= to) n++;
+        return n;
+    }
+
+    @Test
+    public void timeRangeMatchesFullScan() throws IOException {
+        TrackData d = track(20_000);
+        // in mehreren Anhängen geschrieben: Blöcke unterschiedlicher Größe
+        format.append(file, d, 0, 3000);
+        format.append(file, d, 3000, 12_345);
+        format.append(file, d, 12_345, d.size());
+
+        BinaryTrackFormat.BlockIndex index = new BinaryTrackFormat.BlockIndex();
+        Random rnd = new Random(1);
+        long span = d.timeAt(d.size() - 1) - T0;
+        for (int q = 0; q < 50; q++) {
+            long from = T0 - 5000 + (long) (rnd.nextDouble() * span);
+            long to = from + (long) (rnd.nextDouble() * 3 * 3600_000L);
+            TrackData out = new TrackData();
+            int n = format.readTimeRange(file, index, from, to, out);
+            assertEquals(countInRange(d, from, to), n);
+            for (int i = 1; i < out.size(); i++) assertTrue(out.timeAt(i - 1) < out.timeAt(i));
+            for (int i = 0; i < out.size(); i++) {
+                assertTrue(out.timeAt(i) >= from && out.timeAt(i) <= to);
+            }
+        }
+        assertEquals(d.size(), index.pointCount());
+        assertEquals(0, format.readTimeRange(file, index, T0 - 10_000, T0 - 1, new TrackData()));
+    }
+
+    @Test
+    public void indexFollowsAppendsAndUnsortedBlocks() throws IOException {
+        // importierte Datei: zweiter Teil zeitlich vor dem ersten
+        TrackData late = new TrackData();
+        TrackData early = new TrackData();
+        for (int i = 0; i < 5000; i++) {
+            late.add(T0 + 100_000_000L + i * 1000L, 48, 11);
+            early.add(T0 + i * 1000L, 47, 10);
+        }
+        format.append(file, late, 0, late.size());
+        BinaryTrackFormat.BlockIndex index = new BinaryTrackFormat.BlockIndex();
+        TrackData out = new TrackData();
+        assertEquals(0, format.readTimeRange(file, index, T0, T0 + 10_000_000L, out));
+
+        format.append(file, early, 0, early.size());
+        assertEquals(5000, format.readTimeRange(file, index, T0, T0 + 10_000_000L, out));
+        assertEquals(10_000, index.pointCount());
+        for (int i = 0; i < out.size(); i++) assertEquals(47, out.latAt(i), 0);
+    }
+
+    @Test
+    public void indexAndCursorSurviveCompactionAndRegrowth() throws IOException {
+        TrackData d = track(900);
+        // ein Punkt pro Anhang wie bei der Aufzeichnung; ab 513 Blöcken wird zusammengefasst
+        for (int i = 0; i < 300; i++) format.append(file, d, i, i + 1);
+        BinaryTrackFormat.BlockIndex index = new BinaryTrackFormat.BlockIndex();
+        BinaryTrackFormat.Cursor cursor = new BinaryTrackFormat.Cursor();
+        TrackData tail = new TrackData();
+        assertEquals(300, format.readTimeRange(file, index, T0, T0 + 3600_000L, new TrackData()));
+        assertTrue(format.readTail(file, cursor, tail));
+        assertEquals(300, index.blockCount());
+
+        for (int i = 300; i < 513; i++) format.append(file, d, i, i + 1);
+        assertEquals(1, format.readHeader(file).blockCount);
+        // wieder mehr Blöcke und Punkte als beim letzten Lesen
+        for (int i = 513; i < 863; i++) format.append(file, d, i, i + 1);
+        assertTrue(format.readHeader(file).blockCount > 300);
+
+        TrackData out = new TrackData();
+        assertEquals(countInRange(d, T0, d.timeAt(862)),
+                format.readTimeRange(file, index, T0, d.timeAt(862), out));
+        for (int i = 0; i < out.size(); i++) assertEquals(d.timeAt(i), out.timeAt(i));
+        assertEquals(863, index.pointCount());
+
+        assertFalse(format.readTail(file, cursor, tail));
+        cursor = new BinaryTrackFormat.Cursor();
+        tail = new TrackData();
+        assertTrue(format.readTail(file, cursor, tail));
+        assertEquals(863, tail.size());
+        assertEquals(d.timeAt(862), tail.timeAt(862));
+    }
+
+    @Test
+    public void cursorStaysConsistentWhenLaterBlockIsBroken() throws IOException {
+        TrackData d = track(3000);
+        format.append(file, d, 0, 1000);
+        format.append(file, d, 1000, 3000);
+        long second = BinaryTrackFormat.HEADER_SIZE + BinaryTrackFormat.BLOCK_HEADER_SIZE
+                + 1000L * BinaryTrackFormat.BYTES_PER_POINT;
+        // Punktanzahl des zweiten Blocks zerstören
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(second);
+            raf.write(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F});
+        }
+        BinaryTrackFormat.Cursor cursor = new BinaryTrackFormat.Cursor();
+        TrackData into = new TrackData();
+        try {
+            format.readTail(file, cursor, into);
+            fail("Defekter Block nicht erkannt");
+        } catch (IOException expected) {
+            // erwartet
+        }
+        assertEquals(1000, into.size());
+        assertEquals(1000, cursor.points());
+        assertEquals(second, cursor.offset());
+    }
+
+    @Test
+    public void replayStreamsAllPointsAndSkipsPauses() throws IOException {
+        TrackData d = track(10_000);
+        format.write(file, d);
+
+        long duration = 10_000 * 1000L;
+        double speed = TrackReplay.speedFor(duration, 10_000);
+        TrackReplay replay = new TrackReplay(format, file, Long.MIN_VALUE, Long.MAX_VALUE, speed);
+        TrackData out = new TrackData();
+        long elapsed = 0;
+        int steps = 0;
+        while (replay.advance(elapsed, out)) {
+            elapsed += 100;
+            steps++;
+            assertTrue("Nachtpause nicht übersprungen", steps < 1000);
+        }
+        assertTrue(replay.isDone());
+        assertEquals(d.size(), out.size());
+        assertEquals(d.size(), replay.emittedCount());
+        for (int i = 0; i < d.size(); i++) assertEquals(d.timeAt(i), out.timeAt(i));
+        // ohne die Pause etwa 10 s Wiedergabe
+        assertTrue(elapsed > 9_000 && elapsed < 12_000);
+    }
+
+    @Test
+    public void replayOfWindowStopsAtItsEnd() throws IOException {
+        TrackData d = track(10_000);
+        format.write(file, d);
+        long from = d.timeAt(2000);
+        long to = d.timeAt(2999);
+        TrackReplay replay = new TrackReplay(format, file, from, to, 1000);
+
+        TrackData out = new TrackData();
+        assertTrue(replay.advance(0, out));
+        assertEquals(1, out.size());
+        assertEquals(from, out.timeAt(0));
+        // 100 ms bei 1000-facher Raffung = 100 s Trackzeit
+        replay.advance(100, out);
+        assertEquals(101, out.size());
+        assertFalse(replay.advance(10_000, out));
+        assertEquals(1000, out.size());
+        assertEquals(to, out.timeAt(out.size() - 1));
+    }
+
+    @Test
+    public void replayFollowsGrowingFile() throws IOException {
+        TrackData d = track(6000);
+        format.append(file, d, 0, 1000);
+        TrackReplay replay = new TrackReplay(format, file, Long.MIN_VALUE, Long.MAX_VALUE, 1000);
+        TrackData out = new TrackData();
+        replay.advance(0, out);
+        format.append(file, d, 1000, 2000);
+        replay.advance(1500, out);
+        assertEquals(1501, out.size());
+        assertFalse(replay.advance(100_000, out));
+        assertEquals(2000, out.size());
+    }
+}
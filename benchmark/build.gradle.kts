@@ -0,0 +1,36 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Die Android-freien Klassen der App werden direkt mitkompiliert (die App ist ein APK, keine Bibliothek)
+val appJava = rootProject.file("app/src/main/java")
+val androidImport = Regex("^import (android|androidx|com\\.google\\.android|org\\.osmdroid|org\\.xmlpull)\\.")
+
+sourceSets {
+    main {
+        java {
+            srcDir(appJava)
+            exclude { element ->
+                !element.isDirectory && element.file.useLines { lines -> lines.any { androidImport.containsMatchIn(it) } }
+            }
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.gson)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
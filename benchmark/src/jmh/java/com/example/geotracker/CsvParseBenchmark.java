@@ -0,0 +1,71 @@
+package com.example.geotracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV-Parsen: der alte Weg aus loadPointsFromCsv (readLine + split + ein Objekt
+ * pro Punkt) gegen CsvTrackReader, der direkt in die Spalten von TrackData liest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvParseBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int points;
+
+    private byte[] csv;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = SyntheticTracks.toCsv(SyntheticTracks.generate(points, 1));
+    }
+
+    // wie loadPointsFromCsv, nur mit LatLon statt osmdroid-GeoPoint (liegt nur als AAR vor)
+    @Benchmark
+    public List<LatLon> legacySplit() throws IOException {
+        List<LatLon> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(csv)))) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (first) {
+                    first = false;
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length >= 3) {
+                    double lat = Double.parseDouble(parts[1].trim());
+                    double lon = Double.parseDouble(parts[2].trim());
+                    result.add(new LatLon(lat, lon));
+                }
+            }
+        }
+        return result;
+    }
+
+    // liest zusätzlich die Zeitstempel, die der alte Weg ignoriert hat
+    @Benchmark
+    public TrackData csvTrackReader() throws IOException {
+        TrackData data = new TrackData();
+        new CsvTrackReader(SyntheticTracks.ZONE, CsvTrackReader.DEFAULT_BUFFER_SIZE)
+                .read(new ByteArrayInputStream(csv), data, (line, message) -> {
+                });
+        return data;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.geotracker;
+
+/**
+ * Ein Objekt pro Punkt, wie früher GeoPoint in der Punktliste (Vergleichsbasis).
+ */
+final class LatLon {
+    final double lat;
+    final double lon;
+
+    LatLon(double lat, double lon) {
+        this.lat = lat;
+        this.lon = lon;
+    }
+}
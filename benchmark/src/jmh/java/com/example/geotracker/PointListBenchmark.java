@@ -0,0 +1,58 @@
+package com.example.geotracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aufbau der Punktliste: Objektliste gegen Spalten (TrackData), dazu das Laden
+ * aus der Binärdatei, wie es TrackPointCache beim ersten Zugriff macht.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PointListBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int points;
+
+    private TrackData source;
+    private File binary;
+    private final BinaryTrackFormat format = new BinaryTrackFormat();
+
+    @Setup
+    public void setUp() throws IOException {
+        source = SyntheticTracks.generate(points, 1);
+        binary = SyntheticTracks.toBinaryFile(source);
+    }
+
+    @Benchmark
+    public List<LatLon> objectList() {
+        List<LatLon> list = new ArrayList<>();
+        for (int i = 0; i < source.size; i++) list.add(new LatLon(source.lat[i], source.lon[i]));
+        return list;
+    }
+
+    @Benchmark
+    public TrackData trackData() {
+        TrackData data = new TrackData();
+        for (int i = 0; i < source.size; i++) data.add(source.time[i], source.lat[i], source.lon[i]);
+        return data;
+    }
+
+    @Benchmark
+    public TrackData binaryRead() throws IOException {
+        return format.read(binary);
+    }
+}
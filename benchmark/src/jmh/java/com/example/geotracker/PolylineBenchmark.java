@@ -0,0 +1,157 @@
+package com.example.geotracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Linie vorbereiten: Detailstufen und Raumindex aufbauen (einmal pro geladenem
+ * Track) und pro Frame die sichtbaren Segmente in Pixel umrechnen wie
+ * LodPolyline.draw, nur ohne Canvas und osmdroid-Projektion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PolylineBenchmark {
+
+    // Bildschirm eines typischen Telefons
+    private static final int SCREEN_W = 1080;
+    private static final int SCREEN_H = 2200;
+    private static final double TILE_SIZE = 256;
+
+    @Param({"10000", "100000", "1000000"})
+    int points;
+
+    private TrackData data;
+    private final TrackLod lod = new TrackLod();
+    private final TrackSpatialIndex index = new TrackSpatialIndex();
+    private final TrackSpatialIndex.Ranges visible = new TrackSpatialIndex.Ranges();
+    private float[] lines = new float[4096];
+
+    // Ausschnitt: Straßenansicht am Ende des Tracks und Übersicht über den ganzen Track
+    private final double[] detailView = new double[4];
+    private final double[] overviewView = new double[4];
+    private double overviewZoom;
+
+    @Setup
+    public void setUp() {
+        data = SyntheticTracks.generate(points, 1);
+        lod.update(data, data.size());
+        index.update(data, data.size());
+
+        int last = data.size() - 1;
+        view(data.lat[last], data.lon[last], 16, detailView);
+
+        TrackSummary s = TrackSummary.of(data);
+        double spanX = (s.maxLon - s.minLon) / 360.0;
+        double spanY = Math.abs(mercatorY(s.maxLat) - mercatorY(s.minLat));
+        overviewZoom = Math.floor(Math.log(Math.min(SCREEN_W / (spanX * TILE_SIZE),
+                SCREEN_H / (spanY * TILE_SIZE))) / Math.log(2));
+        view((s.minLat + s.maxLat) / 2, (s.minLon + s.maxLon) / 2, overviewZoom, overviewView);
+    }
+
+    @Benchmark
+    public TrackLod buildLod() {
+        TrackLod l = new TrackLod();
+        l.update(data, data.size());
+        return l;
+    }
+
+    @Benchmark
+    public TrackSpatialIndex buildSpatialIndex() {
+        TrackSpatialIndex i = new TrackSpatialIndex();
+        i.update(data, data.size());
+        return i;
+    }
+
+    @Benchmark
+    public int prepareDetailFrame() {
+        return prepareFrame(detailView, 16);
+    }
+
+    @Benchmark
+    public int prepareOverviewFrame() {
+        return prepareFrame(overviewView, overviewZoom);
+    }
+
+    // Anzahl Floats für drawLines
+    private int prepareFrame(double[] view, double zoom) {
+        index.query(view[0], view[1], view[2], view[3], visible);
+        double scale = TILE_SIZE * Math.pow(2, zoom);
+        int level = lod.levelFor(zoom);
+        int len = 0;
+        for (int r = 0; r < visible.count(); r++) {
+            int from = visible.fromAt(r);
+            int to = Math.min(visible.toAt(r), data.size() - 1);
+            boolean hasPrev = false;
+            float px = 0;
+            float py = 0;
+            int pos = 0;
+            int n = level < 0 ? to + 1 : lod.size(level);
+            if (level >= 0) {
+                pos = lowerBound(level, n, from);
+                if (pos > 0) pos--;
+            } else {
+                pos = from;
+            }
+            for (; pos < n; pos++) {
+                int i = level < 0 ? pos : lod.indexAt(level, pos);
+                float x = (float) ((data.lon[i] + 180.0) / 360.0 * scale);
+                float y = (float) (mercatorY(data.lat[i]) * scale);
+                if (hasPrev) {
+                    if (len + 4 > lines.length) lines = Arrays.copyOf(lines, lines.length * 2);
+                    lines[len++] = px;
+                    lines[len++] = py;
+                    lines[len++] = x;
+                    lines[len++] = y;
+                }
+                hasPrev = true;
+                px = x;
+                py = y;
+                if (i > to) break;
+            }
+        }
+        return len;
+    }
+
+    private int lowerBound(int level, int n, int value) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lod.indexAt(level, mid) < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Süd, Nord, West, Ost des Bildschirms um (lat, lon) bei zoom, mit 10 % Rand wie LodPolyline
+    private static void view(double lat, double lon, double zoom, double[] out) {
+        double scale = TILE_SIZE * Math.pow(2, zoom);
+        double halfX = SCREEN_W * 0.6 / scale;
+        double halfY = SCREEN_H * 0.6 / scale;
+        double cx = (lon + 180.0) / 360.0;
+        double cy = mercatorY(lat);
+        out[0] = latFromY(cy + halfY);
+        out[1] = latFromY(cy - halfY);
+        out[2] = (cx - halfX) * 360.0 - 180.0;
+        out[3] = (cx + halfX) * 360.0 - 180.0;
+    }
+
+    private static double mercatorY(double lat) {
+        double sin = Math.sin(Math.toRadians(lat));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private static double latFromY(double y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+    }
+}
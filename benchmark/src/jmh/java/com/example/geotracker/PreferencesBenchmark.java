@@ -0,0 +1,67 @@
+package com.example.geotracker;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Track-Liste als Gson-JSON, wie sie vor dem SQLite-Katalog bei jeder Änderung
+ * komplett in die SharedPreferences geschrieben wurde (und bei der Migration
+ * noch einmal gelesen wird; damals ohne Zusammenfassung). Gemessen nach Anzahl
+ * Tracks, nicht Punkten.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreferencesBenchmark {
+
+    private static final Type TRACK_LIST = new TypeToken<List<TrackInfo>>() {}.getType();
+
+    @Param({"10", "100", "1000"})
+    int tracks;
+
+    private final Gson gson = new Gson();
+    private List<TrackInfo> list;
+    private boolean[] visible;
+    private String json;
+    private String visibleJson;
+
+    @Setup
+    public void setUp() {
+        list = new ArrayList<>();
+        visible = new boolean[tracks];
+        for (int i = 0; i < tracks; i++) {
+            TrackInfo t = new TrackInfo("Track " + i, TrackStorage.filenameFor("track " + i), 0xFF000000 | i * 7919);
+            t.id = i + 1;
+            list.add(t);
+            visible[i] = i % 3 != 0;
+        }
+        json = gson.toJson(list);
+        visibleJson = gson.toJson(visible);
+    }
+
+    @Benchmark
+    public int serialize() {
+        return gson.toJson(list).length() + gson.toJson(visible).length();
+    }
+
+    @Benchmark
+    public int deserialize() {
+        List<TrackInfo> l = gson.fromJson(json, TRACK_LIST);
+        boolean[] v = gson.fromJson(visibleJson, boolean[].class);
+        return l.size() + v.length;
+    }
+}
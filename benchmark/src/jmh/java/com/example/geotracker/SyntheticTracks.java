@@ -0,0 +1,58 @@
+package com.example.geotracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.util.Random;
+
+/**
+ * Erzeugt reproduzierbare Test-Tracks: Fußweg ab München mit 1 Hz,
+ * Kursänderungen und etwas GPS-Rauschen.
+ */
+final class SyntheticTracks {
+
+    static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final long START = 1_700_000_000_000L;
+    private static final double M_PER_DEG = Math.toRadians(1) * GeoMath.EARTH_RADIUS_M;
+
+    private SyntheticTracks() {
+    }
+
+    static TrackData generate(int points, long seed) {
+        Random rnd = new Random(seed);
+        TrackData data = new TrackData(points);
+        double lat = 48.137;
+        double lon = 11.575;
+        double heading = 0;
+        for (int i = 0; i < points; i++) {
+            heading += Math.toRadians(rnd.nextGaussian() * 10);
+            double step = 1.4 + rnd.nextGaussian() * 0.3;
+            lat += step * Math.cos(heading) / M_PER_DEG;
+            lon += step * Math.sin(heading) / (M_PER_DEG * Math.cos(Math.toRadians(lat)));
+            data.add(START + i * 1000L,
+                    lat + rnd.nextGaussian() * 3 / M_PER_DEG,
+                    lon + rnd.nextGaussian() * 3 / M_PER_DEG);
+        }
+        return data;
+    }
+
+    // Inhalt einer alten track_*.csv (lokale Zeit, wie CsvTrackFormat sie schreibt)
+    static byte[] toCsv(TrackData data) throws IOException {
+        File tmp = File.createTempFile("bench", CsvTrackFormat.EXTENSION);
+        try {
+            new CsvTrackFormat(ZONE).write(tmp, data);
+            return Files.readAllBytes(tmp.toPath());
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    // Binärdatei im App-Format; wird beim Beenden der JVM gelöscht
+    static File toBinaryFile(TrackData data) throws IOException {
+        File tmp = File.createTempFile("bench", BinaryTrackFormat.EXTENSION);
+        tmp.deleteOnExit();
+        new BinaryTrackFormat().write(tmp, data);
+        return tmp;
+    }
+}
@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Geotracker"
 include(":app")
+include(":benchmark")